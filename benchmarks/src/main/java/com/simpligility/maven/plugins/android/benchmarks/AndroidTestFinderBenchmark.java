@@ -0,0 +1,83 @@
+package com.simpligility.maven.plugins.android.benchmarks;
+
+import com.simpligility.maven.plugins.android.asm.AndroidTestFinder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AndroidTestFinder} over a classes folder without any test, which is the worst case as every class and jar
+ * has to be read.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class AndroidTestFinderBenchmark
+{
+    private static final int CLASSES_PER_PACKAGE = 50;
+
+    @Param( { "500", "5000" } )
+    public int classCount;
+
+    private File directory;
+
+    @Setup( Level.Trial )
+    public void createClasses() throws Exception
+    {
+        directory = Fixtures.createTempDirectory( "test-finder-benchmark" );
+        for ( int i = 0; i < classCount; i++ )
+        {
+            final String name = "com/example/pkg" + ( i / CLASSES_PER_PACKAGE ) + "/Class" + i;
+            final File classFile = new File( directory, name + ".class" );
+            classFile.getParentFile().mkdirs();
+            final FileOutputStream out = new FileOutputStream( classFile );
+            try
+            {
+                out.write( Fixtures.classBytes( name, "java/lang/Object" ) );
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+
+        final Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+        for ( int i = 0; i < CLASSES_PER_PACKAGE; i++ )
+        {
+            final String name = "com/example/embedded/Class" + i;
+            entries.put( name + ".class", Fixtures.classBytes( name, "java/lang/Object" ) );
+        }
+        Fixtures.writeZip( new File( directory, "libs/embedded.jar" ), entries );
+    }
+
+    @TearDown( Level.Trial )
+    public void deleteClasses()
+    {
+        Fixtures.delete( directory );
+    }
+
+    @Benchmark
+    public boolean scanWithoutTests() throws Exception
+    {
+        return AndroidTestFinder.containsAndroidTests( directory );
+    }
+}
@@ -0,0 +1,144 @@
+package com.simpligility.maven.plugins.android.benchmarks;
+
+import com.simpligility.maven.plugins.android.common.ArtifactResolverHelper;
+import com.simpligility.maven.plugins.android.common.UnpackedLibHelper;
+import com.simpligility.maven.plugins.android.common.ZipExtractor;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.monitor.logging.DefaultLog;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unpacking of an AAR by {@link UnpackedLibHelper} and of a jar by {@link ZipExtractor}, into a fresh folder for
+ * each invocation. Artifact resolution is stubbed to return the generated archive.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class ExtractionBenchmark
+{
+    private static final int CLASSES_PER_PACKAGE = 50;
+    private static final int RESOURCE_BYTES = 512;
+
+    @Param( { "500", "2000" } )
+    public int entryCount;
+
+    private File directory;
+    private File jar;
+    private Artifact aar;
+    private ArtifactResolverHelper artifactResolverHelper;
+    private final Logger logger = new ConsoleLogger( Logger.LEVEL_WARN, "benchmark" );
+
+    @Setup( Level.Trial )
+    public void createArchives() throws Exception
+    {
+        directory = Fixtures.createTempDirectory( "extraction-benchmark" );
+
+        final Map<String, byte[]> classes = new LinkedHashMap<String, byte[]>();
+        final Map<String, byte[]> aarEntries = new LinkedHashMap<String, byte[]>();
+        for ( int i = 0; i < entryCount; i++ )
+        {
+            final String name = "com/example/pkg" + ( i / CLASSES_PER_PACKAGE ) + "/Class" + i;
+            classes.put( name + ".class", Fixtures.classBytes( name, "java/lang/Object" ) );
+            classes.put( name + ".txt", new byte[ RESOURCE_BYTES ] );
+            aarEntries.put( "res/drawable/image" + i + ".png", new byte[ RESOURCE_BYTES ] );
+        }
+        jar = Fixtures.writeZip( new File( directory, "classes.jar" ), classes );
+
+        aarEntries.put( "AndroidManifest.xml", "<manifest package=\"com.example.lib\"/>".getBytes( Fixtures.UTF_8 ) );
+        aarEntries.put( "R.txt", "int drawable image0 0x7f020000\n".getBytes( Fixtures.UTF_8 ) );
+        aarEntries.put( "classes.jar", Files.readAllBytes( jar.toPath() ) );
+        aarEntries.put( "libs/armeabi/libnative.so", new byte[ RESOURCE_BYTES ] );
+
+        aar = new DefaultArtifact( "com.example", "lib", "1.0", "compile", "aar", null,
+                new DefaultArtifactHandler( "aar" ) );
+        aar.setFile( Fixtures.writeZip( new File( directory, "lib.aar" ), aarEntries ) );
+
+        artifactResolverHelper = new ArtifactResolverHelper( resolving( aar ), logger );
+    }
+
+    @TearDown( Level.Trial )
+    public void deleteArchives()
+    {
+        Fixtures.delete( directory );
+    }
+
+    @Benchmark
+    public File extractJar( Target target ) throws Exception
+    {
+        new ZipExtractor( new DefaultLog( logger ) ).extract( jar, target.folder, ".class" );
+        return target.folder;
+    }
+
+    @Benchmark
+    public File extractAar( Target target ) throws Exception
+    {
+        final UnpackedLibHelper helper = new UnpackedLibHelper( artifactResolverHelper, new MavenProject(), logger,
+                target.folder );
+        helper.extractAarLib( aar );
+        return helper.getUnpackedLibFolder( aar );
+    }
+
+    private static ArtifactResolver resolving( final Artifact artifact )
+    {
+        return ( ArtifactResolver ) Proxy.newProxyInstance( ExtractionBenchmark.class.getClassLoader(),
+                new Class<?>[] { ArtifactResolver.class }, new InvocationHandler()
+                {
+                    @Override
+                    public Object invoke( Object proxy, Method method, Object[] args )
+                    {
+                        final ArtifactResolutionResult result = new ArtifactResolutionResult();
+                        result.setArtifacts( Collections.singleton( artifact ) );
+                        return result;
+                    }
+                } );
+    }
+
+    /**
+     * Empty target folder for each extraction.
+     */
+    @State( Scope.Thread )
+    public static class Target
+    {
+        private File folder;
+
+        @Setup( Level.Invocation )
+        public void createFolder( ExtractionBenchmark fixture ) throws Exception
+        {
+            folder = new File( fixture.directory, "target-" + Thread.currentThread().getId() );
+            Fixtures.delete( folder );
+            folder.mkdirs();
+        }
+    }
+}
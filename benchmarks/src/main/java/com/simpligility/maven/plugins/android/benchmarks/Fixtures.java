@@ -0,0 +1,103 @@
+package com.simpligility.maven.plugins.android.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates the synthetic fixtures of the benchmarks and sets the mojo parameters they need.
+ */
+public final class Fixtures
+{
+    public static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private Fixtures()
+    {
+    }
+
+    public static File createTempDirectory( String prefix ) throws IOException
+    {
+        final File directory = File.createTempFile( prefix, "" );
+        if ( !directory.delete() || !directory.mkdirs() )
+        {
+            throw new IOException( "Could not create temporary directory " + directory );
+        }
+        return directory;
+    }
+
+    public static void delete( File directory )
+    {
+        FileUtils.deleteQuietly( directory );
+    }
+
+    public static void write( File file, String content ) throws IOException
+    {
+        FileUtils.writeStringToFile( file, content, UTF_8 );
+    }
+
+    /**
+     * Writes a zip file with the supplied entries, keyed by entry name.
+     */
+    public static File writeZip( File file, Map<String, byte[]> entries ) throws IOException
+    {
+        file.getParentFile().mkdirs();
+        final ZipOutputStream zos = new ZipOutputStream( new FileOutputStream( file ) );
+        try
+        {
+            for ( final Map.Entry<String, byte[]> entry : entries.entrySet() )
+            {
+                zos.putNextEntry( new ZipEntry( entry.getKey() ) );
+                zos.write( entry.getValue() );
+                zos.closeEntry();
+            }
+        }
+        finally
+        {
+            zos.close();
+        }
+        return file;
+    }
+
+    /**
+     * @return the bytes of an empty public class.
+     */
+    public static byte[] classBytes( String internalName, String superName )
+    {
+        final ClassWriter writer = new ClassWriter( 0 );
+        writer.visit( Opcodes.V1_7, Opcodes.ACC_PUBLIC, internalName, null, superName, null );
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    public static void setField( Object target, String name, Object value ) throws ReflectiveOperationException
+    {
+        findField( target.getClass(), name ).set( target, value );
+    }
+
+    private static Field findField( Class<?> type, String name ) throws NoSuchFieldException
+    {
+        for ( Class<?> current = type; current != null; current = current.getSuperclass() )
+        {
+            try
+            {
+                final Field field = current.getDeclaredField( name );
+                field.setAccessible( true );
+                return field;
+            }
+            catch ( NoSuchFieldException e )
+            {
+                // look in the superclass
+            }
+        }
+        throw new NoSuchFieldException( name + " in " + type.getName() );
+    }
+}
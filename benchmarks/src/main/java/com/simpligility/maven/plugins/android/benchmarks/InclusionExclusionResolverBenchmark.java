@@ -0,0 +1,76 @@
+package com.simpligility.maven.plugins.android.benchmarks;
+
+import com.simpligility.maven.plugins.android.InclusionExclusionResolver;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link InclusionExclusionResolver#filterArtifacts} with type and qualifier filters, as configured by the
+ * <code>artifactTypeSet</code> and <code>artifactSet</code> mojo parameters.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class InclusionExclusionResolverBenchmark
+{
+    private static final String[] TYPES = { "jar", "aar", "apklib", "so", "a" };
+    private static final int GROUPS = 10;
+
+    @Param( { "100", "1000" } )
+    public int artifactCount;
+
+    private List<Artifact> artifacts;
+    private final Collection<String> includeTypes = Arrays.asList( "so" );
+    private final Collection<String> excludeTypes = Arrays.asList( "apklib", "a" );
+    private final Collection<String> includeQualifiers = Arrays.asList( "com.example.group1", "com.example.group2:lib3",
+            "com.example.group3:lib4:1.0" );
+    private final Collection<String> excludeQualifiers = Arrays.asList( "com.example.group4", "com.example.group5:lib7",
+            "com.example.group6:lib8:1.0" );
+
+    @Setup
+    public void createArtifacts()
+    {
+        artifacts = new ArrayList<Artifact>( artifactCount );
+        for ( int i = 0; i < artifactCount; i++ )
+        {
+            final String type = TYPES[ i % TYPES.length ];
+            artifacts.add( new DefaultArtifact( "com.example.group" + ( i % GROUPS ), "lib" + i, "1.0", "compile",
+                    type, null, new DefaultArtifactHandler( type ) ) );
+        }
+    }
+
+    @Benchmark
+    public int filterWithDependencies()
+    {
+        return InclusionExclusionResolver.filterArtifacts( artifacts, false, includeTypes, excludeTypes,
+                includeQualifiers, excludeQualifiers ).size();
+    }
+
+    @Benchmark
+    public int filterSkippingDependencies()
+    {
+        return InclusionExclusionResolver.filterArtifacts( artifacts, true, includeTypes, excludeTypes,
+                includeQualifiers, excludeQualifiers ).size();
+    }
+}
@@ -0,0 +1,70 @@
+package com.simpligility.maven.plugins.android.phase01generatesources;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ConflictingLayoutDetector} over resource packages where one layout in twenty is also declared by another
+ * package. The benchmark lives in the package of the detector, which is package private.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class ConflictingLayoutDetectorBenchmark
+{
+    private static final int SHARED_LAYOUT_RATIO = 20;
+
+    @Param( { "10", "100" } )
+    public int packageCount;
+
+    @Param( { "200" } )
+    public int layoutsPerPackage;
+
+    private Map<String, List<String>> layoutsByPackage;
+
+    @Setup
+    public void createLayouts()
+    {
+        layoutsByPackage = new LinkedHashMap<String, List<String>>();
+        for ( int pkg = 0; pkg < packageCount; pkg++ )
+        {
+            final List<String> layouts = new ArrayList<String>( layoutsPerPackage );
+            for ( int layout = 0; layout < layoutsPerPackage; layout++ )
+            {
+                final String folder = layout % 2 == 0 ? "layout" : "layout-land";
+                final String owner = layout % SHARED_LAYOUT_RATIO == 0 ? "shared" : "lib" + pkg;
+                layouts.add( folder + "/" + owner + "_layout_" + layout + ".xml" );
+            }
+            layoutsByPackage.put( "com.example.lib" + pkg, layouts );
+        }
+    }
+
+    @Benchmark
+    public int detectConflicts()
+    {
+        final ConflictingLayoutDetector detector = new ConflictingLayoutDetector();
+        for ( final Map.Entry<String, List<String>> entry : layoutsByPackage.entrySet() )
+        {
+            detector.addLayoutFiles( entry.getKey(), entry.getValue() );
+        }
+        return detector.getConflictingLayouts().size();
+    }
+}
@@ -0,0 +1,119 @@
+package com.simpligility.maven.plugins.android.phase01generatesources;
+
+import com.simpligility.maven.plugins.android.benchmarks.Fixtures;
+import com.simpligility.maven.plugins.android.common.ClasspathIndex;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.monitor.logging.DefaultLog;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ResourceClassGenerator} writing the R classes of AAR dependencies from their R.txt and the R.txt of the
+ * project. The benchmark lives in the package of the generator, which is package private.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class ResourceClassGeneratorBenchmark
+{
+    private static final String[] TYPES = { "drawable", "layout", "string", "id", "color" };
+    private static final int FIRST_ID = 0x7f000000;
+    private static final int TYPE_SHIFT = 16;
+
+    @Param( { "10", "50" } )
+    public int libraryCount;
+
+    @Param( { "500" } )
+    public int symbolsPerLibrary;
+
+    private File directory;
+    private File targetDirectory;
+    private File genDirectory;
+    private GenerateSourcesMojo mojo;
+    private ClasspathIndex classpathIndex;
+    private Set<Artifact> libraries;
+
+    @Setup( Level.Trial )
+    public void createLibraries() throws Exception
+    {
+        directory = Fixtures.createTempDirectory( "r-benchmark" );
+        targetDirectory = new File( directory, "target" );
+        genDirectory = new File( targetDirectory, "generated-sources/r" );
+        genDirectory.mkdirs();
+
+        final Logger logger = new ConsoleLogger( Logger.LEVEL_WARN, "benchmark" );
+        mojo = new GenerateSourcesMojo();
+        mojo.setLog( new DefaultLog( logger ) );
+        Fixtures.setField( mojo, "project", new MavenProject() );
+        Fixtures.setField( mojo, "unpackedLibsFolder", new File( targetDirectory, "unpacked-libs" ) );
+        classpathIndex = ClasspathIndex.build( Collections.<String>emptyList(), new ClasspathIndex.JarCache(),
+                logger );
+
+        final StringBuilder projectSymbols = new StringBuilder();
+        libraries = new LinkedHashSet<Artifact>();
+        for ( int lib = 0; lib < libraryCount; lib++ )
+        {
+            final Artifact artifact = new DefaultArtifact( "com.example", "lib" + lib, "1.0", "compile", "aar", null,
+                    new DefaultArtifactHandler( "aar" ) );
+            libraries.add( artifact );
+
+            final StringBuilder librarySymbols = new StringBuilder();
+            for ( int symbol = 0; symbol < symbolsPerLibrary; symbol++ )
+            {
+                final int type = symbol % TYPES.length;
+                final String line = "int " + TYPES[ type ] + " lib" + lib + "_" + symbol + " 0x"
+                        + Integer.toHexString( FIRST_ID + ( type << TYPE_SHIFT ) + lib * symbolsPerLibrary + symbol )
+                        + "\n";
+                librarySymbols.append( line );
+                projectSymbols.append( line );
+            }
+
+            final File libraryFolder = mojo.getUnpackedLibFolder( artifact );
+            Fixtures.write( new File( libraryFolder, "R.txt" ), librarySymbols.toString() );
+            Fixtures.write( new File( libraryFolder, "AndroidManifest.xml" ),
+                    "<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\" package=\"com.example.lib"
+                            + lib + "\"/>" );
+        }
+        Fixtures.write( new File( targetDirectory, "R.txt" ), projectSymbols.toString() );
+    }
+
+    @TearDown( Level.Trial )
+    public void deleteLibraries()
+    {
+        Fixtures.delete( directory );
+    }
+
+    @Benchmark
+    public File generateLibraryRs()
+    {
+        final ResourceClassGenerator generator =
+                new ResourceClassGenerator( mojo, targetDirectory, genDirectory, classpathIndex );
+        generator.generateLibraryRs( libraries );
+        return genDirectory;
+    }
+}
@@ -0,0 +1,120 @@
+package com.simpligility.maven.plugins.android.phase09package;
+
+import com.simpligility.maven.plugins.android.benchmarks.Fixtures;
+import com.simpligility.maven.plugins.android.configuration.MetaInf;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Duplicate detection across the embedded jars and META-INF merging of {@link ApkMojo}, on generated jars where one
+ * entry in ten is present in a pair of jars.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class ApkMojoBenchmark
+{
+    private static final int SHARED_ENTRY_RATIO = 10;
+
+    @Param( { "20", "100" } )
+    public int jarCount;
+
+    @Param( { "200" } )
+    public int entriesPerJar;
+
+    private File directory;
+    private List<File> jars;
+    private File apk;
+
+    @Setup( Level.Trial )
+    public void createJars() throws Exception
+    {
+        directory = Fixtures.createTempDirectory( "apk-benchmark" );
+        jars = new ArrayList<File>();
+        for ( int jar = 0; jar < jarCount; jar++ )
+        {
+            final Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+            for ( int entry = 0; entry < entriesPerJar; entry++ )
+            {
+                // Every tenth entry has the same name in a pair of jars.
+                final int owner = entry % SHARED_ENTRY_RATIO == 0 ? jar / 2 : jar;
+                final String name = "com/example/lib" + owner + "/Class" + entry;
+                entries.put( name + ".class", Fixtures.classBytes( name, "java/lang/Object" ) );
+            }
+            entries.put( "META-INF/services/com.example.Service", ( "com.example.lib" + jar ).getBytes( "UTF-8" ) );
+            entries.put( "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes( "UTF-8" ) );
+            jars.add( Fixtures.writeZip( new File( directory, "lib" + jar + ".jar" ), entries ) );
+        }
+
+        final Map<String, byte[]> apkEntries = new LinkedHashMap<String, byte[]>();
+        apkEntries.put( "classes.dex", new byte[ entriesPerJar * jarCount ] );
+        apkEntries.put( "AndroidManifest.xml", "<manifest/>".getBytes( "UTF-8" ) );
+        apk = Fixtures.writeZip( new File( directory, "app.apk" ), apkEntries );
+    }
+
+    @TearDown( Level.Trial )
+    public void deleteJars()
+    {
+        Fixtures.delete( directory );
+    }
+
+    @Benchmark
+    public Object computeDuplicates() throws Exception
+    {
+        final Map<String, List<File>> entries = new HashMap<String, List<File>>();
+        for ( final File jar : jars )
+        {
+            ApkMojo.computeDuplicateFiles( jar, entries );
+        }
+        return entries;
+    }
+
+    @Benchmark
+    public long mergeMetaInf( OutputApk output ) throws Exception
+    {
+        final ApkMojo mojo = new ApkMojo();
+        Fixtures.setField( mojo, "apkMetaInf", new MetaInf().include( "services/**" ) );
+        Fixtures.setField( mojo, "extractDuplicates", true );
+        mojo.addMetaInf( output.file, jars );
+        return output.file.length();
+    }
+
+    /**
+     * Fresh copy of the APK for each META-INF merge, which rewrites the APK in place.
+     */
+    @State( Scope.Thread )
+    public static class OutputApk
+    {
+        private File file;
+
+        @Setup( Level.Invocation )
+        public void copyApk( ApkMojoBenchmark fixture ) throws Exception
+        {
+            file = new File( fixture.directory, "output-" + Thread.currentThread().getId() + ".apk" );
+            FileUtils.copyFile( fixture.apk, file );
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.simpligility.maven.plugins.android.resource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarOutputStream;
+
+/**
+ * {@link XpathAppendingTransformer} merging the same XML resource from many jars, with and without an XPath
+ * selection. The benchmark lives in the package of the transformer to configure it like the mojo does.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class XpathAppendingTransformerBenchmark
+{
+    private static final String RESOURCE = "META-INF/components.xml";
+
+    @Param( { "10", "100" } )
+    public int resourceCount;
+
+    @Param( { "50" } )
+    public int elementsPerResource;
+
+    private List<byte[]> resources;
+
+    @Setup
+    public void createResources() throws Exception
+    {
+        resources = new ArrayList<byte[]>( resourceCount );
+        for ( int resource = 0; resource < resourceCount; resource++ )
+        {
+            final StringBuilder xml = new StringBuilder( "<component-set><components>" );
+            for ( int element = 0; element < elementsPerResource; element++ )
+            {
+                xml.append( "<component role=\"com.example.Role" ).append( resource ).append( "\">" )
+                        .append( "<implementation>com.example.Impl" ).append( element ).append( "</implementation>" )
+                        .append( "</component>" );
+            }
+            xml.append( "</components></component-set>" );
+            resources.add( xml.toString().getBytes( "UTF-8" ) );
+        }
+    }
+
+    @Benchmark
+    public int appendRootElements() throws Exception
+    {
+        return merge( null );
+    }
+
+    @Benchmark
+    public int appendSelectedElements() throws Exception
+    {
+        return merge( new String[] { "/component-set/components" } );
+    }
+
+    private int merge( String[] elements ) throws Exception
+    {
+        final XpathAppendingTransformer transformer = new XpathAppendingTransformer();
+        transformer.resource = RESOURCE;
+        transformer.elements = elements;
+        for ( final byte[] resource : resources )
+        {
+            transformer.processResource( RESOURCE, new ByteArrayInputStream( resource ), null );
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final JarOutputStream jar = new JarOutputStream( bytes );
+        transformer.modifyOutputStream( jar );
+        jar.close();
+        return bytes.size();
+    }
+}
@@ -16,7 +16,6 @@
  */
 package com.simpligility.maven.plugins.android;
 
-import com.android.builder.core.DefaultManifestParser;
 import com.android.ddmlib.AndroidDebugBridge;
 import com.android.ddmlib.DdmPreferences;
 import com.android.ddmlib.IDevice;
@@ -24,10 +23,16 @@ import com.android.ddmlib.InstallException;
 import com.simpligility.maven.plugins.android.common.AaptCommandBuilder;
 import com.simpligility.maven.plugins.android.common.AndroidExtension;
 import com.simpligility.maven.plugins.android.common.ArtifactResolverHelper;
+import com.simpligility.maven.plugins.android.common.CompiledResourceCache;
 import com.simpligility.maven.plugins.android.common.DependencyResolver;
 import com.simpligility.maven.plugins.android.common.DeviceHelper;
+import com.simpligility.maven.plugins.android.common.ManifestMetadata;
+import com.simpligility.maven.plugins.android.common.ManifestMetadataCache;
 import com.simpligility.maven.plugins.android.common.MavenToPlexusLogAdapter;
 import com.simpligility.maven.plugins.android.common.NativeHelper;
+import com.simpligility.maven.plugins.android.common.PngCrunchCache;
+import com.simpligility.maven.plugins.android.common.SessionScope;
+import com.simpligility.maven.plugins.android.common.Tracer;
 import com.simpligility.maven.plugins.android.common.UnpackedLibHelper;
 import com.simpligility.maven.plugins.android.config.ConfigPojo;
 import com.simpligility.maven.plugins.android.configuration.Ndk;
@@ -35,9 +40,6 @@ import com.simpligility.maven.plugins.android.configuration.Sdk;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.TrueFileFilter;
-import org.apache.commons.jxpath.JXPathContext;
-import org.apache.commons.jxpath.JXPathNotFoundException;
-import org.apache.commons.jxpath.xml.DocumentContainer;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.handler.ArtifactHandler;
@@ -57,10 +59,9 @@ import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Scanner;
@@ -85,12 +86,8 @@ import static org.apache.commons.lang3.StringUtils.isBlank;
 public abstract class AbstractAndroidMojo extends AbstractMojo
 {
 
-    public static final List<String> SUPPORTED_PACKAGING_TYPES = new ArrayList<String>();
-
-    static
-    {
-        SUPPORTED_PACKAGING_TYPES.add( AndroidExtension.APK );
-    }
+    public static final List<String> SUPPORTED_PACKAGING_TYPES =
+            Collections.unmodifiableList( Arrays.asList( AndroidExtension.APK ) );
 
     /**
      * Android Debug Bridge initialization timeout in milliseconds.
@@ -355,6 +352,44 @@ public abstract class AbstractAndroidMojo extends AbstractMojo
     @Parameter( property = "android.aaptExtraArgs" )
     protected String[] aaptExtraArgs;
 
+    /**
+     * Whether to compile the resources with aapt2 instead of aapt.
+     * <p>
+     * Each resource file is compiled by <code>aapt2 compile</code> into a cache in
+     * <code>${project.build.directory}/aapt2</code>, in parallel and only when it changed since the previous build,
+     * then <code>aapt2 link</code> produces R.java, R.txt and the resource package. PNG files are always crunched,
+     * once per change. Requires build tools providing aapt2, and {@link #aaptExtraArgs} must be aapt2 link options.
+     */
+    @Parameter( property = "android.aapt2", defaultValue = "false" )
+    protected boolean aapt2;
+
+    /**
+     * Whether aapt packages PNG files crunched ahead of it, in parallel, instead of crunching them one after the
+     * other on every build.
+     * <p>
+     * The resource folders are then mirrored in <code>${project.build.directory}/crunched-res</code>, with their PNG
+     * files crunched by <code>aapt singleCrunch</code> and kept in {@link #pngCrunchCacheDirectory}. Only the PNG files
+     * changed since the previous build are looked up in the cache, and only the ones missing from it are crunched.
+     * Does not apply to {@link #aapt2}, which already compiles changed files only.
+     */
+    @Parameter( property = "android.pngCrunch.cached", defaultValue = "false" )
+    protected boolean pngCrunchCached;
+
+    /**
+     * Cache of the crunched PNG files, by content, which can be shared by projects and builds.
+     */
+    @Parameter( property = "android.pngCrunch.cacheDirectory", defaultValue = "${user.home}/.android/crunch-cache" )
+    protected File pngCrunchCacheDirectory;
+
+    /**
+     * Whether to package the PNG files as they are, without crunching them, when not building a {@link #release}.
+     * Saves the crunching time of debug builds at the cost of a larger APK. 9-patch images are still compiled, by
+     * <code>aapt singleCrunch</code> with the cache of {@link #pngCrunchCacheDirectory}, as aapt packages them raw
+     * without crunching. Does not apply to {@link #aapt2}.
+     */
+    @Parameter( property = "android.pngCrunch.skipInDebug", defaultValue = "false" )
+    protected boolean pngCrunchSkipInDebug;
+
     /**
      * Activate verbose output for the aapt execution in Maven debug mode. Defaults to "false"
      */
@@ -529,16 +564,11 @@ public abstract class AbstractAndroidMojo extends AbstractMojo
     private UnpackedLibHelper unpackedLibHelper;
     private ArtifactResolverHelper artifactResolverHelper;
     private NativeHelper nativeHelper;
-
+    private InclusionExclusionResolver.Filter artifactFilter;
     /**
-     *
-     */
-    private static final Object ADB_LOCK = new Object();
-
-    /**
-     *
+     * The arguments {@link #artifactFilter} was compiled from.
      */
-    private static boolean adbInitialized = false;
+    private List<Object> artifactFilterKey;
 
     /**
      * Dependency graph builder component.
@@ -599,6 +629,29 @@ public abstract class AbstractAndroidMojo extends AbstractMojo
         return getArtifactResolverHelper().getFilteredArtifacts( filteredScopes, project.getArtifacts(), types );
     }
 
+    /**
+     * Compiles the dependency filter of the packaging mojos from their <code>skipDependencies</code>,
+     * <code>artifactTypeSet</code> and <code>artifactSet</code> parameters, again only when they differ from the ones
+     * of the previous call.
+     *
+     * @param skipDependencies whether to skip the transitive dependencies.
+     * @param artifactTypeSet  the artifact types to include or exclude.
+     * @param artifactSet      the artifacts to include or exclude, overriding the two other parameters.
+     * @return the filter of the dependencies to package.
+     */
+    protected InclusionExclusionResolver.Filter getArtifactFilter( boolean skipDependencies,
+            IncludeExcludeSet artifactTypeSet, IncludeExcludeSet artifactSet )
+    {
+        final List<Object> key = Arrays.<Object>asList( skipDependencies, artifactTypeSet, artifactSet );
+        if ( artifactFilter == null || !key.equals( artifactFilterKey ) )
+        {
+            artifactFilter = InclusionExclusionResolver.compile( skipDependencies, artifactTypeSet.getIncludes(),
+                    artifactTypeSet.getExcludes(), artifactSet.getIncludes(), artifactSet.getExcludes() );
+            artifactFilterKey = key;
+        }
+        return artifactFilter;
+    }
+
     /**
      * Attempts to resolve an {@link Artifact} to a {@link File}.
      *
@@ -612,24 +665,78 @@ public abstract class AbstractAndroidMojo extends AbstractMojo
     }
 
     /**
-     * Initialize the Android Debug Bridge and wait for it to start. Does not reinitialize it if it has
-     * already been initialized (that would through and IllegalStateException...). Synchronized sine
-     * the init call in the library is also synchronized .. just in case.
+     * Initialize the Android Debug Bridge and wait for it to start. The library is initialized once per JVM, by the
+     * first module of the build that needs it, as initializing it again throws an IllegalStateException. The bridge
+     * is shared by all modules, so concurrent modules only wait for the connection, not for each other.
      */
     protected AndroidDebugBridge initAndroidDebugBridge() throws MojoExecutionException
     {
-        synchronized ( ADB_LOCK )
+        DdmPreferences.setTimeOut( adbConnectionTimeout );
+        DdmLibrary.initialize();
+        final AndroidDebugBridge androidDebugBridge = AndroidDebugBridge
+                .createBridge( getAndroidSdk().getAdbPath(), false );
+        waitUntilConnected( androidDebugBridge );
+        return androidDebugBridge;
+    }
+
+    /**
+     * Resource folders prepared for aapt or aapt2 by {@link #compileResources(boolean)}, with the highest priority
+     * first.
+     */
+    protected static final class CompiledResources
+    {
+        private final boolean crunchPngFiles;
+        private final boolean aaptCrunchesPngFiles;
+        /**
+         * The folders to package with aapt, or null in {@link AbstractAndroidMojo#aapt2} mode.
+         */
+        private final List<File> directories;
+        /**
+         * The compiled files of each folder to link with aapt2, or null in aapt mode.
+         */
+        private final List<List<File>> flatFiles;
+
+        private CompiledResources( boolean crunchPngFiles, boolean aaptCrunchesPngFiles, List<File> directories,
+                List<List<File>> flatFiles )
         {
-            if ( ! adbInitialized )
+            this.crunchPngFiles = crunchPngFiles;
+            this.aaptCrunchesPngFiles = aaptCrunchesPngFiles;
+            this.directories = directories;
+            this.flatFiles = flatFiles;
+        }
+
+        private CompiledResources overlay( CompiledResources resources )
+        {
+            if ( directories == null )
             {
-                DdmPreferences.setTimeOut( adbConnectionTimeout );
-                AndroidDebugBridge.init( false );
-                adbInitialized = true;
+                final List<List<File>> allFlatFiles = new ArrayList<List<File>>( flatFiles );
+                allFlatFiles.addAll( resources.flatFiles );
+                return new CompiledResources( crunchPngFiles, aaptCrunchesPngFiles, null, allFlatFiles );
             }
-            AndroidDebugBridge androidDebugBridge = AndroidDebugBridge
-                    .createBridge( getAndroidSdk().getAdbPath(), false );
-            waitUntilConnected( androidDebugBridge );
-            return androidDebugBridge;
+            final List<File> allDirectories = new ArrayList<File>( directories );
+            allDirectories.addAll( resources.directories );
+            return new CompiledResources( crunchPngFiles, aaptCrunchesPngFiles, allDirectories, null );
+        }
+    }
+
+    /**
+     * Initializes ddmlib when first loaded, which the JVM does exactly once even if several modules of a parallel
+     * build get here at the same time.
+     */
+    private static final class DdmLibrary
+    {
+        static
+        {
+            AndroidDebugBridge.init( false );
+        }
+
+        private DdmLibrary()
+        {
+        }
+
+        static void initialize()
+        {
+            // the class initializer does the work
         }
     }
 
@@ -828,7 +935,16 @@ public abstract class AbstractAndroidMojo extends AbstractMojo
                 DoThread deviceDoThread = new DoThread() {
                     public void runDo() throws MojoFailureException, MojoExecutionException
                     {
-                        deviceCallback.doWithDevice( idevice );
+                        final Tracer.Span span = startSpan( "doWithDevice" )
+                                .attribute( "device", DeviceHelper.getDescriptiveName( idevice ) );
+                        try
+                        {
+                            deviceCallback.doWithDevice( idevice );
+                        }
+                        finally
+                        {
+                            span.end();
+                        }
                     }
                 };
                 doThreads.add( deviceDoThread );
@@ -1041,7 +1157,7 @@ public abstract class AbstractAndroidMojo extends AbstractMojo
 
     protected String extractPackageNameFromAndroidManifest( File manifestFile )
     {
-        return new DefaultManifestParser( manifestFile ).getPackage();
+        return getManifestMetadata( manifestFile ).getPackageName();
     }
 
     /**
@@ -1062,29 +1178,29 @@ public abstract class AbstractAndroidMojo extends AbstractMojo
     protected String extractInstrumentationRunnerFromAndroidManifest( File manifestFile )
             throws MojoExecutionException
     {
-        final URL xmlURL;
         try
         {
-            xmlURL = manifestFile.toURI().toURL();
+            return getManifestMetadata( manifestFile ).getInstrumentationRunner();
         }
-        catch ( MalformedURLException e )
+        catch ( IllegalArgumentException e )
         {
             throw new MojoExecutionException(
                     "Error while trying to figure out instrumentation runner from inside AndroidManifest.xml file "
                             + manifestFile, e );
         }
-        final DocumentContainer documentContainer = new DocumentContainer( xmlURL );
-        final Object instrumentationRunner;
-        try
-        {
-            instrumentationRunner = JXPathContext.newContext( documentContainer )
-                    .getValue( "manifest//instrumentation/@android:name", String.class );
-        }
-        catch ( JXPathNotFoundException e )
-        {
-            return null;
-        }
-        return ( String ) instrumentationRunner;
+    }
+
+    /**
+     * Provides the parsed values of a manifest. Manifests are parsed once per build and re-parsed only if they
+     * change, so this can be called as often as needed.
+     *
+     * @param manifestFile the AndroidManifest.xml file to inspect.
+     * @return the metadata of the manifest.
+     * @throws IllegalArgumentException if the manifest cannot be read or parsed.
+     */
+    public final ManifestMetadata getManifestMetadata( File manifestFile )
+    {
+        return SessionScope.get( session, ManifestMetadataCache.class ).get( manifestFile );
     }
 
     protected final boolean isInstrumentationTest() throws MojoExecutionException
@@ -1102,6 +1218,9 @@ public abstract class AbstractAndroidMojo extends AbstractMojo
      * based on available parameters. This method should be the only one you should need to look at to understand how
      * the Android SDK is chosen, and from where on disk.</p>
      *
+     * <p>The SDK is shared with all other mojos of the build that use the same SDK path, platform and build-tools
+     * version.</p>
+     *
      * @return the Android SDK to use.
      * @throws org.apache.maven.plugin.MojoExecutionException
      *          if no Android SDK path configuration is available at all.
@@ -1169,7 +1288,8 @@ public abstract class AbstractAndroidMojo extends AbstractMojo
             chosenSdkPlatform = sdkPlatform;
         }
 
-        return new AndroidSdk( chosenSdkPath, chosenSdkPlatform, buildToolsVersion );
+        return SessionScope.get( session, AndroidSdkCache.class )
+                .get( chosenSdkPath, chosenSdkPlatform, buildToolsVersion );
     }
 
     protected Jack getJack() 
@@ -1310,6 +1430,200 @@ public abstract class AbstractAndroidMojo extends AbstractMojo
         return overlayDirectories;
     }
 
+    /**
+     * Prepares the resource folders of this project, its overlays and its libraries for
+     * {@link #newResourcePackageCommand(CompiledResources, boolean)}: compiles their changed files in {@link #aapt2}
+     * mode, or else mirrors them with their PNG files crunched ahead as {@link #pngCrunchCached} and
+     * {@link #pngCrunchSkipInDebug} require.
+     * <p>
+     * generate-sources and the packaging mojos start their aapt commands the same way, so that a packaging mojo can
+     * tell from the {@link com.simpligility.maven.plugins.android.common.AaptInputsFingerprint} of the command
+     * whether generate-sources already produced the resource package it needs. A mojo packaging several resource
+     * packages prepares the resources once for all of them.
+     *
+     * @param crunchPngFiles whether the package needs crunched PNG files, as an apk does.
+     * @return the prepared resources.
+     * @throws MojoExecutionException if the platform is not available or a resource could not be compiled.
+     */
+    protected CompiledResources compileResources( boolean crunchPngFiles ) throws MojoExecutionException
+    {
+        // With the highest priority first, as aapt expects them.
+        final List<File> resourceDirectories = new ArrayList<File>();
+        resourceDirectories.addAll( Arrays.asList( getResourceOverlayDirectories() ) );
+        resourceDirectories.add( resourceDirectory );
+        // Need to include any AAR or APKLIB dependencies because aapt fails if any local resources directly
+        // reference dependent resources. NB this does NOT package the dependent resources in a library.
+        resourceDirectories.addAll( getLibraryResourceFolders() );
+        return compileResources( resourceDirectories, crunchPngFiles );
+    }
+
+    /**
+     * Prepares resource folders overlaying already prepared resources, the same way as them.
+     *
+     * @param overlayDirectories resource folders overlaying the prepared ones, with the highest priority first, or
+     *                           null.
+     * @param resources          the prepared resources.
+     * @return the prepared overlays followed by the prepared resources.
+     * @throws MojoExecutionException if a resource could not be compiled.
+     */
+    protected CompiledResources compileOverlays( File[] overlayDirectories, CompiledResources resources )
+            throws MojoExecutionException
+    {
+        if ( overlayDirectories == null || overlayDirectories.length == 0 )
+        {
+            return resources;
+        }
+        return compileResources( Arrays.asList( overlayDirectories ), resources.crunchPngFiles )
+                .overlay( resources );
+    }
+
+    private CompiledResources compileResources( List<File> resourceDirectories, boolean crunchPngFiles )
+            throws MojoExecutionException
+    {
+        if ( aapt2 )
+        {
+            final CompiledResourceCache cache = new CompiledResourceCache( new File( targetDirectory, "aapt2" ),
+                    getAndroidSdk().getAapt2Path(), getLog() );
+            return new CompiledResources( crunchPngFiles, false, null,
+                    new ArrayList<List<File>>( cache.compile( resourceDirectories ).values() ) );
+        }
+
+        final boolean skipCrunch = pngCrunchSkipInDebug && !release;
+        if ( crunchPngFiles && skipCrunch )
+        {
+            return new CompiledResources( crunchPngFiles, false, new PngCrunchCache( pngCrunchCacheDirectory,
+                    new File( targetDirectory, "uncrunched-res" ), getAndroidSdk().getAaptPath(), getLog() )
+                    .crunchNinePatches( resourceDirectories ), null );
+        }
+        if ( crunchPngFiles && pngCrunchCached )
+        {
+            return new CompiledResources( crunchPngFiles, false, new PngCrunchCache( pngCrunchCacheDirectory,
+                    new File( targetDirectory, "crunched-res" ), getAndroidSdk().getAaptPath(), getLog() )
+                    .crunch( resourceDirectories ), null );
+        }
+        return new CompiledResources( crunchPngFiles, crunchPngFiles, resourceDirectories, null );
+    }
+
+    /**
+     * Starts an aapt package command, or an aapt2 link command in {@link #aapt2} mode, packaging prepared resources
+     * with the manifest of this project.
+     *
+     * @param resources   the resources prepared by {@link #compileResources(boolean)}.
+     * @param application whether the package is the one of an application, which is then renamed as
+     *                    {@link #renameManifestPackage} requires and debuggable unless it is a {@link #release}. The
+     *                    packages of libraries are neither.
+     * @return the command, without any output.
+     * @throws MojoExecutionException if the platform is not available.
+     */
+    protected AaptCommandBuilder.ResourcePackageCommandBuilder newResourcePackageCommand(
+            CompiledResources resources, boolean application ) throws MojoExecutionException
+    {
+        return newResourcePackageCommand( resources, destinationManifestFile,
+                application ? renameManifestPackage : null, application );
+    }
+
+    /**
+     * Starts an aapt package command, or an aapt2 link command in {@link #aapt2} mode, packaging prepared resources
+     * along with the assets, the platform, the configurations and the extra arguments.
+     *
+     * @param resources       the resources prepared by {@link #compileResources(boolean)}.
+     * @param manifestFile    the manifest to package.
+     * @param manifestPackage the package to rename the manifest to, or null.
+     * @param application     whether the package is the one of an application, debuggable unless it is a
+     *                        {@link #release}.
+     * @return the command, without any output.
+     * @throws MojoExecutionException if the platform is not available.
+     */
+    protected AaptCommandBuilder.ResourcePackageCommandBuilder newResourcePackageCommand(
+            CompiledResources resources, File manifestFile, String manifestPackage, boolean application )
+            throws MojoExecutionException
+    {
+        if ( aapt2 )
+        {
+            return newResourceLinkCommand( resources, manifestFile, manifestPackage, application );
+        }
+
+        final AaptCommandBuilder.AaptPackageCommandBuilder commandBuilder = AaptCommandBuilder
+                .packageResources( getLog() )
+                .forceOverwriteExistingFiles();
+        if ( !resources.aaptCrunchesPngFiles )
+        {
+            commandBuilder.disablePngCrunching();
+        }
+        return commandBuilder
+                .setPathToAndroidManifest( manifestFile )
+                .renameManifestPackage( manifestPackage )
+                .addResourceDirectoriesIfExists( resources.directories )
+                .autoAddOverlay()
+                // NB aapt only accepts a single assets parameter - combinedAssets is a merge of all assets
+                .addRawAssetsDirectoryIfExists( combinedAssets )
+                .addExistingPackageToBaseIncludeSet( getAndroidSdk().getAndroidJar() )
+                .addConfigurations( configurations )
+                .setDebugMode( application && !release )
+                .addExtraArguments( aaptExtraArgs );
+    }
+
+    /**
+     * Starts the aapt2 command linking compiled resources.
+     */
+    private AaptCommandBuilder.Aapt2LinkCommandBuilder newResourceLinkCommand( CompiledResources resources,
+            File manifestFile, String manifestPackage, boolean application ) throws MojoExecutionException
+    {
+        // aapt2 takes the lowest priority resources as input, and overrides them with each overlay in turn.
+        final List<List<File>> flatFiles = new ArrayList<List<File>>( resources.flatFiles );
+        Collections.reverse( flatFiles );
+
+        final AaptCommandBuilder.Aapt2LinkCommandBuilder commandBuilder = AaptCommandBuilder
+                .linkResources( getLog() )
+                .setPathToAndroidManifest( manifestFile )
+                .renameManifestPackage( manifestPackage );
+        for ( int i = 0; i < flatFiles.size(); i++ )
+        {
+            if ( i == 0 )
+            {
+                commandBuilder.addCompiledResources( flatFiles.get( i ) );
+            }
+            else
+            {
+                commandBuilder.addCompiledOverlays( flatFiles.get( i ) );
+            }
+        }
+        return commandBuilder
+                .autoAddOverlay()
+                .addRawAssetsDirectoryIfExists( combinedAssets )
+                .addExistingPackageToBaseIncludeSet( getAndroidSdk().getAndroidJar() )
+                .addConfigurations( configurations )
+                .setDebugMode( application && !release )
+                .addExtraArguments( aaptExtraArgs );
+    }
+
+    /**
+     * @return the unpacked resource folders of the AAR and APKLIB dependencies which exist.
+     */
+    protected List<File> getLibraryResourceFolders()
+    {
+        final List<File> resourceFolders = new ArrayList<File>();
+        for ( Artifact libraryArtifact : getTransitiveDependencyArtifacts( AndroidExtension.AAR,
+                AndroidExtension.APKLIB ) )
+        {
+            final File resourceFolder = getUnpackedLibResourceFolder( libraryArtifact );
+            if ( resourceFolder.exists() )
+            {
+                resourceFolders.add( resourceFolder );
+            }
+        }
+        return resourceFolders;
+    }
+
+    /**
+     * @return the path of the tool run by the commands of
+     *         {@link #newResourcePackageCommand(CompiledResources, boolean)}.
+     */
+    protected String getResourcePackagerPath() throws MojoExecutionException
+    {
+        return aapt2 ? getAndroidSdk().getAapt2Path() : getAndroidSdk().getAaptPath();
+    }
+
     private Set<String> getDevices()
     {
         Set<String> list = new HashSet<String>();
@@ -1435,8 +1749,20 @@ public abstract class AbstractAndroidMojo extends AbstractMojo
     {
         if ( nativeHelper == null )
         {
-            nativeHelper = new NativeHelper( project, dependencyGraphBuilder, getLog() );
+            nativeHelper = new NativeHelper( project, dependencyGraphBuilder, session, getLog() );
         }
         return nativeHelper;
     }
+
+    /**
+     * Starts a trace span for a step of this mojo, categorised by the mojo class. Does nothing unless tracing is
+     * enabled, see {@link Tracer}, which then reports the failures to write the trace file to the log of this mojo.
+     *
+     * @param name Name of the step.
+     * @return the started span, to be ended in a finally block.
+     */
+    protected final Tracer.Span startSpan( String name )
+    {
+        return Tracer.get().start( getClass().getSimpleName(), name, getLog() );
+    }
 }
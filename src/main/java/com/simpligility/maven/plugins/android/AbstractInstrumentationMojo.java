@@ -24,6 +24,7 @@ import com.android.ddmlib.testrunner.IRemoteAndroidTestRunner;
 import com.android.ddmlib.testrunner.RemoteAndroidTestRunner;
 import com.simpligility.maven.plugins.android.asm.AndroidTestFinder;
 import com.simpligility.maven.plugins.android.common.DeviceHelper;
+import com.simpligility.maven.plugins.android.common.SessionScope;
 import com.simpligility.maven.plugins.android.configuration.Test;
 
 import org.apache.commons.lang3.StringUtils;
@@ -596,7 +597,8 @@ public abstract class AbstractInstrumentationMojo extends AbstractAndroidMojo
                 getLog().info( "No InstrumentationRunner found - skipping tests" );
                 return false;
             }
-            return AndroidTestFinder.containsAndroidTests( projectOutputDirectory );
+            return AndroidTestFinder.containsAndroidTests( projectOutputDirectory,
+                    SessionScope.get( session, AndroidTestFinder.Cache.class ) );
         }
 
         throw new MojoFailureException( "android.test.skip must be configured as 'true', 'false' or 'auto'." );
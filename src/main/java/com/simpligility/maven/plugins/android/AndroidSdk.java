@@ -24,6 +24,7 @@ import com.android.sdklib.BuildToolInfo;
 import com.android.sdklib.IAndroidTarget;
 import com.android.sdklib.repository.AndroidSdkHandler;
 import com.android.sdklib.repository.targets.AndroidTargetManager;
+import org.apache.commons.io.IOUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 
 import java.io.File;
@@ -66,14 +67,19 @@ public class AndroidSdk
             + AbstractAndroidMojo.ENV_ANDROID_HOME + ".";
 
     private final File sdkPath;
-    private File platformToolsPath;
-    private File toolsPath;
+    private final File platformToolsPath;
+    private final File toolsPath;
 
     private final IAndroidTarget androidTarget;
-    private AndroidSdkHandler sdkManager;
+    private final AndroidSdkHandler sdkManager;
     private int sdkMajorVersion;
-    private String buildToolsVersion;
-    private ProgressIndicatorImpl progressIndicator;
+    private final String buildToolsVersion;
+    private final ProgressIndicatorImpl progressIndicator;
+
+    /**
+     * Resolved lazily on first use and then reused, as resolving it scans the build-tools of the SDK.
+     */
+    private volatile BuildToolInfo buildToolInfo;
 
     public AndroidSdk( File sdkPath, String apiLevel )
     {
@@ -97,6 +103,12 @@ public class AndroidSdk
                 throw invalidSdkException( sdkPath, apiLevel );
             }
         }
+        else
+        {
+            sdkManager = null;
+            platformToolsPath = null;
+            toolsPath = null;
+        }
         loadSDKToolsMajorVersion();
 
         if ( apiLevel == null )
@@ -142,7 +154,8 @@ public class AndroidSdk
         }
 
         // fallback to searching for platform on standard Android platforms (isPlatform() is true)
-        for ( IAndroidTarget t: sdkManager.getAndroidTargetManager( null ).getTargets( null ) )
+        for ( IAndroidTarget t: sdkManager.getAndroidTargetManager( progressIndicator )
+                .getTargets( progressIndicator ) )
         {
             if ( t.isPlatform() && apiLevel.equals( t.getVersionName() ) )
             {
@@ -174,6 +187,23 @@ public class AndroidSdk
         return getPathForBuildTool( BuildToolInfo.PathId.AAPT );
     }
 
+    /**
+     * Get the aapt2 tool path.
+     *
+     * @return the path of aapt2.
+     * @throws InvalidSdkException if the build tools do not provide aapt2.
+     */
+    public String getAapt2Path()
+    {
+        final String aapt2Path = getPathForBuildTool( BuildToolInfo.PathId.AAPT2 );
+        if ( aapt2Path == null || !new File( aapt2Path ).exists() )
+        {
+            throw new InvalidSdkException( "aapt2 is not available in the build tools "
+                    + getBuildToolInfo().getRevision() );
+        }
+        return aapt2Path;
+    }
+
     /**
      * Get the aild tool path
      * @return
@@ -217,20 +247,6 @@ public class AndroidSdk
         throw new InvalidSdkException( "Cannot find " + proguardJar );
     }
     
-    /**
-     * Get the path for shrinkedAndroid.jar
-     * @return
-     */
-    public String getShrinkedAndroidJarPath()
-    {
-        File shrinkedAndroidJar = new File( getBuildToolsLibDirectoryPath(), "shrinkedAndroid.jar" );
-        if ( shrinkedAndroidJar.exists() ) 
-        {
-            return shrinkedAndroidJar.getAbsolutePath();
-        }
-        throw new InvalidSdkException( "Cannot find " + shrinkedAndroidJar );
-    }
-    
     /**
      * Get the path for build-tools lib directory
      * @return
@@ -245,21 +261,6 @@ public class AndroidSdk
         throw new InvalidSdkException( "Cannot find " + buildToolsLib );
     }
     
-    /**
-     * Get the path for mainDexClasses.rules
-     * @return
-     */
-    public String getMainDexClassesRulesPath()
-    {
-        File mainDexClassesRules = new File( getBuildToolInfo().getLocation(),
-                "mainDexClasses.rules" );
-        if ( mainDexClassesRules.exists() ) 
-        {
-            return mainDexClassesRules.getAbsolutePath();
-        }
-        throw new InvalidSdkException( "Cannot find " + mainDexClassesRules );
-    }
-
     public void assertThatBuildToolsVersionIsAtLeast( String version, String feature ) 
             throws InvalidSdkException, NumberFormatException 
     {
@@ -349,6 +350,17 @@ public class AndroidSdk
     }
     
     private BuildToolInfo getBuildToolInfo()
+    {
+        BuildToolInfo result = buildToolInfo;
+        if ( result == null )
+        {
+            result = resolveBuildToolInfo();
+            buildToolInfo = result;
+        }
+        return result;
+    }
+
+    private BuildToolInfo resolveBuildToolInfo()
     {
         //First we use the build tools specified in the pom file
         if ( buildToolsVersion != null && !buildToolsVersion.equals( "" ) )
@@ -494,14 +506,20 @@ public class AndroidSdk
     {
         File propFile = new File( sdkPath, "tools/" + SOURCE_PROPERTIES_FILENAME );
         Properties properties = new Properties();
+        FileInputStream in = null;
         try
         {
-            properties.load( new FileInputStream( propFile ) );
+            in = new FileInputStream( propFile );
+            properties.load( in );
         }
         catch ( IOException e )
         {
             throw new InvalidSdkException( "Error reading " + propFile.getAbsoluteFile() );
         }
+        finally
+        {
+            IOUtils.closeQuietly( in );
+        }
 
         if ( properties.containsKey( SDK_TOOLS_REVISION_PROPERTY ) )
         {
@@ -0,0 +1,87 @@
+package com.simpligility.maven.plugins.android;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of {@link AndroidSdk} instances, shared by all mojos of a build through
+ * {@link com.simpligility.maven.plugins.android.common.SessionScope}.
+ * <p>
+ * Creating an {@link AndroidSdk} scans the platforms and build-tools of the SDK, so a single instance is created per
+ * distinct combination of SDK path, platform and build-tools version and then reused. Failed lookups are not cached.
+ */
+public final class AndroidSdkCache
+{
+    private final ConcurrentMap<Key, AndroidSdk> sdks = new ConcurrentHashMap<Key, AndroidSdk>();
+
+    /**
+     * @param sdkPath           Root folder of the SDK.
+     * @param platform          Platform or API level, or <code>null</code> for the default.
+     * @param buildToolsVersion Build-tools version, or <code>null</code> for the one matching the platform.
+     * @return the SDK for the supplied configuration.
+     * @throws InvalidSdkException if the SDK, platform or build-tools cannot be found.
+     */
+    public AndroidSdk get( File sdkPath, String platform, String buildToolsVersion )
+    {
+        final Key key = new Key( sdkPath, platform, buildToolsVersion );
+        final AndroidSdk cached = sdks.get( key );
+        if ( cached != null )
+        {
+            return cached;
+        }
+
+        synchronized ( this )
+        {
+            AndroidSdk sdk = sdks.get( key );
+            if ( sdk == null )
+            {
+                sdk = new AndroidSdk( sdkPath, platform, buildToolsVersion );
+                sdks.put( key, sdk );
+            }
+            return sdk;
+        }
+    }
+
+    private static final class Key
+    {
+        private final File sdkPath;
+        private final String platform;
+        private final String buildToolsVersion;
+
+        private Key( File sdkPath, String platform, String buildToolsVersion )
+        {
+            this.sdkPath = sdkPath == null ? null : sdkPath.getAbsoluteFile();
+            this.platform = platform;
+            this.buildToolsVersion = buildToolsVersion;
+        }
+
+        @Override
+        public boolean equals( Object o )
+        {
+            if ( this == o )
+            {
+                return true;
+            }
+            if ( !( o instanceof Key ) )
+            {
+                return false;
+            }
+            final Key other = ( Key ) o;
+            return equal( sdkPath, other.sdkPath ) && equal( platform, other.platform )
+                    && equal( buildToolsVersion, other.buildToolsVersion );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Arrays.hashCode( new Object[] { sdkPath, platform, buildToolsVersion } );
+        }
+
+        private static boolean equal( Object a, Object b )
+        {
+            return a == null ? b == null : a.equals( b );
+        }
+    }
+}
@@ -17,13 +17,26 @@
 package com.simpligility.maven.plugins.android;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.simpligility.maven.plugins.android.common.Tracer;
 import org.apache.maven.plugin.logging.Log;
 import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineTimeOutException;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.codehaus.plexus.util.cli.Commandline;
 import org.codehaus.plexus.util.cli.StreamConsumer;
@@ -90,6 +103,20 @@ public interface CommandExecutor
     void executeCommand( String executable, List< String > commands, File workingDirectory, boolean failsOnErrorOutput )
             throws ExecutionException;
 
+    /**
+     * Runs a command on a thread pool shared by all the executors of the build, bounded to the number of processors,
+     * so that independent tools can run at the same time. Each call captures its own output and is not affected by
+     * the capture settings, custom shell or results of this executor, only by its logger and error listener.
+     * <p>
+     * The returned future fails with an {@link ExecutionException} if the command cannot be run, exits with a non
+     * zero code, writes to its standard error while {@link CommandSpec#isFailsOnErrorOutput()} is set, or exceeds its
+     * timeout. Cancelling the future with interruption kills the process.
+     *
+     * @param spec Command to run.
+     * @return the future result of the command.
+     */
+    ListenableFuture<CommandResult> executeAsync( CommandSpec spec );
+
     /**
      * Returns the process result of executing the command. Typically a value of 0 means that the process executed
      * successfully.
@@ -126,9 +153,25 @@ public interface CommandExecutor
 
     void setCustomShell( Shell s );
 
+    /**
+     * Captures the standard output in memory, to be returned by {@link #getStandardOut()}. For commands that can
+     * produce a lot of output use {@link #setStdOutConsumer(StreamConsumer)} instead.
+     */
     void setCaptureStdOut( boolean captureStdOut );
+
+    /**
+     * Captures the last {@value Factory#MAX_CAPTURED_ERROR_LINES} lines of the standard error, to be returned by
+     * {@link #getStandardError()}.
+     */
     void setCaptureStdErr( boolean captureStdErr );
 
+    /**
+     * Streams each line of the standard output to a consumer as it is produced, without holding it in memory.
+     *
+     * @param consumer Consumer of the output lines, or null to stop streaming.
+     */
+    void setStdOutConsumer( StreamConsumer consumer );
+
     /**
      *
      */
@@ -143,6 +186,14 @@ public interface CommandExecutor
     class Factory
     {
 
+        /**
+         * Number of standard error lines kept by {@link CommandExecutor#getStandardError()}, enough for the context
+         * of a failure without holding the whole output of a verbose tool.
+         */
+        public static final int MAX_CAPTURED_ERROR_LINES = 500;
+
+        private static ListeningExecutorService sharedExecutor;
+
         /**
          * Constructor
          */
@@ -160,7 +211,7 @@ public interface CommandExecutor
             /**
              * Standard Out
              */
-            private StreamConsumer stdOut;
+            private StreamConsumerImpl stdOut;
             /**
              * Standard Error
              */
@@ -178,6 +229,7 @@ public interface CommandExecutor
 
             private boolean captureStdOut;
             private boolean captureStdErr;
+            private StreamConsumer stdOutConsumer;
 
             @Override
             public void setLogger( Log logger )
@@ -206,7 +258,7 @@ public interface CommandExecutor
                 {
                     commands = new ArrayList< String >();
                 }
-                stdOut = new StreamConsumerImpl( logger, captureStdOut );
+                stdOut = new StreamConsumerImpl( logger, captureStdOut, stdOutConsumer );
                 stdErr = new ErrorStreamConsumer( logger, errorListener, captureStdErr );
                 commandline = new Commandline();
                 if ( customShell != null )
@@ -229,10 +281,13 @@ public interface CommandExecutor
                 {
                     commandline.setWorkingDirectory( workingDirectory.getAbsolutePath() );
                 }
+                final Tracer.Span span = Tracer.get().start( "command", new File( executable ).getName() )
+                        .attribute( "arguments", commands.size() );
                 try
                 {
                     logger.debug( "ANDROID-040-000: Executing command: Commandline = " + commandline );
                     result = CommandLineUtils.executeCommandLine( commandline, stdOut, stdErr );
+                    span.attribute( "exitCode", result );
                     if ( logger != null )
                     {
                         logger.debug( "ANDROID-040-000: Executed command: Commandline = " + commandline + ", Result = "
@@ -254,6 +309,10 @@ public interface CommandExecutor
                     throw new ExecutionException( "ANDROID-040-002: Could not execute: Command = "
                             + commandline.toString() + ", Error message = " + e.getMessage() );
                 }
+                finally
+                {
+                    span.end();
+                }
                 setPid( commandline.getPid() );
             }
 
@@ -327,30 +386,110 @@ public interface CommandExecutor
             {
                 this.captureStdErr = captureStdErr;
             }
+
+            @Override
+            public void setStdOutConsumer( StreamConsumer consumer )
+            {
+                this.stdOutConsumer = consumer;
+            }
+
+            @Override
+            public ListenableFuture<CommandResult> executeAsync( final CommandSpec spec )
+            {
+                final Log log = logger;
+                final ErrorListener listener = errorListener;
+                return getSharedExecutor().submit( new Callable<CommandResult>()
+                {
+                    @Override
+                    public CommandResult call() throws ExecutionException
+                    {
+                        return execute( spec, log, listener );
+                    }
+                } );
+            }
+
+            private static CommandResult execute( CommandSpec spec, Log log, ErrorListener listener )
+                    throws ExecutionException
+            {
+                final Commandline commandline = new Commandline();
+                commandline.setExecutable( spec.getExecutable() );
+                for ( Map.Entry< String, String > entry : spec.getEnvironment().entrySet() )
+                {
+                    commandline.addEnvironment( entry.getKey(), entry.getValue() );
+                }
+                commandline.addArguments( spec.getArguments().toArray( new String[ spec.getArguments().size() ] ) );
+                if ( spec.getWorkingDirectory() != null && spec.getWorkingDirectory().exists() )
+                {
+                    commandline.setWorkingDirectory( spec.getWorkingDirectory().getAbsolutePath() );
+                }
+
+                final StreamConsumerImpl out = new StreamConsumerImpl( log, spec.isCaptureStdOut(), null );
+                final ErrorStreamConsumer err = new ErrorStreamConsumer( log, listener, true );
+                final Tracer.Span span = Tracer.get().start( "command", new File( spec.getExecutable() ).getName() )
+                        .attribute( "arguments", spec.getArguments().size() );
+                try
+                {
+                    if ( log != null )
+                    {
+                        log.debug( "ANDROID-040-000: Executing command: Commandline = " + commandline );
+                    }
+                    final int exitCode = CommandLineUtils.executeCommandLine( commandline, null, out, err,
+                            spec.getTimeoutInSeconds() );
+                    span.attribute( "exitCode", exitCode );
+                    if ( spec.isFailsOnErrorOutput() && err.hasError() || exitCode != 0 )
+                    {
+                        throw new ExecutionException( "ANDROID-040-001: Could not execute: Command = "
+                                + commandline.toString() + ", Result = " + exitCode );
+                    }
+                    return new CommandResult( spec, exitCode, spec.isCaptureStdOut() ? out.toString() : null,
+                            err.toString() );
+                }
+                catch ( CommandLineTimeOutException e )
+                {
+                    throw new ExecutionException( "ANDROID-040-005: Command killed after "
+                            + spec.getTimeoutInSeconds() + " seconds or cancellation: Command = "
+                            + commandline.toString(), e );
+                }
+                catch ( CommandLineException e )
+                {
+                    throw new ExecutionException( "ANDROID-040-002: Could not execute: Command = "
+                            + commandline.toString() + ", Error message = " + e.getMessage() );
+                }
+                finally
+                {
+                    span.end();
+                }
+            }
         }
 
         /**
-         * StreamConsumer instance that buffers the entire output
+         * StreamConsumer instance that logs the output and optionally buffers it or streams it to a consumer.
          */
         static class StreamConsumerImpl implements StreamConsumer
         {
-            private StringBuffer sb = new StringBuffer();
+            private final StringBuffer sb = new StringBuffer();
             private final Log logger;
-            private boolean captureStdOut;
+            private final boolean captureStdOut;
+            private final StreamConsumer consumer;
 
-            StreamConsumerImpl( Log logger, boolean captureStdOut )
+            StreamConsumerImpl( Log logger, boolean captureStdOut, StreamConsumer consumer )
             {
                 this.logger = logger;
                 this.captureStdOut = captureStdOut;
+                this.consumer = consumer;
             }
 
             @Override
-            public void consumeLine( String line )
+            public void consumeLine( String line ) throws IOException
             {
                 if ( captureStdOut )
                 {
                     sb.append( line ).append( '\n' );
                 }
+                if ( consumer != null )
+                {
+                    consumer.consumeLine( line );
+                }
                 if ( logger != null )
                 {
                     logger.debug( line );
@@ -378,8 +517,8 @@ public interface CommandExecutor
         {
             /** Is true if there was anything consumed from the stream, otherwise false */
             private boolean error;
-            /** Buffer to store the stream */
-            private StringBuffer sbe = new StringBuffer();
+            /** Last lines of the stream, up to MAX_CAPTURED_ERROR_LINES */
+            private final Deque<String> lines = new ArrayDeque<String>();
             private final Log logger;
             private final ErrorListener errorListener;
             private boolean captureStdErr;
@@ -402,7 +541,14 @@ public interface CommandExecutor
             {
                 if ( captureStdErr )
                 {
-                    sbe.append( line );
+                    synchronized ( lines )
+                    {
+                        if ( lines.size() == MAX_CAPTURED_ERROR_LINES )
+                        {
+                            lines.removeFirst();
+                        }
+                        lines.addLast( line );
+                    }
                 }
                 if ( logger != null )
                 {
@@ -436,10 +582,36 @@ public interface CommandExecutor
             @Override
             public String toString()
             {
+                final StringBuilder sbe = new StringBuilder();
+                synchronized ( lines )
+                {
+                    for ( final String line : lines )
+                    {
+                        sbe.append( line ).append( '\n' );
+                    }
+                }
                 return sbe.toString();
             }
         }
 
+        /**
+         * @return the thread pool running {@link CommandExecutor#executeAsync(CommandSpec)}. Its daemon threads end
+         *         when they are idle, so the pool does not keep the JVM or the plugin class loader alive.
+         */
+        static synchronized ListeningExecutorService getSharedExecutor()
+        {
+            if ( sharedExecutor == null )
+            {
+                final int threads = Runtime.getRuntime().availableProcessors();
+                final ThreadPoolExecutor executor = new ThreadPoolExecutor( threads, threads, 1, TimeUnit.MINUTES,
+                        new LinkedBlockingQueue<Runnable>(),
+                        new ThreadFactoryBuilder().setDaemon( true ).setNameFormat( "android-command-%d" ).build() );
+                executor.allowCoreThreadTimeOut( true );
+                sharedExecutor = MoreExecutors.listeningDecorator( executor );
+            }
+            return sharedExecutor;
+        }
+
         /**
          * Returns a default instance of the command executor
          * 
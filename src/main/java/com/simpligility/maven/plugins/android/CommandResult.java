@@ -0,0 +1,46 @@
+package com.simpligility.maven.plugins.android;
+
+/**
+ * Outcome of a command run with {@link CommandExecutor#executeAsync(CommandSpec)}.
+ */
+public final class CommandResult
+{
+    private final CommandSpec spec;
+    private final int exitCode;
+    private final String standardOut;
+    private final String standardError;
+
+    CommandResult( CommandSpec spec, int exitCode, String standardOut, String standardError )
+    {
+        this.spec = spec;
+        this.exitCode = exitCode;
+        this.standardOut = standardOut;
+        this.standardError = standardError;
+    }
+
+    public CommandSpec getSpec()
+    {
+        return spec;
+    }
+
+    public int getExitCode()
+    {
+        return exitCode;
+    }
+
+    /**
+     * @return the standard output, or null if the command did not {@link CommandSpec#isCaptureStdOut() capture} it.
+     */
+    public String getStandardOut()
+    {
+        return standardOut;
+    }
+
+    /**
+     * @return the last lines of the standard error, up to {@link CommandExecutor.Factory#MAX_CAPTURED_ERROR_LINES}.
+     */
+    public String getStandardError()
+    {
+        return standardError;
+    }
+}
@@ -0,0 +1,183 @@
+package com.simpligility.maven.plugins.android;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable description of an external command, run with {@link CommandExecutor#executeAsync(CommandSpec)}.
+ * <pre>
+ * final CommandSpec spec = CommandSpec.builder( getAndroidSdk().getAidlPath() )
+ *         .addArguments( commands )
+ *         .setWorkingDirectory( project.getBasedir() )
+ *         .setTimeout( 10, TimeUnit.MINUTES )
+ *         .build();
+ * </pre>
+ */
+public final class CommandSpec
+{
+    private final String executable;
+    private final List<String> arguments;
+    private final File workingDirectory;
+    private final Map<String, String> environment;
+    private final boolean failsOnErrorOutput;
+    private final boolean captureStdOut;
+    private final int timeoutInSeconds;
+
+    private CommandSpec( Builder builder )
+    {
+        this.executable = builder.executable;
+        this.arguments = Collections.unmodifiableList( new ArrayList<String>( builder.arguments ) );
+        this.workingDirectory = builder.workingDirectory;
+        this.environment = Collections.unmodifiableMap( new LinkedHashMap<String, String>( builder.environment ) );
+        this.failsOnErrorOutput = builder.failsOnErrorOutput;
+        this.captureStdOut = builder.captureStdOut;
+        this.timeoutInSeconds = builder.timeoutInSeconds;
+    }
+
+    /**
+     * @param executable Path or name of the executable.
+     * @return a builder for a command running the executable.
+     */
+    public static Builder builder( String executable )
+    {
+        return new Builder( executable );
+    }
+
+    public String getExecutable()
+    {
+        return executable;
+    }
+
+    public List<String> getArguments()
+    {
+        return arguments;
+    }
+
+    /**
+     * @return the directory to run the command in, or null for the current directory.
+     */
+    public File getWorkingDirectory()
+    {
+        return workingDirectory;
+    }
+
+    public Map<String, String> getEnvironment()
+    {
+        return environment;
+    }
+
+    /**
+     * @return true if the command fails when it writes to its standard error, as well as on a non zero exit code.
+     */
+    public boolean isFailsOnErrorOutput()
+    {
+        return failsOnErrorOutput;
+    }
+
+    /**
+     * @return true if the standard output is returned by {@link CommandResult#getStandardOut()}.
+     */
+    public boolean isCaptureStdOut()
+    {
+        return captureStdOut;
+    }
+
+    /**
+     * @return the number of seconds after which the command is killed, or 0 to wait until it ends.
+     */
+    public int getTimeoutInSeconds()
+    {
+        return timeoutInSeconds;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder command = new StringBuilder( executable );
+        for ( final String argument : arguments )
+        {
+            command.append( ' ' ).append( argument );
+        }
+        return command.toString();
+    }
+
+    /**
+     * Builder of {@link CommandSpec}.
+     */
+    public static final class Builder
+    {
+        private final String executable;
+        private final List<String> arguments = new ArrayList<String>();
+        private File workingDirectory;
+        private final Map<String, String> environment = new LinkedHashMap<String, String>();
+        private boolean failsOnErrorOutput;
+        private boolean captureStdOut;
+        private int timeoutInSeconds;
+
+        private Builder( String executable )
+        {
+            if ( executable == null )
+            {
+                throw new IllegalArgumentException( "executable must not be null" );
+            }
+            this.executable = executable;
+        }
+
+        public Builder addArgument( String argument )
+        {
+            arguments.add( argument );
+            return this;
+        }
+
+        public Builder addArguments( List<String> arguments )
+        {
+            this.arguments.addAll( arguments );
+            return this;
+        }
+
+        public Builder setWorkingDirectory( File workingDirectory )
+        {
+            this.workingDirectory = workingDirectory;
+            return this;
+        }
+
+        public Builder addEnvironment( String name, String value )
+        {
+            environment.put( name, value );
+            return this;
+        }
+
+        public Builder setFailsOnErrorOutput( boolean failsOnErrorOutput )
+        {
+            this.failsOnErrorOutput = failsOnErrorOutput;
+            return this;
+        }
+
+        public Builder setCaptureStdOut( boolean captureStdOut )
+        {
+            this.captureStdOut = captureStdOut;
+            return this;
+        }
+
+        /**
+         * Kills the command if it has not ended after the timeout. The timeout is rounded up to whole seconds.
+         */
+        public Builder setTimeout( long timeout, TimeUnit unit )
+        {
+            final long millis = unit.toMillis( timeout );
+            this.timeoutInSeconds = ( int ) Math.min( Integer.MAX_VALUE,
+                    TimeUnit.MILLISECONDS.toSeconds( millis + TimeUnit.SECONDS.toMillis( 1 ) - 1 ) );
+            return this;
+        }
+
+        public CommandSpec build()
+        {
+            return new CommandSpec( this );
+        }
+    }
+}
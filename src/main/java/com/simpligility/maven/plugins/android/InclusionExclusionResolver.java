@@ -1,7 +1,12 @@
 package com.simpligility.maven.plugins.android;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import com.android.annotations.NonNull;
 import com.android.annotations.Nullable;
@@ -20,6 +25,9 @@ public class InclusionExclusionResolver
     }
 
     /**
+     * Filters the artifacts in a single pass. Prefer {@link #compile} and reuse the returned {@link Filter} when the
+     * same configuration filters several artifact sets.
+     *
      * @param skipDependencies          Skip all dependencies, but respect {@code includeArtifactTypes}
      * @param includeArtifactTypes      Artifact types to be always included even if {@code skipDependencies} is
      *                                  {@code true}
@@ -36,84 +44,173 @@ public class InclusionExclusionResolver
             @Nullable final Collection< String > includeArtifactQualifiers,
             @Nullable final Collection< String > excludeArtifactQualifiers )
     {
-        final boolean hasIncludeTypes = includeArtifactTypes != null;
-        final boolean hasExcludeTypes = excludeArtifactTypes != null;
-        final boolean hasIncludeQualifier = includeArtifactQualifiers != null;
-        final boolean hasExcludeQualifier = excludeArtifactQualifiers != null;
-        return from( artifacts )
-            .filter( new Predicate<Artifact>() {
-                @Override
-                public boolean apply( Artifact artifact )
-                {
-                    final boolean includedByType = hasIncludeTypes
-                            && includeArtifactTypes.contains( artifact.getType() );
-                    final boolean includedByQualifier = hasIncludeQualifier
-                            && match( artifact, includeArtifactQualifiers );
-                    final boolean excludedByType = hasExcludeTypes
-                            && excludeArtifactTypes.contains( artifact.getType() );
-                    final boolean excludedByQualifier = hasExcludeQualifier
-                            && match( artifact, excludeArtifactQualifiers );
-                    if ( !skipDependencies )
-                    {
-                        return !excludedByType && !excludedByQualifier
-                                || includedByQualifier
-                                || includedByType && !excludedByQualifier;
-                    }
-                    else
-                    {
-                        return includedByQualifier
-                                || includedByType && hasExcludeQualifier && !excludedByQualifier
-                                || includedByType;
-                    }
-                }
-            } )
-            .toSet();
+        return compile( skipDependencies, includeArtifactTypes, excludeArtifactTypes, includeArtifactQualifiers,
+                excludeArtifactQualifiers ).filter( artifacts );
     }
 
-    private static boolean match( final Artifact artifact, Iterable< String > artifactQualifiers )
+    /**
+     * Parses the types and qualifiers once into hash tables, so that filtering costs a few lookups per artifact.
+     * See {@link #filterArtifacts} for the meaning of the parameters.
+     *
+     * @throws IllegalArgumentException if a qualifier has more than three parts.
+     */
+    public static Filter compile( final boolean skipDependencies,
+            @Nullable final Collection< String > includeArtifactTypes,
+            @Nullable final Collection< String > excludeArtifactTypes,
+            @Nullable final Collection< String > includeArtifactQualifiers,
+            @Nullable final Collection< String > excludeArtifactQualifiers )
     {
-        return from( artifactQualifiers )
-            .filter( MUST_NOT_BE_BLANK )
-            .anyMatch( new Predicate< String >() {
-                @Override
-                public boolean apply( String artifactQualifier )
-                {
-                    return match( artifact, artifactQualifier );
-                }
-            } );
+        return new Filter( skipDependencies,
+                includeArtifactTypes == null ? null : new HashSet< String >( includeArtifactTypes ),
+                excludeArtifactTypes == null ? null : new HashSet< String >( excludeArtifactTypes ),
+                includeArtifactQualifiers == null ? null : new QualifierTable( includeArtifactQualifiers ),
+                excludeArtifactQualifiers == null ? null : new QualifierTable( excludeArtifactQualifiers ) );
     }
 
-    private static boolean match( Artifact artifact, String artifactQualifier )
+    /**
+     * Compiled form of an inclusion/exclusion configuration. Immutable, so it can be reused for any number of calls.
+     */
+    public static final class Filter
     {
-        final List< String > split = from( COLON_SPLITTER.split( artifactQualifier ) ).transform( TRIMMER ).toList();
-        final int count = split.size();
-        if ( split.isEmpty() || count > 3 )
+        private final boolean skipDependencies;
+        private final Set< String > includeArtifactTypes;
+        private final Set< String > excludeArtifactTypes;
+        private final QualifierTable includeArtifactQualifiers;
+        private final QualifierTable excludeArtifactQualifiers;
+
+        private Filter( boolean skipDependencies, Set< String > includeArtifactTypes,
+                Set< String > excludeArtifactTypes, QualifierTable includeArtifactQualifiers,
+                QualifierTable excludeArtifactQualifiers )
         {
-            throw new IllegalArgumentException( "Invalid artifact qualifier: " + artifactQualifier );
+            this.skipDependencies = skipDependencies;
+            this.includeArtifactTypes = includeArtifactTypes;
+            this.excludeArtifactTypes = excludeArtifactTypes;
+            this.includeArtifactQualifiers = includeArtifactQualifiers;
+            this.excludeArtifactQualifiers = excludeArtifactQualifiers;
         }
-        // check groupId
-        final String groupId = split.get( 0 );
-        if ( !groupId.equals( artifact.getGroupId() ) )
+
+        /**
+         * @return the included artifacts, in iteration order and without duplicates.
+         */
+        public Collection< Artifact > filter( @NonNull Iterable< Artifact > artifacts )
         {
-            return false;
+            final Set< Artifact > included = new LinkedHashSet< Artifact >();
+            for ( final Artifact artifact : artifacts )
+            {
+                if ( include( artifact ) )
+                {
+                    included.add( artifact );
+                }
+            }
+            return included;
         }
-        if ( count == 1 )
+
+        public boolean include( Artifact artifact )
         {
-            return true;
+            final boolean hasExcludeQualifier = excludeArtifactQualifiers != null;
+            final boolean includedByType = includeArtifactTypes != null
+                    && includeArtifactTypes.contains( artifact.getType() );
+            final boolean includedByQualifier = includeArtifactQualifiers != null
+                    && includeArtifactQualifiers.matches( artifact );
+            final boolean excludedByType = excludeArtifactTypes != null
+                    && excludeArtifactTypes.contains( artifact.getType() );
+            final boolean excludedByQualifier = hasExcludeQualifier
+                    && excludeArtifactQualifiers.matches( artifact );
+            if ( !skipDependencies )
+            {
+                return !excludedByType && !excludedByQualifier
+                        || includedByQualifier
+                        || includedByType && !excludedByQualifier;
+            }
+            else
+            {
+                return includedByQualifier
+                        || includedByType && hasExcludeQualifier && !excludedByQualifier
+                        || includedByType;
+            }
         }
-        // check artifactId
-        final String artifactId = split.get( 1 );
-        if ( !artifactId.equals( artifact.getArtifactId() ) )
+    }
+
+    /**
+     * Artifact qualifiers indexed by groupId, then artifactId, then version. A <code>null</code> value stands for
+     * any artifactId of the group, or any version of the artifact.
+     */
+    private static final class QualifierTable
+    {
+        private final Map< String, Map< String, Set< String > > > groups =
+                new HashMap< String, Map< String, Set< String > > >();
+
+        QualifierTable( Iterable< String > artifactQualifiers )
+        {
+            for ( final String artifactQualifier : from( artifactQualifiers ).filter( MUST_NOT_BE_BLANK ) )
+            {
+                add( artifactQualifier );
+            }
+        }
+
+        private void add( String artifactQualifier )
         {
-            return false;
+            final List< String > split = from( COLON_SPLITTER.split( artifactQualifier ) ).transform( TRIMMER )
+                    .toList();
+            final int count = split.size();
+            if ( split.isEmpty() || count > 3 )
+            {
+                throw new IllegalArgumentException( "Invalid artifact qualifier: " + artifactQualifier );
+            }
+            final String groupId = split.get( 0 );
+            if ( count == 1 )
+            {
+                groups.put( groupId, null );
+                return;
+            }
+            if ( groups.containsKey( groupId ) && groups.get( groupId ) == null )
+            {
+                return;
+            }
+            Map< String, Set< String > > artifacts = groups.get( groupId );
+            if ( artifacts == null )
+            {
+                artifacts = new HashMap< String, Set< String > >();
+                groups.put( groupId, artifacts );
+            }
+
+            final String artifactId = split.get( 1 );
+            if ( count == 2 )
+            {
+                artifacts.put( artifactId, null );
+                return;
+            }
+            if ( artifacts.containsKey( artifactId ) && artifacts.get( artifactId ) == null )
+            {
+                return;
+            }
+            Set< String > versions = artifacts.get( artifactId );
+            if ( versions == null )
+            {
+                versions = new HashSet< String >();
+                artifacts.put( artifactId, versions );
+            }
+            versions.add( split.get( 2 ) );
         }
-        if ( count == 2 )
+
+        boolean matches( Artifact artifact )
         {
-            return true;
+            if ( !groups.containsKey( artifact.getGroupId() ) )
+            {
+                return false;
+            }
+            final Map< String, Set< String > > artifacts = groups.get( artifact.getGroupId() );
+            if ( artifacts == null )
+            {
+                return true;
+            }
+            if ( !artifacts.containsKey( artifact.getArtifactId() ) )
+            {
+                return false;
+            }
+            final Set< String > versions = artifacts.get( artifact.getArtifactId() );
+            return versions == null || versions.contains( artifact.getVersion() );
         }
-        // check version
-        final String version = split.get( 2 );
-        return version.equals( artifact.getVersion() );
     }
 
     private static final Splitter COLON_SPLITTER = Splitter.on( ':' );
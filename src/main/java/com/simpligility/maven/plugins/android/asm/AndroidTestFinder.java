@@ -15,21 +15,39 @@
  */
 package com.simpligility.maven.plugins.android.asm;
 
+import com.simpligility.maven.plugins.android.common.Tracer;
 import org.apache.commons.io.IOUtils;
 import org.apache.maven.plugin.MojoExecutionException;
-import org.codehaus.plexus.util.DirectoryWalkListener;
-import org.codehaus.plexus.util.DirectoryWalker;
 import org.objectweb.asm.ClassReader;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.LinkedList;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * Finds Android instrumentation test classes to be run by InstrumentationTestRunner 
- * in a directory of compiled Java classes.
+ * in a directory of compiled Java classes, including the classes of any jar in that directory.
+ * <p>
+ * The class files are read in parallel and the search stops as soon as one test class has been found.
  *
  * @author hugo.josefson@jayway.com
  */
@@ -38,7 +56,26 @@ public class AndroidTestFinder
 
     private static final String[] TEST_PACKAGES = { "junit/framework/", "android/test/" };
 
+    /**
+     * Number of files below which a scan task reads its files itself instead of splitting them further.
+     */
+    private static final int FILES_PER_TASK = 64;
+
+    private static final Set<String> SCM_FOLDERS = new HashSet<String>(
+            Arrays.asList( ".svn", ".git", ".hg", "CVS", ".bzr", "_darcs", "SCCS", "RCS" ) );
+
     public static boolean containsAndroidTests( File classesBaseDirectory ) throws MojoExecutionException
+    {
+        return containsAndroidTests( classesBaseDirectory, null );
+    }
+
+    /**
+     * @param classesBaseDirectory Directory of compiled classes to search.
+     * @param cache                Results of previous searches, or null to always search.
+     * @return true if the directory contains at least one test class.
+     * @throws MojoExecutionException if a class file or jar cannot be read.
+     */
+    public static boolean containsAndroidTests( File classesBaseDirectory, Cache cache ) throws MojoExecutionException
     {
 
         if ( classesBaseDirectory == null || ! classesBaseDirectory.isDirectory() )
@@ -46,68 +83,272 @@ public class AndroidTestFinder
             throw new IllegalArgumentException( "classesBaseDirectory must be a valid directory!" );
         }
 
-        final List<File> classFiles = findEligebleClassFiles( classesBaseDirectory );
-        final DescendantFinder descendantFinder = new DescendantFinder( TEST_PACKAGES );
-        final AnnotatedFinder annotationFinder = new AnnotatedFinder( TEST_PACKAGES );
-
-        for ( File classFile : classFiles )
+        final Tracer.Span span = Tracer.get().start( "AndroidTestFinder", "containsAndroidTests" )
+                .attribute( "directory", classesBaseDirectory.getName() );
+        try
         {
-            ClassReader classReader;
-            FileInputStream inputStream = null;
-            try
+            final EligibleFiles files = findEligibleFiles( classesBaseDirectory );
+            span.attribute( "files", files.files.size() );
+            if ( cache != null )
             {
-                inputStream = new FileInputStream( classFile );
-                classReader = new ClassReader( inputStream );
+                final Boolean cached = cache.get( classesBaseDirectory, files );
+                if ( cached != null )
+                {
+                    span.attribute( "cached", true ).attribute( "found", cached );
+                    return cached;
+                }
+            }
 
-                classReader.accept( descendantFinder, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES
-                        | ClassReader.SKIP_CODE );
-                classReader.accept( annotationFinder, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES
-                        | ClassReader.SKIP_CODE );
+            final boolean result = containsAndroidTests( files.files );
+            if ( cache != null )
+            {
+                cache.put( classesBaseDirectory, files, result );
             }
-            catch ( IOException e )
+            span.attribute( "found", result );
+            return result;
+        }
+        finally
+        {
+            span.end();
+        }
+    }
+
+    private static boolean containsAndroidTests( List<File> files ) throws MojoExecutionException
+    {
+        final AtomicBoolean found = new AtomicBoolean( false );
+        final ScanTask task = new ScanTask( files, 0, files.size(), found );
+        try
+        {
+            if ( files.size() <= FILES_PER_TASK )
+            {
+                return task.compute();
+            }
+            final ForkJoinPool pool = new ForkJoinPool();
+            try
             {
-                throw new MojoExecutionException( "Error reading " + classFile + ".\nCould not determine whether it "
-                        + "contains tests. Please specify with plugin config parameter "
-                        + "<enableIntegrationTest>true|false</enableIntegrationTest>.", e );
+                return pool.invoke( task );
             }
             finally
             {
-                IOUtils.closeQuietly( inputStream );
+                pool.shutdownNow();
             }
         }
+        catch ( ScanException e )
+        {
+            throw new MojoExecutionException( "Error reading " + e.file + ".\nCould not determine whether it "
+                    + "contains tests. Please specify with plugin config parameter "
+                    + "<enableIntegrationTest>true|false</enableIntegrationTest>.", e.getCause() );
+        }
+    }
+
+    private static EligibleFiles findEligibleFiles( File classesBaseDirectory ) throws MojoExecutionException
+    {
+        final EligibleFiles eligibleFiles = new EligibleFiles();
+        final Path root = classesBaseDirectory.toPath();
+        try
+        {
+            Files.walkFileTree( root, new SimpleFileVisitor<Path>()
+            {
+                @Override
+                public FileVisitResult preVisitDirectory( Path dir, BasicFileAttributes attrs )
+                {
+                    final Path name = dir.getFileName();
+                    if ( !dir.equals( root ) && name != null && SCM_FOLDERS.contains( name.toString() ) )
+                    {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
 
-        return descendantFinder.isDescendantFound() || annotationFinder.isDescendantFound();
+                @Override
+                public FileVisitResult visitFile( Path file, BasicFileAttributes attrs )
+                {
+                    final String name = file.getFileName().toString();
+                    if ( attrs.isRegularFile() && ( name.endsWith( ".class" ) || name.endsWith( ".jar" ) ) )
+                    {
+                        eligibleFiles.add( root.relativize( file ).toString(), file.toFile(), attrs );
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            } );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Error reading " + classesBaseDirectory + ".\nCould not determine "
+                    + "whether it contains tests. Please specify with plugin config parameter "
+                    + "<enableIntegrationTest>true|false</enableIntegrationTest>.", e );
+        }
+        return eligibleFiles;
     }
 
-    private static List<File> findEligebleClassFiles( File classesBaseDirectory )
+    private static boolean isTestClass( TestClassFinder finder, InputStream in ) throws IOException
     {
-        final List<File> classFiles = new LinkedList<File>();
-        final DirectoryWalker walker = new DirectoryWalker();
-        walker.setBaseDir( classesBaseDirectory );
-        walker.addSCMExcludes();
-        walker.addInclude( "**/*.class" );
-        walker.addDirectoryWalkListener( new DirectoryWalkListener()
-        {
-            public void directoryWalkStarting( File basedir )
+        return finder.isTestClass( new ClassReader( in ) );
+    }
+
+    private static boolean containsTestClass( File file, TestClassFinder finder, AtomicBoolean found )
+            throws IOException
+    {
+        if ( file.getName().endsWith( ".jar" ) )
+        {
+            final ZipFile jar = new ZipFile( file );
+            try
             {
+                final Enumeration<? extends ZipEntry> entries = jar.entries();
+                while ( entries.hasMoreElements() && !found.get() )
+                {
+                    final ZipEntry entry = entries.nextElement();
+                    if ( !entry.isDirectory() && entry.getName().endsWith( ".class" ) )
+                    {
+                        final InputStream in = jar.getInputStream( entry );
+                        try
+                        {
+                            if ( isTestClass( finder, in ) )
+                            {
+                                return true;
+                            }
+                        }
+                        finally
+                        {
+                            IOUtils.closeQuietly( in );
+                        }
+                    }
+                }
+                return false;
             }
+            finally
+            {
+                jar.close();
+            }
+        }
 
-            public void directoryWalkStep( int percentage, File file )
+        final InputStream in = new FileInputStream( file );
+        try
+        {
+            return isTestClass( finder, in );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( in );
+        }
+    }
+
+    /**
+     * Searches a range of the files, splitting it in halves while it is larger than {@link #FILES_PER_TASK}.
+     */
+    private static final class ScanTask extends RecursiveTask<Boolean>
+    {
+        private final List<File> files;
+        private final int from;
+        private final int to;
+        private final AtomicBoolean found;
+
+        private ScanTask( List<File> files, int from, int to, AtomicBoolean found )
+        {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.found = found;
+        }
+
+        @Override
+        protected Boolean compute()
+        {
+            if ( to - from > FILES_PER_TASK )
             {
-                classFiles.add( file );
+                final int middle = ( from + to ) >>> 1;
+                final ScanTask left = new ScanTask( files, from, middle, found );
+                left.fork();
+                final boolean rightFound = new ScanTask( files, middle, to, found ).compute();
+                return left.join() || rightFound;
             }
 
-            public void directoryWalkFinished()
+            final TestClassFinder finder = new TestClassFinder( TEST_PACKAGES );
+            for ( int i = from; i < to && !found.get(); i++ )
             {
+                final File file = files.get( i );
+                try
+                {
+                    if ( containsTestClass( file, finder, found ) )
+                    {
+                        found.set( true );
+                        return true;
+                    }
+                }
+                catch ( IOException e )
+                {
+                    throw new ScanException( file, e );
+                }
             }
+            return false;
+        }
+    }
 
-            public void debug( String message )
+    private static final class ScanException extends RuntimeException
+    {
+        private final File file;
+
+        private ScanException( File file, IOException cause )
+        {
+            super( cause );
+            this.file = file;
+        }
+    }
+
+    /**
+     * The class files and jars of a directory, with a fingerprint of their paths, sizes and modification times.
+     */
+    private static final class EligibleFiles
+    {
+        private final List<File> files = new ArrayList<File>();
+        private long fingerprint;
+
+        private void add( String relativePath, File file, BasicFileAttributes attrs )
+        {
+            files.add( file );
+            // Summed so that the fingerprint does not depend on the unspecified order in which the tree is walked.
+            fingerprint += Arrays.hashCode( new long[] {
+                relativePath.hashCode(), attrs.size(), attrs.lastModifiedTime().toMillis() } );
+        }
+    }
+
+    /**
+     * Results of previous searches, keyed by directory and invalidated when the fingerprint of the directory's class
+     * files and jars changes. Can be shared across the build (see
+     * {@link com.simpligility.maven.plugins.android.common.SessionScope}).
+     */
+    public static final class Cache
+    {
+        private final ConcurrentMap<File, Result> results = new ConcurrentHashMap<File, Result>();
+
+        private Boolean get( File directory, EligibleFiles files )
+        {
+            final Result result = results.get( directory.getAbsoluteFile() );
+            if ( result != null && result.fileCount == files.files.size() && result.fingerprint == files.fingerprint )
             {
+                return result.containsTests;
             }
-        } );
-        walker.scan();
-        return classFiles;
+            return null;
+        }
+
+        private void put( File directory, EligibleFiles files, boolean containsTests )
+        {
+            results.put( directory.getAbsoluteFile(),
+                    new Result( files.files.size(), files.fingerprint, containsTests ) );
+        }
     }
 
+    private static final class Result
+    {
+        private final int fileCount;
+        private final long fingerprint;
+        private final boolean containsTests;
 
+        private Result( int fileCount, long fingerprint, boolean containsTests )
+        {
+            this.fileCount = fileCount;
+            this.fingerprint = fingerprint;
+            this.containsTests = containsTests;
+        }
+    }
 }
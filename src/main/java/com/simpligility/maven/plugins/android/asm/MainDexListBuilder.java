@@ -0,0 +1,951 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.simpligility.maven.plugins.android.asm;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Computes the classes to put in the main dex file of a multidex application, as the <code>mainDexClasses</code>
+ * script of the build tools does, without forking ProGuard and the dx <code>MainDexListBuilder</code>.
+ * <p>
+ * The roots are the classes kept by the <code>mainDexClasses.rules</code> of the build tools: the public
+ * application, instrumentation, backup agent and instrumentation test case classes with their constructors, and the
+ * annotations. The methods reachable from the roots are traced through the class files, which are read in parallel,
+ * and the classes they use are kept with their hierarchy. As with ProGuard, the methods of kept classes overriding
+ * a method of the platform classes are traced too, as the platform may call them. The classes referenced directly by
+ * any method or field of the kept classes and the classes with runtime visible annotations are then added, as the dx
+ * <code>MainDexListBuilder</code> does from the class files of the kept classes.
+ */
+public final class MainDexListBuilder
+{
+    /**
+     * Number of files below which a parse task reads its files itself instead of splitting them further.
+     */
+    private static final int FILES_PER_TASK = 64;
+
+    private static final String CLASS = ".class";
+    private static final String META_INF = "META-INF/";
+    private static final String CLINIT = "<clinit>()V";
+    private static final String DEFAULT_CONSTRUCTOR = "<init>()V";
+
+    /**
+     * Stands for all the methods of a root class.
+     */
+    private static final String ALL_METHODS = "*";
+
+    private static final int PARSING_OPTIONS = ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+    private static final int LIBRARY_PARSING_OPTIONS = PARSING_OPTIONS | ClassReader.SKIP_CODE;
+
+    /**
+     * The rules of <code>mainDexClasses.rules</code>: the super types of the root classes and their kept methods.
+     */
+    private static final Map<String, List<String>> ROOTS = new LinkedHashMap<String, List<String>>();
+
+    static
+    {
+        ROOTS.put( "android/app/Instrumentation", Arrays.asList( DEFAULT_CONSTRUCTOR ) );
+        ROOTS.put( "android/app/Application",
+                Arrays.asList( DEFAULT_CONSTRUCTOR, "attachBaseContext(Landroid/content/Context;)V" ) );
+        ROOTS.put( "android/app/backup/BackupAgent", Arrays.asList( DEFAULT_CONSTRUCTOR ) );
+        ROOTS.put( "java/lang/annotation/Annotation", Arrays.asList( ALL_METHODS ) );
+        ROOTS.put( "android/test/InstrumentationTestCase", Arrays.asList( DEFAULT_CONSTRUCTOR ) );
+    }
+
+    private final File libraryJar;
+
+    /**
+     * @param libraryJar jar of the platform classes the input classes extend, such as android.jar, or null.
+     */
+    public MainDexListBuilder( File libraryJar )
+    {
+        this.libraryJar = libraryJar;
+    }
+
+    /**
+     * @param inputs folders of classes and jars, as given to dx.
+     * @return the class files to put in the main dex file, such as <code>com/foo/Bar.class</code>, sorted.
+     * @throws MojoExecutionException if a class file or jar cannot be read.
+     */
+    public SortedSet<String> build( Collection<File> inputs ) throws MojoExecutionException
+    {
+        final Map<String, ClassInfo> classes = parse( inputs );
+        final Hierarchy hierarchy = new Hierarchy( classes, libraryJar );
+        try
+        {
+            final Shrinker shrinker = new Shrinker( classes, hierarchy );
+            shrinker.keepRoots();
+            shrinker.trace();
+            return shrinker.getMainDexClasses();
+        }
+        catch ( ReadException e )
+        {
+            throw new MojoExecutionException( "Error reading " + e.file + ".\nCould not generate the main dex list.",
+                    e.getCause() );
+        }
+        finally
+        {
+            hierarchy.close();
+        }
+    }
+
+    private static Map<String, ClassInfo> parse( Collection<File> inputs ) throws MojoExecutionException
+    {
+        final List<File> files = new ArrayList<File>();
+        for ( File input : inputs )
+        {
+            if ( input.isDirectory() )
+            {
+                findClassFiles( input, files );
+            }
+            else if ( input.isFile() )
+            {
+                files.add( input );
+            }
+        }
+
+        // The jars are parsed first, so that each of them is parsed by a task of its own. The position of the files
+        // in the inputs still decides between duplicate classes, whatever task parses them first.
+        final List<Integer> schedule = new ArrayList<Integer>();
+        for ( int i = 0; i < files.size(); i++ )
+        {
+            if ( isJar( files.get( i ) ) )
+            {
+                schedule.add( i );
+            }
+        }
+        for ( int i = 0; i < files.size(); i++ )
+        {
+            if ( !isJar( files.get( i ) ) )
+            {
+                schedule.add( i );
+            }
+        }
+
+        final ConcurrentMap<String, ClassInfo> classes = new ConcurrentHashMap<String, ClassInfo>();
+        final ParseTask task = new ParseTask( files, schedule, 0, schedule.size(), classes );
+        try
+        {
+            if ( !task.isSplit() )
+            {
+                task.compute();
+            }
+            else
+            {
+                final ForkJoinPool pool = new ForkJoinPool();
+                try
+                {
+                    pool.invoke( task );
+                }
+                finally
+                {
+                    pool.shutdownNow();
+                }
+            }
+        }
+        catch ( ReadException e )
+        {
+            throw new MojoExecutionException( "Error reading " + e.file + ".\nCould not generate the main dex list.",
+                    e.getCause() );
+        }
+        return classes;
+    }
+
+    private static void findClassFiles( File directory, final List<File> files ) throws MojoExecutionException
+    {
+        final Path root = directory.toPath();
+        try
+        {
+            Files.walkFileTree( root, new SimpleFileVisitor<Path>()
+            {
+                @Override
+                public FileVisitResult visitFile( Path file, BasicFileAttributes attrs )
+                {
+                    final String path = root.relativize( file ).toString().replace( File.separatorChar, '/' );
+                    if ( attrs.isRegularFile() && path.endsWith( CLASS ) && !path.startsWith( META_INF ) )
+                    {
+                        files.add( file.toFile() );
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            } );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Error reading " + directory
+                    + ".\nCould not generate the main dex list.", e );
+        }
+    }
+
+    private static boolean isJar( File file )
+    {
+        return !file.getName().endsWith( CLASS );
+    }
+
+    private static void parse( File file, int position, ConcurrentMap<String, ClassInfo> classes ) throws IOException
+    {
+        if ( isJar( file ) )
+        {
+            final ZipFile jar = new ZipFile( file );
+            try
+            {
+                final Enumeration<? extends ZipEntry> entries = jar.entries();
+                while ( entries.hasMoreElements() )
+                {
+                    final ZipEntry entry = entries.nextElement();
+                    if ( !entry.isDirectory() && entry.getName().endsWith( CLASS )
+                            && !entry.getName().startsWith( META_INF ) )
+                    {
+                        final InputStream in = jar.getInputStream( entry );
+                        try
+                        {
+                            add( parse( in ), position, classes );
+                        }
+                        finally
+                        {
+                            IOUtils.closeQuietly( in );
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                jar.close();
+            }
+            return;
+        }
+
+        final InputStream in = new FileInputStream( file );
+        try
+        {
+            add( parse( in ), position, classes );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( in );
+        }
+    }
+
+    private static ClassInfo parse( InputStream in ) throws IOException
+    {
+        return parse( in, PARSING_OPTIONS );
+    }
+
+    private static ClassInfo parse( InputStream in, int options ) throws IOException
+    {
+        final ClassCollector collector = new ClassCollector();
+        new ClassReader( in ).accept( collector, options );
+        return collector.info;
+    }
+
+    /**
+     * Adds a parsed class unless a duplicate comes before it in the inputs, as with dx the first of duplicate classes
+     * wins. The duplicates of a jar are parsed in order by the same task.
+     */
+    private static void add( ClassInfo info, int position, ConcurrentMap<String, ClassInfo> classes )
+    {
+        info.position = position;
+        ClassInfo previous = classes.putIfAbsent( info.name, info );
+        while ( previous != null && previous.position > position && !classes.replace( info.name, previous, info ) )
+        {
+            previous = classes.putIfAbsent( info.name, info );
+        }
+    }
+
+    private static void addType( Set<String> types, Type type )
+    {
+        final Type elementType = type.getSort() == Type.ARRAY ? type.getElementType() : type;
+        if ( elementType.getSort() == Type.OBJECT )
+        {
+            types.add( elementType.getInternalName() );
+        }
+    }
+
+    private static void addMethodTypes( Set<String> types, String descriptor )
+    {
+        for ( Type argumentType : Type.getArgumentTypes( descriptor ) )
+        {
+            addType( types, argumentType );
+        }
+        addType( types, Type.getReturnType( descriptor ) );
+    }
+
+    /**
+     * Traces the methods reachable from the roots, as ProGuard shrinks the input classes with
+     * <code>mainDexClasses.rules</code>.
+     */
+    private static final class Shrinker
+    {
+        private final Map<String, ClassInfo> classes;
+        private final Hierarchy hierarchy;
+        private final Set<String> keptClasses = new HashSet<String>();
+        private final Deque<MethodInfo> pendingMethods = new ArrayDeque<MethodInfo>();
+        /**
+         * Signatures of the methods invoked on instances, which are kept in every kept class declaring them.
+         */
+        private final Set<String> virtualSignatures = new HashSet<String>();
+        private final Map<String, List<ClassInfo>> declaringClasses = new HashMap<String, List<ClassInfo>>();
+
+        private Shrinker( Map<String, ClassInfo> classes, Hierarchy hierarchy )
+        {
+            this.classes = classes;
+            this.hierarchy = hierarchy;
+            for ( ClassInfo info : classes.values() )
+            {
+                for ( String signature : info.methods.keySet() )
+                {
+                    List<ClassInfo> declaring = declaringClasses.get( signature );
+                    if ( declaring == null )
+                    {
+                        declaring = new ArrayList<ClassInfo>();
+                        declaringClasses.put( signature, declaring );
+                    }
+                    declaring.add( info );
+                }
+            }
+        }
+
+        private void keepRoots()
+        {
+            for ( ClassInfo info : classes.values() )
+            {
+                if ( ( info.access & Opcodes.ACC_PUBLIC ) == 0 )
+                {
+                    continue;
+                }
+                final Set<String> supertypes = hierarchy.getSupertypes( info.name );
+                for ( Map.Entry<String, List<String>> root : ROOTS.entrySet() )
+                {
+                    if ( !supertypes.contains( root.getKey() ) )
+                    {
+                        continue;
+                    }
+                    keepClass( info.name );
+                    for ( String signature : root.getValue() )
+                    {
+                        if ( ALL_METHODS.equals( signature ) )
+                        {
+                            for ( MethodInfo method : info.methods.values() )
+                            {
+                                markMethod( method );
+                            }
+                        }
+                        else
+                        {
+                            markMethod( info.name, signature );
+                        }
+                    }
+                }
+            }
+        }
+
+        private void trace()
+        {
+            while ( !pendingMethods.isEmpty() )
+            {
+                final MethodInfo method = pendingMethods.poll();
+                keepClass( method.owner );
+                for ( String type : method.types )
+                {
+                    keepClass( type );
+                }
+                for ( Invocation invocation : method.invocations )
+                {
+                    markMethod( invocation.owner, invocation.signature );
+                    final List<ClassInfo> declaring = declaringClasses.get( invocation.signature );
+                    if ( invocation.virtual && virtualSignatures.add( invocation.signature ) && declaring != null )
+                    {
+                        for ( ClassInfo info : declaring )
+                        {
+                            if ( keptClasses.contains( info.name ) )
+                            {
+                                markMethod( info.methods.get( invocation.signature ) );
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Keeps an input class with its hierarchy, its static initializer, its overrides of the methods invoked on
+         * instances and its overrides of the methods of the platform classes.
+         */
+        private void keepClass( String name )
+        {
+            final ClassInfo info = classes.get( name );
+            if ( info == null || !keptClasses.add( name ) )
+            {
+                return;
+            }
+            keepClass( info.superName );
+            for ( String interfaceName : info.interfaces )
+            {
+                keepClass( interfaceName );
+            }
+            for ( MethodInfo method : info.methods.values() )
+            {
+                if ( CLINIT.equals( method.signature ) || virtualSignatures.contains( method.signature )
+                        || hierarchy.overridesLibraryMethod( info, method ) )
+                {
+                    markMethod( method );
+                }
+            }
+        }
+
+        /**
+         * Marks the method invoked with a class and a signature, which may be declared by a super class.
+         */
+        private void markMethod( String owner, String signature )
+        {
+            ClassInfo info = classes.get( owner );
+            while ( info != null )
+            {
+                final MethodInfo method = info.methods.get( signature );
+                if ( method != null )
+                {
+                    markMethod( method );
+                    return;
+                }
+                info = info.superName == null ? null : classes.get( info.superName );
+            }
+        }
+
+        private void markMethod( MethodInfo method )
+        {
+            if ( !method.marked )
+            {
+                method.marked = true;
+                pendingMethods.add( method );
+            }
+        }
+
+        /**
+         * @return the kept classes and the classes referenced directly by their fields and methods, traced or not,
+         *         with their hierarchy.
+         */
+        private SortedSet<String> getMainDexClasses()
+        {
+            final Set<String> mainDexClasses = new HashSet<String>();
+            for ( String name : keptClasses )
+            {
+                addWithHierarchy( name, mainDexClasses );
+            }
+            for ( String name : keptClasses )
+            {
+                final ClassInfo info = classes.get( name );
+                for ( String type : info.fieldTypes )
+                {
+                    addWithHierarchy( type, mainDexClasses );
+                }
+                for ( MethodInfo method : info.methods.values() )
+                {
+                    for ( String type : method.types )
+                    {
+                        addWithHierarchy( type, mainDexClasses );
+                    }
+                }
+            }
+            for ( ClassInfo info : classes.values() )
+            {
+                if ( info.runtimeAnnotated )
+                {
+                    mainDexClasses.add( info.name );
+                }
+            }
+
+            final SortedSet<String> classFiles = new TreeSet<String>();
+            for ( String name : mainDexClasses )
+            {
+                classFiles.add( name + CLASS );
+            }
+            return classFiles;
+        }
+
+        private void addWithHierarchy( String name, Set<String> mainDexClasses )
+        {
+            final ClassInfo info = classes.get( name );
+            if ( info == null || !mainDexClasses.add( name ) )
+            {
+                return;
+            }
+            if ( info.superName != null )
+            {
+                addWithHierarchy( info.superName, mainDexClasses );
+            }
+            for ( String interfaceName : info.interfaces )
+            {
+                addWithHierarchy( interfaceName, mainDexClasses );
+            }
+        }
+    }
+
+    /**
+     * The super types of the input classes, including those of the platform classes they extend, and the methods of
+     * these platform classes.
+     */
+    private static final class Hierarchy
+    {
+        private final Map<String, ClassInfo> classes;
+        private final File libraryJar;
+        private final Map<String, Set<String>> supertypes = new HashMap<String, Set<String>>();
+        /**
+         * The platform classes read so far, null standing for the ones missing from the library jar.
+         */
+        private final Map<String, ClassInfo> libraryClasses = new HashMap<String, ClassInfo>();
+        private ZipFile library;
+
+        private Hierarchy( Map<String, ClassInfo> classes, File libraryJar )
+        {
+            this.classes = classes;
+            this.libraryJar = libraryJar;
+        }
+
+        private Set<String> getSupertypes( String name )
+        {
+            Set<String> result = supertypes.get( name );
+            if ( result != null )
+            {
+                return result;
+            }
+            result = new HashSet<String>();
+            supertypes.put( name, result );
+            for ( String direct : getDirectSupertypes( name ) )
+            {
+                result.add( direct );
+                result.addAll( getSupertypes( direct ) );
+            }
+            return result;
+        }
+
+        /**
+         * @return whether a method of an input class overrides a method of one of the platform classes it extends.
+         */
+        private boolean overridesLibraryMethod( ClassInfo info, MethodInfo method )
+        {
+            if ( !isOverridable( method ) )
+            {
+                return false;
+            }
+            for ( String supertype : getSupertypes( info.name ) )
+            {
+                if ( classes.containsKey( supertype ) )
+                {
+                    continue;
+                }
+                final ClassInfo libraryClass = getLibraryClass( supertype );
+                final MethodInfo libraryMethod = libraryClass == null ? null
+                        : libraryClass.methods.get( method.signature );
+                if ( libraryMethod != null && isOverridable( libraryMethod ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private List<String> getDirectSupertypes( String name )
+        {
+            ClassInfo info = classes.get( name );
+            if ( info == null )
+            {
+                info = getLibraryClass( name );
+            }
+            return info == null ? Collections.<String>emptyList() : info.getDirectSupertypes();
+        }
+
+        private ClassInfo getLibraryClass( String name )
+        {
+            if ( libraryClasses.containsKey( name ) )
+            {
+                return libraryClasses.get( name );
+            }
+            final ClassInfo info = readLibraryClass( name );
+            libraryClasses.put( name, info );
+            return info;
+        }
+
+        private ClassInfo readLibraryClass( String name )
+        {
+            if ( libraryJar == null || !libraryJar.isFile() )
+            {
+                return null;
+            }
+            try
+            {
+                if ( library == null )
+                {
+                    library = new ZipFile( libraryJar );
+                }
+                final ZipEntry entry = library.getEntry( name + CLASS );
+                if ( entry == null )
+                {
+                    return null;
+                }
+                final InputStream in = library.getInputStream( entry );
+                try
+                {
+                    return parse( in, LIBRARY_PARSING_OPTIONS );
+                }
+                finally
+                {
+                    IOUtils.closeQuietly( in );
+                }
+            }
+            catch ( IOException e )
+            {
+                throw new ReadException( libraryJar, e );
+            }
+        }
+
+        private void close()
+        {
+            if ( library != null )
+            {
+                try
+                {
+                    library.close();
+                }
+                catch ( IOException e )
+                {
+                    // Nothing was written to it.
+                }
+            }
+        }
+    }
+
+    private static boolean isOverridable( MethodInfo method )
+    {
+        return ( method.access & ( Opcodes.ACC_STATIC | Opcodes.ACC_PRIVATE ) ) == 0
+                && !method.signature.startsWith( "<" );
+    }
+
+    private static final class ClassInfo
+    {
+        private String name;
+        /**
+         * Position in the inputs of the file the class was read from.
+         */
+        private int position;
+        private int access;
+        private String superName;
+        private String[] interfaces;
+        private boolean runtimeAnnotated;
+        private final Set<String> fieldTypes = new HashSet<String>();
+        private final Map<String, MethodInfo> methods = new HashMap<String, MethodInfo>();
+
+        private List<String> getDirectSupertypes()
+        {
+            final List<String> direct = new ArrayList<String>( Arrays.asList( interfaces ) );
+            if ( superName != null )
+            {
+                direct.add( superName );
+            }
+            return direct;
+        }
+    }
+
+    private static final class MethodInfo
+    {
+        private final String owner;
+        private final String signature;
+        private final int access;
+        /**
+         * The classes used by the method: its parameters, result and exceptions, and those of its instructions.
+         */
+        private final Set<String> types = new HashSet<String>();
+        private final List<Invocation> invocations = new ArrayList<Invocation>();
+        private boolean marked;
+
+        private MethodInfo( String owner, String signature, int access )
+        {
+            this.owner = owner;
+            this.signature = signature;
+            this.access = access;
+        }
+    }
+
+    private static final class Invocation
+    {
+        private final String owner;
+        private final String signature;
+        private final boolean virtual;
+
+        private Invocation( String owner, String signature, boolean virtual )
+        {
+            this.owner = owner;
+            this.signature = signature;
+            this.virtual = virtual;
+        }
+    }
+
+    private static final class ClassCollector extends ClassVisitor
+    {
+        private final ClassInfo info = new ClassInfo();
+
+        private ClassCollector()
+        {
+            super( Opcodes.ASM5 );
+        }
+
+        @Override
+        public void visit( int version, int access, String name, String signature, String superName,
+                           String[] interfaces )
+        {
+            info.name = name;
+            info.access = access;
+            info.superName = superName;
+            info.interfaces = interfaces == null ? new String[ 0 ] : interfaces;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation( String desc, boolean visible )
+        {
+            info.runtimeAnnotated |= visible;
+            return null;
+        }
+
+        @Override
+        public FieldVisitor visitField( int access, String name, String desc, String signature, Object value )
+        {
+            addType( info.fieldTypes, Type.getType( desc ) );
+            return new FieldVisitor( Opcodes.ASM5 )
+            {
+                @Override
+                public AnnotationVisitor visitAnnotation( String desc, boolean visible )
+                {
+                    info.runtimeAnnotated |= visible;
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public MethodVisitor visitMethod( int access, String name, String desc, String signature,
+                                          String[] exceptions )
+        {
+            final MethodInfo method = new MethodInfo( info.name, name + desc, access );
+            info.methods.put( method.signature, method );
+            addMethodTypes( method.types, desc );
+            if ( exceptions != null )
+            {
+                method.types.addAll( Arrays.asList( exceptions ) );
+            }
+            return new MethodCollector( info, method );
+        }
+    }
+
+    private static final class MethodCollector extends MethodVisitor
+    {
+        private final ClassInfo info;
+        private final MethodInfo method;
+
+        private MethodCollector( ClassInfo info, MethodInfo method )
+        {
+            super( Opcodes.ASM5 );
+            this.info = info;
+            this.method = method;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation( String desc, boolean visible )
+        {
+            info.runtimeAnnotated |= visible;
+            return null;
+        }
+
+        @Override
+        public void visitTypeInsn( int opcode, String type )
+        {
+            addType( method.types, Type.getObjectType( type ) );
+        }
+
+        @Override
+        public void visitFieldInsn( int opcode, String owner, String name, String desc )
+        {
+            addType( method.types, Type.getObjectType( owner ) );
+            addType( method.types, Type.getType( desc ) );
+        }
+
+        @Override
+        public void visitMethodInsn( int opcode, String owner, String name, String desc, boolean itf )
+        {
+            addType( method.types, Type.getObjectType( owner ) );
+            addMethodTypes( method.types, desc );
+            method.invocations.add( new Invocation( owner, name + desc,
+                    opcode == Opcodes.INVOKEVIRTUAL || opcode == Opcodes.INVOKEINTERFACE ) );
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn( String name, String desc, Handle bsm, Object... bsmArgs )
+        {
+            addMethodTypes( method.types, desc );
+            addType( method.types, Type.getObjectType( bsm.getOwner() ) );
+            for ( Object argument : bsmArgs )
+            {
+                if ( argument instanceof Handle )
+                {
+                    final Handle handle = ( Handle ) argument;
+                    addType( method.types, Type.getObjectType( handle.getOwner() ) );
+                    method.invocations.add( new Invocation( handle.getOwner(), handle.getName() + handle.getDesc(),
+                            handle.getTag() == Opcodes.H_INVOKEVIRTUAL
+                                    || handle.getTag() == Opcodes.H_INVOKEINTERFACE ) );
+                }
+                else if ( argument instanceof Type )
+                {
+                    visitLdcInsn( argument );
+                }
+            }
+        }
+
+        @Override
+        public void visitLdcInsn( Object cst )
+        {
+            if ( cst instanceof Type )
+            {
+                final Type type = ( Type ) cst;
+                if ( type.getSort() == Type.METHOD )
+                {
+                    addMethodTypes( method.types, type.getDescriptor() );
+                }
+                else
+                {
+                    addType( method.types, type );
+                }
+            }
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn( String desc, int dims )
+        {
+            addType( method.types, Type.getType( desc ) );
+        }
+
+        @Override
+        public void visitTryCatchBlock( Label start, Label end, Label handler, String type )
+        {
+            if ( type != null )
+            {
+                method.types.add( type );
+            }
+        }
+    }
+
+    /**
+     * Parses a range of the scheduled files, splitting it in halves while it is larger than {@link #FILES_PER_TASK} or
+     * starts with a jar.
+     */
+    private static final class ParseTask extends RecursiveAction
+    {
+        private final List<File> files;
+        /**
+         * Positions of the files in the order they are parsed.
+         */
+        private final List<Integer> schedule;
+        private final int from;
+        private final int to;
+        private final ConcurrentMap<String, ClassInfo> classes;
+
+        private ParseTask( List<File> files, List<Integer> schedule, int from, int to,
+                           ConcurrentMap<String, ClassInfo> classes )
+        {
+            this.files = files;
+            this.schedule = schedule;
+            this.from = from;
+            this.to = to;
+            this.classes = classes;
+        }
+
+        private boolean isSplit()
+        {
+            return to - from > FILES_PER_TASK || to - from > 1 && isJar( files.get( schedule.get( from ) ) );
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ( isSplit() )
+            {
+                final int middle = ( from + to ) >>> 1;
+                invokeAll( new ParseTask( files, schedule, from, middle, classes ),
+                        new ParseTask( files, schedule, middle, to, classes ) );
+                return;
+            }
+            for ( int i = from; i < to; i++ )
+            {
+                final int position = schedule.get( i );
+                final File file = files.get( position );
+                try
+                {
+                    parse( file, position, classes );
+                }
+                catch ( IOException e )
+                {
+                    throw new ReadException( file, e );
+                }
+            }
+        }
+    }
+
+    private static final class ReadException extends RuntimeException
+    {
+        private final File file;
+
+        private ReadException( File file, IOException cause )
+        {
+            super( cause );
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.simpligility.maven.plugins.android.asm;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Decides whether a class is an Android instrumentation test, ie whether it extends a class from one of the test
+ * packages or is annotated with <code>@RunWith(AndroidJUnit4.class)</code>.
+ * <p>
+ * The super class is read from the class header without visiting the class. Only classes that do not extend a test
+ * class are visited, and then only for their class level annotations.
+ */
+final class TestClassFinder extends ClassVisitor
+{
+    private static final String TEST_RUNNER = "Lorg/junit/runner/RunWith;";
+    private static final String ANDROID_JUNIT_RUNNER = "AndroidJUnit4";
+
+    private static final int PARSING_OPTIONS = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG
+            | ClassReader.SKIP_FRAMES;
+
+    private final String[] parentPackages;
+    private boolean testFound;
+
+    /**
+     * @param parentPackages Packages to find descendants of. Must be formatted with <code>/</code> (slash) instead of
+     *                       <code>.</code> (dot). For example: <code>junit/framework/</code>
+     */
+    TestClassFinder( String... parentPackages )
+    {
+        super( Opcodes.ASM4 );
+        this.parentPackages = parentPackages;
+    }
+
+    /**
+     * @param classReader Reader of the class to check.
+     * @return true if the class is a test class.
+     */
+    boolean isTestClass( ClassReader classReader )
+    {
+        if ( extendsTestClass( classReader.getSuperName() ) )
+        {
+            return true;
+        }
+        testFound = false;
+        classReader.accept( this, PARSING_OPTIONS );
+        return testFound;
+    }
+
+    private boolean extendsTestClass( String superName )
+    {
+        if ( superName != null )
+        {
+            for ( final String testPackage : parentPackages )
+            {
+                if ( superName.startsWith( testPackage ) )
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation( String desc, boolean visible )
+    {
+        if ( !TEST_RUNNER.equals( desc ) )
+        {
+            return null;
+        }
+        return new AnnotationVisitor( Opcodes.ASM4 )
+        {
+            @Override
+            public void visit( String name, Object value )
+            {
+                if ( value instanceof Type && ( ( Type ) value ).getClassName().contains( ANDROID_JUNIT_RUNNER ) )
+                {
+                    testFound = true;
+                }
+            }
+        };
+    }
+}
@@ -37,6 +37,36 @@ public class AaptCommandBuilder
         return new AaptPackageCommandBuilder( log );
     }
 
+    /**
+     * Crunch a single PNG file, as aapt package does unless PNG crunching is disabled.
+     *
+     * @return instance of {@link AaptSingleCrunchCommandBuilder}
+     */
+    public static AaptSingleCrunchCommandBuilder crunchSingle( Log log )
+    {
+        return new AaptSingleCrunchCommandBuilder( log );
+    }
+
+    /**
+     * Compile android resource files into the intermediate <code>.flat</code> format of aapt2.
+     *
+     * @return instance of {@link Aapt2CompileCommandBuilder}
+     */
+    public static Aapt2CompileCommandBuilder compileResources( Log log )
+    {
+        return new Aapt2CompileCommandBuilder( log );
+    }
+
+    /**
+     * Link the resource files compiled by aapt2 into a package, the equivalent of {@link #packageResources(Log)}.
+     *
+     * @return instance of {@link Aapt2LinkCommandBuilder}
+     */
+    public static Aapt2LinkCommandBuilder linkResources( Log log )
+    {
+        return new Aapt2LinkCommandBuilder( log );
+    }
+
     /**
      * Dump label, icon, permissions, compiled xmls etc.
      *
@@ -47,10 +77,44 @@ public class AaptCommandBuilder
         return new AaptDumpCommandBuilder( log );
     }
 
+    /**
+     * Outputs and options shared by the aapt <code>package</code> and aapt2 <code>link</code> commands, so that the
+     * mojos can produce the resource package, R.java and R.txt with either tool.
+     */
+    public interface ResourcePackageCommandBuilder
+    {
+        ResourcePackageCommandBuilder makeResourcesNonConstant( boolean make );
+
+        ResourcePackageCommandBuilder makePackageDirectories();
+
+        ResourcePackageCommandBuilder setResourceConstantsFolder( File path );
+
+        ResourcePackageCommandBuilder generateRIntoPackage( String packageName );
+
+        ResourcePackageCommandBuilder replaceVersion( Integer versionCode, String versionName );
+
+        ResourcePackageCommandBuilder setPreferredDensity( String density );
+
+        ResourcePackageCommandBuilder setVerbose( boolean isVerbose );
+
+        ResourcePackageCommandBuilder generateRTextFile( File folderForR );
+
+        ResourcePackageCommandBuilder disablePngCrunching();
+
+        ResourcePackageCommandBuilder setOutputApkFile( File outputFile );
+
+        ResourcePackageCommandBuilder setProguardOptionsOutputFile( File outputFile );
+
+        ResourcePackageCommandBuilder renameInstrumentationTargetPackage( String instrumentationPackage );
+
+        List<String> build();
+    }
+
     /**
      * Class that responsible for building appt commands for packaging resources
      */
     public static final class AaptPackageCommandBuilder extends AaptCommandBuilder
+            implements ResourcePackageCommandBuilder
     {
         public AaptPackageCommandBuilder( Log log )
         {
@@ -276,6 +340,49 @@ public class AaptCommandBuilder
             return this;
         }
 
+        /**
+         * Replaces the version code and name of the manifest, if given.
+         *
+         * @param versionCode version code, or null to keep the one of the manifest.
+         * @param versionName version name, or null to keep the one of the manifest.
+         * @return current instance of {@link AaptCommandBuilder}
+         */
+        public AaptPackageCommandBuilder replaceVersion( Integer versionCode, String versionName )
+        {
+            if ( versionCode != null )
+            {
+                commands.add( "--version-code" );
+                commands.add( versionCode.toString() );
+            }
+            if ( StringUtils.isNotBlank( versionName ) )
+            {
+                commands.add( "--version-name" );
+                commands.add( versionName );
+            }
+            if ( versionCode != null || StringUtils.isNotBlank( versionName ) )
+            {
+                // Without it aapt only adds the version to manifests that do not declare one.
+                commands.add( "--replace-version" );
+            }
+            return this;
+        }
+
+        /**
+         * Keeps only the resources of the density bucket closest to the given one, for density split APKs.
+         *
+         * @param density density bucket, eg <code>hdpi</code>, or null to keep all densities.
+         * @return current instance of {@link AaptCommandBuilder}
+         */
+        public AaptPackageCommandBuilder setPreferredDensity( String density )
+        {
+            if ( StringUtils.isNotBlank( density ) )
+            {
+                commands.add( "--preferred-density" );
+                commands.add( density );
+            }
+            return this;
+        }
+
         /**
          * Adds some additional aapt arguments that are not represented as separate parameters
          * android-maven-plugin configuration.
@@ -433,6 +540,455 @@ public class AaptCommandBuilder
         }
     }
 
+    /**
+     * Class that responsible for building aapt commands for crunching a single PNG file
+     */
+    public static final class AaptSingleCrunchCommandBuilder extends AaptCommandBuilder
+    {
+        public AaptSingleCrunchCommandBuilder( Log log )
+        {
+            super( log );
+            commands.add( "singleCrunch" );
+        }
+
+        /**
+         * Specify the PNG file to crunch, 9-patch images included.
+         *
+         * @param inputFile the PNG file.
+         * @return current instance of {@link AaptSingleCrunchCommandBuilder}
+         */
+        public AaptSingleCrunchCommandBuilder setInputFile( File inputFile )
+        {
+            commands.add( "-i" );
+            commands.add( inputFile.getAbsolutePath() );
+            return this;
+        }
+
+        /**
+         * Specify the file to write the crunched PNG to.
+         *
+         * @param outputFile the crunched PNG file.
+         * @return current instance of {@link AaptSingleCrunchCommandBuilder}
+         */
+        public AaptSingleCrunchCommandBuilder setOutputFile( File outputFile )
+        {
+            commands.add( "-o" );
+            commands.add( outputFile.getAbsolutePath() );
+            return this;
+        }
+    }
+
+    /**
+     * Class that responsible for building aapt2 commands for compiling resource files
+     */
+    public static final class Aapt2CompileCommandBuilder extends AaptCommandBuilder
+    {
+        public Aapt2CompileCommandBuilder( Log log )
+        {
+            super( log );
+            commands.add( "compile" );
+        }
+
+        /**
+         * Specify the directory to write the <code>.flat</code> files to.
+         *
+         * @param outputDirectory output directory.
+         * @return current instance of {@link Aapt2CompileCommandBuilder}
+         */
+        public Aapt2CompileCommandBuilder setOutputDirectory( File outputDirectory )
+        {
+            commands.add( "-o" );
+            commands.add( outputDirectory.getAbsolutePath() );
+            return this;
+        }
+
+        /**
+         * Disable PNG crunching.
+         *
+         * @return current instance of {@link Aapt2CompileCommandBuilder}
+         */
+        public Aapt2CompileCommandBuilder disablePngCrunching()
+        {
+            commands.add( "--no-crunch" );
+            return this;
+        }
+
+        /**
+         * Makes output verbose.
+         *
+         * @param isVerbose if true aapt2 will be verbose, otherwise - no
+         * @return current instance of {@link Aapt2CompileCommandBuilder}
+         */
+        public Aapt2CompileCommandBuilder setVerbose( boolean isVerbose )
+        {
+            if ( isVerbose )
+            {
+                commands.add( "-v" );
+            }
+            return this;
+        }
+
+        /**
+         * Resource file to compile, in a <code>res/&lt;type&gt;</code> folder.
+         *
+         * @param resourceFile the resource file.
+         * @return current instance of {@link Aapt2CompileCommandBuilder}
+         */
+        public Aapt2CompileCommandBuilder addResourceFile( File resourceFile )
+        {
+            commands.add( resourceFile.getAbsolutePath() );
+            return this;
+        }
+    }
+
+    /**
+     * Class that responsible for building aapt2 commands for linking compiled resources into a package
+     */
+    public static final class Aapt2LinkCommandBuilder extends AaptCommandBuilder
+            implements ResourcePackageCommandBuilder
+    {
+        public Aapt2LinkCommandBuilder( Log log )
+        {
+            super( log );
+            commands.add( "link" );
+        }
+
+        /**
+         * Specify full path to AndroidManifest.xml to include in zip.
+         *
+         * @param path  Path to AndroidManifest.xml
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder setPathToAndroidManifest( File path )
+        {
+            commands.add( "--manifest" );
+            commands.add( path.getAbsolutePath() );
+            return this;
+        }
+
+        /**
+         * Compiled resources of the package.
+         *
+         * @param flatFiles <code>.flat</code> files, which must not define the same resource twice.
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder addCompiledResources( List<File> flatFiles )
+        {
+            for ( File flatFile : flatFiles )
+            {
+                commands.add( flatFile.getAbsolutePath() );
+            }
+            return this;
+        }
+
+        /**
+         * Compiled resources overriding the ones added before.
+         *
+         * @param flatFiles <code>.flat</code> files.
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder addCompiledOverlays( List<File> flatFiles )
+        {
+            for ( File flatFile : flatFiles )
+            {
+                commands.add( "-R" );
+                commands.add( flatFile.getAbsolutePath() );
+            }
+            return this;
+        }
+
+        /**
+         * Automatically add resources that are only in overlays.
+         *
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder autoAddOverlay()
+        {
+            commands.add( "--auto-add-overlay" );
+            return this;
+        }
+
+        /**
+         * Additional directory in which to find raw asset files.
+         *
+         * @param assetsFolder  Folder containing the combined raw assets to add.
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder addRawAssetsDirectoryIfExists( File assetsFolder )
+        {
+            if ( assetsFolder != null && assetsFolder.exists() )
+            {
+                log.debug( "Adding assets folder : " + assetsFolder );
+                commands.add( "-A" );
+                commands.add( assetsFolder.getAbsolutePath() );
+            }
+            return this;
+        }
+
+        /**
+         * Add an existing package to base include set.
+         *
+         * @param path  Path to existing package to add.
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder addExistingPackageToBaseIncludeSet( File path )
+        {
+            commands.add( "-I" );
+            commands.add( path.getAbsolutePath() );
+            return this;
+        }
+
+        /**
+         * Specify which configurations to include, see {@link AaptPackageCommandBuilder#addConfigurations(String)}.
+         *
+         * @param configurations configuration to include in form of {@link String}
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder addConfigurations( String configurations )
+        {
+            if ( StringUtils.isNotBlank( configurations ) )
+            {
+                commands.add( "-c" );
+                commands.add( configurations );
+            }
+            return this;
+        }
+
+        /**
+         * Rewrite the manifest so that its package name is the package name given here.
+         *
+         * @param manifestPackage new manifest package to apply
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder renameManifestPackage( String manifestPackage )
+        {
+            if ( StringUtils.isNotBlank( manifestPackage ) )
+            {
+                commands.add( "--rename-manifest-package" );
+                commands.add( manifestPackage );
+            }
+            return this;
+        }
+
+        /**
+         * Rewrite the manifest so that all of its instrumentation components target the given package.
+         *
+         * @param instrumentationPackage new instrumentation target package to apply
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder renameInstrumentationTargetPackage( String instrumentationPackage )
+        {
+            if ( StringUtils.isNotBlank( instrumentationPackage ) )
+            {
+                commands.add( "--rename-instrumentation-target-package" );
+                commands.add( instrumentationPackage );
+            }
+            return this;
+        }
+
+        /**
+         * Replaces the version code and name of the manifest, if given.
+         *
+         * @param versionCode version code, or null to keep the one of the manifest.
+         * @param versionName version name, or null to keep the one of the manifest.
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder replaceVersion( Integer versionCode, String versionName )
+        {
+            if ( versionCode != null )
+            {
+                commands.add( "--version-code" );
+                commands.add( versionCode.toString() );
+            }
+            if ( StringUtils.isNotBlank( versionName ) )
+            {
+                commands.add( "--version-name" );
+                commands.add( versionName );
+            }
+            if ( versionCode != null || StringUtils.isNotBlank( versionName ) )
+            {
+                commands.add( "--replace-version" );
+            }
+            return this;
+        }
+
+        /**
+         * Keeps only the resources of the density bucket closest to the given one, for density split APKs.
+         *
+         * @param density density bucket, eg <code>hdpi</code>, or null to keep all densities.
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder setPreferredDensity( String density )
+        {
+            if ( StringUtils.isNotBlank( density ) )
+            {
+                commands.add( "--preferred-density" );
+                commands.add( density );
+            }
+            return this;
+        }
+
+        /**
+         * Inserts android:debuggable="true" into the application node of the manifest.
+         *
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder setDebugMode( boolean isDebugMode )
+        {
+            if ( isDebugMode )
+            {
+                log.info( "Generating debug apk." );
+                commands.add( "--debug-mode" );
+            }
+            else
+            {
+                log.info( "Generating release apk." );
+            }
+            return this;
+        }
+
+        /**
+         * Adds some additional aapt2 link arguments that are not represented as separate parameters
+         * android-maven-plugin configuration.
+         *
+         * @param extraArguments    Array of extra arguments to pass to aapt2.
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder addExtraArguments( String[] extraArguments )
+        {
+            if ( extraArguments != null )
+            {
+                commands.addAll( Arrays.asList( extraArguments ) );
+            }
+            return this;
+        }
+
+        /**
+         * Generates R java classes with non final ids, for libraries.
+         *
+         * @param make if true make resources ID non final, otherwise ignore
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder makeResourcesNonConstant( boolean make )
+        {
+            if ( make )
+            {
+                commands.add( "--non-final-ids" );
+            }
+            return this;
+        }
+
+        /**
+         * Does nothing, aapt2 always generates R java classes in package directories.
+         *
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder makePackageDirectories()
+        {
+            return this;
+        }
+
+        /**
+         * Specify where the R java classes should be generated.
+         *
+         * @param path path to resource constants folder.
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder setResourceConstantsFolder( File path )
+        {
+            commands.add( "--java" );
+            commands.add( path.getAbsolutePath() );
+            return this;
+        }
+
+        /**
+         * Generates R java into a different package.
+         *
+         * @param packageName package name which generate R.java into
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder generateRIntoPackage( String packageName )
+        {
+            if ( StringUtils.isNotBlank( packageName ) )
+            {
+                commands.add( "--custom-package" );
+                commands.add( packageName );
+            }
+            return this;
+        }
+
+        /**
+         * Makes output verbose.
+         *
+         * @param isVerbose if true aapt2 will be verbose, otherwise - no
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder setVerbose( boolean isVerbose )
+        {
+            if ( isVerbose )
+            {
+                commands.add( "-v" );
+            }
+            return this;
+        }
+
+        /**
+         * Generates R.txt, containing the resource symbols of the R class, in the specified folder.
+         *
+         * @param folderForR folder in which text file will be generated
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder generateRTextFile( File folderForR )
+        {
+            commands.add( "--output-text-symbols" );
+            commands.add( new File( folderForR, "R.txt" ).getAbsolutePath() );
+            return this;
+        }
+
+        /**
+         * Does nothing, aapt2 crunches PNG files when compiling them.
+         *
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder disablePngCrunching()
+        {
+            return this;
+        }
+
+        /**
+         * Specify the apk file to output.
+         *
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder setOutputApkFile( File outputFile )
+        {
+            commands.add( "-o" );
+            commands.add( outputFile.getAbsolutePath() );
+            return this;
+        }
+
+        /**
+         * Output Proguard options to a File.
+         *
+         * @return current instance of {@link Aapt2LinkCommandBuilder}
+         */
+        public Aapt2LinkCommandBuilder setProguardOptionsOutputFile( File outputFile )
+        {
+            if ( outputFile != null )
+            {
+                final File parentFolder = outputFile.getParentFile();
+                if ( parentFolder != null )
+                {
+                    parentFolder.mkdirs();
+                }
+                log.debug( "Adding proguard file : " + outputFile );
+                commands.add( "--proguard" );
+                commands.add( outputFile.getAbsolutePath() );
+            }
+            return this;
+        }
+    }
+
     /**
      * Class that responsible for building aapt commands for dumping information from apk file
      */
@@ -0,0 +1,142 @@
+package com.simpligility.maven.plugins.android.common;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fingerprint of an aapt package command and of the files it reads, recorded beside the resource package
+ * (<code>.ap_</code>) it produced.
+ * <p>
+ * Several mojos of a build compile the same resources: generate-sources to create R.java and the packaging mojos
+ * to create the resource package. A mojo that would run aapt with the arguments of a recorded fingerprint, over
+ * files of the same size and modification time, can reuse the package instead of compiling the resources again.
+ * The output arguments (<code>-F</code>, <code>-J</code>, ...) must be left out of the fingerprinted arguments.
+ */
+public final class AaptInputsFingerprint
+{
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+    private static final String SUFFIX = ".fingerprint";
+
+    private AaptInputsFingerprint()
+    {
+        // no instances
+    }
+
+    /**
+     * @param arguments aapt arguments, without the output ones.
+     * @return the fingerprint of the arguments and of the files and folders they name, recursively.
+     */
+    public static String of( List<String> arguments )
+    {
+        final MessageDigest digest = newDigest();
+        for ( String argument : arguments )
+        {
+            update( digest, argument );
+            final File file = new File( argument );
+            if ( file.isAbsolute() && file.exists() )
+            {
+                updateWithFiles( digest, file, "" );
+            }
+        }
+
+        final StringBuilder fingerprint = new StringBuilder();
+        for ( byte b : digest.digest() )
+        {
+            fingerprint.append( String.format( "%02x", b ) );
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * @param resourcePackage the resource package.
+     * @param fingerprint     fingerprint of the command that would produce it.
+     * @return true if the package exists and was produced by a command with the same fingerprint.
+     */
+    public static boolean matches( File resourcePackage, String fingerprint )
+    {
+        final File fingerprintFile = getFingerprintFile( resourcePackage );
+        try
+        {
+            return resourcePackage.isFile() && fingerprintFile.isFile()
+                    && fingerprint.equals( FileUtils.readFileToString( fingerprintFile, UTF_8 ) );
+        }
+        catch ( IOException e )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Records the fingerprint of the command that produced the package.
+     *
+     * @param resourcePackage the resource package.
+     * @param fingerprint     fingerprint of the command.
+     * @throws IOException if the fingerprint could not be written.
+     */
+    public static void record( File resourcePackage, String fingerprint ) throws IOException
+    {
+        FileUtils.writeStringToFile( getFingerprintFile( resourcePackage ), fingerprint, UTF_8 );
+    }
+
+    /**
+     * Forgets the fingerprint of a package, before a command that is not fingerprinted overwrites it or in case the
+     * command fails.
+     *
+     * @param resourcePackage the resource package.
+     */
+    public static void clear( File resourcePackage )
+    {
+        FileUtils.deleteQuietly( getFingerprintFile( resourcePackage ) );
+    }
+
+    private static File getFingerprintFile( File resourcePackage )
+    {
+        return new File( resourcePackage.getParentFile(), resourcePackage.getName() + SUFFIX );
+    }
+
+    private static void updateWithFiles( MessageDigest digest, File file, String path )
+    {
+        update( digest, path );
+        if ( file.isDirectory() )
+        {
+            final String[] children = file.list();
+            if ( children != null )
+            {
+                Arrays.sort( children );
+                for ( String child : children )
+                {
+                    updateWithFiles( digest, new File( file, child ), path + "/" + child );
+                }
+            }
+        }
+        else
+        {
+            update( digest, file.length() + ":" + file.lastModified() );
+        }
+    }
+
+    private static void update( MessageDigest digest, String value )
+    {
+        digest.update( value.getBytes( UTF_8 ) );
+        digest.update( ( byte ) 0 );
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-1 is not available", e );
+        }
+    }
+}
@@ -187,7 +187,7 @@ public class AndroidPublisherHelper
                 .build();
     }
 
-    private static void newTrustedTransport() throws GeneralSecurityException,
+    private static synchronized void newTrustedTransport() throws GeneralSecurityException,
             IOException
     {
         if ( null == httpTransport )
@@ -0,0 +1,250 @@
+package com.simpligility.maven.plugins.android.common;
+
+import org.codehaus.plexus.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Index of the class names available on a classpath.
+ * <p>
+ * Built by reading the central directory of each jar and walking each output folder, so that checking for the
+ * existence of a class is a hash lookup that neither loads nor defines the class. Jar contents are kept in a
+ * {@link JarCache} that can be shared across the build (see {@link SessionScope}).
+ */
+public final class ClasspathIndex
+{
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final Set<String> classNames;
+
+    private ClasspathIndex( Set<String> classNames )
+    {
+        this.classNames = classNames;
+    }
+
+    /**
+     * @param className Binary name of the class, eg <code>com.foo.R</code> or <code>com.foo.R$string</code>.
+     * @return true if the class is present on the indexed classpath.
+     */
+    public boolean containsClass( String className )
+    {
+        return classNames.contains( className );
+    }
+
+    /**
+     * @return number of classes on the indexed classpath.
+     */
+    public int size()
+    {
+        return classNames.size();
+    }
+
+    /**
+     * Indexes the supplied classpath elements, reading the elements in parallel.
+     *
+     * @param classpathElements Jar files and folders making up the classpath.
+     * @param jarCache          Cache of jar contents to consult and populate.
+     * @param log               Logger for unreadable classpath elements.
+     * @return the index of all classes found on the classpath.
+     */
+    public static ClasspathIndex build( Collection<String> classpathElements, final JarCache jarCache,
+                                        final Logger log )
+    {
+        final List<File> elements = new ArrayList<File>();
+        for ( final String element : classpathElements )
+        {
+            final File file = new File( element );
+            if ( file.exists() )
+            {
+                elements.add( file );
+            }
+        }
+
+        final Set<String> classNames = new HashSet<String>();
+        if ( elements.isEmpty() )
+        {
+            return new ClasspathIndex( classNames );
+        }
+
+        final int threads = Math.min( elements.size(), Runtime.getRuntime().availableProcessors() );
+        final ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            final List<Future<Set<String>>> futures = new ArrayList<Future<Set<String>>>( elements.size() );
+            for ( final File element : elements )
+            {
+                futures.add( executor.submit( new Callable<Set<String>>()
+                {
+                    @Override
+                    public Set<String> call()
+                    {
+                        return element.isDirectory()
+                                ? readFolder( element, log )
+                                : jarCache.getClassNames( element, log );
+                    }
+                } ) );
+            }
+            for ( final Future<Set<String>> future : futures )
+            {
+                classNames.addAll( future.get() );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted while indexing classpath", e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new IllegalStateException( "Could not index classpath", e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        return new ClasspathIndex( classNames );
+    }
+
+    private static Set<String> readFolder( File folder, Logger log )
+    {
+        final Set<String> classNames = new HashSet<String>();
+        final Path root = folder.toPath();
+        try
+        {
+            Files.walkFileTree( root, new SimpleFileVisitor<Path>()
+            {
+                @Override
+                public FileVisitResult visitFile( Path file, BasicFileAttributes attrs )
+                {
+                    final String className = toClassName( root.relativize( file ).toString()
+                            .replace( File.separatorChar, '/' ) );
+                    if ( className != null )
+                    {
+                        classNames.add( className );
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            } );
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Could not index classpath folder : " + folder, e );
+        }
+        return classNames;
+    }
+
+    private static Set<String> readJar( File jar, Logger log )
+    {
+        final Set<String> classNames = new HashSet<String>();
+        ZipFile zipFile = null;
+        try
+        {
+            zipFile = new ZipFile( jar );
+            final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while ( entries.hasMoreElements() )
+            {
+                final ZipEntry entry = entries.nextElement();
+                final String className = entry.isDirectory() ? null : toClassName( entry.getName() );
+                if ( className != null )
+                {
+                    classNames.add( className );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Could not index classpath jar : " + jar, e );
+        }
+        finally
+        {
+            if ( zipFile != null )
+            {
+                try
+                {
+                    zipFile.close();
+                }
+                catch ( IOException e )
+                {
+                    log.debug( "Could not close classpath jar : " + jar, e );
+                }
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * @param path Slash separated path of a classpath resource.
+     * @return binary class name for the path, or <code>null</code> if the path is not a class file.
+     */
+    static String toClassName( String path )
+    {
+        if ( !path.endsWith( CLASS_SUFFIX ) )
+        {
+            return null;
+        }
+        return path.substring( 0, path.length() - CLASS_SUFFIX.length() ).replace( '/', '.' );
+    }
+
+    /**
+     * Cache of the class names contained in jar files, keyed by path and invalidated when the jar's last modified
+     * time or size changes (eg when an unpacked AAR classes jar replaces its placeholder).
+     */
+    public static final class JarCache
+    {
+        private final ConcurrentMap<File, JarContents> jars = new ConcurrentHashMap<File, JarContents>();
+
+        Set<String> getClassNames( File jar, Logger log )
+        {
+            final long lastModified = jar.lastModified();
+            final long length = jar.length();
+
+            final JarContents cached = jars.get( jar );
+            if ( cached != null && cached.lastModified == lastModified && cached.length == length )
+            {
+                return cached.classNames;
+            }
+
+            final JarContents contents = new JarContents( lastModified, length,
+                    Collections.unmodifiableSet( readJar( jar, log ) ) );
+            jars.put( jar, contents );
+            return contents.classNames;
+        }
+    }
+
+    private static final class JarContents
+    {
+        private final long lastModified;
+        private final long length;
+        private final Set<String> classNames;
+
+        private JarContents( long lastModified, long length, Set<String> classNames )
+        {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.classNames = classNames;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.simpligility.maven.plugins.android.common;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads and rewrites the <code>android:versionCode</code> of an AndroidManifest.xml compiled by aapt, as found in
+ * the intermediate <code>.ap_</code> file.
+ * <p>
+ * The compiled manifest is a sequence of little endian chunks. Attributes reference their name through the
+ * resource map chunk, and an integer attribute stores its value in place, so changing the version code does not
+ * change the size of the file and no other resource has to be compiled again.
+ */
+public final class CompiledManifest
+{
+    /**
+     * Resource id of <code>android:versionCode</code>.
+     */
+    private static final int VERSION_CODE_ATTRIBUTE = 0x0101021b;
+
+    private static final int RES_XML_TYPE = 0x0003;
+    private static final int RES_XML_RESOURCE_MAP_TYPE = 0x0180;
+    private static final int RES_XML_START_ELEMENT_TYPE = 0x0102;
+
+    private static final int TYPE_INT_DEC = 0x10;
+    private static final int TYPE_INT_HEX = 0x11;
+
+    private static final int UNSIGNED_SHORT = 0xffff;
+    private static final int UNSIGNED_BYTE = 0xff;
+
+    private static final int CHUNK_HEADER_SIZE_OFFSET = 2;
+    private static final int CHUNK_SIZE_OFFSET = 4;
+    private static final int CHUNK_HEADER_SIZE = 8;
+    private static final int RESOURCE_ID_SIZE = 4;
+
+    private static final int ELEMENT_ATTRIBUTE_START_OFFSET = 8;
+    private static final int ELEMENT_ATTRIBUTE_SIZE_OFFSET = 10;
+    private static final int ELEMENT_ATTRIBUTE_COUNT_OFFSET = 12;
+
+    private static final int ATTRIBUTE_NAME_OFFSET = 4;
+    private static final int ATTRIBUTE_RAW_VALUE_OFFSET = 8;
+    private static final int ATTRIBUTE_DATA_TYPE_OFFSET = 15;
+    private static final int ATTRIBUTE_DATA_OFFSET = 16;
+
+    private static final int NO_RAW_VALUE = -1;
+
+    private CompiledManifest()
+    {
+        // no instances
+    }
+
+    /**
+     * @param manifest Content of the compiled AndroidManifest.xml.
+     * @return the version code declared by the manifest.
+     * @throws IllegalArgumentException if the manifest is not compiled or does not declare a literal version code.
+     */
+    public static int getVersionCode( byte[] manifest )
+    {
+        final ByteBuffer xml = ByteBuffer.wrap( manifest ).order( ByteOrder.LITTLE_ENDIAN );
+        return xml.getInt( findVersionCode( xml ) + ATTRIBUTE_DATA_OFFSET );
+    }
+
+    /**
+     * @param manifest    Content of the compiled AndroidManifest.xml, which is left unchanged.
+     * @param versionCode New version code.
+     * @return a copy of the manifest declaring the new version code.
+     * @throws IllegalArgumentException if the manifest is not compiled or does not declare a literal version code.
+     */
+    public static byte[] setVersionCode( byte[] manifest, int versionCode )
+    {
+        final byte[] copy = manifest.clone();
+        final ByteBuffer xml = ByteBuffer.wrap( copy ).order( ByteOrder.LITTLE_ENDIAN );
+        final int attribute = findVersionCode( xml );
+        // The raw string, if aapt kept one, would still hold the old value.
+        xml.putInt( attribute + ATTRIBUTE_RAW_VALUE_OFFSET, NO_RAW_VALUE );
+        xml.putInt( attribute + ATTRIBUTE_DATA_OFFSET, versionCode );
+        return copy;
+    }
+
+    /**
+     * @return the offset of the versionCode attribute of the root element.
+     */
+    private static int findVersionCode( ByteBuffer xml )
+    {
+        if ( xml.limit() < CHUNK_HEADER_SIZE || ( xml.getShort( 0 ) & UNSIGNED_SHORT ) != RES_XML_TYPE )
+        {
+            throw new IllegalArgumentException( "Not a compiled AndroidManifest.xml" );
+        }
+
+        int[] resourceIds = new int[ 0 ];
+        int offset = xml.getShort( CHUNK_HEADER_SIZE_OFFSET ) & UNSIGNED_SHORT;
+        while ( offset + CHUNK_HEADER_SIZE <= xml.limit() )
+        {
+            final int type = xml.getShort( offset ) & UNSIGNED_SHORT;
+            final int headerSize = xml.getShort( offset + CHUNK_HEADER_SIZE_OFFSET ) & UNSIGNED_SHORT;
+            final int size = xml.getInt( offset + CHUNK_SIZE_OFFSET );
+            if ( size < CHUNK_HEADER_SIZE || size > xml.limit() - offset )
+            {
+                throw new IllegalArgumentException( "Corrupt compiled AndroidManifest.xml at offset " + offset );
+            }
+
+            if ( type == RES_XML_RESOURCE_MAP_TYPE )
+            {
+                resourceIds = new int[ ( size - headerSize ) / RESOURCE_ID_SIZE ];
+                for ( int i = 0; i < resourceIds.length; i++ )
+                {
+                    resourceIds[ i ] = xml.getInt( offset + headerSize + i * RESOURCE_ID_SIZE );
+                }
+            }
+            else if ( type == RES_XML_START_ELEMENT_TYPE )
+            {
+                // The first element is <manifest>, which holds the version code.
+                return findVersionCodeAttribute( xml, offset + headerSize, resourceIds );
+            }
+            offset += size;
+        }
+        throw new IllegalArgumentException( "Compiled AndroidManifest.xml without any element" );
+    }
+
+    private static int findVersionCodeAttribute( ByteBuffer xml, int element, int[] resourceIds )
+    {
+        final int attributeStart = xml.getShort( element + ELEMENT_ATTRIBUTE_START_OFFSET ) & UNSIGNED_SHORT;
+        final int attributeSize = xml.getShort( element + ELEMENT_ATTRIBUTE_SIZE_OFFSET ) & UNSIGNED_SHORT;
+        final int attributeCount = xml.getShort( element + ELEMENT_ATTRIBUTE_COUNT_OFFSET ) & UNSIGNED_SHORT;
+        for ( int i = 0; i < attributeCount; i++ )
+        {
+            final int attribute = element + attributeStart + i * attributeSize;
+            final int name = xml.getInt( attribute + ATTRIBUTE_NAME_OFFSET );
+            if ( name >= 0 && name < resourceIds.length && resourceIds[ name ] == VERSION_CODE_ATTRIBUTE )
+            {
+                final int dataType = xml.get( attribute + ATTRIBUTE_DATA_TYPE_OFFSET ) & UNSIGNED_BYTE;
+                if ( dataType != TYPE_INT_DEC && dataType != TYPE_INT_HEX )
+                {
+                    throw new IllegalArgumentException( "android:versionCode is not a literal integer" );
+                }
+                return attribute;
+            }
+        }
+        throw new IllegalArgumentException( "The manifest does not declare android:versionCode" );
+    }
+}
@@ -0,0 +1,271 @@
+package com.simpligility.maven.plugins.android.common;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.simpligility.maven.plugins.android.CommandExecutor;
+import com.simpligility.maven.plugins.android.CommandResult;
+import com.simpligility.maven.plugins.android.CommandSpec;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Resource files compiled by <code>aapt2 compile</code>, kept from one build to the next.
+ * <p>
+ * Each resource file is compiled on its own into a folder of the cache named after the file, along with the size
+ * and modification time of the file it was compiled from. Only the files added or changed since the previous build
+ * are compiled, in parallel, and the compiled files of the deleted ones are removed, so an edit to one layout
+ * compiles one file before the resources are linked again.
+ */
+public final class CompiledResourceCache
+{
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+    private static final String STAMP = "source.stamp";
+    private static final String FLAT = ".flat";
+
+    private final File cacheDirectory;
+    private final String aapt2Path;
+    private final Log log;
+
+    /**
+     * @param cacheDirectory folder of the cache, which should be specific to the project.
+     * @param aapt2Path      path of the aapt2 executable.
+     * @param log            log of the mojo.
+     */
+    public CompiledResourceCache( File cacheDirectory, String aapt2Path, Log log )
+    {
+        this.cacheDirectory = cacheDirectory;
+        this.aapt2Path = aapt2Path;
+        this.log = log;
+    }
+
+    /**
+     * Compiles the changed files of resource folders.
+     *
+     * @param resourceDirectories resource folders, which are skipped if they do not exist.
+     * @return the compiled files of each existing resource folder, sorted.
+     * @throws MojoExecutionException if a resource file could not be compiled.
+     */
+    public Map<File, List<File>> compile( List<File> resourceDirectories ) throws MojoExecutionException
+    {
+        final CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
+        executor.setLogger( log );
+
+        final Map<File, File> outputDirectories = new LinkedHashMap<File, File>();
+        final List<ListenableFuture<CommandResult>> compilations = new ArrayList<ListenableFuture<CommandResult>>();
+        final Map<File, String> stamps = new LinkedHashMap<File, String>();
+        for ( File resourceDirectory : resourceDirectories )
+        {
+            if ( resourceDirectory == null || !resourceDirectory.isDirectory()
+                    || outputDirectories.containsKey( resourceDirectory ) )
+            {
+                continue;
+            }
+            final File outputDirectory = getOutputDirectory( resourceDirectory );
+            outputDirectories.put( resourceDirectory, outputDirectory );
+            removeDeletedFiles( resourceDirectory, outputDirectory );
+
+            for ( File typeDirectory : listFiles( resourceDirectory ) )
+            {
+                if ( !typeDirectory.isDirectory() || isIgnored( typeDirectory.getName() ) )
+                {
+                    continue;
+                }
+                for ( File resourceFile : listFiles( typeDirectory ) )
+                {
+                    if ( !resourceFile.isFile() || isIgnored( resourceFile.getName() ) )
+                    {
+                        continue;
+                    }
+                    final File fileOutputDirectory = new File( outputDirectory,
+                            typeDirectory.getName() + File.separator + resourceFile.getName() );
+                    final String stamp = getStamp( resourceFile );
+                    if ( !stamp.equals( readStamp( fileOutputDirectory ) ) )
+                    {
+                        compilations.add( compile( executor, resourceFile, fileOutputDirectory ) );
+                        stamps.put( fileOutputDirectory, stamp );
+                    }
+                }
+            }
+        }
+
+        if ( !compilations.isEmpty() )
+        {
+            log.info( "Compiling " + compilations.size() + " resource files with aapt2" );
+            awaitCompilations( Futures.allAsList( compilations ) );
+            writeStamps( stamps );
+        }
+
+        final Map<File, List<File>> flatFiles = new LinkedHashMap<File, List<File>>();
+        for ( Map.Entry<File, File> entry : outputDirectories.entrySet() )
+        {
+            final List<File> files = new ArrayList<File>();
+            collectFlatFiles( entry.getValue(), files );
+            flatFiles.put( entry.getKey(), files );
+        }
+        return flatFiles;
+    }
+
+    private ListenableFuture<CommandResult> compile( CommandExecutor executor, File resourceFile,
+                                                     File fileOutputDirectory ) throws MojoExecutionException
+    {
+        try
+        {
+            // aapt2 names the compiled file after the resource type, which may have changed.
+            FileUtils.deleteDirectory( fileOutputDirectory );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Could not clean " + fileOutputDirectory, e );
+        }
+        fileOutputDirectory.mkdirs();
+
+        final List<String> commands = AaptCommandBuilder
+                .compileResources( log )
+                .setOutputDirectory( fileOutputDirectory )
+                .addResourceFile( resourceFile )
+                .build();
+        return executor.executeAsync( CommandSpec.builder( aapt2Path )
+                .addArguments( commands )
+                .build() );
+    }
+
+    private void awaitCompilations( ListenableFuture<List<CommandResult>> compilations )
+            throws MojoExecutionException
+    {
+        try
+        {
+            compilations.get();
+        }
+        catch ( InterruptedException e )
+        {
+            compilations.cancel( true );
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while compiling resource files", e );
+        }
+        catch ( ExecutionException e )
+        {
+            compilations.cancel( true );
+            throw new MojoExecutionException( "Could not compile the resource files into " + cacheDirectory,
+                    e.getCause() );
+        }
+    }
+
+    /**
+     * Records the resource files compiled, once they all are, so that a failed compilation is run again.
+     */
+    private void writeStamps( Map<File, String> stamps ) throws MojoExecutionException
+    {
+        for ( Map.Entry<File, String> entry : stamps.entrySet() )
+        {
+            final File stamp = new File( entry.getKey(), STAMP );
+            try
+            {
+                FileUtils.writeStringToFile( stamp, entry.getValue(), UTF_8 );
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( "Could not write " + stamp, e );
+            }
+        }
+    }
+
+    /**
+     * Removes the compiled files of the resource files deleted since the previous build.
+     */
+    private void removeDeletedFiles( File resourceDirectory, File outputDirectory ) throws MojoExecutionException
+    {
+        for ( File typeDirectory : listFiles( outputDirectory ) )
+        {
+            for ( File fileOutputDirectory : listFiles( typeDirectory ) )
+            {
+                final File resourceFile = new File( resourceDirectory,
+                        typeDirectory.getName() + File.separator + fileOutputDirectory.getName() );
+                if ( !resourceFile.isFile() )
+                {
+                    try
+                    {
+                        FileUtils.deleteDirectory( fileOutputDirectory );
+                    }
+                    catch ( IOException e )
+                    {
+                        throw new MojoExecutionException( "Could not remove " + fileOutputDirectory, e );
+                    }
+                }
+            }
+        }
+    }
+
+    private File getOutputDirectory( File resourceDirectory )
+    {
+        // Several resource folders usually share the name res.
+        final String path = resourceDirectory.getAbsolutePath();
+        return new File( cacheDirectory, resourceDirectory.getName() + "-" + Integer.toHexString( path.hashCode() ) );
+    }
+
+    private static void collectFlatFiles( File directory, List<File> flatFiles )
+    {
+        for ( File file : listFiles( directory ) )
+        {
+            if ( file.isDirectory() )
+            {
+                collectFlatFiles( file, flatFiles );
+            }
+            else if ( file.getName().endsWith( FLAT ) )
+            {
+                flatFiles.add( file );
+            }
+        }
+    }
+
+    /**
+     * @return the children of a folder, sorted so that the link command does not change from one build to the next.
+     */
+    private static List<File> listFiles( File directory )
+    {
+        final File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            return new ArrayList<File>();
+        }
+        Arrays.sort( files );
+        return Arrays.asList( files );
+    }
+
+    /**
+     * @return true for the files aapt ignores by default, such as hidden and backup files.
+     */
+    static boolean isIgnored( String name )
+    {
+        return name.startsWith( "." ) || name.endsWith( "~" ) || "CVS".equals( name )
+                || "thumbs.db".equalsIgnoreCase( name ) || "picasa.ini".equalsIgnoreCase( name );
+    }
+
+    private static String getStamp( File resourceFile )
+    {
+        return resourceFile.length() + ":" + resourceFile.lastModified();
+    }
+
+    private static String readStamp( File fileOutputDirectory )
+    {
+        final File stamp = new File( fileOutputDirectory, STAMP );
+        try
+        {
+            return stamp.isFile() ? FileUtils.readFileToString( stamp, UTF_8 ) : "";
+        }
+        catch ( IOException e )
+        {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.simpligility.maven.plugins.android.common;
+
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilderException;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Cache of the unfiltered dependency graph of each project, shared by all mojos of a build through
+ * {@link SessionScope}.
+ * <p>
+ * The graph of a project is built once, by the first caller, and concurrent callers for the same project wait for
+ * that build instead of starting their own. A failed build is not cached so that a later caller can retry.
+ * Filtered views of a graph are obtained with {@link #collect(DependencyNode, ArtifactFilter, List)}.
+ */
+public final class DependencyGraphCache
+{
+    private final ConcurrentMap<MavenProject, FutureTask<DependencyNode>> graphs
+            = new ConcurrentHashMap<MavenProject, FutureTask<DependencyNode>>();
+
+    /**
+     * @param project                MavenProject for which to return the dependency graph.
+     * @param reactorProjects        Projects of the reactor, used to resolve reactor dependencies. May be null.
+     * @param dependencyGraphBuilder Builder to use if the graph has not been built yet.
+     * @return the root node of the unfiltered dependency graph of the project.
+     * @throws DependencyGraphBuilderException if the dependency graph can't be built.
+     */
+    public DependencyNode getDependencyGraph( final MavenProject project, final List<MavenProject> reactorProjects,
+                                              final DependencyGraphBuilder dependencyGraphBuilder )
+            throws DependencyGraphBuilderException
+    {
+        FutureTask<DependencyNode> task = graphs.get( project );
+        if ( task == null )
+        {
+            final FutureTask<DependencyNode> newTask = new FutureTask<DependencyNode>( new Callable<DependencyNode>()
+            {
+                @Override
+                public DependencyNode call() throws DependencyGraphBuilderException
+                {
+                    return dependencyGraphBuilder.buildDependencyGraph( project, null, reactorProjects );
+                }
+            } );
+            task = graphs.putIfAbsent( project, newTask );
+            if ( task == null )
+            {
+                task = newTask;
+                task.run();
+            }
+        }
+
+        try
+        {
+            return task.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new DependencyGraphBuilderException( "Interrupted while building dependency graph for "
+                    + project.getId(), e );
+        }
+        catch ( ExecutionException e )
+        {
+            graphs.remove( project, task );
+            final Throwable cause = e.getCause();
+            if ( cause instanceof DependencyGraphBuilderException )
+            {
+                throw ( DependencyGraphBuilderException ) cause;
+            }
+            if ( cause instanceof RuntimeException )
+            {
+                throw ( RuntimeException ) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw ( Error ) cause;
+            }
+            throw new DependencyGraphBuilderException( "Could not build dependency graph for " + project.getId(),
+                    cause );
+        }
+    }
+
+    /**
+     * Collects the nodes of a graph the way {@link DependencyGraphBuilder} would have built it with a filter:
+     * the root is always included, and a node rejected by the filter is excluded together with its children.
+     *
+     * @param root   Root of the graph to collect.
+     * @param filter Filter for the nodes below the root, or null to collect all nodes.
+     * @param nodes  List to which the collected nodes are added in pre-order.
+     */
+    public static void collect( DependencyNode root, ArtifactFilter filter, List<DependencyNode> nodes )
+    {
+        nodes.add( root );
+        for ( final DependencyNode child : root.getChildren() )
+        {
+            if ( filter == null || filter.include( child.getArtifact() ) )
+            {
+                collect( child, filter, nodes );
+            }
+        }
+    }
+}
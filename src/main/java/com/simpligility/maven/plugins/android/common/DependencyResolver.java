@@ -1,6 +1,7 @@
 package com.simpligility.maven.plugins.android.common;
 
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.resolver.ArtifactResolutionRequest;
 import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
 import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
@@ -14,7 +15,9 @@ import org.apache.maven.shared.dependency.graph.DependencyNode;
 import org.codehaus.plexus.logging.Logger;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import static com.simpligility.maven.plugins.android.common.AndroidExtension.AAR;
 import static com.simpligility.maven.plugins.android.common.AndroidExtension.APK;
@@ -39,14 +42,15 @@ public final class DependencyResolver
     /**
      * @param project   MavenProject for which to return the dependencies.
      * @param session   MavenSession in which to look for reactor dependencies.
-     * @return all the dependencies for a project.
+     * @return all the dependencies for a project. The dependency graph is only built once per project and build.
      * @throws DependencyGraphBuilderException if the dependency graph can't be built.
      */
     public Set<Artifact> getProjectDependenciesFor( MavenProject project, MavenSession session )
             throws DependencyGraphBuilderException
     {
         // No need to filter our search. We want to resolve all artifacts.
-        final DependencyNode node = dependencyGraphBuilder.buildDependencyGraph( project, null, session.getProjects() );
+        final DependencyNode node = SessionScope.get( session, DependencyGraphCache.class )
+                .getDependencyGraph( project, session.getProjects(), dependencyGraphBuilder );
 
         final DependencyCollector collector = new DependencyCollector( log, project.getArtifact() );
         collector.visit( node, false );
@@ -57,6 +61,7 @@ public final class DependencyResolver
      * Returns the Set of APKLIB, AAR, APK (direct or transitive) dependencies of the supplied artifact.
      *
      * The project is searched until artifact is found and then the library dependencies are looked for recursively.
+     * Resolutions are cached for the duration of the build, keyed by artifact coordinates and repositories.
      *
      * @param session           MavenSession in which to resolve the artifacts.
      * @param repositorySystem  RepositorySystem with which to resolve the artifacts.
@@ -64,10 +69,30 @@ public final class DependencyResolver
      * @return Set of APK, APKLIB and AAR dependencies.
      * @throws org.apache.maven.plugin.MojoExecutionException if it couldn't resolve any of the dependencies.
      */
-    public Set<Artifact> getLibraryDependenciesFor( MavenSession session,
-                                                    RepositorySystem repositorySystem,
-                                                    Artifact artifact )
+    public Set<Artifact> getLibraryDependenciesFor( final MavenSession session,
+                                                    final RepositorySystem repositorySystem,
+                                                    final Artifact artifact )
             throws MojoExecutionException
+    {
+        final ArtifactRepository localRepository = session.getLocalRepository();
+        final List<ArtifactRepository> remoteRepositories =
+                session.getCurrentProject().getRemoteArtifactRepositories();
+
+        final Set<Artifact> libraryDeps = SessionScope.get( session, LibraryDependencyCache.class )
+                .get( artifact, localRepository, remoteRepositories, new Callable<LibraryDependencyCache.Resolution>()
+                {
+                    @Override
+                    public LibraryDependencyCache.Resolution call()
+                    {
+                        return resolveLibraryDependencies( session, repositorySystem, artifact );
+                    }
+                } );
+        return new HashSet<Artifact>( libraryDeps );
+    }
+
+    private LibraryDependencyCache.Resolution resolveLibraryDependencies( MavenSession session,
+                                                                          RepositorySystem repositorySystem,
+                                                                          Artifact artifact )
     {
         // Set a filter that should only return interesting artifacts.
         final ArtifactFilter filter = new ArtifactFilter()
@@ -103,6 +128,6 @@ public final class DependencyResolver
             }
         }
 
-        return libraryDeps;
+        return new LibraryDependencyCache.Resolution( libraryDeps, !result.hasExceptions() );
     }
 }
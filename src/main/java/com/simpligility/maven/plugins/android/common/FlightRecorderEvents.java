@@ -0,0 +1,149 @@
+package com.simpligility.maven.plugins.android.common;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Emits the {@link Tracer} spans as Java Flight Recorder events named {@value #EVENT_NAME}, so that a build run with
+ * <code>-XX:StartFlightRecording</code> shows the plugin steps next to GC and I/O activity.
+ * <p>
+ * The plugin targets Java 7, so the event type is defined at runtime with <code>jdk.jfr.EventFactory</code> through
+ * reflection. On JVMs without the <code>jdk.jfr</code> API the events are disabled, and on JVMs with it an event is
+ * only created while a recording has enabled the event type.
+ */
+final class FlightRecorderEvents
+{
+    /**
+     * Name of the event type, to enable or filter it in a recording.
+     */
+    static final String EVENT_NAME = "com.simpligility.android.BuildStep";
+
+    private static final int CATEGORY = 0;
+    private static final int NAME = 1;
+    private static final int ATTRIBUTES = 2;
+
+    private static final FlightRecorderEvents INSTANCE = create();
+
+    private final Object eventType;
+    private final Method isEnabled;
+    private final Object factory;
+    private final Method newEvent;
+    private final Method begin;
+    private final Method set;
+    private final Method commit;
+
+    private FlightRecorderEvents( Object eventType, Method isEnabled, Object factory, Method newEvent,
+                                  Method begin, Method set, Method commit )
+    {
+        this.eventType = eventType;
+        this.isEnabled = isEnabled;
+        this.factory = factory;
+        this.newEvent = newEvent;
+        this.begin = begin;
+        this.set = set;
+        this.commit = commit;
+    }
+
+    /**
+     * @return the events of this JVM, or null if it does not provide the <code>jdk.jfr</code> API.
+     */
+    static FlightRecorderEvents get()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * @return true if a running recording has enabled the event type.
+     */
+    boolean isEnabled()
+    {
+        try
+        {
+            return ( Boolean ) isEnabled.invoke( eventType );
+        }
+        catch ( IllegalAccessException | InvocationTargetException e )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * @return a started event, or null if the event type is not enabled.
+     */
+    Object begin()
+    {
+        if ( !isEnabled() )
+        {
+            return null;
+        }
+        try
+        {
+            final Object event = newEvent.invoke( factory );
+            begin.invoke( event );
+            return event;
+        }
+        catch ( IllegalAccessException | InvocationTargetException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Ends and commits an event returned by {@link #begin()}.
+     */
+    void commit( Object event, String category, String name, String attributes )
+    {
+        try
+        {
+            set.invoke( event, CATEGORY, category );
+            set.invoke( event, NAME, name );
+            set.invoke( event, ATTRIBUTES, attributes );
+            commit.invoke( event );
+        }
+        catch ( IllegalAccessException | InvocationTargetException e )
+        {
+            // Profiling must never break the build.
+        }
+    }
+
+    private static FlightRecorderEvents create()
+    {
+        try
+        {
+            final Class<?> annotationElementClass = Class.forName( "jdk.jfr.AnnotationElement" );
+            final Class<?> valueDescriptorClass = Class.forName( "jdk.jfr.ValueDescriptor" );
+            final Class<?> eventFactoryClass = Class.forName( "jdk.jfr.EventFactory" );
+            final Class<?> eventClass = Class.forName( "jdk.jfr.Event" );
+            final Class<?> eventTypeClass = Class.forName( "jdk.jfr.EventType" );
+
+            final Constructor<?> annotationElement = annotationElementClass.getConstructor( Class.class, Object.class );
+            final List<Object> annotations = Arrays.asList(
+                    annotationElement.newInstance( Class.forName( "jdk.jfr.Name" ), EVENT_NAME ),
+                    annotationElement.newInstance( Class.forName( "jdk.jfr.Label" ), "Android Build Step" ),
+                    annotationElement.newInstance( Class.forName( "jdk.jfr.Category" ),
+                            new String[] { "Android Maven Plugin" } ) );
+
+            // The order of the fields gives the CATEGORY, NAME and ATTRIBUTES indexes.
+            final Constructor<?> valueDescriptor = valueDescriptorClass.getConstructor( Class.class, String.class );
+            final List<Object> fields = Arrays.asList(
+                    valueDescriptor.newInstance( String.class, "category" ),
+                    valueDescriptor.newInstance( String.class, "name" ),
+                    valueDescriptor.newInstance( String.class, "attributes" ) );
+
+            final Object factory = eventFactoryClass.getMethod( "create", List.class, List.class )
+                    .invoke( null, annotations, fields );
+            final Object eventType = eventFactoryClass.getMethod( "getEventType" ).invoke( factory );
+            return new FlightRecorderEvents( eventType, eventTypeClass.getMethod( "isEnabled" ), factory,
+                    eventFactoryClass.getMethod( "newEvent" ), eventClass.getMethod( "begin" ),
+                    eventClass.getMethod( "set", int.class, Object.class ), eventClass.getMethod( "commit" ) );
+        }
+        catch ( ReflectiveOperationException | RuntimeException | LinkageError e )
+        {
+            // No jdk.jfr API on this JVM, or it is not usable.
+            return null;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.simpligility.maven.plugins.android.common;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Cache of the library dependencies resolved by {@link DependencyResolver#getLibraryDependenciesFor}, shared by all
+ * mojos of a build through {@link SessionScope}.
+ * <p>
+ * Entries are keyed by the coordinates of the artifact and the repositories it was resolved from. The first caller
+ * for a key performs the resolution and concurrent callers for the same key wait for its result. Incomplete
+ * resolutions are handed to the callers waiting for them but are not kept, so that a later caller can retry.
+ */
+public final class LibraryDependencyCache
+{
+    private final ConcurrentMap<String, FutureTask<Resolution>> resolutions
+            = new ConcurrentHashMap<String, FutureTask<Resolution>>();
+
+    /**
+     * Outcome of a library dependency resolution.
+     */
+    public static final class Resolution
+    {
+        private final Set<Artifact> dependencies;
+        private final boolean complete;
+
+        public Resolution( Set<Artifact> dependencies, boolean complete )
+        {
+            this.dependencies = Collections.unmodifiableSet( dependencies );
+            this.complete = complete;
+        }
+
+        public Set<Artifact> getDependencies()
+        {
+            return dependencies;
+        }
+    }
+
+    /**
+     * @param artifact           Artifact whose library dependencies are resolved.
+     * @param localRepository    Local repository used for the resolution.
+     * @param remoteRepositories Remote repositories used for the resolution.
+     * @param resolver           Performs the resolution if there is no cached or in-flight result for the key.
+     * @return the library dependencies of the artifact.
+     */
+    public Set<Artifact> get( Artifact artifact, ArtifactRepository localRepository,
+                              List<ArtifactRepository> remoteRepositories, Callable<Resolution> resolver )
+    {
+        final String key = toKey( artifact, localRepository, remoteRepositories );
+        FutureTask<Resolution> task = resolutions.get( key );
+        if ( task == null )
+        {
+            final FutureTask<Resolution> newTask = new FutureTask<Resolution>( resolver );
+            task = resolutions.putIfAbsent( key, newTask );
+            if ( task == null )
+            {
+                task = newTask;
+                task.run();
+            }
+        }
+
+        try
+        {
+            final Resolution resolution = task.get();
+            if ( !resolution.complete )
+            {
+                resolutions.remove( key, task );
+            }
+            return resolution.dependencies;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted while resolving dependencies of " + artifact.getId(), e );
+        }
+        catch ( ExecutionException e )
+        {
+            resolutions.remove( key, task );
+            final Throwable cause = e.getCause();
+            if ( cause instanceof RuntimeException )
+            {
+                throw ( RuntimeException ) cause;
+            }
+            throw new IllegalStateException( "Could not resolve dependencies of " + artifact.getId(), cause );
+        }
+    }
+
+    static String toKey( Artifact artifact, ArtifactRepository localRepository,
+                         List<ArtifactRepository> remoteRepositories )
+    {
+        final StringBuilder key = new StringBuilder( artifact.getGroupId() )
+                .append( ':' ).append( artifact.getArtifactId() )
+                .append( ':' ).append( artifact.getType() )
+                .append( ':' ).append( artifact.getClassifier() )
+                .append( ':' ).append( artifact.getVersion() );
+        if ( localRepository != null )
+        {
+            key.append( '|' ).append( localRepository.getBasedir() );
+        }
+        if ( remoteRepositories != null )
+        {
+            for ( final ArtifactRepository repository : remoteRepositories )
+            {
+                key.append( '|' ).append( repository.getId() ).append( '=' ).append( repository.getUrl() );
+            }
+        }
+        return key.toString();
+    }
+}
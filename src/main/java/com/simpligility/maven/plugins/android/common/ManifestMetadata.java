@@ -0,0 +1,207 @@
+package com.simpligility.maven.plugins.android.common;
+
+import com.android.SdkConstants;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The values of an AndroidManifest.xml that are repeatedly consulted during a build.
+ * <p>
+ * Instances are immutable and are obtained from a {@link ManifestMetadataCache}.
+ */
+public final class ManifestMetadata
+{
+    private static final String ACTION_MAIN = "android.intent.action.MAIN";
+    private static final String CATEGORY_LAUNCHER = "android.intent.category.LAUNCHER";
+
+    private final String packageName;
+    private final String instrumentationRunner;
+    private final String minSdkVersion;
+    private final String targetSdkVersion;
+    private final String launcherActivity;
+
+    ManifestMetadata( String packageName, String instrumentationRunner, String minSdkVersion,
+                      String targetSdkVersion, String launcherActivity )
+    {
+        this.packageName = packageName;
+        this.instrumentationRunner = instrumentationRunner;
+        this.minSdkVersion = minSdkVersion;
+        this.targetSdkVersion = targetSdkVersion;
+        this.launcherActivity = launcherActivity;
+    }
+
+    /**
+     * @return the package attribute of the manifest element.
+     */
+    public String getPackageName()
+    {
+        return packageName;
+    }
+
+    /**
+     * @return the name of the first declared instrumentation, or <code>null</code> if there is none.
+     */
+    public String getInstrumentationRunner()
+    {
+        return instrumentationRunner;
+    }
+
+    /**
+     * @return the uses-sdk minSdkVersion, or <code>null</code> if it is not declared.
+     */
+    public String getMinSdkVersion()
+    {
+        return minSdkVersion;
+    }
+
+    /**
+     * @return the uses-sdk targetSdkVersion, or <code>null</code> if it is not declared.
+     */
+    public String getTargetSdkVersion()
+    {
+        return targetSdkVersion;
+    }
+
+    /**
+     * @return the fully qualified name of the first activity with a MAIN/LAUNCHER intent filter,
+     *         or <code>null</code> if there is none.
+     */
+    public String getLauncherActivity()
+    {
+        return launcherActivity;
+    }
+
+    /**
+     * Parses the manifest in a single pass.
+     *
+     * @param manifestFile AndroidManifest.xml to parse.
+     * @return the metadata of the manifest.
+     * @throws IOException if the manifest cannot be read or parsed.
+     */
+    static ManifestMetadata parse( File manifestFile ) throws IOException
+    {
+        final Document document;
+        try
+        {
+            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware( true );
+            final DocumentBuilder builder = factory.newDocumentBuilder();
+            document = builder.parse( manifestFile );
+        }
+        catch ( ParserConfigurationException e )
+        {
+            throw new IOException( "Could not parse " + manifestFile, e );
+        }
+        catch ( SAXException e )
+        {
+            throw new IOException( "Could not parse " + manifestFile, e );
+        }
+
+        final Element manifest = document.getDocumentElement();
+        final String packageName = emptyToNull( manifest.getAttribute( "package" ) );
+
+        String instrumentationRunner = null;
+        final Element instrumentation = firstElement( manifest, "instrumentation" );
+        if ( instrumentation != null )
+        {
+            instrumentationRunner = androidAttribute( instrumentation, "name" );
+        }
+
+        String minSdkVersion = null;
+        String targetSdkVersion = null;
+        final Element usesSdk = firstElement( manifest, "uses-sdk" );
+        if ( usesSdk != null )
+        {
+            minSdkVersion = androidAttribute( usesSdk, "minSdkVersion" );
+            targetSdkVersion = androidAttribute( usesSdk, "targetSdkVersion" );
+        }
+
+        return new ManifestMetadata( packageName, instrumentationRunner, minSdkVersion, targetSdkVersion,
+                findLauncherActivity( manifest, packageName ) );
+    }
+
+    private static String findLauncherActivity( Element manifest, String packageName )
+    {
+        final NodeList activities = manifest.getElementsByTagName( "activity" );
+        for ( int i = 0; i < activities.getLength(); i++ )
+        {
+            final Element activity = ( Element ) activities.item( i );
+            final NodeList filters = activity.getElementsByTagName( "intent-filter" );
+            for ( int j = 0; j < filters.getLength(); j++ )
+            {
+                final Element filter = ( Element ) filters.item( j );
+                if ( hasNamedChild( filter, "action", ACTION_MAIN )
+                        && hasNamedChild( filter, "category", CATEGORY_LAUNCHER ) )
+                {
+                    return qualify( androidAttribute( activity, "name" ), packageName );
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String qualify( String activityName, String packageName )
+    {
+        if ( activityName == null )
+        {
+            return null;
+        }
+        String qualified = activityName;
+        if ( !qualified.contains( "." ) )
+        {
+            qualified = "." + qualified;
+        }
+        if ( qualified.startsWith( "." ) )
+        {
+            qualified = packageName + qualified;
+        }
+        return qualified;
+    }
+
+    private static boolean hasNamedChild( Element parent, String tagName, String name )
+    {
+        final NodeList children = parent.getElementsByTagName( tagName );
+        for ( int i = 0; i < children.getLength(); i++ )
+        {
+            if ( name.equals( androidAttribute( ( Element ) children.item( i ), "name" ) ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Element firstElement( Element parent, String tagName )
+    {
+        final NodeList nodes = parent.getElementsByTagName( tagName );
+        final Node node = nodes.getLength() > 0 ? nodes.item( 0 ) : null;
+        return ( Element ) node;
+    }
+
+    private static String androidAttribute( Element element, String localName )
+    {
+        return emptyToNull( element.getAttributeNS( SdkConstants.ANDROID_URI, localName ) );
+    }
+
+    private static String emptyToNull( String value )
+    {
+        return ( value == null || value.isEmpty() ) ? null : value;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ManifestMetadata{package=" + packageName + ", instrumentationRunner=" + instrumentationRunner
+                + ", minSdkVersion=" + minSdkVersion + ", targetSdkVersion=" + targetSdkVersion
+                + ", launcherActivity=" + launcherActivity + "}";
+    }
+}
@@ -0,0 +1,76 @@
+package com.simpligility.maven.plugins.android.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of parsed {@link ManifestMetadata}, shared by all mojos of a build through {@link SessionScope}.
+ * <p>
+ * Entries are keyed by the manifest path and are re-parsed whenever the manifest's last modified time or
+ * size changes, eg when the manifest is copied, updated or merged by an earlier mojo.
+ */
+public final class ManifestMetadataCache
+{
+    private final ConcurrentMap<File, Entry> entries = new ConcurrentHashMap<File, Entry>();
+
+    /**
+     * @param manifestFile AndroidManifest.xml for which to return the metadata.
+     * @return the metadata of the manifest, parsing it if it has not been parsed or has changed since.
+     * @throws IllegalArgumentException if the manifest cannot be read or parsed.
+     */
+    public ManifestMetadata get( File manifestFile )
+    {
+        final File key = manifestFile.getAbsoluteFile();
+        final BasicFileAttributes attributes;
+        try
+        {
+            attributes = Files.readAttributes( key.toPath(), BasicFileAttributes.class );
+        }
+        catch ( IOException e )
+        {
+            throw new IllegalArgumentException( "Could not read AndroidManifest.xml : " + manifestFile, e );
+        }
+
+        final Entry cached = entries.get( key );
+        if ( cached != null && cached.isValidFor( attributes ) )
+        {
+            return cached.metadata;
+        }
+
+        final ManifestMetadata metadata;
+        try
+        {
+            metadata = ManifestMetadata.parse( key );
+        }
+        catch ( IOException e )
+        {
+            throw new IllegalArgumentException( "Could not parse AndroidManifest.xml : " + manifestFile, e );
+        }
+        entries.put( key, new Entry( attributes.lastModifiedTime(), attributes.size(), metadata ) );
+        return metadata;
+    }
+
+    private static final class Entry
+    {
+        private final FileTime lastModified;
+        private final long size;
+        private final ManifestMetadata metadata;
+
+        private Entry( FileTime lastModified, long size, ManifestMetadata metadata )
+        {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.metadata = metadata;
+        }
+
+        private boolean isValidFor( BasicFileAttributes attributes )
+        {
+            return size == attributes.size() && lastModified.equals( attributes.lastModifiedTime() );
+        }
+    }
+}
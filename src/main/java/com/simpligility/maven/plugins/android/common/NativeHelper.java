@@ -10,6 +10,7 @@ import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
 import org.apache.maven.artifact.resolver.filter.ExcludesArtifactFilter;
 import org.apache.maven.artifact.resolver.filter.OrArtifactFilter;
 import org.apache.maven.artifact.resolver.filter.ScopeArtifactFilter;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.model.Exclusion;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -17,7 +18,6 @@ import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
 import org.apache.maven.shared.dependency.graph.DependencyNode;
-import org.apache.maven.shared.dependency.graph.traversal.CollectingDependencyNodeVisitor;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -41,12 +41,23 @@ public class NativeHelper
 
     private MavenProject project;
     private DependencyGraphBuilder dependencyGraphBuilder;
+    private MavenSession session;
     private Log log;
 
     public NativeHelper( MavenProject project, DependencyGraphBuilder dependencyGraphBuilder, Log log )
+    {
+        this( project, dependencyGraphBuilder, null, log );
+    }
+
+    /**
+     * @param session MavenSession whose cached dependency graphs are reused, or null to always build the graph.
+     */
+    public NativeHelper( MavenProject project, DependencyGraphBuilder dependencyGraphBuilder, MavenSession session,
+                         Log log )
     {
         this.project = project;
         this.dependencyGraphBuilder = dependencyGraphBuilder;
+        this.session = session;
         this.log = log;
     }
 
@@ -158,11 +169,17 @@ public class NativeHelper
             throws MojoExecutionException
     {
         final Set<Artifact> transitiveArtifacts = new LinkedHashSet<Artifact>();
+        DependencyNode graph = null;
         for ( Dependency dependency : dependencies )
         {
             if ( ! Artifact.SCOPE_PROVIDED.equals( dependency.getScope() ) && ! dependency.isOptional() )
             {
-                final Set<Artifact> transArtifactsFor = processTransitiveDependencies( dependency, sharedLibraries );
+                if ( graph == null )
+                {
+                    graph = getDependencyGraph();
+                }
+                final Set<Artifact> transArtifactsFor = processTransitiveDependencies( graph, dependency,
+                        sharedLibraries );
                 log.debug( "Found transitive dependencies for : " + dependency + " transDeps : " + transArtifactsFor );
                 transitiveArtifacts.addAll( transArtifactsFor );
             }
@@ -172,57 +189,60 @@ public class NativeHelper
 
     }
 
-    private Set<Artifact> processTransitiveDependencies( Dependency dependency, boolean sharedLibraries )
-            throws MojoExecutionException
+    private DependencyNode getDependencyGraph() throws MojoExecutionException
     {
         try
         {
-            final Set<Artifact> artifacts = new LinkedHashSet<Artifact>();
-
-            final List<String> exclusionPatterns = new ArrayList<String>();
-            if ( dependency.getExclusions() != null && ! dependency.getExclusions().isEmpty() )
-            {
-                for ( final Exclusion exclusion : dependency.getExclusions() )
-                {
-                    exclusionPatterns.add( exclusion.getGroupId() + ":" + exclusion.getArtifactId() );
-                }
-            }
-            final ArtifactFilter optionalFilter = new ArtifactFilter()
-            {
-                @Override
-                public boolean include( Artifact artifact )
-                {
-                    return !artifact.isOptional();
-                }
-            };
-
-            final AndArtifactFilter filter = new AndArtifactFilter();
-            filter.add( new ExcludesArtifactFilter( exclusionPatterns ) );
-            filter.add( new OrArtifactFilter( Arrays.<ArtifactFilter>asList( new ScopeArtifactFilter( "compile" ),
-                                                                            new ScopeArtifactFilter( "runtime" ),
-                                                                            new ScopeArtifactFilter( "test" ) ) ) );
-            filter.add( optionalFilter );
+            return SessionScope.get( session, DependencyGraphCache.class ).getDependencyGraph( project,
+                    session == null ? null : session.getProjects(), dependencyGraphBuilder );
+        }
+        catch ( Exception e )
+        {
+            throw new MojoExecutionException( "Error while processing transitive dependencies", e );
+        }
+    }
 
-            final DependencyNode node = dependencyGraphBuilder.buildDependencyGraph( project, filter );
-            final CollectingDependencyNodeVisitor collectingVisitor = new CollectingDependencyNodeVisitor();
-            node.accept( collectingVisitor );
+    private Set<Artifact> processTransitiveDependencies( DependencyNode graph, Dependency dependency,
+                                                         boolean sharedLibraries )
+    {
+        final Set<Artifact> artifacts = new LinkedHashSet<Artifact>();
 
-            final List<DependencyNode> dependencies = collectingVisitor.getNodes();
-            for ( final DependencyNode dep : dependencies )
+        final List<String> exclusionPatterns = new ArrayList<String>();
+        if ( dependency.getExclusions() != null && ! dependency.getExclusions().isEmpty() )
+        {
+            for ( final Exclusion exclusion : dependency.getExclusions() )
             {
-                final boolean isNativeLibrary = isNativeLibrary( sharedLibraries, dep.getArtifact().getType() );
-                if ( isNativeLibrary )
-                {
-                    artifacts.add( dep.getArtifact() );
-                }
+                exclusionPatterns.add( exclusion.getGroupId() + ":" + exclusion.getArtifactId() );
             }
-
-            return artifacts;
         }
-        catch ( Exception e )
+        final ArtifactFilter optionalFilter = new ArtifactFilter()
         {
-            throw new MojoExecutionException( "Error while processing transitive dependencies", e );
+            @Override
+            public boolean include( Artifact artifact )
+            {
+                return !artifact.isOptional();
+            }
+        };
+
+        final AndArtifactFilter filter = new AndArtifactFilter();
+        filter.add( new ExcludesArtifactFilter( exclusionPatterns ) );
+        filter.add( new OrArtifactFilter( Arrays.<ArtifactFilter>asList( new ScopeArtifactFilter( "compile" ),
+                                                                        new ScopeArtifactFilter( "runtime" ),
+                                                                        new ScopeArtifactFilter( "test" ) ) ) );
+        filter.add( optionalFilter );
+
+        final List<DependencyNode> dependencies = new ArrayList<DependencyNode>();
+        DependencyGraphCache.collect( graph, filter, dependencies );
+        for ( final DependencyNode dep : dependencies )
+        {
+            final boolean isNativeLibrary = isNativeLibrary( sharedLibraries, dep.getArtifact().getType() );
+            if ( isNativeLibrary )
+            {
+                artifacts.add( dep.getArtifact() );
+            }
         }
+
+        return artifacts;
     }
 
 
@@ -0,0 +1,337 @@
+package com.simpligility.maven.plugins.android.common;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.simpligility.maven.plugins.android.CommandExecutor;
+import com.simpligility.maven.plugins.android.CommandResult;
+import com.simpligility.maven.plugins.android.CommandSpec;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Crunches the PNG files of resource folders ahead of aapt, which then packages them with PNG crunching disabled.
+ * <p>
+ * aapt crunches every PNG file of every build, one after the other. Here each resource folder is mirrored, with its
+ * PNG files crunched in parallel by <code>aapt singleCrunch</code>. The crunched files are kept in a cache keyed by
+ * the content of the original file and by the aapt executable, which can be shared by projects and builds. The
+ * mirror is updated incrementally: only the files changed since the previous build are looked up in the cache, and
+ * the mirrored files keep the modification time of their originals.
+ */
+public final class PngCrunchCache
+{
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+    private static final String PNG = ".png";
+    private static final String NINE_PATCH = ".9" + PNG;
+    private static final int BUFFER_SIZE = 8192;
+
+    private final File cacheDirectory;
+    private final File mirrorDirectory;
+    private final String aaptPath;
+    private final Log log;
+
+    /**
+     * @param cacheDirectory  folder of the crunched PNG files, which may be shared.
+     * @param mirrorDirectory folder of the mirrored resource folders, which should be specific to the project.
+     * @param aaptPath        path of the aapt executable.
+     * @param log             log of the mojo.
+     */
+    public PngCrunchCache( File cacheDirectory, File mirrorDirectory, String aaptPath, Log log )
+    {
+        this.cacheDirectory = cacheDirectory;
+        this.mirrorDirectory = mirrorDirectory;
+        this.aaptPath = aaptPath;
+        this.log = log;
+    }
+
+    /**
+     * Mirrors resource folders with their PNG files crunched.
+     *
+     * @param resourceDirectories resource folders.
+     * @return the mirror of each resource folder, in the same order. Folders that do not exist are returned as is.
+     * @throws MojoExecutionException if a PNG file could not be crunched or a file could not be mirrored.
+     */
+    public List<File> crunch( List<File> resourceDirectories ) throws MojoExecutionException
+    {
+        return mirror( resourceDirectories, true );
+    }
+
+    /**
+     * Mirrors resource folders with their 9-patch images crunched, and their plain PNG files as they are.
+     * <p>
+     * aapt does not compile 9-patch images when PNG crunching is disabled, so packaging uncrunched PNG files still
+     * needs them compiled ahead.
+     *
+     * @param resourceDirectories resource folders.
+     * @return the mirror of each resource folder, in the same order. Folders that do not exist are returned as is.
+     * @throws MojoExecutionException if a 9-patch image could not be crunched or a file could not be mirrored.
+     */
+    public List<File> crunchNinePatches( List<File> resourceDirectories ) throws MojoExecutionException
+    {
+        return mirror( resourceDirectories, false );
+    }
+
+    private List<File> mirror( List<File> resourceDirectories, boolean crunchPlainPngFiles )
+            throws MojoExecutionException
+    {
+        final String aaptKey = getAaptKey();
+        final CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
+        executor.setLogger( log );
+
+        final List<File> mirrors = new ArrayList<File>();
+        final List<ListenableFuture<CommandResult>> crunches = new ArrayList<ListenableFuture<CommandResult>>();
+        // Mirrored file to crunched file, copied once all the crunches ended.
+        final Map<File, File> crunchedFiles = new LinkedHashMap<File, File>();
+        final Map<File, File> originals = new LinkedHashMap<File, File>();
+        // Temporary file to crunched file, moved to the cache once all the crunches ended.
+        final Map<File, File> temporaryFiles = new LinkedHashMap<File, File>();
+        final Set<File> pendingFiles = new HashSet<File>();
+        try
+        {
+            for ( File resourceDirectory : resourceDirectories )
+            {
+                if ( resourceDirectory == null || !resourceDirectory.isDirectory() )
+                {
+                    mirrors.add( resourceDirectory );
+                    continue;
+                }
+                final File mirror = new File( mirrorDirectory, resourceDirectory.getName() + "-"
+                        + Integer.toHexString( resourceDirectory.getAbsolutePath().hashCode() ) );
+                mirrors.add( mirror );
+
+                final Set<File> mirroredFiles = new HashSet<File>();
+                for ( File typeDirectory : listFiles( resourceDirectory ) )
+                {
+                    if ( !typeDirectory.isDirectory() || CompiledResourceCache.isIgnored( typeDirectory.getName() ) )
+                    {
+                        continue;
+                    }
+                    for ( File file : listFiles( typeDirectory ) )
+                    {
+                        if ( !file.isFile() || CompiledResourceCache.isIgnored( file.getName() ) )
+                        {
+                            continue;
+                        }
+                        final File mirroredFile = new File( mirror,
+                                typeDirectory.getName() + File.separator + file.getName() );
+                        mirroredFiles.add( mirroredFile );
+                        if ( !isCrunched( file.getName(), crunchPlainPngFiles ) )
+                        {
+                            if ( !isUpToDate( file, mirroredFile, true ) )
+                            {
+                                FileUtils.copyFile( file, mirroredFile );
+                            }
+                        }
+                        else if ( !isUpToDate( file, mirroredFile, false ) )
+                        {
+                            final File crunchedFile = getCrunchedFile( file, aaptKey );
+                            if ( !crunchedFile.isFile() && pendingFiles.add( crunchedFile ) )
+                            {
+                                final File temporaryFile = createTemporaryFile( crunchedFile );
+                                temporaryFiles.put( temporaryFile, crunchedFile );
+                                crunches.add( crunch( executor, file, temporaryFile ) );
+                            }
+                            crunchedFiles.put( mirroredFile, crunchedFile );
+                            originals.put( mirroredFile, file );
+                        }
+                    }
+                }
+                removeDeletedFiles( mirror, mirroredFiles );
+            }
+
+            if ( !crunches.isEmpty() )
+            {
+                log.info( "Crunching " + crunches.size() + " PNG files" );
+                awaitCrunches( Futures.allAsList( crunches ) );
+                for ( Map.Entry<File, File> entry : temporaryFiles.entrySet() )
+                {
+                    moveToCache( entry.getKey(), entry.getValue() );
+                }
+            }
+            for ( Map.Entry<File, File> entry : crunchedFiles.entrySet() )
+            {
+                final File mirroredFile = entry.getKey();
+                FileUtils.copyFile( entry.getValue(), mirroredFile, false );
+                // The modification time of the original tells whether the mirrored file is up to date.
+                mirroredFile.setLastModified( originals.get( mirroredFile ).lastModified() );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Could not mirror the resource folders in " + mirrorDirectory, e );
+        }
+        finally
+        {
+            for ( File temporaryFile : temporaryFiles.keySet() )
+            {
+                FileUtils.deleteQuietly( temporaryFile );
+            }
+        }
+        return mirrors;
+    }
+
+    private static boolean isCrunched( String fileName, boolean crunchPlainPngFiles )
+    {
+        return fileName.endsWith( NINE_PATCH ) || crunchPlainPngFiles && fileName.endsWith( PNG );
+    }
+
+    /**
+     * @return a temporary file to crunch a PNG file in, so that a concurrent build never reads a partial file.
+     */
+    private static File createTemporaryFile( File crunchedFile ) throws IOException
+    {
+        crunchedFile.getParentFile().mkdirs();
+        return File.createTempFile( crunchedFile.getName(), ".tmp", crunchedFile.getParentFile() );
+    }
+
+    private ListenableFuture<CommandResult> crunch( CommandExecutor executor, File file, File temporaryFile )
+    {
+        final List<String> commands = AaptCommandBuilder
+                .crunchSingle( log )
+                .setInputFile( file )
+                .setOutputFile( temporaryFile )
+                .build();
+        return executor.executeAsync( CommandSpec.builder( aaptPath )
+                .addArguments( commands )
+                .build() );
+    }
+
+    private static void moveToCache( File temporaryFile, File crunchedFile ) throws IOException
+    {
+        if ( temporaryFile.length() == 0 )
+        {
+            throw new IOException( "aapt did not crunch " + crunchedFile );
+        }
+        try
+        {
+            Files.move( temporaryFile.toPath(), crunchedFile.toPath(), StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch ( IOException e )
+        {
+            if ( !crunchedFile.isFile() )
+            {
+                throw e;
+            }
+            // Another build cached the same file first.
+        }
+    }
+
+    private void awaitCrunches( ListenableFuture<List<CommandResult>> crunches ) throws MojoExecutionException
+    {
+        try
+        {
+            crunches.get();
+        }
+        catch ( InterruptedException e )
+        {
+            crunches.cancel( true );
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while crunching PNG files", e );
+        }
+        catch ( ExecutionException e )
+        {
+            crunches.cancel( true );
+            throw new MojoExecutionException( "Could not crunch PNG files in " + mirrorDirectory, e.getCause() );
+        }
+    }
+
+    /**
+     * @return the file of the cache holding the crunched content of a PNG file.
+     */
+    private File getCrunchedFile( File file, String aaptKey ) throws IOException
+    {
+        final MessageDigest digest = newDigest();
+        digest.update( aaptKey.getBytes( UTF_8 ) );
+        // 9-patch images are crunched differently from the same content in a plain PNG file.
+        digest.update( file.getName().endsWith( NINE_PATCH ) ? ( byte ) 1 : ( byte ) 0 );
+        final byte[] buffer = new byte[ BUFFER_SIZE ];
+        try ( InputStream in = new FileInputStream( file ) )
+        {
+            int read;
+            while ( ( read = in.read( buffer ) ) != -1 )
+            {
+                digest.update( buffer, 0, read );
+            }
+        }
+        final String key = toHex( digest.digest() );
+        return new File( cacheDirectory, key.substring( 0, 2 ) + File.separator + key + PNG );
+    }
+
+    /**
+     * @return a key of the aapt executable, so that the cache does not serve files crunched by another version.
+     */
+    private String getAaptKey()
+    {
+        final File aapt = new File( aaptPath );
+        return aapt.getAbsolutePath() + ":" + aapt.length() + ":" + aapt.lastModified();
+    }
+
+    private static boolean isUpToDate( File file, File mirroredFile, boolean sameLength )
+    {
+        return mirroredFile.isFile() && mirroredFile.lastModified() == file.lastModified()
+                && ( !sameLength || mirroredFile.length() == file.length() );
+    }
+
+    /**
+     * Removes the mirrored files of the resource files deleted since the previous build.
+     */
+    private static void removeDeletedFiles( File mirror, Set<File> mirroredFiles )
+    {
+        for ( File typeDirectory : listFiles( mirror ) )
+        {
+            for ( File mirroredFile : listFiles( typeDirectory ) )
+            {
+                if ( !mirroredFiles.contains( mirroredFile ) )
+                {
+                    FileUtils.deleteQuietly( mirroredFile );
+                }
+            }
+        }
+    }
+
+    private static List<File> listFiles( File directory )
+    {
+        final File[] files = directory.listFiles();
+        return files == null ? new ArrayList<File>() : Arrays.asList( files );
+    }
+
+    private static String toHex( byte[] bytes )
+    {
+        final StringBuilder hex = new StringBuilder();
+        for ( byte b : bytes )
+        {
+            hex.append( String.format( "%02x", b ) );
+        }
+        return hex.toString();
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-1 is not available", e );
+        }
+    }
+}
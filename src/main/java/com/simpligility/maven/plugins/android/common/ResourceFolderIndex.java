@@ -0,0 +1,205 @@
+package com.simpligility.maven.plugins.android.common;
+
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.util.AbstractScanner;
+import org.codehaus.plexus.util.SelectorUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Listing of the files contained in a set of Android resource folders.
+ * <p>
+ * Android resource folders are one level deep (eg <code>res/layout-land/main.xml</code>), so each folder is listed
+ * once, in parallel with the other folders, and the listing is then shared by all the resource checks of a mojo
+ * instead of each check scanning the folders again. Files matching the default excludes of
+ * {@link org.codehaus.plexus.util.DirectoryScanner} are ignored.
+ */
+public final class ResourceFolderIndex
+{
+    private final Set<File> candidates;
+    private final Map<File, Map<String, List<String>>> folders;
+
+    private ResourceFolderIndex( Set<File> candidates, Map<File, Map<String, List<String>>> folders )
+    {
+        this.candidates = candidates;
+        this.folders = folders;
+    }
+
+    /**
+     * @param resourceFolder Resource folder to check.
+     * @return true if the folder existed when it was indexed. Folders that were not supplied to
+     *         {@link #scan(Collection, Logger)} are checked on disk.
+     */
+    public boolean exists( File resourceFolder )
+    {
+        final File folder = resourceFolder.getAbsoluteFile();
+        if ( candidates.contains( folder ) )
+        {
+            return folders.containsKey( folder );
+        }
+        return folder.exists();
+    }
+
+    /**
+     * Returns the files of a resource type, eg <code>getFileNames( res, "layout", ".xml" )</code> returns the same
+     * files as a {@link FileRetriever} for <code>"layout*&#47;*.xml"</code>.
+     *
+     * @param resourceFolder Indexed resource folder.
+     * @param folderPrefix   Prefix of the resource type folders, eg <code>layout</code>.
+     * @param extension      Extension of the files, eg <code>.xml</code>.
+     * @return the paths of the matching files relative to the resource folder, with '/' separators.
+     */
+    public List<String> getFileNames( File resourceFolder, String folderPrefix, String extension )
+    {
+        final Map<String, List<String>> typeFolders = folders.get( resourceFolder.getAbsoluteFile() );
+        if ( typeFolders == null )
+        {
+            return Collections.emptyList();
+        }
+
+        final List<String> fileNames = new ArrayList<String>();
+        for ( final Map.Entry<String, List<String>> typeFolder : typeFolders.entrySet() )
+        {
+            if ( typeFolder.getKey().startsWith( folderPrefix ) )
+            {
+                for ( final String fileName : typeFolder.getValue() )
+                {
+                    if ( fileName.endsWith( extension ) )
+                    {
+                        fileNames.add( typeFolder.getKey() + "/" + fileName );
+                    }
+                }
+            }
+        }
+        return fileNames;
+    }
+
+    /**
+     * Lists the supplied resource folders in parallel. Folders that do not exist are skipped.
+     *
+     * @param resourceFolders Resource folders to index.
+     * @param log             Logger for unreadable folders.
+     * @return the index of the resource folders.
+     */
+    public static ResourceFolderIndex scan( Collection<File> resourceFolders, final Logger log )
+    {
+        final Set<File> candidates = new HashSet<File>();
+        final Set<File> existing = new LinkedHashSet<File>();
+        for ( final File folder : resourceFolders )
+        {
+            candidates.add( folder.getAbsoluteFile() );
+            if ( folder.isDirectory() )
+            {
+                existing.add( folder.getAbsoluteFile() );
+            }
+        }
+
+        final Map<File, Map<String, List<String>>> folders = new HashMap<File, Map<String, List<String>>>();
+        if ( existing.isEmpty() )
+        {
+            return new ResourceFolderIndex( candidates, folders );
+        }
+
+        final int threads = Math.min( existing.size(), Runtime.getRuntime().availableProcessors() );
+        final ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            final Map<File, Future<Map<String, List<String>>>> futures =
+                    new HashMap<File, Future<Map<String, List<String>>>>();
+            for ( final File folder : existing )
+            {
+                futures.put( folder, executor.submit( new Callable<Map<String, List<String>>>()
+                {
+                    @Override
+                    public Map<String, List<String>> call()
+                    {
+                        return listFolder( folder, log );
+                    }
+                } ) );
+            }
+            for ( final Map.Entry<File, Future<Map<String, List<String>>>> entry : futures.entrySet() )
+            {
+                folders.put( entry.getKey(), entry.getValue().get() );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted while indexing resource folders", e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new IllegalStateException( "Could not index resource folders", e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        return new ResourceFolderIndex( candidates, folders );
+    }
+
+    private static Map<String, List<String>> listFolder( File resourceFolder, Logger log )
+    {
+        final Map<String, List<String>> typeFolders = new TreeMap<String, List<String>>();
+        final File[] children = resourceFolder.listFiles();
+        if ( children == null )
+        {
+            log.debug( "Could not list resource folder : " + resourceFolder );
+            return typeFolders;
+        }
+
+        for ( final File child : children )
+        {
+            if ( !child.isDirectory() || isExcluded( child.getName() ) )
+            {
+                continue;
+            }
+            final String[] names = child.list();
+            if ( names == null )
+            {
+                log.debug( "Could not list resource folder : " + child );
+                continue;
+            }
+            Arrays.sort( names );
+            final List<String> fileNames = new ArrayList<String>( names.length );
+            for ( final String name : names )
+            {
+                if ( !isExcluded( child.getName() + "/" + name ) && new File( child, name ).isFile() )
+                {
+                    fileNames.add( name );
+                }
+            }
+            typeFolders.put( child.getName(), fileNames );
+        }
+        return typeFolders;
+    }
+
+    private static boolean isExcluded( String path )
+    {
+        for ( final String exclude : AbstractScanner.DEFAULTEXCLUDES )
+        {
+            if ( SelectorUtils.matchPath( exclude, path ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,74 @@
+package com.simpligility.maven.plugins.android.common;
+
+import org.apache.maven.execution.MavenSession;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Holds one instance of a given type per Maven build, so that caches can be shared by all mojo executions
+ * (and all modules) of a build.
+ * <p>
+ * Instances are keyed by the {@link org.apache.maven.execution.MavenExecutionRequest} of the session because
+ * the session itself is cloned per module in parallel builds, whereas the request is shared. Instances are
+ * released once the request is garbage collected.
+ */
+public final class SessionScope
+{
+    private static final Map<Object, Map<Class<?>, Object>> SCOPES = new WeakHashMap<Object, Map<Class<?>, Object>>();
+
+    private SessionScope()
+    {
+    }
+
+    /**
+     * @param session   MavenSession to which the instance is scoped. May be <code>null</code> in which case
+     *                  a new (unshared) instance is returned.
+     * @param type      Type of the instance. Must have a public no-argument constructor.
+     * @param <T>       Type of the instance.
+     * @return the instance of <code>type</code> for the session, created on first access.
+     */
+    public static <T> T get( MavenSession session, Class<T> type )
+    {
+        final Object key = ( session == null ) ? null : session.getRequest();
+        if ( key == null )
+        {
+            return newInstance( type );
+        }
+
+        synchronized ( SCOPES )
+        {
+            Map<Class<?>, Object> scope = SCOPES.get( key );
+            if ( scope == null )
+            {
+                scope = new HashMap<Class<?>, Object>();
+                SCOPES.put( key, scope );
+            }
+
+            Object instance = scope.get( type );
+            if ( instance == null )
+            {
+                instance = newInstance( type );
+                scope.put( type, instance );
+            }
+            return type.cast( instance );
+        }
+    }
+
+    private static <T> T newInstance( Class<T> type )
+    {
+        try
+        {
+            return type.newInstance();
+        }
+        catch ( InstantiationException e )
+        {
+            throw new IllegalStateException( "Could not create session scoped " + type.getName(), e );
+        }
+        catch ( IllegalAccessException e )
+        {
+            throw new IllegalStateException( "Could not create session scoped " + type.getName(), e );
+        }
+    }
+}
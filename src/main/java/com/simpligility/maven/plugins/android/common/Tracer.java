@@ -0,0 +1,392 @@
+package com.simpligility.maven.plugins.android.common;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records timed spans of the build steps and writes them as a Chrome trace-event file, which can be opened with
+ * <code>chrome://tracing</code> or <a href="https://ui.perfetto.dev">Perfetto</a>.
+ * <p>
+ * Tracing is enabled by setting the system property {@value #TRACE_FILE_PROPERTY} to the file to write, eg
+ * <code>mvn install -Dandroid.trace.file=target/trace.json</code>. When it is not set, {@link #start} returns a
+ * shared span that does nothing. The spans are appended to the file each time the outermost span of a thread ends,
+ * so it is complete after every mojo whatever way the build ends, without writing the earlier spans again.
+ * <p>
+ * Independently of the trace file, spans are also emitted as Java Flight Recorder events while a recording is
+ * running, see {@link FlightRecorderEvents}.
+ * <pre>
+ * final Tracer.Span span = Tracer.get().start( "dex", "merge" );
+ * try
+ * {
+ *     ...
+ *     span.attribute( "files", files.size() );
+ * }
+ * finally
+ * {
+ *     span.end();
+ * }
+ * </pre>
+ */
+public final class Tracer
+{
+    /**
+     * System property holding the path of the trace file to write.
+     */
+    public static final String TRACE_FILE_PROPERTY = "android.trace.file";
+
+    private static final Tracer INSTANCE = new Tracer( traceFileFromSystemProperties() );
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+    private static final String HEADER = "{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n";
+    private static final String FOOTER = "\n]}\n";
+    private static final Log DEFAULT_LOG = new SystemStreamLog();
+
+    private final File traceFile;
+    private final FlightRecorderEvents flightRecorderEvents;
+    private final long originNanos = System.nanoTime();
+    private final List<String> pendingEvents = new ArrayList<String>();
+    private final Set<Long> threadNames = new HashSet<Long>();
+    private long headerEnd;
+    private long eventsEnd;
+    private boolean writeFailed;
+    private final ThreadLocal<int[]> depth = new ThreadLocal<int[]>()
+    {
+        @Override
+        protected int[] initialValue()
+        {
+            return new int[ 1 ];
+        }
+    };
+
+    /**
+     * @param traceFile File to write the trace to, or null to disable tracing.
+     */
+    Tracer( File traceFile )
+    {
+        this( traceFile, FlightRecorderEvents.get() );
+    }
+
+    Tracer( File traceFile, FlightRecorderEvents flightRecorderEvents )
+    {
+        this.traceFile = traceFile;
+        this.flightRecorderEvents = flightRecorderEvents;
+    }
+
+    /**
+     * @return the tracer of the build, enabled if the {@value #TRACE_FILE_PROPERTY} system property is set.
+     */
+    public static Tracer get()
+    {
+        return INSTANCE;
+    }
+
+    private static File traceFileFromSystemProperties()
+    {
+        final String path = System.getProperty( TRACE_FILE_PROPERTY );
+        return ( path == null || path.trim().isEmpty() ) ? null : new File( path.trim() ).getAbsoluteFile();
+    }
+
+    /**
+     * @return true if spans are written to a trace file.
+     */
+    public boolean isEnabled()
+    {
+        return traceFile != null;
+    }
+
+    /**
+     * Starts a span on the current thread. The span must be ended on the same thread, typically in a finally block.
+     *
+     * @param category Category of the span, eg the mojo or component performing the step.
+     * @param name     Name of the step.
+     * @return the started span.
+     */
+    public Span start( String category, String name )
+    {
+        return start( category, name, null );
+    }
+
+    /**
+     * Starts a span on the current thread, like {@link #start(String, String)}, reporting the failure to write the
+     * trace file when it ends to the given log. Each mojo passes its own as they may run concurrently.
+     *
+     * @param category Category of the span, eg the mojo or component performing the step.
+     * @param name     Name of the step.
+     * @param log      Log of the running mojo, or null for the standard output.
+     * @return the started span.
+     */
+    public Span start( String category, String name, Log log )
+    {
+        final Object flightRecorderEvent = flightRecorderEvents == null ? null : flightRecorderEvents.begin();
+        if ( traceFile == null && flightRecorderEvent == null )
+        {
+            return Span.DISABLED;
+        }
+        if ( traceFile != null )
+        {
+            depth.get()[ 0 ]++;
+        }
+        return new Span( this, category, name, System.nanoTime(), flightRecorderEvent, log );
+    }
+
+    private void end( Span span, long endNanos )
+    {
+        if ( span.flightRecorderEvent != null )
+        {
+            flightRecorderEvents.commit( span.flightRecorderEvent, span.category, span.name,
+                    formatAttributes( span.attributes ) );
+        }
+        if ( traceFile != null )
+        {
+            record( span, endNanos );
+        }
+    }
+
+    private static String formatAttributes( Map<String, Object> attributes )
+    {
+        if ( attributes == null )
+        {
+            return null;
+        }
+        final StringBuilder formatted = new StringBuilder();
+        for ( final Map.Entry<String, Object> attribute : attributes.entrySet() )
+        {
+            if ( formatted.length() > 0 )
+            {
+                formatted.append( ", " );
+            }
+            formatted.append( attribute.getKey() ).append( '=' ).append( attribute.getValue() );
+        }
+        return formatted.toString();
+    }
+
+    private void record( Span span, long endNanos )
+    {
+        final Thread thread = Thread.currentThread();
+        final StringBuilder event = new StringBuilder();
+        event.append( "{\"name\":" );
+        appendString( event, span.name );
+        event.append( ",\"cat\":" );
+        appendString( event, span.category );
+        event.append( ",\"ph\":\"X\",\"pid\":1,\"tid\":" ).append( thread.getId() );
+        event.append( ",\"ts\":" ).append( toMicros( span.startNanos - originNanos ) );
+        event.append( ",\"dur\":" ).append( toMicros( endNanos - span.startNanos ) );
+        if ( span.attributes != null )
+        {
+            event.append( ",\"args\":{" );
+            boolean first = true;
+            for ( final Map.Entry<String, Object> attribute : span.attributes.entrySet() )
+            {
+                if ( !first )
+                {
+                    event.append( ',' );
+                }
+                first = false;
+                appendString( event, attribute.getKey() );
+                event.append( ':' );
+                appendValue( event, attribute.getValue() );
+            }
+            event.append( '}' );
+        }
+        event.append( '}' );
+
+        final boolean outermost = --depth.get()[ 0 ] == 0;
+        synchronized ( this )
+        {
+            if ( threadNames.add( thread.getId() ) )
+            {
+                final StringBuilder threadName = new StringBuilder( "{\"name\":\"thread_name\",\"ph\":\"M\"" );
+                threadName.append( ",\"pid\":1,\"tid\":" ).append( thread.getId() ).append( ",\"args\":{\"name\":" );
+                appendString( threadName, thread.getName() );
+                threadName.append( "}}" );
+                pendingEvents.add( threadName.toString() );
+            }
+            pendingEvents.add( event.toString() );
+            if ( outermost )
+            {
+                write( span.log != null ? span.log : DEFAULT_LOG );
+            }
+        }
+    }
+
+    /**
+     * Appends the spans recorded since the previous write to the trace file, over the end of the JSON document,
+     * which is written again after them. The first write replaces the file of a previous build.
+     *
+     * @param log Log to report the failure to write the file to.
+     */
+    private void write( Log log )
+    {
+        if ( writeFailed )
+        {
+            pendingEvents.clear();
+            return;
+        }
+        try ( RandomAccessFile file = openTraceFile() )
+        {
+            final StringBuilder events = new StringBuilder();
+            for ( final String event : pendingEvents )
+            {
+                if ( eventsEnd > headerEnd || events.length() > 0 )
+                {
+                    events.append( ",\n" );
+                }
+                events.append( event );
+            }
+            file.seek( eventsEnd );
+            file.write( events.toString().getBytes( UTF_8 ) );
+            eventsEnd = file.getFilePointer();
+            file.write( FOOTER.getBytes( UTF_8 ) );
+            file.setLength( file.getFilePointer() );
+            pendingEvents.clear();
+        }
+        catch ( IOException e )
+        {
+            // Tracing must never break the build.
+            writeFailed = true;
+            log.warn( "Could not write trace file " + traceFile, e );
+        }
+    }
+
+    private RandomAccessFile openTraceFile() throws IOException
+    {
+        final File parent = traceFile.getParentFile();
+        if ( headerEnd == 0 && parent != null )
+        {
+            parent.mkdirs();
+        }
+        final RandomAccessFile file = new RandomAccessFile( traceFile, "rw" );
+        if ( headerEnd == 0 )
+        {
+            file.setLength( 0 );
+            file.write( HEADER.getBytes( UTF_8 ) );
+            headerEnd = file.getFilePointer();
+            eventsEnd = headerEnd;
+        }
+        return file;
+    }
+
+    private static long toMicros( long nanos )
+    {
+        return TimeUnit.NANOSECONDS.toMicros( nanos );
+    }
+
+    private static void appendValue( StringBuilder out, Object value )
+    {
+        if ( value instanceof Number || value instanceof Boolean )
+        {
+            out.append( value );
+        }
+        else
+        {
+            appendString( out, String.valueOf( value ) );
+        }
+    }
+
+    private static void appendString( StringBuilder out, String value )
+    {
+        out.append( '"' );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            final char c = value.charAt( i );
+            switch ( c )
+            {
+                case '"':
+                    out.append( "\\\"" );
+                    break;
+                case '\\':
+                    out.append( "\\\\" );
+                    break;
+                case '\n':
+                    out.append( "\\n" );
+                    break;
+                case '\r':
+                    out.append( "\\r" );
+                    break;
+                case '\t':
+                    out.append( "\\t" );
+                    break;
+                default:
+                    if ( c < ' ' )
+                    {
+                        out.append( String.format( "\\u%04x", ( int ) c ) );
+                    }
+                    else
+                    {
+                        out.append( c );
+                    }
+            }
+        }
+        out.append( '"' );
+    }
+
+    /**
+     * A timed step of the build, with optional attributes such as file counts, bytes written or cache hits.
+     */
+    public static final class Span
+    {
+        private static final Span DISABLED = new Span( null, null, null, 0, null, null );
+
+        private final Tracer tracer;
+        private final String category;
+        private final String name;
+        private final long startNanos;
+        private final Object flightRecorderEvent;
+        private final Log log;
+        private Map<String, Object> attributes;
+        private boolean ended;
+
+        private Span( Tracer tracer, String category, String name, long startNanos, Object flightRecorderEvent,
+                Log log )
+        {
+            this.tracer = tracer;
+            this.category = category;
+            this.name = name;
+            this.startNanos = startNanos;
+            this.flightRecorderEvent = flightRecorderEvent;
+            this.log = log;
+        }
+
+        /**
+         * Adds an attribute to the span. Numbers and booleans are written as JSON values, anything else as a string.
+         *
+         * @return this span.
+         */
+        public Span attribute( String key, Object value )
+        {
+            if ( tracer != null )
+            {
+                if ( attributes == null )
+                {
+                    attributes = new LinkedHashMap<String, Object>();
+                }
+                attributes.put( key, value );
+            }
+            return this;
+        }
+
+        /**
+         * Ends the span. Ending a span more than once has no effect.
+         */
+        public void end()
+        {
+            if ( tracer != null && !ended )
+            {
+                ended = true;
+                tracer.end( this, System.nanoTime() );
+            }
+        }
+    }
+}
@@ -86,6 +86,8 @@ public final class UnpackedLibHelper
         apklibDirectory.mkdirs();
         unArchiver.setDestDirectory( apklibDirectory );
         log.debug( "Extracting APKLIB to " + apklibDirectory );
+        final Tracer.Span span = Tracer.get().start( "UnpackedLibHelper", "extractApklib" )
+                .attribute( "artifact", apklibArtifact.getId() );
         try
         {
             unArchiver.extract();
@@ -95,6 +97,10 @@ public final class UnpackedLibHelper
             throw new MojoExecutionException( "ArchiverException while extracting " + apklibDirectory
                     + ". Message: " + e.getLocalizedMessage(), e );
         }
+        finally
+        {
+            span.end();
+        }
     }
 
     public void extractAarLib( Artifact aarArtifact ) throws MojoExecutionException
@@ -120,6 +126,8 @@ public final class UnpackedLibHelper
         aarDirectory.mkdirs();
         unArchiver.setDestDirectory( aarDirectory );
         log.debug( "Extracting AAR to " + aarDirectory );
+        final Tracer.Span span = Tracer.get().start( "UnpackedLibHelper", "extractAarLib" )
+                .attribute( "artifact", aarArtifact.getId() );
         try
         {
             unArchiver.extract();
@@ -129,6 +137,10 @@ public final class UnpackedLibHelper
             throw new MojoExecutionException( "ArchiverException while extracting " + aarDirectory.getAbsolutePath()
                     + ". Message: " + e.getLocalizedMessage(), e );
         }
+        finally
+        {
+            span.end();
+        }
 
         // Move native libraries from libs to jni folder for legacy AARs.
         // This ensures backward compatibility with older AARs where libs are in "libs" folder.
@@ -1,21 +1,31 @@
-
 package com.simpligility.maven.plugins.android.config;
 
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.PluginParameterExpressionEvaluator;
 
-import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * ConfigHandler is able to parse the configuration of a Mojo based on the Maven injected parameters as well as a config
  * pojo and annontations for default values on properties named parsed*. See the ProguardMojo for a working
  * implementation.
- * 
+ * <p>
+ * The annotated fields, their accessors and the literal default values are looked up once per class and shared by
+ * all handlers, so that parsing the configuration stays cheap for mojos executed in every module of a build.
+ *
  * @author Adrian Stabiszewski https://github.com/grundid/
  * @author Manfred Moser - manfred@simpligility.com
  * @see ConfigPojo
@@ -23,11 +33,27 @@ import java.util.Collection;
  */
 public class ConfigHandler
 {
+    private static final ClassValue< MojoMetadata > MOJO_METADATA = new ClassValue< MojoMetadata >()
+    {
+        @Override
+        protected MojoMetadata computeValue( Class< ? > type )
+        {
+            return new MojoMetadata( type );
+        }
+    };
+
+    private static final ClassValue< FieldTable > FIELD_TABLES = new ClassValue< FieldTable >()
+    {
+        @Override
+        protected FieldTable computeValue( Class< ? > type )
+        {
+            return new FieldTable( type );
+        }
+    };
 
     private Object mojo;
+    private MojoMetadata metadata;
     private Object configPojoInstance;
-    private String configPojoName;
-    private String configPojoPrefix;
     private PluginParameterExpressionEvaluator evaluator;
 
     public ConfigHandler( Object mojo, MavenSession session, MojoExecution execution )
@@ -44,44 +70,24 @@ public class ConfigHandler
         }
 
         this.evaluator = new PluginParameterExpressionEvaluator( session, execution );
+        this.metadata = MOJO_METADATA.get( mojo.getClass() );
 
         initConfigPojo();
     }
 
-    private Collection< Field > findPropertiesByAnnotation( Class< ? extends Annotation > annotation )
-    {
-        Collection< Field > result = new ArrayList< Field >();
-        for ( Class< ? extends Object > cls = mojo.getClass(); cls != Object.class; cls = cls.getSuperclass() )
-        {
-            for ( Field field : cls.getDeclaredFields() )
-            {
-                if ( field.isAnnotationPresent( annotation ) )
-                {
-                    field.setAccessible( true );
-                    result.add( field );
-                }
-            }
-        }
-
-        return result;
-    }
-
     public void parseConfiguration()
     {
-        Collection< Field > parsedFields = findPropertiesByAnnotation( PullParameter.class );
-
-        for ( Field field : parsedFields )
+        for ( Parameter parameter : metadata.parameters )
         {
             Object value = null;
-            String fieldBaseName = getFieldNameWithoutParsedPrefix( field );
             // first take the setting from the config pojo (e.g. nested config in plugin configuration)
             if ( configPojoInstance != null )
             {
-                value = getValueFromPojo( fieldBaseName );
+                value = getValueFromObject( configPojoInstance, parameter.baseName );
             }
             // then override with value from properties supplied in pom, settings or command line
             // unless it is null or an empty array
-            Object propertyValue = getValueFromMojo( fieldBaseName );
+            Object propertyValue = getValueFromObject( mojo, parameter.mojoPropertyName );
             if ( propertyValue == null || propertyValue instanceof Object[]//
                 && ( (Object[]) propertyValue ).length == 0 )
             {
@@ -94,12 +100,12 @@ public class ConfigHandler
             // and only if we still have no value, get the default as declared in the annotation
             if ( value == null )
             {
-                value = getValueFromAnnotation( field );
+                value = getValueFromAnnotation( parameter );
             }
 
             try
             {
-                field.set( mojo, value );
+                parameter.accessor.set( mojo, value );
             }
             catch ( Exception e )
             {
@@ -108,21 +114,27 @@ public class ConfigHandler
         }
     }
 
-    private Object getValueFromAnnotation( Field field )
+    private Object getValueFromAnnotation( Parameter parameter )
     {
-        PullParameter annotation = field.getAnnotation( PullParameter.class );
+        PullParameter annotation = parameter.annotation;
         String[] defaultValue = annotation.defaultValue();
         boolean required = annotation.required();
-        String currentParameterName = "android." + configPojoName + "." + getFieldNameWithoutParsedPrefix( field );
+        String currentParameterName = parameter.parameterName;
 
         if ( defaultValue.length > 0 )
         {
             if ( defaultValue.length > 1 )
             {
-                throw new RuntimeException( String.format( "Too many default values for field %s", field.getName() ) );
+                throw new RuntimeException( String.format( "Too many default values for field %s",
+                        parameter.field.getName() ) );
+            }
+
+            if ( parameter.hasLiteralDefault )
+            {
+                return parameter.literalDefault;
             }
 
-            final Class< ? > fieldType = field.getType();
+            final Class< ? > fieldType = parameter.field.getType();
 
             try
             {
@@ -158,10 +170,7 @@ public class ConfigHandler
 
                 try
                 {
-                    Method method = mojo.getClass().getDeclaredMethod( annotation.defaultValueGetterMethod() );
-                    // even access it if the method is private
-                    method.setAccessible( true );
-                    return method.invoke( mojo );
+                    return parameter.invokeDefaultValueGetter( mojo );
                 }
                 catch ( Exception e )
                 {
@@ -181,7 +190,7 @@ public class ConfigHandler
         }
     }
 
-    private Object convertTo( Class< ? > javaType, Object defValue )
+    private static Object convertTo( Class< ? > javaType, Object defValue )
     throws Exception
     {
         // try valueOf
@@ -195,22 +204,12 @@ public class ConfigHandler
         }
     }
 
-    private Object getValueFromMojo( String fieldBaseName )
-    {
-        return getValueFromObject( mojo, configPojoName + toFirstLetterUppercase( fieldBaseName ) );
-    }
-
-    private Object getValueFromPojo( String fieldBaseName )
-    {
-        return getValueFromObject( configPojoInstance, fieldBaseName );
-    }
-
     private Object getValueFromObject( Object object, String fieldBaseName )
     {
         Object value = null;
         try
         {
-            Field pojoField = findFieldByName( object, fieldBaseName );
+            FieldAccessor pojoField = FIELD_TABLES.get( object.getClass() ).get( fieldBaseName );
             if ( pojoField != null )
             {
                 value = pojoField.get( object );
@@ -223,22 +222,9 @@ public class ConfigHandler
         return value;
     }
 
-    private Field findFieldByName( Object object, String name )
-    {
-        for ( Field field : object.getClass().getDeclaredFields() )
-        {
-            if ( field.getName().equals( name ) )
-            {
-                field.setAccessible( true );
-                return field;
-            }
-        }
-        return null;
-    }
-
-    private String getFieldNameWithoutPrefix( Field field, String prefix )
+    private static String getFieldNameWithoutPrefix( Field field, String prefix )
     {
-        if ( field.getName().startsWith( prefix ) )
+        if ( prefix != null && field.getName().startsWith( prefix ) )
         {
             String fieldName = field.getName().substring( prefix.length() );
             return fieldName.substring( 0, 1 ).toLowerCase() + fieldName.substring( 1 );
@@ -249,28 +235,285 @@ public class ConfigHandler
         }
     }
 
-    private String toFirstLetterUppercase( String s )
+    private static String toFirstLetterUppercase( String s )
     {
         return s.substring( 0, 1 ).toUpperCase() + s.substring( 1 );
     }
 
-    private String getFieldNameWithoutParsedPrefix( Field field )
-    {
-        return getFieldNameWithoutPrefix( field, configPojoPrefix );
-    }
-
     private void initConfigPojo()
     {
+        if ( metadata.configPojo == null )
+        {
+            // we can live without a config pojo
+            return;
+        }
         try
         {
-            Field configPojo = findPropertiesByAnnotation( ConfigPojo.class ).iterator().next();
-            configPojoName = configPojo.getName();
-            configPojoInstance = configPojo.get( mojo );
-            configPojoPrefix = configPojo.getAnnotation( ConfigPojo.class ).prefix();
+            configPojoInstance = metadata.configPojo.get( mojo );
         }
         catch ( Exception e )
         {
             // ignore, we can live without a config pojo
         }
     }
+
+    /**
+     * The config pojo and the parameters pulled into a mojo class, in the order of the class hierarchy starting with
+     * the mojo class itself.
+     */
+    private static final class MojoMetadata
+    {
+        private final FieldAccessor configPojo;
+        private final List< Parameter > parameters;
+
+        MojoMetadata( Class< ? > mojoClass )
+        {
+            Field configPojoField = null;
+            final List< Field > pulledFields = new ArrayList< Field >();
+            for ( Class< ? > cls = mojoClass; cls != Object.class; cls = cls.getSuperclass() )
+            {
+                for ( Field field : cls.getDeclaredFields() )
+                {
+                    if ( configPojoField == null && field.isAnnotationPresent( ConfigPojo.class ) )
+                    {
+                        configPojoField = field;
+                    }
+                    if ( field.isAnnotationPresent( PullParameter.class ) )
+                    {
+                        pulledFields.add( field );
+                    }
+                }
+            }
+
+            String configPojoName = null;
+            String configPojoPrefix = null;
+            if ( configPojoField != null )
+            {
+                configPojo = new FieldAccessor( configPojoField );
+                configPojoName = configPojoField.getName();
+                configPojoPrefix = configPojoField.getAnnotation( ConfigPojo.class ).prefix();
+            }
+            else
+            {
+                configPojo = null;
+            }
+
+            final List< Parameter > result = new ArrayList< Parameter >( pulledFields.size() );
+            for ( Field field : pulledFields )
+            {
+                result.add( new Parameter( mojoClass, field, configPojoName, configPojoPrefix ) );
+            }
+            parameters = Collections.unmodifiableList( result );
+        }
+    }
+
+    /**
+     * A field annotated with {@link PullParameter}.
+     */
+    private static final class Parameter
+    {
+        private final Field field;
+        private final FieldAccessor accessor;
+        private final PullParameter annotation;
+        private final String baseName;
+        private final String mojoPropertyName;
+        private final String parameterName;
+        private final Method defaultValueGetter;
+        private final MethodHandle defaultValueGetterHandle;
+        private final boolean hasLiteralDefault;
+        private final Object literalDefault;
+
+        Parameter( Class< ? > mojoClass, Field field, String configPojoName, String configPojoPrefix )
+        {
+            this.field = field;
+            this.accessor = new FieldAccessor( field );
+            this.annotation = field.getAnnotation( PullParameter.class );
+            this.baseName = getFieldNameWithoutPrefix( field, configPojoPrefix );
+            this.mojoPropertyName = configPojoName + toFirstLetterUppercase( baseName );
+            this.parameterName = "android." + configPojoName + "." + baseName;
+
+            Method getter = null;
+            MethodHandle getterHandle = null;
+            if ( !annotation.defaultValueGetterMethod().isEmpty() )
+            {
+                try
+                {
+                    getter = mojoClass.getDeclaredMethod( annotation.defaultValueGetterMethod() );
+                    // even access it if the method is private
+                    getter.setAccessible( true );
+                    getterHandle = MethodHandles.lookup().unreflect( getter );
+                }
+                catch ( ReflectiveOperationException | RuntimeException e )
+                {
+                    // reported on first use, as the method may not be needed
+                    getterHandle = null;
+                }
+            }
+            this.defaultValueGetter = getter;
+            this.defaultValueGetterHandle = getterHandle;
+
+            // Defaults without expressions are the same for every execution, so convert them once.
+            boolean literal = false;
+            Object value = null;
+            final String[] defaultValue = annotation.defaultValue();
+            if ( defaultValue.length == 1 && defaultValue[ 0 ].indexOf( '$' ) < 0 && isImmutable( field.getType() ) )
+            {
+                try
+                {
+                    value = field.getType().isInstance( defaultValue[ 0 ] )
+                            ? defaultValue[ 0 ]
+                            : convertTo( field.getType(), defaultValue[ 0 ] );
+                    literal = true;
+                }
+                catch ( Exception e )
+                {
+                    // converted, and reported, through the expression evaluator on use
+                    value = null;
+                }
+            }
+            this.hasLiteralDefault = literal;
+            this.literalDefault = value;
+        }
+
+        Object invokeDefaultValueGetter( Object mojo ) throws Exception
+        {
+            if ( defaultValueGetterHandle == null )
+            {
+                // reproduces the failure of the lookup
+                final Method method = defaultValueGetter != null
+                        ? defaultValueGetter
+                        : mojo.getClass().getDeclaredMethod( annotation.defaultValueGetterMethod() );
+                method.setAccessible( true );
+                return method.invoke( mojo );
+            }
+            try
+            {
+                return defaultValueGetterHandle.invoke( mojo );
+            }
+            catch ( Exception | Error e )
+            {
+                throw e;
+            }
+            catch ( Throwable e )
+            {
+                throw new IllegalStateException( e );
+            }
+        }
+
+        private static boolean isImmutable( Class< ? > type )
+        {
+            return type == String.class || type == Boolean.class || type == Character.class
+                    || Number.class.isAssignableFrom( type ) && type.getName().startsWith( "java.lang." )
+                    || type.isEnum();
+        }
+    }
+
+    /**
+     * The declared fields of a class by name. Accessors are created on first access.
+     */
+    private static final class FieldTable
+    {
+        private final Map< String, Field > fields = new HashMap< String, Field >();
+        private final ConcurrentMap< String, FieldAccessor > accessors =
+                new ConcurrentHashMap< String, FieldAccessor >();
+
+        FieldTable( Class< ? > type )
+        {
+            for ( Field field : type.getDeclaredFields() )
+            {
+                fields.put( field.getName(), field );
+            }
+        }
+
+        FieldAccessor get( String name )
+        {
+            FieldAccessor accessor = accessors.get( name );
+            if ( accessor == null )
+            {
+                final Field field = fields.get( name );
+                if ( field == null )
+                {
+                    return null;
+                }
+                accessor = new FieldAccessor( field );
+                final FieldAccessor existing = accessors.putIfAbsent( name, accessor );
+                if ( existing != null )
+                {
+                    accessor = existing;
+                }
+            }
+            return accessor;
+        }
+    }
+
+    /**
+     * Method handles reading and, unless the field is final, writing a field of any object.
+     */
+    private static final class FieldAccessor
+    {
+        private static final MethodType GETTER_TYPE = MethodType.methodType( Object.class, Object.class );
+        private static final MethodType SETTER_TYPE = MethodType.methodType( void.class, Object.class, Object.class );
+
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        FieldAccessor( Field field )
+        {
+            field.setAccessible( true );
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            final boolean isStatic = Modifier.isStatic( field.getModifiers() );
+            try
+            {
+                MethodHandle get = lookup.unreflectGetter( field );
+                MethodHandle set = Modifier.isFinal( field.getModifiers() ) ? null : lookup.unreflectSetter( field );
+                if ( isStatic )
+                {
+                    get = MethodHandles.dropArguments( get, 0, Object.class );
+                    set = set == null ? null : MethodHandles.dropArguments( set, 0, Object.class );
+                }
+                getter = get.asType( GETTER_TYPE );
+                setter = set == null ? null : set.asType( SETTER_TYPE );
+            }
+            catch ( IllegalAccessException e )
+            {
+                throw new IllegalStateException( "Could not access field " + field, e );
+            }
+        }
+
+        Object get( Object target ) throws Exception
+        {
+            try
+            {
+                return ( Object ) getter.invokeExact( target );
+            }
+            catch ( Exception | Error e )
+            {
+                throw e;
+            }
+            catch ( Throwable e )
+            {
+                throw new IllegalStateException( e );
+            }
+        }
+
+        void set( Object target, Object value ) throws Exception
+        {
+            if ( setter == null )
+            {
+                throw new IllegalAccessException( "Cannot set a final field" );
+            }
+            try
+            {
+                setter.invokeExact( target, value );
+            }
+            catch ( Exception | Error e )
+            {
+                throw e;
+            }
+            catch ( Throwable e )
+            {
+                throw new IllegalStateException( e );
+            }
+        }
+    }
 }
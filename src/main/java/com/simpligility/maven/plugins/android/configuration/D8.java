@@ -37,6 +37,30 @@ public class D8
      */
     private Integer minApi;
 
+    /**
+     * Resolves the minApi the way the d8 goal does, so that R8 dexes for the same API level.
+     *
+     * @param d8             the configuration, or null.
+     * @param minApiProperty the value of the <code>android.d8.minApi</code> property, or null.
+     * @return the minApi of the configuration, or the one of the property if the configuration has none.
+     */
+    public static Integer getMinApi( D8 d8, Integer minApiProperty )
+    {
+        return d8 == null || d8.getMinApi() == null ? minApiProperty : d8.getMinApi();
+    }
+
+    /**
+     * Resolves the main dex list the way the d8 goal does, so that R8 keeps the same classes in the main dex file.
+     *
+     * @param d8                  the configuration, or null.
+     * @param mainDexListProperty the value of the <code>android.d8.mainDexList</code> property, or null.
+     * @return the main dex list of the configuration, or the one of the property if the configuration has none.
+     */
+    public static String getMainDexList( D8 d8, String mainDexListProperty )
+    {
+        return d8 == null || d8.getMainDexList() == null ? mainDexListProperty : d8.getMainDexList();
+    }
+
     public String[] getJvmArguments()
     {
         return jvmArguments;
@@ -0,0 +1,39 @@
+package com.simpligility.maven.plugins.android.configuration;
+
+/**
+ * Configuration of the split APKs. This class is only the definition of the parameters that are shadowed in
+ * {@link com.simpligility.maven.plugins.android.phase09package.ApkMojo} and used there.
+ */
+@SuppressWarnings( "unused" )
+public class Splits
+{
+    /**
+     * Mirror of {@link com.simpligility.maven.plugins.android.phase09package.ApkMojo#splitsAbi}.
+     */
+    private Boolean abi;
+
+    /**
+     * Mirror of {@link com.simpligility.maven.plugins.android.phase09package.ApkMojo#splitsAbis}.
+     */
+    private String[] abis;
+
+    /**
+     * Mirror of {@link com.simpligility.maven.plugins.android.phase09package.ApkMojo#splitsDensity}.
+     */
+    private Boolean density;
+
+    /**
+     * Mirror of {@link com.simpligility.maven.plugins.android.phase09package.ApkMojo#splitsDensities}.
+     */
+    private String[] densities;
+
+    /**
+     * Mirror of {@link com.simpligility.maven.plugins.android.phase09package.ApkMojo#splitsUniversalApk}.
+     */
+    private Boolean universalApk;
+
+    /**
+     * Mirror of {@link com.simpligility.maven.plugins.android.phase09package.ApkMojo#splitsVersionCodeMultiplier}.
+     */
+    private Integer versionCodeMultiplier;
+}
@@ -0,0 +1,72 @@
+package com.simpligility.maven.plugins.android.configuration;
+
+import java.io.File;
+
+/**
+ * Configuration element of {@link com.simpligility.maven.plugins.android.phase09package.ApkMojo#variants}. A
+ * variant is an additional APK built from the same dex files, jars and native libraries as the main APK, with its
+ * own manifest overrides and resource overlays.
+ */
+public class Variant
+{
+    /**
+     * Name of the variant, used as classifier of its APK.
+     */
+    private String name;
+
+    /**
+     * Manifest to package instead of the one of the project.
+     */
+    private File androidManifestFile;
+
+    /**
+     * Package name the manifest is renamed to, see aapt <code>--rename-manifest-package</code>.
+     */
+    private String renameManifestPackage;
+
+    /**
+     * Version code replacing the one of the manifest.
+     */
+    private Integer versionCode;
+
+    /**
+     * Version name replacing the one of the manifest.
+     */
+    private String versionName;
+
+    /**
+     * Resource folders overlaying the resources of the project, with the highest priority first. They may only
+     * override existing resources, as the variant keeps the resource ids of the project.
+     */
+    private File[] resourceOverlayDirectories;
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public File getAndroidManifestFile()
+    {
+        return androidManifestFile;
+    }
+
+    public String getRenameManifestPackage()
+    {
+        return renameManifestPackage;
+    }
+
+    public Integer getVersionCode()
+    {
+        return versionCode;
+    }
+
+    public String getVersionName()
+    {
+        return versionName;
+    }
+
+    public File[] getResourceOverlayDirectories()
+    {
+        return resourceOverlayDirectories;
+    }
+}
@@ -1,55 +1,44 @@
 package com.simpligility.maven.plugins.android.phase01generatesources;
 
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
 
 /**
  * Looks for duplicate layout files across Android resource packages.
+ * <p>
+ * Keeps an inverted index from layout file name to the packages containing it, so that conflicts are found in a
+ * single pass over the layout files instead of by comparing every package with every other package.
  */
 final class ConflictingLayoutDetector
 {
-    private Map<String, Collection<String>> map = new HashMap<String, Collection<String>>();
+    private final Map<String, ConflictingLayout> layouts = new HashMap<String, ConflictingLayout>();
 
-    public void addLayoutFiles( String packageName, String[] layoutFiles )
+    public void addLayoutFiles( String packageName, Collection<String> layoutFiles )
     {
-        map.put( packageName, Arrays.asList( layoutFiles ) );
+        for ( final String layoutFile : layoutFiles )
+        {
+            ConflictingLayout layout = layouts.get( layoutFile );
+            if ( layout == null )
+            {
+                layout = new ConflictingLayout( layoutFile );
+                layouts.put( layoutFile, layout );
+            }
+            layout.addPackageName( packageName );
+        }
     }
 
     public Collection<ConflictingLayout> getConflictingLayouts()
     {
         final Map<String, ConflictingLayout> result = new TreeMap<String, ConflictingLayout>();
-        for ( final String entryA : map.keySet() )
+        for ( final ConflictingLayout layout : layouts.values() )
         {
-            for ( final String entryB : map.keySet() )
+            if ( layout.getPackageNames().size() > 1 )
             {
-                if ( entryA.equals( entryB ) )
-                {
-                    continue;
-                }
-
-                // Find any layout files that are in both packages.
-                final Set<String> tmp = new HashSet<String>();
-                tmp.addAll( map.get( entryA ) );
-                tmp.retainAll( map.get( entryB ) );
-
-                for ( final String layoutFile : tmp )
-                {
-                    if ( !result.containsKey( layoutFile ) )
-                    {
-                        result.put( layoutFile, new ConflictingLayout( layoutFile ) );
-                    }
-                    final ConflictingLayout layout = result.get( layoutFile );
-                    layout.addPackageName( entryA );
-                    layout.addPackageName( entryB );
-                }
+                result.put( layout.getLayoutFileName(), layout );
             }
         }
-
         return result.values();
     }
 }
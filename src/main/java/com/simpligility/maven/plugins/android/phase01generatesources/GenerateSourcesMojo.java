@@ -16,12 +16,22 @@
  */
 package com.simpligility.maven.plugins.android.phase01generatesources;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.simpligility.maven.plugins.android.AbstractAndroidMojo;
 import com.simpligility.maven.plugins.android.CommandExecutor;
+import com.simpligility.maven.plugins.android.CommandResult;
+import com.simpligility.maven.plugins.android.CommandSpec;
 import com.simpligility.maven.plugins.android.ExecutionException;
 import com.simpligility.maven.plugins.android.common.AaptCommandBuilder;
+import com.simpligility.maven.plugins.android.common.AaptInputsFingerprint;
+import com.simpligility.maven.plugins.android.common.ClasspathIndex;
 import com.simpligility.maven.plugins.android.common.DependencyResolver;
 import com.simpligility.maven.plugins.android.common.FileRetriever;
+import com.simpligility.maven.plugins.android.common.ResourceFolderIndex;
+import com.simpligility.maven.plugins.android.common.MavenToPlexusLogAdapter;
+import com.simpligility.maven.plugins.android.common.SessionScope;
+import com.simpligility.maven.plugins.android.common.Tracer;
 import com.simpligility.maven.plugins.android.configuration.BuildConfigConstant;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -83,7 +93,8 @@ import static com.simpligility.maven.plugins.android.common.AndroidExtension.APK
 @Mojo(
         name = "generate-sources",
         defaultPhase = LifecyclePhase.GENERATE_SOURCES,
-        requiresDependencyResolution = ResolutionScope.COMPILE
+        requiresDependencyResolution = ResolutionScope.COMPILE,
+        threadSafe = true
 )
 public class GenerateSourcesMojo extends AbstractAndroidMojo
 {
@@ -119,6 +130,17 @@ public class GenerateSourcesMojo extends AbstractAndroidMojo
     @Parameter( defaultValue = "true" )
     private boolean failOnDuplicatePackages;
 
+    /**
+     * Whether the aapt run generating R.java of an apk project also compiles the resource package of the apk, with
+     * crunched PNG files, instead of leaving it to a second aapt run in the package phase.
+     * <p>
+     * The package phase reuses the resource package as long as the manifest, the resources and the aapt options did
+     * not change in between, for instance through the <code>manifest-update</code> goal, and compiles the resources
+     * again otherwise.
+     */
+    @Parameter( property = "android.aapt.singlePass", defaultValue = "false" )
+    private boolean aaptSinglePass;
+
     /**
      * Override default generated folder containing aidl classes
      */
@@ -175,6 +197,11 @@ public class GenerateSourcesMojo extends AbstractAndroidMojo
     @Parameter( defaultValue = "true" )
     private boolean failOnNonStandardStructure;
 
+    /**
+     * Listing of the project and library resource folders, see {@link #getResourceFolderIndex()}.
+     */
+    private ResourceFolderIndex resourceFolderIndex;
+
     /**
      * Which dependency scopes should not be included when unpacking dependencies
      */
@@ -199,6 +226,7 @@ public class GenerateSourcesMojo extends AbstractAndroidMojo
 
         validateStandardLocations();
 
+        final Tracer.Span span = startSpan( "generate-sources" );
         try
         {
             targetDirectory.mkdirs();
@@ -214,7 +242,15 @@ public class GenerateSourcesMojo extends AbstractAndroidMojo
             extractSourceDependencies();
 
             // Extract the apklib and aar dependencies into unpacked-libs so that they can be referenced in the build.
-            extractLibraryDependencies();
+            final Tracer.Span extractSpan = startSpan( "extractLibraryDependencies" );
+            try
+            {
+                extractLibraryDependencies();
+            }
+            finally
+            {
+                extractSpan.end();
+            }
 
             // Copy project assets to combinedAssets so that aapt has a single assets folder to load.
             copyFolder( assetsDirectory, combinedAssets );
@@ -236,8 +272,6 @@ public class GenerateSourcesMojo extends AbstractAndroidMojo
 
             checkPackagesForDuplicates();
             checkForConflictingLayouts();
-            generateR();
-            generateBuildConfig();
 
             // When compiling AIDL for this project,
             // make sure we compile AIDL for dependencies as well.
@@ -256,13 +290,35 @@ public class GenerateSourcesMojo extends AbstractAndroidMojo
                     files.put( unpackedLibSourceFolder, relativeApklibAidlFileNames.get( artifact.getId() ) );
                 }
             }
-            generateAidlFiles( files );
+
+            // The AIDL compilation does not depend on R or BuildConfig, so it runs while they are generated.
+            final ListenableFuture<List<CommandResult>> aidlCompilation = generateAidlFiles( files );
+            final Tracer.Span generateSpan = startSpan( "generateR" );
+            try
+            {
+                generateR();
+                generateBuildConfig();
+            }
+            catch ( MojoExecutionException | RuntimeException e )
+            {
+                aidlCompilation.cancel( true );
+                throw e;
+            }
+            finally
+            {
+                generateSpan.end();
+            }
+            awaitAidlFiles( aidlCompilation );
         }
         catch ( MojoExecutionException e )
         {
             getLog().error( "Error when generating sources.", e );
             throw e;
         }
+        finally
+        {
+            span.end();
+        }
     }
 
     /**
@@ -678,16 +734,18 @@ public class GenerateSourcesMojo extends AbstractAndroidMojo
     private void checkForConflictingLayouts() throws MojoExecutionException
     {
         final ConflictingLayoutDetector detector = new ConflictingLayoutDetector();
+        final ResourceFolderIndex index = getResourceFolderIndex();
 
         // Add layout files for this project
-        final FileRetriever retriever = new FileRetriever( "layout*/*.xml" );
-        detector.addLayoutFiles( getAndroidManifestPackageName(), retriever.getFileNames( resourceDirectory ) );
+        detector.addLayoutFiles( getAndroidManifestPackageName(),
+                index.getFileNames( resourceDirectory, "layout", ".xml" ) );
 
         // Add layout files for all dependencies.
         for ( final Artifact dependency : getTransitiveDependencyArtifacts( AAR, APKLIB ) )
         {
             final String packageName = extractPackageNameFromAndroidArtifact( dependency );
-            final String[] layoutFiles = retriever.getFileNames( getUnpackedLibResourceFolder( dependency ) );
+            final List<String> layoutFiles =
+                    index.getFileNames( getUnpackedLibResourceFolder( dependency ), "layout", ".xml" );
             detector.addLayoutFiles( packageName, layoutFiles );
         }
 
@@ -775,52 +833,59 @@ public class GenerateSourcesMojo extends AbstractAndroidMojo
 
         genDirectory.mkdirs();
 
-        final AaptCommandBuilder.AaptPackageCommandBuilder commandBuilder = AaptCommandBuilder
-                .packageResources( getLog() )
+        // The packaging mojo compiles the same resources into an .ap_ file, which can be produced by this same aapt
+        // run so that the packaging mojo reuses it while its inputs are unchanged.
+        final File resourcePackage = getResourcePackage();
+        // Only an apk packages crunched PNG files.
+        final boolean application = APK.equals( project.getArtifact().getType() );
+        final AaptCommandBuilder.ResourcePackageCommandBuilder commandBuilder = newResourcePackageCommand(
+                compileResources( application && aaptSinglePass ), application );
+        final String fingerprint = AaptInputsFingerprint.of( new ArrayList<String>( commandBuilder.build() ) );
+
+        commandBuilder
                 .makePackageDirectories()
                 .setResourceConstantsFolder( genDirectory )
-                .forceOverwriteExistingFiles()
-                .disablePngCrunching()
                 .generateRIntoPackage( customPackage )
-                .setPathToAndroidManifest( destinationManifestFile )
-                .addResourceDirectoriesIfExists( getResourceOverlayDirectories() )
-                .addResourceDirectoryIfExists( resourceDirectory )
-                // Need to include any AAR or APKLIB dependencies when generating R because if any local
-                // resources directly reference dependent resources then R generation will crash.
-                .addResourceDirectoriesIfExists( getLibraryResourceFolders() )
-                .autoAddOverlay()
-                .addRawAssetsDirectoryIfExists( combinedAssets )
-                .addExistingPackageToBaseIncludeSet( getAndroidSdk().getAndroidJar() )
-                .addConfigurations( configurations )
                 .setVerbose( aaptVerbose )
                 // We need to generate R.txt for all projects as it needs to be consumed when generating R class.
                 // It also needs to be consumed when packaging aar.
                 .generateRTextFile( targetDirectory )
                 // If a proguard file is defined then output Proguard options to it.
                 .setProguardOptionsOutputFile( proguardFile )
-                .makeResourcesNonConstant( AAR.equals( project.getArtifact().getType() ) )
-                .addExtraArguments( aaptExtraArgs );
+                .makeResourcesNonConstant( AAR.equals( project.getArtifact().getType() ) );
+        if ( resourcePackage != null )
+        {
+            commandBuilder.setOutputApkFile( resourcePackage );
+            AaptInputsFingerprint.clear( resourcePackage );
+        }
 
-        getLog().debug( getAndroidSdk().getAaptPath() + " " + commandBuilder.toString() );
+        getLog().debug( getResourcePackagerPath() + " " + commandBuilder.toString() );
         try
         {
             final CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
             executor.setLogger( getLog() );
-            executor.setCaptureStdOut( true );
             final List<String> commands = commandBuilder.build();
-            executor.executeCommand( getAndroidSdk().getAaptPath(), commands, project.getBasedir(), false );
+            executor.executeCommand( getResourcePackagerPath(), commands, project.getBasedir(), false );
+            if ( resourcePackage != null )
+            {
+                AaptInputsFingerprint.record( resourcePackage, fingerprint );
+            }
         }
         catch ( ExecutionException e )
         {
             throw new MojoExecutionException( "", e );
         }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Could not record the fingerprint of " + resourcePackage, e );
+        }
 
-        final ClassLoader compileClassLoader = getCompileClassLoader();
+        final ClasspathIndex compileClasspathIndex = getCompileClasspathIndex();
         final ResourceClassGenerator resGenerator = new ResourceClassGenerator(
                 this,
                 targetDirectory,
                 genDirectory,
-                compileClassLoader
+                compileClasspathIndex
         );
         generateCorrectRJavaForApklibDependencies( resGenerator );
         generateCorrectRJavaForAarDependencies( resGenerator );
@@ -830,15 +895,32 @@ public class GenerateSourcesMojo extends AbstractAndroidMojo
     }
 
     /**
-     * @return ClassLoader containing the compile paths.
+     * @return the .ap_ file the packaging mojo compiles the resources into, for an aar or apklib project and for an
+     *         apk project in {@link #aaptSinglePass} mode, or null otherwise. aapt2 always links a resource package.
      */
-    private ClassLoader getCompileClassLoader()
+    private File getResourcePackage()
+    {
+        final String type = project.getArtifact().getType();
+        if ( aapt2 || AAR.equals( type ) || APKLIB.equals( type ) || ( APK.equals( type ) && aaptSinglePass ) )
+        {
+            return new File( targetDirectory, finalName + ".ap_" );
+        }
+        return null;
+    }
+
+    /**
+     * @return ClasspathIndex of the classes on the compile classpath.
+     */
+    private ClasspathIndex getCompileClasspathIndex()
     {
         try
         {
-            final List<String> runtimeClasspathElements = project.getCompileClasspathElements();
-            final ClassLoaderFactory factory = new ClassLoaderFactory( runtimeClasspathElements );
-            return factory.create();
+            final List<String> compileClasspathElements = project.getCompileClasspathElements();
+            return ClasspathIndex.build(
+                    compileClasspathElements,
+                    SessionScope.get( session, ClasspathIndex.JarCache.class ),
+                    new MavenToPlexusLogAdapter( getLog() )
+            );
         }
         catch ( DependencyResolutionRequiredException e )
         {
@@ -895,14 +977,38 @@ public class GenerateSourcesMojo extends AbstractAndroidMojo
         }
     }
 
-    private List<File> getLibraryResourceFolders()
+    /**
+     * @return the listing of the project and library resource folders, shared by the resource checks of this mojo.
+     *         Only valid once the libraries have been unpacked.
+     */
+    private ResourceFolderIndex getResourceFolderIndex()
+    {
+        if ( resourceFolderIndex == null )
+        {
+            final List<File> resourceFolders = new ArrayList<File>();
+            resourceFolders.add( resourceDirectory );
+            for ( final Artifact artifact : getTransitiveDependencyArtifacts( AAR, APKLIB ) )
+            {
+                resourceFolders.add( getUnpackedLibResourceFolder( artifact ) );
+            }
+            resourceFolderIndex = ResourceFolderIndex.scan( resourceFolders, new MavenToPlexusLogAdapter( getLog() ) );
+        }
+        return resourceFolderIndex;
+    }
+
+    /**
+     * @return the unpacked resource folders of the AAR and APKLIB dependencies which exist, looked up in the
+     *         {@link #getResourceFolderIndex()}.
+     */
+    @Override
+    protected List<File> getLibraryResourceFolders()
     {
         final List<File> resourceFolders = new ArrayList<File>();
         for ( Artifact artifact : getTransitiveDependencyArtifacts( AAR, APKLIB ) )
         {
             getLog().debug( "Considering dep artifact : " + artifact );
             final File resourceFolder = getUnpackedLibResourceFolder( artifact );
-            if ( resourceFolder.exists() )
+            if ( getResourceFolderIndex().exists( resourceFolder ) )
             {
                 getLog().debug( "Adding apklib or aar resource folder : " + resourceFolder );
                 resourceFolders.add( resourceFolder );
@@ -934,7 +1040,8 @@ public class GenerateSourcesMojo extends AbstractAndroidMojo
             // Add in the resources that are dependencies of the apklib.
             final String extension = dependency.getType();
             final File dependencyResDir = getUnpackedLibResourceFolder( dependency );
-            if ( ( extension.equals( APKLIB ) || extension.equals( AAR ) ) && dependencyResDir.exists() )
+            if ( ( extension.equals( APKLIB ) || extension.equals( AAR ) )
+                    && getResourceFolderIndex().exists( dependencyResDir ) )
             {
                 dependenciesResDirectories.add( dependencyResDir );
             }
@@ -981,7 +1088,6 @@ public class GenerateSourcesMojo extends AbstractAndroidMojo
         getLog().debug( getAndroidSdk().getAaptPath() + " " + commandBuilder.toString() );
         try
         {
-            executor.setCaptureStdOut( true );
             final List<String> commands = commandBuilder.build();
             executor.executeCommand( getAndroidSdk().getAaptPath(), commands, project.getBasedir(), false );
         }
@@ -1129,14 +1235,16 @@ public class GenerateSourcesMojo extends AbstractAndroidMojo
 
     /**
      * Given a map of source directories to list of AIDL (relative) filenames within each,
-     * runs the AIDL compiler for each, such that all source directories are available to
-     * the AIDL compiler.
+     * starts the AIDL compiler for each file, one aidl command per file running in parallel,
+     * such that all source directories are available to the AIDL compiler.
      *
      * @param files Map of source directory File instances to the relative paths to all AIDL files within
-     * @throws MojoExecutionException If the AIDL compiler fails
+     * @return the future results of the aidl commands, to pass to {@link #awaitAidlFiles(ListenableFuture)},
+     * which fails if the AIDL compiler fails.
+     * @throws MojoExecutionException If the Android SDK is not available
      */
-    private void generateAidlFiles( Map<File /*sourceDirectory*/, String[] /*relativeAidlFileNames*/> files )
-            throws MojoExecutionException
+    private ListenableFuture<List<CommandResult>> generateAidlFiles(
+            Map<File /*sourceDirectory*/, String[] /*relativeAidlFileNames*/> files ) throws MojoExecutionException
     {
         List<String> protoCommands = new ArrayList<String>();
         protoCommands.add( "-p" + getAndroidSdk().getPathForFrameworkAidl() );
@@ -1149,6 +1257,10 @@ public class GenerateSourcesMojo extends AbstractAndroidMojo
         {
             protoCommands.add( "-I" + sourceDir );
         }
+
+        final CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
+        executor.setLogger( this.getLog() );
+        final List<ListenableFuture<CommandResult>> compilations = new ArrayList<ListenableFuture<CommandResult>>();
         for ( File sourceDir : sourceDirs )
         {
             for ( String relativeAidlFileName : files.get( sourceDir ) )
@@ -1164,20 +1276,33 @@ public class GenerateSourcesMojo extends AbstractAndroidMojo
                 List<String> commands = new ArrayList<String>( protoCommands );
                 commands.add( aidlFileInSourceDirectory.getAbsolutePath() );
                 commands.add( new File( targetDirectory, shortJavaFileName ).getAbsolutePath() );
-                try
-                {
-                    CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
-                    executor.setLogger( this.getLog() );
-                    executor.setCaptureStdOut( true );
-                    executor.executeCommand( getAndroidSdk().getAidlPath(), commands, project.getBasedir(),
-                            false );
-                }
-                catch ( ExecutionException e )
-                {
-                    throw new MojoExecutionException( "", e );
-                }
+                compilations.add( executor.executeAsync( CommandSpec.builder( getAndroidSdk().getAidlPath() )
+                        .addArguments( commands )
+                        .setWorkingDirectory( project.getBasedir() )
+                        .build() ) );
             }
         }
+        return Futures.allAsList( compilations );
+    }
+
+    private void awaitAidlFiles( ListenableFuture<List<CommandResult>> aidlCompilation )
+            throws MojoExecutionException
+    {
+        try
+        {
+            aidlCompilation.get();
+        }
+        catch ( InterruptedException e )
+        {
+            aidlCompilation.cancel( true );
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while compiling AIDL files", e );
+        }
+        catch ( java.util.concurrent.ExecutionException e )
+        {
+            aidlCompilation.cancel( true );
+            throw new MojoExecutionException( "", e.getCause() );
+        }
     }
 
     private String[] findRelativeAidlFileNames( File sourceDirectory )
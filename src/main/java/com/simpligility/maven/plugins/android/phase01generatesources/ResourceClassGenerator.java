@@ -1,9 +1,9 @@
 package com.simpligility.maven.plugins.android.phase01generatesources;
 
-import com.android.builder.core.DefaultManifestParser;
 import com.android.builder.symbols.RGeneration;
 import com.android.builder.symbols.SymbolIo;
 import com.android.builder.symbols.SymbolTable;
+import com.simpligility.maven.plugins.android.common.ClasspathIndex;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.logging.Log;
 
@@ -23,19 +23,19 @@ final class ResourceClassGenerator
     private final File targetDirectory;
     private final File genDirectory;
     private final Log log;
-    private final ClassLoader compileClassLoader;
+    private final ClasspathIndex compileClasspathIndex;
 
     ResourceClassGenerator( final GenerateSourcesMojo mojo,
                             final File targetDirectory,
                             final File genDirectory,
-                            final ClassLoader compileClassLoader
+                            final ClasspathIndex compileClasspathIndex
     )
     {
         this.mojo = mojo;
         this.targetDirectory = targetDirectory;
         this.genDirectory = genDirectory;
         this.log = mojo.getLog();
-        this.compileClassLoader = compileClassLoader;
+        this.compileClasspathIndex = compileClasspathIndex;
     }
 
     /**
@@ -64,7 +64,7 @@ final class ResourceClassGenerator
             if ( rFile.isFile() )
             {
                 final File libManifestFile = new File( unpackedLibDirectory, "AndroidManifest.xml" );
-                final String packageName = new DefaultManifestParser( libManifestFile ).getPackage();
+                final String packageName = mojo.getManifestMetadata( libManifestFile ).getPackageName();
                 if ( rJavaAlreadyExists( packageName ) )
                 {
                     log.info( "Not creating R for " + packageName + " as it already exists" );
@@ -94,15 +94,11 @@ final class ResourceClassGenerator
     private boolean rJavaAlreadyExists( String packageName )
     {
         final String rJavaClass = packageName + ".R";
-        try
+        if ( compileClasspathIndex.containsClass( rJavaClass ) )
         {
-            compileClassLoader.loadClass( rJavaClass );
             return true;
         }
-        catch ( ClassNotFoundException e )
-        {
-            log.debug( "Could not resolve R java : " + rJavaClass );
-            return false;
-        }
+        log.debug( "Could not resolve R java : " + rJavaClass );
+        return false;
     }
 }
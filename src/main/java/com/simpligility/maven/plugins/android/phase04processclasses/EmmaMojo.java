@@ -13,8 +13,6 @@ import org.codehaus.plexus.util.StringUtils;
 
 import com.simpligility.maven.plugins.android.AbstractAndroidMojo;
 import com.simpligility.maven.plugins.android.configuration.Emma;
-import com.vladium.emma.instr.InstrProcessor;
-import com.vladium.emma.instr.InstrProcessor.OutMode;
 
 /**
  * After compiled Java classes use emma tool
@@ -24,7 +22,8 @@ import com.vladium.emma.instr.InstrProcessor.OutMode;
 @Mojo(
         name = "emma",
         defaultPhase = LifecyclePhase.PROCESS_CLASSES,
-        requiresDependencyResolution = ResolutionScope.COMPILE
+        requiresDependencyResolution = ResolutionScope.COMPILE,
+        threadSafe = true
 )
 public class EmmaMojo extends AbstractAndroidMojo
 {
@@ -92,19 +91,8 @@ public class EmmaMojo extends AbstractAndroidMojo
             getLog().debug(
                     "configuration:  Class Folders - this file will be modified by emma " + parsedEmmaClassFolders );
             getLog().debug( "configuration:  parsedOutputMetadataFile " + parsedOutputMetadataFile );
-            InstrProcessor processor = InstrProcessor.create();
-            if ( StringUtils.isNotEmpty( parsedFilters ) )
-            {
-                processor.setInclExclFilter( parsedFilters.split( "," ) );
-            }
-            processor.setInstrPath( parsedEmmaClassFolders, true );
-            processor.setInstrOutDir( parsedEmmaClassFolders[ 0 ] ); // always to
-                                                                     // first define
-                                                                     // folder
-            processor.setMetaOutFile( parsedOutputMetadataFile );
-            processor.setOutMode( OutMode.OUT_MODE_OVERWRITE );
-            processor.setMetaOutMerge( Boolean.TRUE );
-            processor.run();
+            new IncrementalInstrumenter( new File( parsedOutputMetadataFile ), parsedFilters, getLog() )
+                    .instrument( parsedEmmaClassFolders );
         }
         getLog().debug(
                 "Emma OVERWRITE is OFF for this project (" + project.getArtifactId()
@@ -0,0 +1,420 @@
+package com.simpligility.maven.plugins.android.phase04processclasses;
+
+import com.vladium.emma.data.ClassDescriptor;
+import com.vladium.emma.data.DataFactory;
+import com.vladium.emma.data.IMergeable;
+import com.vladium.emma.data.IMetaData;
+import com.vladium.emma.instr.InstrProcessor;
+import com.vladium.emma.instr.InstrProcessor.OutMode;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Instruments the classes of class folders with EMMA, in place, skipping the classes instrumented by a previous build.
+ * <p>
+ * The hash of every class file is recorded once it is instrumented, beside the metadata file. A class file whose
+ * content still has the recorded hash was not compiled again since, so only the new and recompiled classes are
+ * instrumented. They are copied to work folders and instrumented there, split between several EMMA processors
+ * running in parallel, each with a metadata file of its own. The metadata file is then rewritten with the metadata of
+ * these classes and the previous metadata of the unchanged classes, dropping the deleted classes.
+ */
+final class IncrementalInstrumenter
+{
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+    private static final String CLASS = ".class";
+    private static final String FILTERS = "filters=";
+    private static final String SEPARATOR = "\t";
+
+    /**
+     * Number of classes below which the changed classes are not split further between processors.
+     */
+    private static final int CLASSES_PER_PROCESSOR = 256;
+
+    private final File metadataFile;
+    private final String filters;
+    private final Log log;
+    private final File stateFile;
+    private final File workDirectory;
+
+    /**
+     * @param metadataFile EMMA metadata file, such as coverage.em, into which the metadata is merged.
+     * @param filters      EMMA filters separated by commas, or null.
+     * @param log          log of the mojo.
+     */
+    IncrementalInstrumenter( File metadataFile, String filters, Log log )
+    {
+        this.metadataFile = metadataFile;
+        this.filters = StringUtils.isEmpty( filters ) ? "" : filters;
+        this.log = log;
+        this.stateFile = new File( metadataFile.getPath() + ".classes" );
+        this.workDirectory = new File( metadataFile.getParentFile(), "instr" );
+    }
+
+    /**
+     * @param classFolders folders of the classes to instrument, in place.
+     * @return the number of class files given to EMMA.
+     * @throws MojoExecutionException if a class could not be instrumented.
+     */
+    int instrument( String[] classFolders ) throws MojoExecutionException
+    {
+        final Map<String, String> instrumented = readState();
+        final Map<String, String> hashes = new LinkedHashMap<String, String>();
+        final Set<String> classNames = new HashSet<String>();
+        final List<List<ChangedClass>> changedClasses = new ArrayList<List<ChangedClass>>();
+        int changedCount = 0;
+        for ( String classFolder : classFolders )
+        {
+            final List<ChangedClass> changed = new ArrayList<ChangedClass>();
+            changedClasses.add( changed );
+            final File folder = new File( classFolder );
+            if ( !folder.isDirectory() )
+            {
+                continue;
+            }
+            for ( File file : FileUtils.listFiles( folder, new String[] { CLASS.substring( 1 ) }, true ) )
+            {
+                final String path = file.getAbsolutePath();
+                final String hash = hash( file );
+                final String relativePath = folder.toURI().relativize( file.toURI() ).getPath();
+                hashes.put( path, hash );
+                classNames.add( relativePath.substring( 0, relativePath.length() - CLASS.length() ) );
+                if ( !hash.equals( instrumented.get( path ) ) )
+                {
+                    changed.add( new ChangedClass( file, relativePath ) );
+                }
+            }
+            changedCount += changed.size();
+        }
+
+        if ( changedCount == 0 && hashes.keySet().equals( instrumented.keySet() ) )
+        {
+            log.info( "Emma: the " + hashes.size() + " classes are already instrumented" );
+            return 0;
+        }
+        log.info( "Emma: instrumenting " + changedCount + " of " + hashes.size() + " classes" );
+
+        try
+        {
+            FileUtils.deleteDirectory( workDirectory );
+            // Only classes were deleted otherwise, which only leaves their metadata to remove.
+            final List<Chunk> chunks = changedCount == 0 ? Collections.<Chunk>emptyList()
+                    : split( changedClasses, changedCount );
+            if ( !chunks.isEmpty() )
+            {
+                runProcessors( chunks );
+            }
+            for ( Chunk chunk : chunks )
+            {
+                for ( ChangedClass changed : chunk.classes )
+                {
+                    FileUtils.copyFile( changed.getWorkFile( chunk ), changed.file );
+                    hashes.put( changed.file.getAbsolutePath(), hash( changed.file ) );
+                }
+            }
+            writeMetadata( chunks, classNames, !instrumented.isEmpty() );
+            writeState( hashes );
+            FileUtils.deleteDirectory( workDirectory );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Could not instrument the classes in " + workDirectory, e );
+        }
+        return changedCount;
+    }
+
+    /**
+     * Splits the changed classes between processors, in work folders mirroring their class folders.
+     */
+    private List<Chunk> split( List<List<ChangedClass>> changedClasses, int changedCount ) throws IOException
+    {
+        final int chunkCount = Math.max( 1, Math.min( Runtime.getRuntime().availableProcessors(),
+                changedCount / CLASSES_PER_PROCESSOR ) );
+        final List<Chunk> chunks = new ArrayList<Chunk>();
+        for ( int i = 0; i < chunkCount; i++ )
+        {
+            chunks.add( new Chunk( new File( workDirectory, Integer.toString( i ) ), changedClasses.size() ) );
+        }
+        int index = 0;
+        for ( int folderIndex = 0; folderIndex < changedClasses.size(); folderIndex++ )
+        {
+            for ( ChangedClass changed : changedClasses.get( folderIndex ) )
+            {
+                final Chunk chunk = chunks.get( index++ % chunkCount );
+                changed.folderIndex = folderIndex;
+                chunk.classes.add( changed );
+                FileUtils.copyFile( changed.file, changed.getWorkFile( chunk ) );
+            }
+        }
+        return chunks;
+    }
+
+    private void runProcessors( List<Chunk> chunks ) throws MojoExecutionException
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool( chunks.size() );
+        try
+        {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for ( final Chunk chunk : chunks )
+            {
+                futures.add( executor.submit( new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                    {
+                        // Processors only share EMMA's logger, which keeps a stack per thread.
+                        createProcessor( chunk ).run();
+                        return null;
+                    }
+                } ) );
+            }
+            for ( Future<Void> future : futures )
+            {
+                future.get();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while instrumenting classes", e );
+        }
+        catch ( java.util.concurrent.ExecutionException e )
+        {
+            throw new MojoExecutionException( "Could not instrument the classes", e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private InstrProcessor createProcessor( Chunk chunk )
+    {
+        final InstrProcessor processor = InstrProcessor.create();
+        if ( !filters.isEmpty() )
+        {
+            processor.setInclExclFilter( filters.split( "," ) );
+        }
+        final String[] instrPath = chunk.getInstrPath();
+        processor.setInstrPath( instrPath, true );
+        processor.setInstrOutDir( instrPath[ 0 ] );
+        processor.setMetaOutFile( chunk.metadataFile.getAbsolutePath() );
+        processor.setOutMode( OutMode.OUT_MODE_OVERWRITE );
+        processor.setMetaOutMerge( Boolean.FALSE );
+        return processor;
+    }
+
+    /**
+     * Rewrites the metadata file with the metadata of the instrumented classes and, when only the changed classes
+     * were instrumented, the previous metadata of the other classes which still exist. EMMA would otherwise append
+     * a record per chunk on every build.
+     */
+    private void writeMetadata( List<Chunk> chunks, Set<String> classNames, boolean incremental )
+            throws IOException
+    {
+        IMetaData merged = null;
+        final IMetaData previous = incremental ? loadMetadata( metadataFile ) : null;
+        if ( previous != null )
+        {
+            merged = DataFactory.newMetaData( previous.getOptions() );
+            for ( Iterator<?> descriptors = previous.iterator(); descriptors.hasNext(); )
+            {
+                final ClassDescriptor descriptor = ( ClassDescriptor ) descriptors.next();
+                if ( classNames.contains( descriptor.getClassVMName() ) )
+                {
+                    merged.add( descriptor, false );
+                }
+            }
+        }
+        for ( Chunk chunk : chunks )
+        {
+            final IMetaData metadata = loadMetadata( chunk.metadataFile );
+            if ( metadata == null )
+            {
+                continue;
+            }
+            if ( merged == null )
+            {
+                merged = DataFactory.newMetaData( metadata.getOptions() );
+            }
+            for ( Iterator<?> descriptors = metadata.iterator(); descriptors.hasNext(); )
+            {
+                merged.add( ( ClassDescriptor ) descriptors.next(), true );
+            }
+        }
+
+        if ( merged == null || merged.isEmpty() )
+        {
+            // All the classes were filtered out.
+            FileUtils.deleteQuietly( metadataFile );
+            return;
+        }
+        metadataFile.getParentFile().mkdirs();
+        final File temporaryFile = new File( metadataFile.getPath() + ".tmp" );
+        FileUtils.deleteQuietly( temporaryFile );
+        DataFactory.persist( merged, temporaryFile, false );
+        Files.move( temporaryFile.toPath(), metadataFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+    }
+
+    /**
+     * @return the metadata of a metadata file, or null if the file or the metadata is missing.
+     */
+    private static IMetaData loadMetadata( File file ) throws IOException
+    {
+        if ( !file.isFile() )
+        {
+            // All the classes of a chunk were filtered out.
+            return null;
+        }
+        final IMergeable[] data = DataFactory.load( file );
+        final IMetaData metadata = ( IMetaData ) data[ DataFactory.TYPE_METADATA ];
+        return metadata == null || metadata.isEmpty() ? null : metadata;
+    }
+
+    /**
+     * @return the hashes of the instrumented classes by path, or none if the metadata file or the filters changed.
+     */
+    private Map<String, String> readState() throws MojoExecutionException
+    {
+        final Map<String, String> instrumented = new LinkedHashMap<String, String>();
+        if ( !stateFile.isFile() || !metadataFile.isFile() )
+        {
+            return instrumented;
+        }
+        try
+        {
+            final List<String> lines = FileUtils.readLines( stateFile, UTF_8 );
+            if ( lines.isEmpty() || !lines.get( 0 ).equals( FILTERS + filters ) )
+            {
+                return instrumented;
+            }
+            for ( String line : lines.subList( 1, lines.size() ) )
+            {
+                final int separator = line.lastIndexOf( SEPARATOR );
+                if ( separator > 0 )
+                {
+                    instrumented.put( line.substring( 0, separator ), line.substring( separator + 1 ) );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Could not read " + stateFile, e );
+        }
+        return instrumented;
+    }
+
+    private void writeState( Map<String, String> hashes ) throws IOException
+    {
+        final List<String> lines = new ArrayList<String>();
+        lines.add( FILTERS + filters );
+        for ( Map.Entry<String, String> entry : hashes.entrySet() )
+        {
+            lines.add( entry.getKey() + SEPARATOR + entry.getValue() );
+        }
+        FileUtils.writeLines( stateFile, UTF_8.name(), lines, "\n" );
+    }
+
+    private static String hash( File file ) throws MojoExecutionException
+    {
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-1 is not available", e );
+        }
+        try
+        {
+            final StringBuilder hex = new StringBuilder();
+            for ( byte b : digest.digest( Files.readAllBytes( file.toPath() ) ) )
+            {
+                hex.append( String.format( "%02x", b ) );
+            }
+            return hex.toString();
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Could not read " + file, e );
+        }
+    }
+
+    private static final class ChangedClass
+    {
+        private final File file;
+        private final String relativePath;
+        private int folderIndex;
+
+        private ChangedClass( File file, String relativePath )
+        {
+            this.file = file;
+            this.relativePath = relativePath;
+        }
+
+        private File getWorkFile( Chunk chunk )
+        {
+            return new File( chunk.getFolder( folderIndex ), relativePath );
+        }
+    }
+
+    /**
+     * Classes instrumented by one processor, in one work folder per class folder.
+     */
+    private static final class Chunk
+    {
+        private final File directory;
+        private final int folderCount;
+        private final File metadataFile;
+        private final Collection<ChangedClass> classes = new ArrayList<ChangedClass>();
+
+        private Chunk( File directory, int folderCount )
+        {
+            this.directory = directory;
+            this.folderCount = folderCount;
+            this.metadataFile = new File( directory, "coverage.em" );
+        }
+
+        private File getFolder( int folderIndex )
+        {
+            return new File( directory, "classes" + folderIndex );
+        }
+
+        private String[] getInstrPath()
+        {
+            final List<String> instrPath = new ArrayList<String>();
+            for ( int i = 0; i < folderCount; i++ )
+            {
+                final File folder = getFolder( i );
+                if ( folder.isDirectory() )
+                {
+                    instrPath.add( folder.getAbsolutePath() );
+                }
+            }
+            return instrPath.toArray( new String[ 0 ] );
+        }
+    }
+}
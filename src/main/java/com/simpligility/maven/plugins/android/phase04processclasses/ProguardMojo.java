@@ -8,7 +8,9 @@ import com.simpligility.maven.plugins.android.IncludeExcludeSet;
 import com.simpligility.maven.plugins.android.config.ConfigHandler;
 import com.simpligility.maven.plugins.android.config.ConfigPojo;
 import com.simpligility.maven.plugins.android.config.PullParameter;
+import com.simpligility.maven.plugins.android.configuration.D8;
 import com.simpligility.maven.plugins.android.configuration.Proguard;
+import com.simpligility.maven.plugins.android.phase08preparepackage.DexCompiler;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.SystemUtils;
@@ -32,7 +34,6 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
-import static com.simpligility.maven.plugins.android.InclusionExclusionResolver.filterArtifacts;
 import static com.simpligility.maven.plugins.android.common.AndroidExtension.AAR;
 
 /**
@@ -47,7 +48,8 @@ import static com.simpligility.maven.plugins.android.common.AndroidExtension.AAR
 @Mojo(
         name = "proguard",
         defaultPhase = LifecyclePhase.PROCESS_CLASSES,
-        requiresDependencyResolution = ResolutionScope.COMPILE
+        requiresDependencyResolution = ResolutionScope.COMPILE,
+        threadSafe = true
 )
 public class ProguardMojo extends AbstractAndroidMojo
 {
@@ -87,6 +89,33 @@ public class ProguardMojo extends AbstractAndroidMojo
     @Parameter
     protected Proguard proguard;
 
+    /**
+     * The dex compiler to use, shared with the dex and d8 goals. With 'r8', R8 shrinks, obfuscates and dexes the
+     * classes in one pass with the ProGuard configuration, in place of ProGuard followed by dex or d8. The dex files
+     * are written to the target directory and the reports to the ProGuard output directory.
+     */
+    @Parameter( property = "android.dex.compiler", defaultValue = "dex" )
+    private String dexCompiler;
+
+    /**
+     * The configuration of the d8 goal, of which R8 honours the <code>minApi</code> and the
+     * <code>mainDexList</code>, as the d8 goal does not dex the classes again.
+     */
+    @Parameter
+    private D8 d8;
+
+    /**
+     * The minApi (if any) to pass to R8, shared with the d8 goal.
+     */
+    @Parameter( property = "android.d8.minApi" )
+    private Integer d8MinApi;
+
+    /**
+     * Full path to the list of the classes R8 keeps in the main dex file, shared with the d8 goal.
+     */
+    @Parameter( property = "android.d8.mainDexList" )
+    private String d8MainDexList;
+
     /**
      * Whether ProGuard is enabled or not. Defaults to true.
      */
@@ -392,7 +421,12 @@ public class ProguardMojo extends AbstractAndroidMojo
 
         if ( !parsedSkip )
         {
-            if ( parsedConfig.exists() )
+            if ( parsedConfig.exists() && DexCompiler.valueOfIgnoreCase( dexCompiler ) == DexCompiler.R8 )
+            {
+                executeR8();
+                project.getProperties().setProperty( DexCompiler.R8_DEXED_PROPERTY, Boolean.TRUE.toString() );
+            }
+            else if ( parsedConfig.exists() )
             {
                 // TODO: make the property name a constant sometime after switching to @Mojo
                 project.getProperties().setProperty( "android.proguard.obfuscatedJar", obfuscatedJar );
@@ -408,6 +442,106 @@ public class ProguardMojo extends AbstractAndroidMojo
     }
 
     private void executeProguard() throws MojoExecutionException
+    {
+        final File proguardDir = createOutputDirectory();
+
+        getLog().info( "Proguarding output" );
+        List< String > commands = new ArrayList< String >();
+
+        collectJvmArguments( commands );
+
+        commands.add( "-jar" );
+        commands.add( parsedProguardJarPath );
+
+        List<String> proguardCommands = new ArrayList<String>();
+
+        collectConfigurationFiles( proguardCommands );
+
+        collectInputFiles( proguardCommands );
+
+        proguardCommands.add( "-outjars" );
+        proguardCommands.add( obfuscatedJar );
+
+        proguardCommands.add( "-dump" );
+        proguardCommands.add( proguardDir + File.separator + "dump.txt" );
+
+        final File mapFile = collectReports( proguardCommands, proguardDir );
+
+        proguardCommands.addAll( Arrays.asList( parsedOptions ) );
+
+        executeWithConfiguration( commands, "@", proguardCommands, proguardDir );
+
+        if ( parsedAttachMap )
+        {
+            projectHelper.attachArtifact( project, "map", mapFile );
+        }
+    }
+
+    /**
+     * Shrinks, obfuscates and dexes the classes with R8 in one pass, from the same inputs and configuration as
+     * ProGuard. The dex files are written to the target directory, where the apk goal picks them up.
+     */
+    private void executeR8() throws MojoExecutionException
+    {
+        final File proguardDir = createOutputDirectory();
+
+        getLog().info( "Shrinking and dexing output with R8" );
+        final List< String > commands = new ArrayList< String >();
+
+        collectJvmArguments( commands );
+
+        // R8 is part of the d8 jar, which has no main class.
+        commands.add( "-classpath" );
+        commands.add( getAndroidSdk().getD8JarPath() );
+        commands.add( "com.android.tools.r8.R8" );
+        commands.addAll( getR8Arguments( D8.getMinApi( d8, d8MinApi ), D8.getMainDexList( d8, d8MainDexList ),
+                getAndroidSdk().getAndroidJar(), targetDirectory ) );
+
+        // R8 reads the inputs and libraries from the configuration, as ProGuard does. It has no dump.
+        final List< String > r8Commands = new ArrayList< String >();
+        collectConfigurationFiles( r8Commands );
+        collectInputFiles( r8Commands );
+        final File mapFile = collectReports( r8Commands, proguardDir );
+        r8Commands.addAll( Arrays.asList( parsedOptions ) );
+
+        executeWithConfiguration( commands, "", r8Commands, proguardDir );
+
+        if ( parsedAttachMap )
+        {
+            projectHelper.attachArtifact( project, "map", mapFile );
+        }
+    }
+
+    /**
+     * @param minApi          the minimum API level of the dex files, or null.
+     * @param mainDexList     the file listing the classes of the main dex file, or null.
+     * @param androidJar      the platform classes.
+     * @param outputDirectory the folder of the dex files.
+     * @return the arguments of R8, ending with the option taking the file of the configuration.
+     */
+    static List< String > getR8Arguments( Integer minApi, String mainDexList, File androidJar, File outputDirectory )
+    {
+        final List< String > arguments = new ArrayList< String >();
+        arguments.add( "--release" );
+        if ( minApi != null )
+        {
+            arguments.add( "--min-api" );
+            arguments.add( minApi.toString() );
+        }
+        if ( mainDexList != null )
+        {
+            arguments.add( "--main-dex-list" );
+            arguments.add( mainDexList );
+        }
+        arguments.add( "--lib" );
+        arguments.add( androidJar.getAbsolutePath() );
+        arguments.add( "--output" );
+        arguments.add( outputDirectory.getAbsolutePath() );
+        arguments.add( "--pg-conf" );
+        return arguments;
+    }
+
+    private File createOutputDirectory() throws MojoExecutionException
     {
         final File proguardDir = this.parsedOutputDirectory;
 
@@ -422,19 +556,14 @@ public class ProguardMojo extends AbstractAndroidMojo
                 throw new MojoExecutionException( "Non-directory exists at " + proguardDir.getAbsolutePath() );
             }
         }
+        return proguardDir;
+    }
 
-        getLog().info( "Proguarding output" );
-        CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
-        executor.setLogger( this.getLog() );
-        List< String > commands = new ArrayList< String >();
-
-        collectJvmArguments( commands );
-
-        commands.add( "-jar" );
-        commands.add( parsedProguardJarPath );
-
-        List<String> proguardCommands = new ArrayList<String>();
-
+    /**
+     * Adds the configuration files of the project and of its AAR dependencies.
+     */
+    private void collectConfigurationFiles( List< String > proguardCommands )
+    {
         proguardCommands.add( "@" + parsedConfig + "" );
 
         for ( String config : parsedConfigs )
@@ -456,14 +585,15 @@ public class ProguardMojo extends AbstractAndroidMojo
                 proguardCommands.add( "@" + proguardFile.getAbsolutePath() );
             }
         }
+    }
 
-        collectInputFiles( proguardCommands );
-
-        proguardCommands.add( "-outjars" );
-        proguardCommands.add( obfuscatedJar );
-
-        proguardCommands.add( "-dump" );
-        proguardCommands.add( proguardDir + File.separator + "dump.txt" );
+    /**
+     * Adds the seeds, usage and mapping reports, which ProGuard and R8 write in the same format.
+     *
+     * @return the mapping file.
+     */
+    private File collectReports( List< String > proguardCommands, File proguardDir )
+    {
         proguardCommands.add( "-printseeds" );
         proguardCommands.add( proguardDir + File.separator + "seeds.txt" );
         proguardCommands.add( "-printusage" );
@@ -473,29 +603,30 @@ public class ProguardMojo extends AbstractAndroidMojo
 
         proguardCommands.add( "-printmapping" );
         proguardCommands.add( mapFile.toString() );
+        return mapFile;
+    }
 
-        proguardCommands.addAll( Arrays.asList( parsedOptions ) );
+    /**
+     * Writes the configuration to a temporary file, as it may be too long for a command line, and runs java with the
+     * file appended to the commands.
+     *
+     * @param prefix prefix of the file argument, such as "@" for ProGuard.
+     */
+    private void executeWithConfiguration( List< String > commands, String prefix, List< String > configuration,
+                                           File proguardDir ) throws MojoExecutionException
+    {
+        CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
+        executor.setLogger( this.getLog() );
 
         final String javaExecutable = getJavaExecutable().getAbsolutePath();
 
-        getLog().debug( javaExecutable + " " + commands.toString() + proguardCommands.toString() );
+        getLog().debug( javaExecutable + " " + commands.toString() + configuration.toString() );
 
-        FileOutputStream tempConfigFileOutputStream = null;
+        File tempConfigFile = null;
         try
         {
-            File tempConfigFile = new File ( proguardDir , "temp_config.cfg" );
-
-            StringBuilder commandStringBuilder = new StringBuilder();
-            for ( String command : proguardCommands )
-            {
-                commandStringBuilder.append( command );
-                commandStringBuilder.append( SystemUtils.LINE_SEPARATOR );
-            }
-            tempConfigFileOutputStream = new FileOutputStream( tempConfigFile );
-            IOUtils.write( commandStringBuilder, tempConfigFileOutputStream );
-
-            executor.setCaptureStdOut( true );
-            commands.add( "@" + tempConfigFile.getAbsolutePath() + "" );
+            tempConfigFile = writeConfiguration( configuration, proguardDir );
+            commands.add( prefix + tempConfigFile.getAbsolutePath() );
             executor.executeCommand( javaExecutable, commands, project.getBasedir(), false );
         }
         catch ( ExecutionException e )
@@ -508,13 +639,42 @@ public class ProguardMojo extends AbstractAndroidMojo
         }
         finally
         {
-            IOUtils.closeQuietly( tempConfigFileOutputStream );
+            if ( tempConfigFile != null && !tempConfigFile.delete() )
+            {
+                getLog().debug( "Could not delete " + tempConfigFile );
+            }
         }
+    }
 
-        if ( parsedAttachMap )
+    /**
+     * Writes the configuration to a temporary file of the output directory, one argument per line. The file is unique
+     * per execution, as several modules may share the same proguard output directory.
+     *
+     * @return the file, to be deleted once the command ran.
+     */
+    static File writeConfiguration( List< String > configuration, File proguardDir ) throws IOException
+    {
+        final File configFile = File.createTempFile( "temp_config", ".cfg", proguardDir );
+        final StringBuilder commandStringBuilder = new StringBuilder();
+        for ( String command : configuration )
         {
-            projectHelper.attachArtifact( project, "map", mapFile );
+            commandStringBuilder.append( command );
+            commandStringBuilder.append( SystemUtils.LINE_SEPARATOR );
+        }
+        FileOutputStream configFileOutputStream = null;
+        try
+        {
+            configFileOutputStream = new FileOutputStream( configFile );
+            IOUtils.write( commandStringBuilder, configFileOutputStream );
+            configFileOutputStream.close();
+        }
+        catch ( IOException e )
+        {
+            IOUtils.closeQuietly( configFileOutputStream );
+            configFile.delete();
+            throw e;
         }
+        return configFile;
     }
 
     /**
@@ -648,9 +808,8 @@ public class ProguardMojo extends AbstractAndroidMojo
         }
 
         // we then add all its dependencies (incl. transitive ones), unless they're blacklisted
-        for ( Artifact artifact : filterArtifacts( getTransitiveDependencyArtifacts(), skipDependencies,
-                    artifactTypeSet.getIncludes(), artifactTypeSet.getExcludes(), artifactSet.getIncludes(),
-                    artifactSet.getExcludes() ) )
+        for ( Artifact artifact : getArtifactFilter( skipDependencies, artifactTypeSet, artifactSet )
+                .filter( getTransitiveDependencyArtifacts() ) )
         {
             if ( isBlacklistedArtifact( artifact ) )
             {
@@ -16,13 +16,13 @@
  */
 package com.simpligility.maven.plugins.android.phase08preparepackage;
 
-import static com.simpligility.maven.plugins.android.InclusionExclusionResolver.filterArtifacts;
-
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Properties;
 import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
@@ -57,7 +57,8 @@ import com.simpligility.maven.plugins.android.configuration.D8;
 @Mojo(
     name = "d8",
     defaultPhase = LifecyclePhase.PREPARE_PACKAGE,
-    requiresDependencyResolution = ResolutionScope.COMPILE
+    requiresDependencyResolution = ResolutionScope.COMPILE,
+    threadSafe = true
 )
 public class D8Mojo extends AbstractAndroidMojo
 {
@@ -89,7 +90,7 @@ public class D8Mojo extends AbstractAndroidMojo
      */
 
     /**
-     * The dex compiler to use. Allowed values are 'dex' (default) and 'd8'.
+     * The dex compiler to use. Allowed values are 'dex' (default), 'd8' and 'r8'.
      */
     @Parameter( property = "android.dex.compiler", defaultValue = "dex" )
     private String dexCompiler;
@@ -205,7 +206,7 @@ public class D8Mojo extends AbstractAndroidMojo
         parseConfiguration();
 
         getLog().debug( "DexCompiler set to " + parsedDexCompiler );
-        if ( parsedDexCompiler != DexCompiler.D8 )
+        if ( parsedDexCompiler != DexCompiler.D8 && parsedDexCompiler != DexCompiler.R8 )
         {
             getLog().info( "Not executing D8Mojo because DEX compiler is set to " + parsedDexCompiler );
             return;
@@ -214,8 +215,13 @@ public class D8Mojo extends AbstractAndroidMojo
         CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
         executor.setLogger( getLog() );
 
-        if ( generateApk )
+        if ( isDexedByR8( parsedDexCompiler, project.getProperties(), parsedArguments ) )
+        {
+            getLog().info( "Not running D8 because the classes were dexed by R8 in the proguard goal" );
+        }
+        else if ( generateApk )
         {
+            // With the r8 compiler this happens when ProGuard is skipped: the classes are then dexed as is.
             runD8( executor );
         }
 
@@ -234,12 +240,36 @@ public class D8Mojo extends AbstractAndroidMojo
         }
     }
 
+    /**
+     * @param dexCompiler       the dex compiler.
+     * @param projectProperties the properties of the project, where the proguard goal records that R8 dexed the
+     *                          classes.
+     * @param arguments         the d8 arguments, or null.
+     * @return whether R8 dexed the classes in the proguard goal already, so that D8 must not run.
+     * @throws MojoExecutionException if d8 arguments are set while R8 dexed the classes, as R8 honours the minApi and
+     *                                the main dex list but not the arguments meant for D8.
+     */
+    static boolean isDexedByR8( DexCompiler dexCompiler, Properties projectProperties, String[] arguments )
+            throws MojoExecutionException
+    {
+        if ( dexCompiler != DexCompiler.R8
+                || !Boolean.parseBoolean( projectProperties.getProperty( DexCompiler.R8_DEXED_PROPERTY ) ) )
+        {
+            return false;
+        }
+        if ( arguments != null && arguments.length > 0 )
+        {
+            throw new MojoExecutionException( "The d8 arguments " + Arrays.toString( arguments )
+                    + " are not passed to R8, which dexed the classes in the proguard goal" );
+        }
+        return true;
+    }
+
     private List<File> getDependencies()
     {
         final List<File> libraries = new ArrayList<>();
-        for ( Artifact artifact : filterArtifacts( getTransitiveDependencyArtifacts(), skipDependencies,
-                artifactTypeSet.getIncludes(), artifactTypeSet.getExcludes(), artifactSet.getIncludes(),
-                artifactSet.getExcludes() ) )
+        for ( Artifact artifact : getArtifactFilter( skipDependencies, artifactTypeSet, artifactSet )
+                .filter( getTransitiveDependencyArtifacts() ) )
         {
             if ( "jar".equals( artifact.getType() ) )
             {
@@ -270,9 +300,8 @@ public class D8Mojo extends AbstractAndroidMojo
             inputs.add( classesJar );
             getLog().debug( "Adding dex input from : " + classesJar );
 
-            for ( Artifact artifact : filterArtifacts( getTransitiveDependencyArtifacts(), skipDependencies,
-                    artifactTypeSet.getIncludes(), artifactTypeSet.getExcludes(), artifactSet.getIncludes(),
-                    artifactSet.getExcludes() ) )
+            for ( Artifact artifact : getArtifactFilter( skipDependencies, artifactTypeSet, artifactSet )
+                    .filter( getTransitiveDependencyArtifacts() ) )
             {
                 if ( artifact.getType().equals( JAR ) )
                 {
@@ -309,14 +338,6 @@ public class D8Mojo extends AbstractAndroidMojo
             {
                 parsedIntermediate = d8.isIntermediate();
             }
-            if ( d8.getMainDexList() == null )
-            {
-                parsedMainDexList = d8MainDexList;
-            }
-            else
-            {
-                parsedMainDexList = d8.getMainDexList();
-            }
             if ( d8.getArguments() == null )
             {
                 parsedArguments = d8Arguments;
@@ -334,25 +355,17 @@ public class D8Mojo extends AbstractAndroidMojo
             {
                 parsedRelease = d8.isRelease();
             }
-            if ( d8.getMinApi() == null )
-            {
-                parsedMinApi = d8MinApi;
-            }
-            else
-            {
-                parsedMinApi = d8.getMinApi();
-            }
         }
         else
         {
             parsedJvmArguments = d8JvmArguments;
             parsedIntermediate = d8Intermediate;
-            parsedMainDexList = d8MainDexList;
             parsedArguments = d8Arguments;
             parsedDexCompiler = DexCompiler.valueOfIgnoreCase( dexCompiler );
             parsedRelease = d8Release;
-            parsedMinApi = d8MinApi;
         }
+        parsedMainDexList = D8.getMainDexList( d8, d8MainDexList );
+        parsedMinApi = D8.getMinApi( d8, d8MinApi );
     }
 
     private List<String> javaDefaultCommands()
@@ -440,15 +453,13 @@ public class D8Mojo extends AbstractAndroidMojo
         executeJava( commands, executor );
     }
 
-    private String executeJava( final List<String> commands, CommandExecutor executor ) throws MojoExecutionException
+    private void executeJava( final List<String> commands, CommandExecutor executor ) throws MojoExecutionException
     {
         final String javaExecutable = getJavaExecutable().getAbsolutePath();
         getLog().debug( javaExecutable + " " + commands.toString() );
         try
         {
-            executor.setCaptureStdOut( true );
             executor.executeCommand( javaExecutable, commands, project.getBasedir(), false );
-            return executor.getStandardOut();
         }
         catch ( ExecutionException e )
         {
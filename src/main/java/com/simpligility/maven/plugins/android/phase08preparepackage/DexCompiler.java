@@ -6,7 +6,13 @@ package com.simpligility.maven.plugins.android.phase08preparepackage;
 public enum DexCompiler
 {
     DEX, // Default
-    D8;
+    D8,
+    R8; // Shrinks, obfuscates and dexes the classes in one pass, in place of ProGuard.
+
+    /**
+     * Project property set by the proguard goal once R8 dexed the classes, so that the d8 goal does not.
+     */
+    public static final String R8_DEXED_PROPERTY = "android.r8.dexed";
 
     public static DexCompiler valueOfIgnoreCase( String name )
     {
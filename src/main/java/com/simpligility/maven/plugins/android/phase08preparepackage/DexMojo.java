@@ -16,7 +16,6 @@
  */
 package com.simpligility.maven.plugins.android.phase08preparepackage;
 
-import static com.simpligility.maven.plugins.android.InclusionExclusionResolver.filterArtifacts;
 import static com.simpligility.maven.plugins.android.common.AndroidExtension.AAR;
 import static com.simpligility.maven.plugins.android.common.AndroidExtension.APK;
 import static com.simpligility.maven.plugins.android.common.AndroidExtension.APKLIB;
@@ -46,7 +45,9 @@ import com.simpligility.maven.plugins.android.AbstractAndroidMojo;
 import com.simpligility.maven.plugins.android.CommandExecutor;
 import com.simpligility.maven.plugins.android.ExecutionException;
 import com.simpligility.maven.plugins.android.IncludeExcludeSet;
+import com.simpligility.maven.plugins.android.asm.MainDexListBuilder;
 import com.simpligility.maven.plugins.android.common.Const;
+import com.simpligility.maven.plugins.android.common.Tracer;
 import com.simpligility.maven.plugins.android.common.ZipExtractor;
 import com.simpligility.maven.plugins.android.configuration.Dex;
 
@@ -58,7 +59,8 @@ import com.simpligility.maven.plugins.android.configuration.Dex;
 @Mojo(
     name = "dex",
     defaultPhase = LifecyclePhase.PREPARE_PACKAGE,
-    requiresDependencyResolution = ResolutionScope.COMPILE
+    requiresDependencyResolution = ResolutionScope.COMPILE,
+    threadSafe = true
 )
 public class DexMojo extends AbstractAndroidMojo
 {
@@ -91,7 +93,7 @@ public class DexMojo extends AbstractAndroidMojo
      */
 
     /**
-     * The dex compiler to use. Allowed values are 'dex' (default) and 'd8'.
+     * The dex compiler to use. Allowed values are 'dex' (default), 'd8' and 'r8'.
      */
     @Parameter( property = "android.dex.compiler", defaultValue = "dex" )
     private String dexCompiler;
@@ -176,7 +178,7 @@ public class DexMojo extends AbstractAndroidMojo
 
     /**
      * Decides whether to generate main dex list.
-     * Supported from build tools version 22.0.0+
+     * The list is computed within the build, with the rules of the mainDexClasses script of the build tools.
      *
      * Note: if set to true, dexMinimalMainDex is set to true, and dexMainDexList
      * is set to generated main dex list.
@@ -278,15 +280,26 @@ public class DexMojo extends AbstractAndroidMojo
         CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
         executor.setLogger( getLog() );
 
+        // Computed once, as it may extract the classes of APK dependencies.
+        final Set< File > inputFiles = generateApk || ( parsedMultiDex && parsedGenerateMainDexList )
+            ? getDexInputFiles() : null;
+
         File outputFile;
         if ( parsedMultiDex )
         {
             outputFile = targetDirectory;
             if ( parsedGenerateMainDexList )
             {
-                getAndroidSdk().assertThatBuildToolsVersionIsAtLeast(
-                    "22.0.0", "generate main dex list" );
-                File generatedMainDexClassesList = generateMainDexClassesList( executor );
+                final Tracer.Span span = startSpan( "generateMainDexList" );
+                final File generatedMainDexClassesList;
+                try
+                {
+                    generatedMainDexClassesList = generateMainDexClassesList( inputFiles );
+                }
+                finally
+                {
+                    span.end();
+                }
                 parsedMainDexList = generatedMainDexClassesList.getAbsolutePath();
                 parsedMinimalMainDex = true;
             }
@@ -297,7 +310,7 @@ public class DexMojo extends AbstractAndroidMojo
         }
         if ( generateApk )
         {
-            runDex( executor, outputFile );
+            runDex( executor, outputFile, inputFiles );
         }
 
         if ( attachJar )
@@ -336,9 +349,8 @@ public class DexMojo extends AbstractAndroidMojo
             // no proguard, use original config
             inputs.add( projectOutputDirectory );
             getLog().debug( "Adding dex input : " + project.getBuild().getOutputDirectory() );
-            for ( Artifact artifact : filterArtifacts( getTransitiveDependencyArtifacts(), skipDependencies,
-                artifactTypeSet.getIncludes(), artifactTypeSet.getExcludes(), artifactSet.getIncludes(),
-                artifactSet.getExcludes() ) )
+            for ( Artifact artifact : getArtifactFilter( skipDependencies, artifactTypeSet, artifactSet )
+                    .filter( getTransitiveDependencyArtifacts() ) )
             {
                 if ( artifact.getType().equals( Const.ArtifactType.NATIVE_SYMBOL_OBJECT )
                     || artifact.getType().equals( Const.ArtifactType.NATIVE_IMPLEMENTATION_ARCHIVE ) )
@@ -518,28 +530,38 @@ public class DexMojo extends AbstractAndroidMojo
         Set< File > filtered = new HashSet< File >();
         getLog().info( "Pre dex-ing libraries for faster dex-ing of the final application." );
 
-        for ( File inputFile : inputFiles )
+        final Tracer.Span span = startSpan( "preDex" ).attribute( "inputs", inputFiles.size() );
+        int dexed = 0;
+        try
         {
-            if ( inputFile.getName().matches( ".*\\.jar$" ) )
+            for ( File inputFile : inputFiles )
             {
-                List< String > commands = dexDefaultCommands();
-
-                File predexJar = predexJarPath( inputFile );
-                commands.add( "--output=" + predexJar.getAbsolutePath() );
-                commands.add( inputFile.getAbsolutePath() );
-                filtered.add( predexJar );
-
-                if ( !predexJar.isFile() || predexJar.lastModified() < inputFile.lastModified() )
+                if ( inputFile.getName().matches( ".*\\.jar$" ) )
                 {
-                    getLog().info( "Pre-dex ing jar: " + inputFile.getAbsolutePath() );
-                    executeJava( commands, executor );
+                    List< String > commands = dexDefaultCommands();
+
+                    File predexJar = predexJarPath( inputFile );
+                    commands.add( "--output=" + predexJar.getAbsolutePath() );
+                    commands.add( inputFile.getAbsolutePath() );
+                    filtered.add( predexJar );
+
+                    if ( !predexJar.isFile() || predexJar.lastModified() < inputFile.lastModified() )
+                    {
+                        getLog().info( "Pre-dex ing jar: " + inputFile.getAbsolutePath() );
+                        executeJava( commands, executor );
+                        dexed++;
+                    }
+                }
+                else
+                {
+                    filtered.add( inputFile );
                 }
-            }
-            else
-            {
-                filtered.add( inputFile );
             }
         }
+        finally
+        {
+            span.attribute( "dexed", dexed ).end();
+        }
 
         return filtered;
     }
@@ -588,11 +610,10 @@ public class DexMojo extends AbstractAndroidMojo
         return commands;
     }
 
-    private void runDex( CommandExecutor executor, File outputFile )
+    private void runDex( CommandExecutor executor, File outputFile, Set< File > inputFiles )
         throws MojoExecutionException
     {
         final List< String > commands = dexDefaultCommands();
-        final Set< File > inputFiles = getDexInputFiles();
         Set< File > filteredFiles = inputFiles;
         if ( parsedPreDex )
         {
@@ -641,18 +662,24 @@ public class DexMojo extends AbstractAndroidMojo
         }
 
         getLog().info( "Convert classes to Dex : " + outputFile );
-        executeJava( commands, executor );
+        final Tracer.Span span = startSpan( "dex" ).attribute( "inputs", filteredFiles.size() );
+        try
+        {
+            executeJava( commands, executor );
+        }
+        finally
+        {
+            span.end();
+        }
     }
 
-    private String executeJava( final List<String> commands, CommandExecutor executor ) throws MojoExecutionException
+    private void executeJava( final List<String> commands, CommandExecutor executor ) throws MojoExecutionException
     {
         final String javaExecutable = getJavaExecutable().getAbsolutePath();
         getLog().debug( javaExecutable + " " + commands.toString() );
         try
         {
-            executor.setCaptureStdOut( true );
             executor.executeCommand( javaExecutable, commands, project.getBasedir(), false );
-            return executor.getStandardOut();
         }
         catch ( ExecutionException e )
         {
@@ -672,67 +699,20 @@ public class DexMojo extends AbstractAndroidMojo
         return new File( javaHome + slash + "bin" + slash + "java" );
     }
 
-    private File generateMainDexClassesJar( CommandExecutor executor ) throws MojoExecutionException
-    {
-        List< String> commands = jarDefaultCommands();
-        commands.add( getAndroidSdk().getProguardJarPath() );
-        commands.add( "-dontnote" );
-        commands.add( "-dontwarn" );
-        commands.add( "-forceprocessing" );
-        commands.add( "-dontoptimize" );
-        commands.add( "-dontpreverify" );
-        commands.add( "-dontobfuscate" );
-
-        Set< File> inputFiles = getDexInputFiles();
-        for ( File inputFile : inputFiles )
-        {
-            commands.add( "-injars" );
-            commands.add( inputFile.getAbsolutePath() + "(!META-INF/**)" );
-        }
-
-        commands.add( "-libraryjars" );
-        commands.add( getAndroidSdk().getShrinkedAndroidJarPath() );
-
-        commands.add( "-include" );
-        commands.add( getAndroidSdk().getMainDexClassesRulesPath() );
-
-        commands.add( "-outjars" );
-        File mainDexClassesJar = new File( targetDirectory, "mainDexClasses.jar" );
-        commands.add( mainDexClassesJar.getAbsolutePath() );
-
-        getLog().info( "Generating main dex classes jar : " + mainDexClassesJar );
-        executeJava( commands, executor );
-
-        return mainDexClassesJar;
-    }
-
-    private File generateMainDexClassesList( CommandExecutor executor ) throws MojoExecutionException
+    private File generateMainDexClassesList( Set< File > inputFiles ) throws MojoExecutionException
     {
-        File mainDexClassesJar = generateMainDexClassesJar( executor );
-        List< String> commands = javaDefaultCommands();
-
-        commands.add( "-Djava.ext.dirs=" + getAndroidSdk().getBuildToolsLibDirectoryPath() );
-        commands.add( "com.android.multidex.MainDexListBuilder" );
-        commands.add( mainDexClassesJar.getAbsolutePath() );
-
-        Set< File> inputFiles = getDexInputFiles();
-        StringBuilder sb = new StringBuilder();
-        sb.append( StringUtils.join( inputFiles, File.pathSeparatorChar ) );
-        commands.add( sb.toString() );
-
-        File mainDexClassesList = new File( targetDirectory, "mainDexClasses.txt" );
-
+        final File mainDexClassesList = new File( targetDirectory, "mainDexClasses.txt" );
         getLog().info( "Generating main dex classes list : " + mainDexClassesList );
 
-        String output = executeJava( commands, executor );
+        final Set< String > mainDexClasses = new MainDexListBuilder( getAndroidSdk().getAndroidJar() )
+            .build( inputFiles );
         try
         {
-            FileUtils.writeStringToFile( mainDexClassesList, output );
+            FileUtils.writeLines( mainDexClassesList, "UTF-8", mainDexClasses, "\n" );
         }
-        catch ( IOException ex )
+        catch ( IOException e )
         {
-            throw new MojoExecutionException( "Failed to write command output with main dex classes list to "
-                + mainDexClassesList, ex );
+            throw new MojoExecutionException( "Could not write " + mainDexClassesList, e );
         }
         return mainDexClassesList;
     }
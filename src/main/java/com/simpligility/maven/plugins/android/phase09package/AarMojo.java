@@ -16,9 +16,7 @@
  */
 package com.simpligility.maven.plugins.android.phase09package;
 
-import static com.simpligility.maven.plugins.android.InclusionExclusionResolver.filterArtifacts;
 import static com.simpligility.maven.plugins.android.common.AndroidExtension.AAR;
-import static com.simpligility.maven.plugins.android.common.AndroidExtension.APKLIB;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -50,6 +48,7 @@ import com.simpligility.maven.plugins.android.AbstractAndroidMojo;
 import com.simpligility.maven.plugins.android.CommandExecutor;
 import com.simpligility.maven.plugins.android.ExecutionException;
 import com.simpligility.maven.plugins.android.common.AaptCommandBuilder;
+import com.simpligility.maven.plugins.android.common.AaptInputsFingerprint;
 import com.simpligility.maven.plugins.android.common.AndroidExtension;
 import com.simpligility.maven.plugins.android.common.NativeHelper;
 import com.simpligility.maven.plugins.android.config.PullParameter;
@@ -61,7 +60,8 @@ import com.simpligility.maven.plugins.android.config.PullParameter;
 @Mojo(
         name = "aar",
         defaultPhase = LifecyclePhase.VERIFY,
-        requiresDependencyResolution = ResolutionScope.COMPILE
+        requiresDependencyResolution = ResolutionScope.COMPILE,
+        threadSafe = true
 )
 public class AarMojo extends AbstractAndroidMojo
 {
@@ -428,9 +428,8 @@ public class AarMojo extends AbstractAndroidMojo
 
     private void addLibraries( final ZipArchiver zipArchiver ) throws MojoExecutionException
     {
-        for ( Artifact artifact : filterArtifacts( getRelevantCompileArtifacts(), skipDependencies,
-                artifactTypeSet.getIncludes(), artifactTypeSet.getExcludes(), artifactSet.getIncludes(),
-                artifactSet.getExcludes() ) )
+        for ( Artifact artifact : getArtifactFilter( skipDependencies, artifactTypeSet, artifactSet )
+                .filter( getRelevantCompileArtifacts() ) )
         {
             getLog().debug( "Include library in AAR :" + artifact );
 
@@ -511,52 +510,42 @@ public class AarMojo extends AbstractAndroidMojo
      */
     private void generateIntermediateApk() throws MojoExecutionException
     {
-        // Have to generate the AAR against the dependent resources or build will fail if any local resources
-        // directly reference any of the dependent resources. NB this does NOT include the dep resources in the AAR.
-        List<File> dependenciesResDirectories = new ArrayList<File>();
-        for ( Artifact libraryArtifact : getTransitiveDependencyArtifacts( APKLIB, AAR ) )
+        final File outputFile = new File( targetDirectory, finalName + ".ap_" );
+        final AaptCommandBuilder.ResourcePackageCommandBuilder commandBuilder = newResourcePackageCommand(
+                compileResources( false ), false );
+        final String fingerprint = AaptInputsFingerprint.of( new ArrayList<String>( commandBuilder.build() ) );
+        if ( AaptInputsFingerprint.matches( outputFile, fingerprint ) )
         {
-            final File apkLibResDir = getUnpackedLibResourceFolder( libraryArtifact );
-            if ( apkLibResDir.exists() )
-            {
-                dependenciesResDirectories.add( apkLibResDir );
-            }
+            getLog().info( "Reusing the resources compiled by generate-sources: " + outputFile );
+            return;
         }
+        AaptInputsFingerprint.clear( outputFile );
 
-        final CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
-        executor.setLogger( this.getLog() );
-
-        File outputFile = new File( targetDirectory, finalName + ".ap_" );
-
-        final AaptCommandBuilder commandBuilder = AaptCommandBuilder
-                .packageResources( getLog() )
+        commandBuilder
                 .makePackageDirectories()
-                .forceOverwriteExistingFiles()
-                .setPathToAndroidManifest( destinationManifestFile )
-                .addResourceDirectoriesIfExists( getResourceOverlayDirectories() )
-                .addResourceDirectoryIfExists( resourceDirectory )
-                .addResourceDirectoriesIfExists( dependenciesResDirectories )
-                .autoAddOverlay()
-                .addRawAssetsDirectoryIfExists( combinedAssets )
-                .addExistingPackageToBaseIncludeSet( getAndroidSdk().getAndroidJar() )
-                .setOutputApkFile( outputFile )
-                .addConfigurations( configurations )
                 .setResourceConstantsFolder( genDirectory )
-                .makeResourcesNonConstant()
+                .makeResourcesNonConstant( true )
                 .generateRTextFile( targetDirectory )
+                .setOutputApkFile( outputFile )
                 .setVerbose( aaptVerbose );
 
-        getLog().debug( getAndroidSdk().getAaptPath() + " " + commandBuilder.toString() );
+        final CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
+        executor.setLogger( this.getLog() );
+        getLog().debug( getResourcePackagerPath() + " " + commandBuilder.toString() );
         getLog().info( "Generating aar" );
         try
         {
-            executor.setCaptureStdOut( true );
             final List<String> commands = commandBuilder.build();
-            executor.executeCommand( getAndroidSdk().getAaptPath(), commands, project.getBasedir(), false );
+            executor.executeCommand( getResourcePackagerPath(), commands, project.getBasedir(), false );
+            AaptInputsFingerprint.record( outputFile, fingerprint );
         }
         catch ( ExecutionException e )
         {
             throw new MojoExecutionException( "", e );
         }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Could not record the fingerprint of " + outputFile, e );
+        }
     }
 }
@@ -28,15 +28,21 @@ import com.simpligility.maven.plugins.android.CommandExecutor;
 import com.simpligility.maven.plugins.android.ExecutionException;
 import com.simpligility.maven.plugins.android.IncludeExcludeSet;
 import com.simpligility.maven.plugins.android.common.AaptCommandBuilder;
+import com.simpligility.maven.plugins.android.common.AaptInputsFingerprint;
 import com.simpligility.maven.plugins.android.common.AndroidExtension;
+import com.simpligility.maven.plugins.android.common.CompiledManifest;
 import com.simpligility.maven.plugins.android.common.NativeHelper;
+import com.simpligility.maven.plugins.android.common.Tracer;
 import com.simpligility.maven.plugins.android.config.ConfigHandler;
 import com.simpligility.maven.plugins.android.config.ConfigPojo;
 import com.simpligility.maven.plugins.android.config.PullParameter;
 import com.simpligility.maven.plugins.android.configuration.Apk;
 import com.simpligility.maven.plugins.android.configuration.MetaInf;
 import com.simpligility.maven.plugins.android.configuration.Sign;
+import com.simpligility.maven.plugins.android.configuration.Splits;
+import com.simpligility.maven.plugins.android.configuration.Variant;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.filefilter.DirectoryFileFilter;
 import org.apache.commons.io.filefilter.FileFileFilter;
 import org.apache.commons.io.filefilter.FileFilterUtils;
@@ -44,6 +50,7 @@ import org.apache.commons.io.filefilter.IOFileFilter;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -65,17 +72,22 @@ import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarOutputStream;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
-import static com.simpligility.maven.plugins.android.InclusionExclusionResolver.filterArtifacts;
 import static com.simpligility.maven.plugins.android.common.AndroidExtension.AAR;
 import static com.simpligility.maven.plugins.android.common.AndroidExtension.APK;
 import static com.simpligility.maven.plugins.android.common.AndroidExtension.APKLIB;
@@ -92,7 +104,8 @@ import static com.simpligility.maven.plugins.android.common.AndroidExtension.APK
  */
 @Mojo( name = "apk",
        defaultPhase = LifecyclePhase.PACKAGE,
-       requiresDependencyResolution = ResolutionScope.COMPILE )
+       requiresDependencyResolution = ResolutionScope.COMPILE,
+       threadSafe = true )
 public class ApkMojo extends AbstractAndroidMojo
 {
 
@@ -253,6 +266,118 @@ public class ApkMojo extends AbstractAndroidMojo
     @ConfigPojo( prefix = "apk" )
     private Apk apk;
 
+    /**
+     * <p>Split APK configuration of this mojo.</p>
+     * <p>Looks like this:</p>
+     * <pre>
+     * &lt;splits&gt;
+     *     &lt;abi&gt;true&lt;/abi&gt;
+     *     &lt;abis&gt;
+     *         &lt;abi&gt;armeabi-v7a&lt;/abi&gt;
+     *         &lt;abi&gt;arm64-v8a&lt;/abi&gt;
+     *         &lt;abi&gt;x86&lt;/abi&gt;
+     *     &lt;/abis&gt;
+     *     &lt;density&gt;true&lt;/density&gt;
+     *     &lt;densities&gt;
+     *         &lt;density&gt;hdpi&lt;/density&gt;
+     *         &lt;density&gt;xxhdpi&lt;/density&gt;
+     *     &lt;/densities&gt;
+     *     &lt;universalApk&gt;true&lt;/universalApk&gt;
+     *     &lt;versionCodeMultiplier&gt;1000&lt;/versionCodeMultiplier&gt;
+     * &lt;/splits&gt;
+     * </pre>
+     * <p>When both ABI and density splits are enabled, a split is created for every combination of a density and
+     * an ABI, as well as for every density with all ABIs and every ABI with all densities.</p>
+     */
+    @Parameter
+    @ConfigPojo( prefix = "splits" )
+    private Splits splits;
+
+    /**
+     * <p>Whether to create one APK per ABI in addition to the APK containing the native libraries of every ABI.</p>
+     * <p>Each split is attached with the ABI as classifier (prefixed by {@link #classifier} if set) and gets its
+     * own version code, see {@link #splitsVersionCodeMultiplier}. The manifest must therefore declare a literal
+     * <code>android:versionCode</code>.</p>
+     */
+    @Parameter( property = "android.splits.abi" )
+    @PullParameter( defaultValue = "false" )
+    private Boolean splitsAbi;
+
+    /**
+     * <p>The ABIs to create split APKs for, in the order defining their version codes. ABIs without any native
+     * library are skipped. Defaults to all the architectures supported by the NDK.</p>
+     */
+    @Parameter( property = "android.splits.abis" )
+    @PullParameter( defaultValueGetterMethod = "getDefaultSplitsAbis" )
+    private String[] splitsAbis;
+
+    /**
+     * <p>Whether to create one APK per screen density bucket in addition to the APK containing the resources of
+     * every density. aapt keeps the resources closest to the density of each split, see its
+     * <code>--preferred-density</code> option.</p>
+     * <p>Each split is attached with the density as classifier (prefixed by {@link #classifier} if set) and gets
+     * its own version code, see {@link #splitsVersionCodeMultiplier}.</p>
+     */
+    @Parameter( property = "android.splits.density" )
+    @PullParameter( defaultValue = "false" )
+    private Boolean splitsDensity;
+
+    /**
+     * <p>The density buckets to create split APKs for, in the order defining their version codes.</p>
+     */
+    @Parameter( property = "android.splits.densities" )
+    @PullParameter( defaultValue = { "ldpi", "mdpi", "hdpi", "xhdpi", "xxhdpi", "xxxhdpi" } )
+    private String[] splitsDensities;
+
+    /**
+     * <p>Whether to create the APK containing every ABI and density when splits are enabled. It keeps the version
+     * code of the manifest and remains the main artifact. If <code>false</code> the first split takes its place as
+     * the main artifact.</p>
+     */
+    @Parameter( property = "android.splits.universalApk" )
+    @PullParameter( defaultValue = "true" )
+    private Boolean splitsUniversalApk;
+
+    /**
+     * <p>Multiplier of the split position added to the version code of each split, so that a store always serves
+     * the most specific split.</p>
+     * <p>ABIs and densities are numbered from 1 in the order of {@link #splitsAbis} and {@link #splitsDensities},
+     * 0 standing for all of them. A split gets the version code of the manifest plus
+     * <code>( abi * ( number of densities + 1 ) + density ) * multiplier</code>, which is
+     * <code>abi * multiplier</code> with ABI splits only.</p>
+     */
+    @Parameter( property = "android.splits.versionCodeMultiplier" )
+    @PullParameter( defaultValue = "1000" )
+    private Integer splitsVersionCodeMultiplier;
+
+    /**
+     * <p>Additional APKs to build from the same dex files, jars and native libraries as the main APK, which avoids
+     * running the whole build once per flavour of the application. Only the resources are packaged again for each
+     * variant, then all the APKs are written concurrently.</p>
+     * <p>Looks like this:</p>
+     * <pre>
+     * &lt;variants&gt;
+     *     &lt;variant&gt;
+     *         &lt;name&gt;paid&lt;/name&gt;
+     *         &lt;renameManifestPackage&gt;com.example.paid&lt;/renameManifestPackage&gt;
+     *         &lt;versionName&gt;1.0-paid&lt;/versionName&gt;
+     *         &lt;resourceOverlayDirectories&gt;
+     *             &lt;resourceOverlayDirectory&gt;${project.basedir}/res-paid&lt;/resourceOverlayDirectory&gt;
+     *         &lt;/resourceOverlayDirectories&gt;
+     *     &lt;/variant&gt;
+     * &lt;/variants&gt;
+     * </pre>
+     * <p>A variant can also package another <code>androidManifestFile</code> and replace the
+     * <code>versionCode</code>. Each variant APK is attached with the variant name as classifier (prefixed by
+     * {@link #classifier} if set). Variants are not split by ABI or density, and cannot have the name of a split.</p>
+     * <p>The resource overlays of a variant may only override existing resources. The variant APK ships the classes
+     * compiled against the R class of the project, so a resource only a variant defines would shift the resource ids
+     * and the variant would load the wrong resources. The build fails if the R.txt of a variant differs from the
+     * one of the project.</p>
+     */
+    @Parameter
+    private Variant[] variants;
+
     /**
      * Skips transitive dependencies. May be useful if the target classes directory is populated with the
      * {@code maven-dependency-plugin} and already contains all dependency classes.
@@ -307,6 +432,8 @@ public class ApkMojo extends AbstractAndroidMojo
 
     private static final String CLASSES = "classes";
 
+    private static final String MANIFEST = "AndroidManifest.xml";
+
     /**
      * <p>Default hardware architecture for native library dependencies (with {@code &lt;type>so&lt;/type>})
      * without a classifier.</p>
@@ -335,6 +462,7 @@ public class ApkMojo extends AbstractAndroidMojo
 
         cfh.parseConfiguration();
 
+        checkVariants();
         generateIntermediateApk();
 
         // Compile resource exclusion patterns, if any
@@ -357,17 +485,17 @@ public class ApkMojo extends AbstractAndroidMojo
         if ( getAndroidSigner().shouldCreateBothSignedAndUnsignedApk() )
         {
             getLog().info( "Creating debug key signed apk file " + outputFile );
-            createApkFile( outputFile, true );
+            attachSplits( createApkFile( outputFile, true ), "" );
             final File unsignedOutputFile = new File( targetDirectory,
                     finalName + "-unsigned." + APK );
             getLog().info( "Creating additional unsigned apk file " + unsignedOutputFile );
-            createApkFile( unsignedOutputFile, false );
+            attachSplits( createApkFile( unsignedOutputFile, false ), "_unsigned" );
             projectHelper.attachArtifact( project, unsignedOutputFile,
                     classifier == null ? "unsigned" : classifier + "_unsigned" );
         }
         else
         {
-            createApkFile( outputFile, signWithDebugKeyStore );
+            attachSplits( createApkFile( outputFile, signWithDebugKeyStore ), "" );
         }
 
         if ( classifier == null )
@@ -382,7 +510,40 @@ public class ApkMojo extends AbstractAndroidMojo
         }
     }
 
-    void createApkFile( File outputFile, boolean signWithDebugKeyStore ) throws MojoExecutionException
+    private void checkVariants() throws MojoExecutionException
+    {
+        if ( variants == null )
+        {
+            return;
+        }
+
+        final List<String> names = new ArrayList<String>();
+        for ( Variant variant : variants )
+        {
+            names.add( variant.getName() );
+        }
+        getApkSplits().checkVariantNames( names );
+    }
+
+    /**
+     * Attaches the split and variant APKs, with their name as classifier.
+     *
+     * @param splitApks split and variant APKs by name.
+     * @param suffix    suffix of the classifiers.
+     */
+    private void attachSplits( Map<String, File> splitApks, String suffix )
+    {
+        for ( Map.Entry<String, File> split : splitApks.entrySet() )
+        {
+            projectHelper.attachArtifact( project, APK, ApkSplits.getClassifier( classifier, split.getKey(), suffix ),
+                    split.getValue() );
+        }
+    }
+
+    /**
+     * @return the split and variant APKs that were created beside the output file, by name.
+     */
+    Map<String, File> createApkFile( File outputFile, boolean signWithDebugKeyStore ) throws MojoExecutionException
     {
         //this needs to come from DexMojo
         File dexFile = new File( targetDirectory, "classes.dex" );
@@ -404,8 +565,8 @@ public class ApkMojo extends AbstractAndroidMojo
         final Collection<File> nativeFolders = getNativeLibraryFolders();
         getLog().info( "Adding native libraries : " + nativeFolders );
 
-        doAPKWithAPKBuilder( outputFile, dexFile, zipArchive, sourceFolders, jarFiles, nativeFolders,
-                signWithDebugKeyStore );
+        final Map<String, File> splitApks = doAPKWithAPKBuilder( outputFile, dexFile, zipArchive, sourceFolders,
+                jarFiles, nativeFolders, signWithDebugKeyStore );
         
         if ( this.apkMetaInf != null )
         {
@@ -421,47 +582,61 @@ public class ApkMojo extends AbstractAndroidMojo
             try
             {
                 addMetaInf( outputFile, jarFiles );
+                for ( File splitApk : splitApks.values() )
+                {
+                    addMetaInf( splitApk, jarFiles );
+                }
             }
             catch ( IOException e )
             {
                 throw new MojoExecutionException( "Could not add META-INF resources.", e );
             }
         }
+        return splitApks;
     }
 
-    private void addMetaInf( File outputFile, ArrayList<File> jarFiles ) throws IOException
+    void addMetaInf( File outputFile, List<File> jarFiles ) throws IOException
     {
         File tmp = File.createTempFile( outputFile.getName(), ".add", outputFile.getParentFile() );
 
-        FileOutputStream fos = new FileOutputStream( tmp );
-        JarOutputStream zos = new JarOutputStream( fos );
-        Set<String> entries = new HashSet<String>();
+        final Tracer.Span span = startSpan( "addMetaInf" ).attribute( "jars", jarFiles.size() );
+        try
+        {
+            FileOutputStream fos = new FileOutputStream( tmp );
+            JarOutputStream zos = new JarOutputStream( fos );
+            Set<String> entries = new HashSet<String>();
 
-        updateWithMetaInf( zos, outputFile, entries, false );
+            updateWithMetaInf( zos, outputFile, entries, false );
 
-        for ( File f : jarFiles )
-        {
-            updateWithMetaInf( zos, f, entries, true );
-        }
+            for ( File f : jarFiles )
+            {
+                updateWithMetaInf( zos, f, entries, true );
+            }
 
-        if ( transformers != null )
-        {
-            for ( ResourceTransformer transformer : transformers )
+            if ( transformers != null )
             {
-                if ( transformer.hasTransformedResource() )
+                for ( ResourceTransformer transformer : transformers )
                 {
-                    transformer.modifyOutputStream( zos );
+                    if ( transformer.hasTransformedResource() )
+                    {
+                        transformer.modifyOutputStream( zos );
+                    }
                 }
             }
-        }
 
-        zos.close();
+            zos.close();
 
-        outputFile.delete();
+            outputFile.delete();
 
-        if ( ! tmp.renameTo( outputFile ) )
+            if ( ! tmp.renameTo( outputFile ) )
+            {
+                throw new IOException( String.format( "Cannot rename %s to %s", tmp, outputFile.getName() ) );
+            }
+            span.attribute( "bytes", outputFile.length() );
+        }
+        finally
         {
-            throw new IOException( String.format( "Cannot rename %s to %s", tmp, outputFile.getName() ) );
+            span.end();
         }
     }
 
@@ -546,9 +721,10 @@ public class ApkMojo extends AbstractAndroidMojo
         zin.close();
     }
 
-    private Map<String, List<File>> jars = new HashMap<String, List<File>>();
-
-    private void computeDuplicateFiles( File jar ) throws IOException
+    /**
+     * Records the entries of a jar in <code>jars</code>, which maps each path to the jars and folders containing it.
+     */
+    static void computeDuplicateFiles( File jar, Map<String, List<File>> jars ) throws IOException
     {
         ZipFile file = new ZipFile( jar );
         Enumeration<? extends ZipEntry> list = file.entries();
@@ -568,7 +744,7 @@ public class ApkMojo extends AbstractAndroidMojo
         }
     }
 
-    private void computeDuplicateFilesInSource( File folder )
+    private void computeDuplicateFilesInSource( File folder, Map<String, List<File>> jars )
     {
         String rPath = folder.getAbsolutePath();
         for ( File file : Files.fileTreeTraverser().breadthFirstTraversal( folder ).toList() )
@@ -588,7 +764,7 @@ public class ApkMojo extends AbstractAndroidMojo
         }
     }
 
-    private void extractDuplicateFiles( List<File> jarFiles, Collection<File> sourceFolders ) throws IOException
+    private void extractDuplicateFiles( List<File> jarFiles, Map<String, List<File>> jars ) throws IOException
     {
         getLog().debug( "Extracting duplicates" );
         List<String> duplicates = new ArrayList<String>();
@@ -668,11 +844,13 @@ public class ApkMojo extends AbstractAndroidMojo
      * @param jarFiles              the embedded java files
      * @param nativeFolders         the native folders
      * @param signWithDebugKeyStore enables the signature of the APK using the debug key
+     * @return the split and variant APKs by name.
      * @throws MojoExecutionException if the APK cannot be created.
      */
-    private void doAPKWithAPKBuilder( File outputFile, File dexFile, File zipArchive, Collection<File> sourceFolders,
-                                      List<File> jarFiles, Collection<File> nativeFolders,
-                                      boolean signWithDebugKeyStore ) throws MojoExecutionException
+    private Map<String, File> doAPKWithAPKBuilder( final File outputFile, final File dexFile, final File zipArchive,
+                                                   final Collection<File> sourceFolders, List<File> jarFiles,
+                                                   Collection<File> nativeFolders, boolean signWithDebugKeyStore )
+            throws MojoExecutionException
     {
         getLog().debug( "Building APK with internal APKBuilder" );
         
@@ -683,121 +861,324 @@ public class ApkMojo extends AbstractAndroidMojo
             sourceFolders.add( projectOutputDirectory );
         }
 
-        for ( Artifact artifact : filterArtifacts( getRelevantCompileArtifacts(), skipDependencies,
-                artifactTypeSet.getIncludes(), artifactTypeSet.getExcludes(), artifactSet.getIncludes(),
-                artifactSet.getExcludes() ) )
+        // Path of every entry to the jars and folders containing it.
+        final Map<String, List<File>> entries = new HashMap<String, List<File>>();
+        final Tracer.Span duplicatesSpan = startSpan( "computeDuplicates" );
+        try
         {
-            getLog().debug( "Found artifact for APK :" + artifact );
-            if ( extractDuplicates )
+            for ( Artifact artifact : getArtifactFilter( skipDependencies, artifactTypeSet, artifactSet )
+                    .filter( getRelevantCompileArtifacts() ) )
             {
-                try
+                getLog().debug( "Found artifact for APK :" + artifact );
+                if ( extractDuplicates )
                 {
-                    computeDuplicateFiles( artifact.getFile() );
-                }
-                catch ( Exception e )
-                {
-                    getLog().warn( "Cannot compute duplicates files from " + artifact.getFile().getAbsolutePath(), e );
+                    try
+                    {
+                        computeDuplicateFiles( artifact.getFile(), entries );
+                    }
+                    catch ( Exception e )
+                    {
+                        getLog().warn( "Cannot compute duplicates files from "
+                                + artifact.getFile().getAbsolutePath(), e );
+                    }
                 }
+                jarFiles.add( artifact.getFile() );
             }
-            jarFiles.add( artifact.getFile() );
-        }
 
-        for ( File src : sourceFolders )
+            for ( File src : sourceFolders )
+            {
+                computeDuplicateFilesInSource( src, entries );
+            }
+            duplicatesSpan.attribute( "jars", jarFiles.size() ).attribute( "sourceFolders", sourceFolders.size() );
+        }
+        finally
         {
-            computeDuplicateFilesInSource( src );
+            duplicatesSpan.end();
         }
 
         // Check duplicates.
         if ( extractDuplicates )
         {
+            final Tracer.Span extractSpan = startSpan( "extractDuplicates" );
             try
             {
-                extractDuplicateFiles( jarFiles, sourceFolders );
+                extractDuplicateFiles( jarFiles, entries );
             }
             catch ( IOException e )
             {
                 getLog().error( "Could not extract duplicates to duplicate-resources.jar", e );
             }
+            finally
+            {
+                extractSpan.end();
+            }
         }
 
-        try
+        final ApkContents contents = new ApkContents( dexFile, sourceFolders, getPackagedJars( jarFiles ),
+                signWithDebugKeyStore ? getDebugKeyStore() : null );
+        final List<ApkBuilder.FileEntry> nativeFiles = getNativeFiles( nativeFolders );
+
+        final Map<String, File> splitApks = new LinkedHashMap<String, File>();
+        final List<Callable<Void>> writers = new ArrayList<Callable<Void>>();
+        final boolean splitAsMainApk =
+                addSplitWriters( outputFile, zipArchive, nativeFiles, contents, splitApks, writers );
+        if ( variants != null )
         {
-            final String debugKeyStore = signWithDebugKeyStore ? ApkBuilder.getDebugKeystore() : null;
-            final ApkBuilder apkBuilder = new ApkBuilder( outputFile, zipArchive, dexFile, debugKeyStore, null );
-            if ( apkDebug )
+            for ( Variant variant : variants )
             {
-                apkBuilder.setDebugMode( true );
+                final File variantApk = ApkSplits.getFile( outputFile, variant.getName(), APK );
+                getLog().info( "Creating " + variant.getName() + " variant apk file " + variantApk );
+                splitApks.put( variant.getName(), variantApk );
+                writers.add( contents.writer( variantApk, ApkSplits.getFile( zipArchive, variant.getName(), "ap_" ),
+                        nativeFiles ) );
             }
+        }
+        if ( !splitAsMainApk )
+        {
+            writers.add( contents.writer( outputFile, zipArchive, nativeFiles ) );
+        }
+        runConcurrently( writers, "writing the apk files" );
+        return splitApks;
+    }
 
-            for ( File sourceFolder : sourceFolders )
+    /**
+     * Adds the writers of the ABI and density splits.
+     *
+     * @return true if the first split is written as the main APK, instead of the universal APK.
+     */
+    private boolean addSplitWriters( File outputFile, File zipArchive, List<ApkBuilder.FileEntry> nativeFiles,
+                                     final ApkContents contents, Map<String, File> splitApks,
+                                     List<Callable<Void>> writers ) throws MojoExecutionException
+    {
+        // Every APK shares the dex files and jars. The splits only differ by their resources, of a single density,
+        // and by their native libraries, of a single ABI.
+        final ApkSplits apkSplits = getApkSplits();
+        final Map<String, List<ApkBuilder.FileEntry>> nativeFilesByAbi = groupByAbi( nativeFiles );
+        if ( splitsAbi )
+        {
+            for ( String abi : splitsAbis )
             {
-                getLog().debug( "Adding source folder : " + sourceFolder );
-                // Use ApkBuilder#addFile() to explicitly add resource files so that we can add META-INF/services.
-                addResourcesFromFolder( apkBuilder, sourceFolder );
+                if ( !nativeFilesByAbi.containsKey( abi ) )
+                {
+                    getLog().debug( "No native library for " + abi + ", skipping its split APKs" );
+                }
             }
+        }
 
-            for ( File jarFile : jarFiles )
+        final List<ApkSplits.Split> splits = apkSplits.getSplits( nativeFilesByAbi.keySet(),
+                apkSplits.isEnabled() ? getVersionCode( zipArchive ) : 0 );
+        final File splitsDirectory = new File( targetDirectory, "splits" );
+        boolean abiSplit = false;
+        for ( ApkSplits.Split split : splits )
+        {
+            final String splitName = split.getName();
+            final File splitApk;
+            if ( split.isMain() )
             {
-                boolean excluded = false;
-
-                if ( excludeJarResourcesPatterns != null )
+                splitApk = outputFile;
+            }
+            else
+            {
+                splitApk = ApkSplits.getFile( outputFile, splitName, APK );
+                splitApks.put( splitName, splitApk );
+            }
+            final File resources = split.getDensity() == null
+                    ? zipArchive : ApkSplits.getFile( zipArchive, split.getDensity(), "ap_" );
+            final List<ApkBuilder.FileEntry> splitNativeFiles = split.getAbi() == null
+                    ? nativeFiles : nativeFilesByAbi.get( split.getAbi() );
+            abiSplit |= split.getAbi() != null;
+            final File splitResources =
+                    ApkSplits.getFile( new File( splitsDirectory, outputFile.getName() ), splitName, "ap_" );
+            final int splitVersionCode = split.getVersionCode();
+            getLog().info( "Creating " + splitName + " split apk file " + splitApk + " with version code "
+                    + splitVersionCode );
+            writers.add( new Callable<Void>()
+            {
+                @Override
+                public Void call() throws MojoExecutionException
                 {
-                    final String name = jarFile.getName();
-                    getLog().debug( "Checking " + name + " against patterns" );
-                    for ( Pattern pattern : excludeJarResourcesPatterns )
-                    {
-                        final Matcher matcher = pattern.matcher( name );
-                        if ( matcher.matches() )
-                        {
-                            getLog().debug( "Jar " + name + " excluded by pattern " + pattern );
-                            excluded = true;
-                            break;
-                        }
-                        else
-                        {
-                            getLog().debug( "Jar " + name + " not excluded by pattern " + pattern );
-                        }
-                    }
+                    writeSplitResources( resources, splitResources, splitVersionCode );
+                    contents.write( splitApk, splitResources, splitNativeFiles );
+                    return null;
                 }
+            } );
+        }
+        if ( splitsAbi && !abiSplit )
+        {
+            getLog().warn( "ABI splits are enabled but there is no native library for "
+                    + Arrays.toString( splitsAbis ) );
+        }
+        return !splits.isEmpty() && splits.get( 0 ).isMain();
+    }
+
+    private ApkSplits getApkSplits()
+    {
+        return new ApkSplits( splitsDensity ? splitsDensities : null, splitsAbi ? splitsAbis : null,
+                splitsUniversalApk, splitsVersionCodeMultiplier );
+    }
+
+    /**
+     * What all the APKs written by a build share.
+     */
+    private final class ApkContents
+    {
+        private final File dexFile;
+        private final Collection<File> sourceFolders;
+        private final List<File> packagedJars;
+        private final String debugKeyStore;
+
+        ApkContents( File dexFile, Collection<File> sourceFolders, List<File> packagedJars, String debugKeyStore )
+        {
+            this.dexFile = dexFile;
+            this.sourceFolders = sourceFolders;
+            this.packagedJars = packagedJars;
+            this.debugKeyStore = debugKeyStore;
+        }
 
-                if ( excluded )
+        void write( File outputFile, File zipArchive, List<ApkBuilder.FileEntry> nativeFiles )
+                throws MojoExecutionException
+        {
+            buildApk( outputFile, zipArchive, dexFile, sourceFolders, packagedJars, nativeFiles, debugKeyStore );
+        }
+
+        Callable<Void> writer( final File outputFile, final File zipArchive,
+                               final List<ApkBuilder.FileEntry> nativeFiles )
+        {
+            return new Callable<Void>()
+            {
+                @Override
+                public Void call() throws MojoExecutionException
                 {
-                    continue;
+                    write( outputFile, zipArchive, nativeFiles );
+                    return null;
                 }
+            };
+        }
+    }
+
+    private String getDebugKeyStore() throws MojoExecutionException
+    {
+        try
+        {
+            return ApkBuilder.getDebugKeystore();
+        }
+        catch ( ApkCreationException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+    }
+
+    private List<ApkBuilder.FileEntry> getNativeFiles( Collection<File> nativeFolders ) throws MojoExecutionException
+    {
+        final List<ApkBuilder.FileEntry> nativeFiles = new ArrayList<ApkBuilder.FileEntry>();
+        try
+        {
+            for ( File nativeFolder : nativeFolders )
+            {
+                getLog().debug( "Adding native library : " + nativeFolder );
+                nativeFiles.addAll( ApkBuilder.getNativeFiles( nativeFolder, apkDebug ) );
+            }
+        }
+        catch ( ApkCreationException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        return nativeFiles;
+    }
 
-                if ( jarFile.isDirectory() )
+    /**
+     * @return the jars whose resources are added to the APK, after applying {@link #excludeJarResources} and
+     * replacing folders by the jars they contain.
+     */
+    private List<File> getPackagedJars( List<File> jarFiles )
+    {
+        final List<File> packagedJars = new ArrayList<File>();
+        for ( File jarFile : jarFiles )
+        {
+            boolean excluded = false;
+
+            if ( excludeJarResourcesPatterns != null )
+            {
+                final String name = jarFile.getName();
+                getLog().debug( "Checking " + name + " against patterns" );
+                for ( Pattern pattern : excludeJarResourcesPatterns )
                 {
-                    getLog().debug( "Adding resources from jar folder : " + jarFile );
-                    final String[] filenames = jarFile.list( new FilenameFilter()
+                    final Matcher matcher = pattern.matcher( name );
+                    if ( matcher.matches() )
                     {
-                        public boolean accept( File dir, String name )
-                        {
-                            return PATTERN_JAR_EXT.matcher( name ).matches();
-                        }
-                    } );
-
-                    for ( String filename : filenames )
+                        getLog().debug( "Jar " + name + " excluded by pattern " + pattern );
+                        excluded = true;
+                        break;
+                    }
+                    else
                     {
-                        final File innerJar = new File( jarFile, filename );
-                        getLog().debug( "Adding resources from innerJar : " + innerJar );
-                        apkBuilder.addResourcesFromJar( innerJar );
+                        getLog().debug( "Jar " + name + " not excluded by pattern " + pattern );
                     }
                 }
-                else
+            }
+
+            if ( excluded )
+            {
+                continue;
+            }
+
+            if ( jarFile.isDirectory() )
+            {
+                getLog().debug( "Adding resources from jar folder : " + jarFile );
+                final String[] filenames = jarFile.list( new FilenameFilter()
                 {
-                    getLog().debug( "Adding resources from : " + jarFile );
-                    apkBuilder.addResourcesFromJar( jarFile );
+                    public boolean accept( File dir, String name )
+                    {
+                        return PATTERN_JAR_EXT.matcher( name ).matches();
+                    }
+                } );
+
+                for ( String filename : filenames )
+                {
+                    final File innerJar = new File( jarFile, filename );
+                    getLog().debug( "Adding resources from innerJar : " + innerJar );
+                    packagedJars.add( innerJar );
                 }
             }
+            else
+            {
+                getLog().debug( "Adding resources from : " + jarFile );
+                packagedJars.add( jarFile );
+            }
+        }
+        return packagedJars;
+    }
 
-            addSecondaryDexes( dexFile, apkBuilder );
+    private void buildApk( File outputFile, File zipArchive, File dexFile, Collection<File> sourceFolders,
+                           List<File> packagedJars, List<ApkBuilder.FileEntry> nativeFiles, String debugKeyStore )
+            throws MojoExecutionException
+    {
+        final Tracer.Span buildSpan = startSpan( "buildApk" ).attribute( "apk", outputFile.getName() );
+        try
+        {
+            final ApkBuilder apkBuilder = new ApkBuilder( outputFile, zipArchive, dexFile, debugKeyStore, null );
+            if ( apkDebug )
+            {
+                apkBuilder.setDebugMode( true );
+            }
 
-            for ( File nativeFolder : nativeFolders )
+            for ( File sourceFolder : sourceFolders )
             {
-                getLog().debug( "Adding native library : " + nativeFolder );
-                apkBuilder.addNativeLibraries( nativeFolder );
+                getLog().debug( "Adding source folder : " + sourceFolder );
+                // Use ApkBuilder#addFile() to explicitly add resource files so that we can add META-INF/services.
+                addResourcesFromFolder( apkBuilder, sourceFolder );
+            }
+
+            for ( File jarFile : packagedJars )
+            {
+                apkBuilder.addResourcesFromJar( jarFile );
             }
+
+            addSecondaryDexes( dexFile, apkBuilder );
+
+            apkBuilder.addNativeLibraries( nativeFiles );
             apkBuilder.sealApk();
+            buildSpan.attribute( "bytes", outputFile.length() );
         }
         catch ( ApkCreationException | SealedApkException | IOException e )
         {
@@ -809,6 +1190,158 @@ public class ApkMojo extends AbstractAndroidMojo
                     e.getArchivePath(), e.getFile1(), e.getFile2() );
             throw new MojoExecutionException( msg, e );
         }
+        finally
+        {
+            buildSpan.end();
+        }
+    }
+
+    /**
+     * Runs the tasks, concurrently if there are several.
+     *
+     * @param tasks       the tasks to run.
+     * @param description what the tasks do, for the error messages.
+     */
+    private void runConcurrently( List<Callable<Void>> tasks, String description ) throws MojoExecutionException
+    {
+        if ( tasks.size() <= 1 )
+        {
+            for ( Callable<Void> task : tasks )
+            {
+                try
+                {
+                    task.call();
+                }
+                catch ( MojoExecutionException e )
+                {
+                    throw e;
+                }
+                catch ( Exception e )
+                {
+                    throw new MojoExecutionException( "Failed " + description, e );
+                }
+            }
+            return;
+        }
+
+        final int threads = Math.min( tasks.size(), Runtime.getRuntime().availableProcessors() );
+        final ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            for ( Future<Void> future : executor.invokeAll( tasks ) )
+            {
+                future.get();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while " + description, e );
+        }
+        catch ( java.util.concurrent.ExecutionException e )
+        {
+            if ( e.getCause() instanceof MojoExecutionException )
+            {
+                throw ( MojoExecutionException ) e.getCause();
+            }
+            throw new MojoExecutionException( "Failed " + description, e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the native files by ABI, from their <code>lib/&lt;abi&gt;/</code> path in the APK.
+     */
+    private static Map<String, List<ApkBuilder.FileEntry>> groupByAbi( List<ApkBuilder.FileEntry> nativeFiles )
+    {
+        final Map<String, List<ApkBuilder.FileEntry>> nativeFilesByAbi =
+                new HashMap<String, List<ApkBuilder.FileEntry>>();
+        for ( ApkBuilder.FileEntry nativeFile : nativeFiles )
+        {
+            final String[] path = nativeFile.mPath.split( "/" );
+            if ( path.length > 2 )
+            {
+                List<ApkBuilder.FileEntry> abiFiles = nativeFilesByAbi.get( path[ 1 ] );
+                if ( abiFiles == null )
+                {
+                    abiFiles = new ArrayList<ApkBuilder.FileEntry>();
+                    nativeFilesByAbi.put( path[ 1 ], abiFiles );
+                }
+                abiFiles.add( nativeFile );
+            }
+        }
+        return nativeFilesByAbi;
+    }
+
+    private int getVersionCode( File zipArchive ) throws MojoExecutionException
+    {
+        try ( ZipFile resources = new ZipFile( zipArchive ) )
+        {
+            final ZipEntry manifest = resources.getEntry( MANIFEST );
+            if ( manifest == null )
+            {
+                throw new MojoExecutionException( "No " + MANIFEST + " in " + zipArchive );
+            }
+            try ( InputStream in = resources.getInputStream( manifest ) )
+            {
+                return CompiledManifest.getVersionCode( IOUtils.toByteArray( in ) );
+            }
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new MojoExecutionException( "Cannot create split apks: " + e.getMessage(), e );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Could not read " + MANIFEST + " from " + zipArchive, e );
+        }
+    }
+
+    /**
+     * Copies the resources of the APK, with another version code in the manifest.
+     */
+    private void writeSplitResources( File zipArchive, File splitResources, int versionCode )
+            throws MojoExecutionException
+    {
+        splitResources.getParentFile().mkdirs();
+        try ( ZipFile resources = new ZipFile( zipArchive );
+              ZipOutputStream out = new ZipOutputStream( new FileOutputStream( splitResources ) ) )
+        {
+            final Enumeration<? extends ZipEntry> entries = resources.entries();
+            while ( entries.hasMoreElements() )
+            {
+                final ZipEntry entry = entries.nextElement();
+                // Stored entries, like resources.arsc, must stay stored, so keep their size and checksum.
+                final ZipEntry copy = new ZipEntry( entry );
+                copy.setCompressedSize( -1 );
+                try ( InputStream in = resources.getInputStream( entry ) )
+                {
+                    if ( MANIFEST.equals( entry.getName() ) )
+                    {
+                        final byte[] manifest =
+                                CompiledManifest.setVersionCode( IOUtils.toByteArray( in ), versionCode );
+                        final CRC32 crc = new CRC32();
+                        crc.update( manifest );
+                        copy.setCrc( crc.getValue() );
+                        out.putNextEntry( copy );
+                        out.write( manifest );
+                    }
+                    else
+                    {
+                        out.putNextEntry( copy );
+                        copyStreamWithoutClosing( in, out );
+                    }
+                }
+                out.closeEntry();
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Could not write split resources " + splitResources, e );
+        }
     }
 
     /**
@@ -1230,59 +1763,147 @@ public class ApkMojo extends AbstractAndroidMojo
 
 
     /**
-     * Generates an intermediate apk file (actually .ap_) containing the resources and assets.
+     * Generates an intermediate apk file (actually .ap_) containing the resources and assets, as well as one for
+     * each density split, concurrently.
      *
      * @throws MojoExecutionException
      */
     private void generateIntermediateApk() throws MojoExecutionException
     {
-        CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
-        executor.setLogger( this.getLog() );
-        File[] overlayDirectories = getResourceOverlayDirectories();
+        final File outputFile = new File( targetDirectory, finalName + ".ap_" );
+        final CompiledResources resources = compileResources( true );
 
-        File androidJar = getAndroidSdk().getAndroidJar();
-        File outputFile = new File( targetDirectory, finalName + ".ap_" );
-
-        List<File> dependencyArtifactResDirectoryList = new ArrayList<File>();
-        for ( Artifact libraryArtifact : getTransitiveDependencyArtifacts( APKLIB, AAR ) )
+        final List<Callable<Void>> packagers = new ArrayList<Callable<Void>>();
+        packagers.add( packageResources( outputFile, null, null, resources ) );
+        for ( String density : getApkSplits().getDensities() )
+        {
+            packagers.add( packageResources( ApkSplits.getFile( outputFile, density, "ap_" ), density, null,
+                    resources ) );
+        }
+        if ( variants != null )
         {
-            final File libraryResDir = getUnpackedLibResourceFolder( libraryArtifact );
-            if ( libraryResDir.exists() )
+            for ( Variant variant : variants )
             {
-                dependencyArtifactResDirectoryList.add( libraryResDir );
+                packagers.add( packageResources( ApkSplits.getFile( outputFile, variant.getName(), "ap_" ), null,
+                        variant, compileOverlays( variant.getResourceOverlayDirectories(), resources ) ) );
             }
         }
+        runConcurrently( packagers, "packaging the resources" );
+    }
 
-        AaptCommandBuilder commandBuilder = AaptCommandBuilder
-                .packageResources( getLog() )
-                .forceOverwriteExistingFiles()
-                .setPathToAndroidManifest( destinationManifestFile )
-                .addResourceDirectoriesIfExists( overlayDirectories )
-                .addResourceDirectoryIfExists( resourceDirectory )
-                .addResourceDirectoriesIfExists( dependencyArtifactResDirectoryList )
-                .autoAddOverlay()
-                // NB aapt only accepts a single assets parameter - combinedAssets is a merge of all assets
-                .addRawAssetsDirectoryIfExists( combinedAssets )
-                .renameManifestPackage( renameManifestPackage )
+    /**
+     * @param outputFile the .ap_ file to write.
+     * @param density    the only density to keep, or null to keep them all.
+     * @param variant    the variant to package, or null for the project itself.
+     * @param resources  the prepared resources of the project, and of the overlays of the variant.
+     */
+    private Callable<Void> packageResources( final File outputFile, final String density, final Variant variant,
+            CompiledResources resources ) throws MojoExecutionException
+    {
+        final AaptCommandBuilder.ResourcePackageCommandBuilder commandBuilder;
+        if ( variant == null )
+        {
+            commandBuilder = newResourcePackageCommand( resources, true );
+        }
+        else
+        {
+            commandBuilder = newResourcePackageCommand( resources,
+                    variant.getAndroidManifestFile() != null
+                            ? variant.getAndroidManifestFile() : destinationManifestFile,
+                    variant.getRenameManifestPackage() != null
+                            ? variant.getRenameManifestPackage() : renameManifestPackage, true )
+                    .replaceVersion( variant.getVersionCode(), variant.getVersionName() );
+        }
+        // The R.txt of a variant, to check that it keeps the resource ids of the project.
+        final File variantDirectory = variant == null ? null : new File( targetDirectory, "variants/"
+                + variant.getName() );
+        commandBuilder
                 .renameInstrumentationTargetPackage( renameInstrumentationTargetPackage )
-                .addExistingPackageToBaseIncludeSet( androidJar )
+                .setPreferredDensity( density );
+
+        // generate-sources may have compiled the resources of the project already, see its aaptSinglePass.
+        final String fingerprint = variant == null && density == null
+                ? AaptInputsFingerprint.of( new ArrayList<String>( commandBuilder.build() ) ) : null;
+
+        commandBuilder
                 .setOutputApkFile( outputFile )
-                .addConfigurations( configurations )
-                .setVerbose( aaptVerbose )
-                .setDebugMode( !release )
-                .addExtraArguments( aaptExtraArgs );
+                .setVerbose( aaptVerbose );
+        if ( variantDirectory != null )
+        {
+            commandBuilder.generateRTextFile( variantDirectory );
+        }
+        final String aaptPath = getResourcePackagerPath();
 
-        getLog().debug( getAndroidSdk().getAaptPath() + " " + commandBuilder.toString() );
-        try
+        return new Callable<Void>()
         {
-            executor.setCaptureStdOut( true );
-            List<String> commands = commandBuilder.build();
-            executor.executeCommand( getAndroidSdk().getAaptPath(), commands, project.getBasedir(), false );
+            @Override
+            public Void call() throws MojoExecutionException
+            {
+                if ( variantDirectory != null )
+                {
+                    variantDirectory.mkdirs();
+                }
+                try
+                {
+                    executeUnlessReusable( outputFile, fingerprint, aaptPath, commandBuilder.build(),
+                            project.getBasedir(), getLog() );
+                }
+                catch ( ExecutionException e )
+                {
+                    throw new MojoExecutionException( "", e );
+                }
+                if ( variantDirectory != null )
+                {
+                    checkResourceIds( new File( variantDirectory, "R.txt" ), variant.getName() );
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Runs the aapt command writing a resource package, unless generate-sources already wrote it with the same inputs.
+     *
+     * @param outputFile       the .ap_ file written by the command.
+     * @param fingerprint      the fingerprint of the command without its output arguments, or null if the package
+     *                         cannot have been written by generate-sources.
+     * @param aaptPath         the aapt executable.
+     * @param commands         the aapt arguments, including the output ones.
+     * @param workingDirectory the directory to run aapt in.
+     * @param log              the log.
+     * @return true if aapt ran, false if the package was reused.
+     * @throws ExecutionException if aapt failed.
+     */
+    static boolean executeUnlessReusable( File outputFile, String fingerprint, String aaptPath, List<String> commands,
+            File workingDirectory, Log log ) throws ExecutionException
+    {
+        if ( fingerprint != null && AaptInputsFingerprint.matches( outputFile, fingerprint ) )
+        {
+            log.info( "Reusing the resources compiled by generate-sources: " + outputFile );
+            return false;
         }
-        catch ( ExecutionException e )
+        AaptInputsFingerprint.clear( outputFile );
+
+        final CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
+        executor.setLogger( log );
+        log.debug( aaptPath + " " + commands );
+        executor.executeCommand( aaptPath, commands, workingDirectory, false );
+        return true;
+    }
+
+    /**
+     * Fails if a variant does not have the resource ids of the R class the classes of the project were compiled
+     * against, which happens when its overlays add resources, as their ids shift the ones of the other resources.
+     */
+    private void checkResourceIds( File variantRText, String variantName ) throws MojoExecutionException
+    {
+        final File rText = new File( targetDirectory, "R.txt" );
+        if ( !rText.isFile() )
         {
-            throw new MojoExecutionException( "", e );
+            getLog().warn( "No " + rText + ", the resource ids of variant " + variantName + " cannot be checked" );
+            return;
         }
+        ResourceSymbols.read( rText ).checkSameIds( ResourceSymbols.read( variantRText ), variantName );
     }
 
     protected AndroidSigner getAndroidSigner()
@@ -1297,6 +1918,14 @@ public class ApkMojo extends AbstractAndroidMojo
         }
     }
 
+    /**
+     * Used to populated the {@link #splitsAbis} attribute via reflection.
+     */
+    private String[] getDefaultSplitsAbis()
+    {
+        return AndroidNdk.NDK_ARCHITECTURES.clone();
+    }
+
     /**
      * Used to populated the {@link #apkMetaInf} attribute via reflection.
      */
@@ -0,0 +1,214 @@
+package com.simpligility.maven.plugins.android.phase09package;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Layout of the ABI and density split APKs of {@link ApkMojo}: their names, their version codes and which one is
+ * written as the main APK when there is no universal APK.
+ * <p>
+ * ABIs and densities are numbered from 1 in their configured order, 0 standing for all of them. The split of ABI
+ * <code>abi</code> and density <code>density</code> gets the version code of the manifest plus
+ * <code>( abi * ( number of densities + 1 ) + density ) * multiplier</code>.
+ */
+final class ApkSplits
+{
+    private final List<String> densities = new ArrayList<String>();
+    private final List<String> abis = new ArrayList<String>();
+    private final boolean universalApk;
+    private final int versionCodeMultiplier;
+
+    /**
+     * @param densities             the densities to split, or null if density splits are disabled.
+     * @param abis                  the ABIs to split, or null if ABI splits are disabled.
+     * @param universalApk          whether the main APK keeps all the densities and ABIs.
+     * @param versionCodeMultiplier multiplier of the split position added to the version code.
+     */
+    ApkSplits( String[] densities, String[] abis, boolean universalApk, int versionCodeMultiplier )
+    {
+        this.densities.add( null );
+        if ( densities != null )
+        {
+            this.densities.addAll( Arrays.asList( densities ) );
+        }
+        this.abis.add( null );
+        if ( abis != null )
+        {
+            this.abis.addAll( Arrays.asList( abis ) );
+        }
+        this.universalApk = universalApk;
+        this.versionCodeMultiplier = versionCodeMultiplier;
+    }
+
+    /**
+     * @return the split densities, each packaged by its own aapt run.
+     */
+    List<String> getDensities()
+    {
+        return Collections.unmodifiableList( densities.subList( 1, densities.size() ) );
+    }
+
+    /**
+     * @return whether any split is enabled, so that the version code of the manifest is needed.
+     */
+    boolean isEnabled()
+    {
+        return densities.size() * abis.size() > 1;
+    }
+
+    /**
+     * @return the name of every split these settings may produce, whatever the native libraries.
+     */
+    Set<String> getNames()
+    {
+        final Set<String> names = new LinkedHashSet<String>();
+        for ( Split split : getSplits( new HashSet<String>( abis ), 0 ) )
+        {
+            names.add( split.getName() );
+        }
+        return names;
+    }
+
+    /**
+     * Checks the names of the variants before anything is packaged, as the resource packages and APKs of the
+     * variants are named like the ones of the splits.
+     *
+     * @param variantNames the names of the variants.
+     * @throws MojoExecutionException if a variant has no name, the name of another variant or the name of a split.
+     */
+    void checkVariantNames( List<String> variantNames ) throws MojoExecutionException
+    {
+        final Set<String> splitNames = getNames();
+        final Set<String> names = new HashSet<String>();
+        for ( String name : variantNames )
+        {
+            if ( name == null || name.trim().isEmpty() )
+            {
+                throw new MojoExecutionException( "Every variant needs a name" );
+            }
+            if ( !names.add( name ) )
+            {
+                throw new MojoExecutionException( "There are several variants named " + name );
+            }
+            if ( splitNames.contains( name ) )
+            {
+                throw new MojoExecutionException( "Variant " + name + " has the name of a split" );
+            }
+        }
+    }
+
+    /**
+     * @param nativeAbis  the ABIs which have native libraries, as ABI splits without any are skipped.
+     * @param versionCode the version code of the manifest.
+     * @return the splits, the first one being the main APK if there is no universal APK.
+     */
+    List<Split> getSplits( Set<String> nativeAbis, int versionCode )
+    {
+        final List<Split> splits = new ArrayList<Split>();
+        for ( int abi = 0; abi < abis.size(); abi++ )
+        {
+            if ( abi > 0 && !nativeAbis.contains( abis.get( abi ) ) )
+            {
+                continue;
+            }
+            for ( int density = 0; density < densities.size(); density++ )
+            {
+                if ( abi == 0 && density == 0 )
+                {
+                    continue;
+                }
+                splits.add( new Split( densities.get( density ), abis.get( abi ),
+                        versionCode + ( abi * densities.size() + density ) * versionCodeMultiplier,
+                        !universalApk && splits.isEmpty() ) );
+            }
+        }
+        return splits;
+    }
+
+    /**
+     * @return the classifier a split or variant APK is attached with.
+     */
+    static String getClassifier( String classifier, String name, String suffix )
+    {
+        return ( classifier == null ? name : classifier + "-" + name ) + suffix;
+    }
+
+    /**
+     * @return the file of a split or variant, named after the file of the main APK or resource package.
+     */
+    static File getFile( File file, String name, String extension )
+    {
+        final String fileName = file.getName();
+        final int dot = fileName.lastIndexOf( '.' );
+        final String baseName = dot > 0 ? fileName.substring( 0, dot ) : fileName;
+        return new File( file.getParentFile(), baseName + "-" + name + "." + extension );
+    }
+
+    /**
+     * A split APK, keeping a single density, a single ABI or both.
+     */
+    static final class Split
+    {
+        private final String density;
+        private final String abi;
+        private final int versionCode;
+        private final boolean main;
+
+        private Split( String density, String abi, int versionCode, boolean main )
+        {
+            this.density = density;
+            this.abi = abi;
+            this.versionCode = versionCode;
+            this.main = main;
+        }
+
+        /**
+         * @return the name of the split, such as <code>hdpi</code>, <code>x86</code> or <code>hdpi-x86</code>.
+         */
+        String getName()
+        {
+            if ( density == null )
+            {
+                return abi;
+            }
+            return abi == null ? density : density + "-" + abi;
+        }
+
+        /**
+         * @return the only density of the split, or null if it keeps them all.
+         */
+        String getDensity()
+        {
+            return density;
+        }
+
+        /**
+         * @return the only ABI of the split, or null if it keeps them all.
+         */
+        String getAbi()
+        {
+            return abi;
+        }
+
+        int getVersionCode()
+        {
+            return versionCode;
+        }
+
+        /**
+         * @return whether the split is written as the main APK, as there is no universal APK.
+         */
+        boolean isMain()
+        {
+            return main;
+        }
+    }
+}
@@ -20,13 +20,13 @@ import com.simpligility.maven.plugins.android.AbstractAndroidMojo;
 import com.simpligility.maven.plugins.android.CommandExecutor;
 import com.simpligility.maven.plugins.android.ExecutionException;
 import com.simpligility.maven.plugins.android.common.AaptCommandBuilder;
+import com.simpligility.maven.plugins.android.common.AaptInputsFingerprint;
 import com.simpligility.maven.plugins.android.common.AndroidExtension;
 import com.simpligility.maven.plugins.android.common.NativeHelper;
 import com.simpligility.maven.plugins.android.config.PullParameter;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.maven.artifact.Artifact;
 import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -44,7 +44,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import static com.simpligility.maven.plugins.android.common.AndroidExtension.AAR;
 import static com.simpligility.maven.plugins.android.common.AndroidExtension.APKLIB;
 
 
@@ -56,7 +55,12 @@ import static com.simpligility.maven.plugins.android.common.AndroidExtension.APK
  * @deprecated Use Aar instead see {@link com.simpligility.maven.plugins.android.phase09package.AarMojo}
  */
 @Deprecated
-@Mojo( name = "apklib", defaultPhase = LifecyclePhase.PACKAGE, requiresDependencyResolution = ResolutionScope.COMPILE )
+@Mojo(
+        name = "apklib",
+        defaultPhase = LifecyclePhase.PACKAGE,
+        requiresDependencyResolution = ResolutionScope.COMPILE,
+        threadSafe = true
+)
 public class ApklibMojo extends AbstractAndroidMojo
 {
     /**
@@ -347,51 +351,39 @@ public class ApklibMojo extends AbstractAndroidMojo
      */
     private void generateIntermediateApk() throws MojoExecutionException
     {
-
-        CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
-        executor.setLogger( this.getLog() );
-        File[] overlayDirectories = getResourceOverlayDirectories();
-
-        File androidJar = getAndroidSdk().getAndroidJar();
-        File outputFile = new File( targetDirectory, finalName + ".ap_" );
-
-        List<File> dependencyArtifactResDirectoryList = new ArrayList<File>();
-        for ( Artifact libraryArtifact : getTransitiveDependencyArtifacts( APKLIB, AAR ) )
+        final File outputFile = new File( targetDirectory, finalName + ".ap_" );
+        final AaptCommandBuilder.ResourcePackageCommandBuilder commandBuilder = newResourcePackageCommand(
+                compileResources( false ), false );
+        final String fingerprint = AaptInputsFingerprint.of( new ArrayList<String>( commandBuilder.build() ) );
+        if ( AaptInputsFingerprint.matches( outputFile, fingerprint ) )
         {
-            final File apklibResDirectory = getUnpackedLibResourceFolder( libraryArtifact );
-            if ( apklibResDirectory.exists() )
-            {
-                dependencyArtifactResDirectoryList.add( apklibResDirectory );
-            }
+            getLog().info( "Reusing the resources compiled by generate-sources: " + outputFile );
+            return;
         }
+        AaptInputsFingerprint.clear( outputFile );
 
-        AaptCommandBuilder commandBuilder = AaptCommandBuilder
-                .packageResources( getLog() )
-                .forceOverwriteExistingFiles()
-                .setPathToAndroidManifest( destinationManifestFile )
-                .addResourceDirectoriesIfExists( overlayDirectories )
-                .addResourceDirectoryIfExists( resourceDirectory )
-                .addResourceDirectoriesIfExists( dependencyArtifactResDirectoryList )
-                .autoAddOverlay()
-                // NB aapt only accepts a single assets parameter - combinedAssets is a merge of all assets
-                .addRawAssetsDirectoryIfExists( combinedAssets )
-                .addExistingPackageToBaseIncludeSet( androidJar )
+        commandBuilder
                 .setOutputApkFile( outputFile )
-                .addConfigurations( configurations )
                 .setVerbose( aaptVerbose );
 
-        getLog().debug( getAndroidSdk().getAaptPath() + " " + commandBuilder.toString() );
+        final CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
+        executor.setLogger( this.getLog() );
+        getLog().debug( getResourcePackagerPath() + " " + commandBuilder.toString() );
         getLog().info( "Generating apklib" );
         try
         {
-            executor.setCaptureStdOut( true );
-            List<String> commands = commandBuilder.build();
-            executor.executeCommand( getAndroidSdk().getAaptPath(), commands, project.getBasedir(), false );
+            final List<String> commands = commandBuilder.build();
+            executor.executeCommand( getResourcePackagerPath(), commands, project.getBasedir(), false );
+            AaptInputsFingerprint.record( outputFile, fingerprint );
         }
         catch ( ExecutionException e )
         {
             throw new MojoExecutionException( "", e );
         }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Could not record the fingerprint of " + outputFile, e );
+        }
     }
 
 }
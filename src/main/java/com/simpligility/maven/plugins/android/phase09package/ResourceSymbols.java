@@ -0,0 +1,107 @@
+package com.simpligility.maven.plugins.android.phase09package;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resource ids of an R.txt file, as written by aapt <code>--output-text-symbols</code>, by symbol such as
+ * <code>int drawable icon</code>.
+ */
+final class ResourceSymbols
+{
+    /**
+     * Number of differences listed in the error message, the others are only counted.
+     */
+    private static final int MAX_REPORTED_DIFFERENCES = 10;
+
+    private final Map<String, String> ids;
+
+    private ResourceSymbols( Map<String, String> ids )
+    {
+        this.ids = ids;
+    }
+
+    /**
+     * @param rTextFile the R.txt file to read.
+     * @return its symbols.
+     * @throws MojoExecutionException if the file could not be read.
+     */
+    static ResourceSymbols read( File rTextFile ) throws MojoExecutionException
+    {
+        final Map<String, String> ids = new LinkedHashMap<String, String>();
+        try
+        {
+            for ( String line : FileUtils.readLines( rTextFile, "UTF-8" ) )
+            {
+                // <type> <resource type> <name> <id, or ids between braces for styleables>
+                final String[] fields = line.trim().split( "\\s+", 4 );
+                if ( fields.length == 4 )
+                {
+                    ids.put( fields[ 0 ] + " " + fields[ 1 ] + " " + fields[ 2 ], fields[ 3 ] );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Could not read " + rTextFile, e );
+        }
+        return new ResourceSymbols( ids );
+    }
+
+    /**
+     * Checks that a variant has exactly the resource ids of the project, as the variant APK ships the classes
+     * compiled against the R class of the project.
+     *
+     * @param variant     the symbols of the variant.
+     * @param variantName the name of the variant, for the error message.
+     * @throws MojoExecutionException if a resource id differs.
+     */
+    void checkSameIds( ResourceSymbols variant, String variantName ) throws MojoExecutionException
+    {
+        final List<String> differences = new ArrayList<String>();
+        for ( Map.Entry<String, String> symbol : ids.entrySet() )
+        {
+            final String variantId = variant.ids.get( symbol.getKey() );
+            if ( variantId == null )
+            {
+                differences.add( symbol.getKey() + " is missing" );
+            }
+            else if ( !variantId.equals( symbol.getValue() ) )
+            {
+                differences.add( symbol.getKey() + " is " + variantId + " instead of " + symbol.getValue() );
+            }
+        }
+        for ( String symbol : variant.ids.keySet() )
+        {
+            if ( !ids.containsKey( symbol ) )
+            {
+                differences.add( symbol + " is only defined by the variant" );
+            }
+        }
+        if ( differences.isEmpty() )
+        {
+            return;
+        }
+
+        final StringBuilder message = new StringBuilder( "The resource ids of variant " ).append( variantName )
+                .append( " differ from the ones the classes were compiled against, as its overlays may only"
+                        + " override existing resources:" );
+        for ( String difference : differences.subList( 0, Math.min( differences.size(),
+                MAX_REPORTED_DIFFERENCES ) ) )
+        {
+            message.append( "\n  " ).append( difference );
+        }
+        if ( differences.size() > MAX_REPORTED_DIFFERENCES )
+        {
+            message.append( "\n  and " ).append( differences.size() - MAX_REPORTED_DIFFERENCES ).append( " more" );
+        }
+        throw new MojoExecutionException( message.toString() );
+    }
+}
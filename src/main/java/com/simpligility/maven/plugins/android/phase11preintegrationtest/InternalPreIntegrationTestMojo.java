@@ -30,7 +30,7 @@ import org.apache.maven.plugins.annotations.Mojo;
  *
  * @author hugo.josefson@jayway.com
  */
-@Mojo( name = "internal-pre-integration-test", defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST )
+@Mojo( name = "internal-pre-integration-test", defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST, threadSafe = true )
 public class InternalPreIntegrationTestMojo extends AbstractInstrumentationMojo
 {
 
@@ -30,7 +30,7 @@ import org.apache.maven.plugins.annotations.Mojo;
  *
  * @author hugo.josefson@jayway.com
  */
-@Mojo( name = "internal-integration-test", defaultPhase = LifecyclePhase.INTEGRATION_TEST )
+@Mojo( name = "internal-integration-test", defaultPhase = LifecyclePhase.INTEGRATION_TEST, threadSafe = true )
 public class InternalIntegrationTestMojo extends AbstractInstrumentationMojo
 {
 
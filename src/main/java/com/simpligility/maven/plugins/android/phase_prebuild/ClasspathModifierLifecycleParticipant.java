@@ -15,6 +15,7 @@ import com.simpligility.maven.plugins.android.common.ArtifactResolverHelper;
 import com.simpligility.maven.plugins.android.common.DependencyResolver;
 import com.simpligility.maven.plugins.android.common.PomConfigurationHelper;
 import com.simpligility.maven.plugins.android.common.UnpackedLibHelper;
+import org.apache.commons.io.IOUtils;
 import org.apache.maven.AbstractMavenLifecycleParticipant;
 import org.apache.maven.MavenExecutionException;
 import org.apache.maven.artifact.Artifact;
@@ -32,9 +33,18 @@ import org.codehaus.plexus.logging.Logger;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
@@ -105,46 +115,32 @@ public final class ClasspathModifierLifecycleParticipant extends AbstractMavenLi
         final DependencyResolver dependencyResolver = new DependencyResolver( log, dependencyGraphBuilder );
         final ArtifactResolverHelper artifactResolverHelper = new ArtifactResolverHelper( artifactResolver, log );
 
+        final Map<MavenProject, Set<Artifact>> projectDependencies =
+                resolveProjectDependencies( projects, session, dependencyResolver );
+
         for ( MavenProject project : projects )
         {
             log.debug( "" );
             log.debug( "project=" + project.getArtifact() );
 
-            if ( ! AndroidExtension.isAndroidPackaging( project.getPackaging() ) )
+            if ( ! projectDependencies.containsKey( project ) )
             {
                 continue; // do not modify classpath if not an android project.
             }
 
+            final Set<Artifact> artifacts = projectDependencies.get( project );
+            if ( artifacts == null )
+            {
+                // Nothing to do. The resolution failure will be displayed by the standard resolution mechanism.
+                continue;
+            }
+
             final String unpackedLibsFolder
                 = getMojoConfigurationParameter( project, UNPACKED_LIBS_FOLDER_PARAM, null );
             final UnpackedLibHelper helper = new UnpackedLibHelper( artifactResolverHelper, project, log,
                     unpackedLibsFolder == null ? null : new File( unpackedLibsFolder )
             );
 
-            final Set<Artifact> artifacts;
-
-            // If there is an extension ClassRealm loaded for this project then use that
-            // as the ContextClassLoader so that Wagon extensions can be used to resolves dependencies.
-            final ClassLoader projectClassLoader = ( project.getClassRealm() != null )
-                    ? project.getClassRealm()
-                    : Thread.currentThread().getContextClassLoader();
-
-            final ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
-            try
-            {
-                Thread.currentThread().setContextClassLoader( projectClassLoader );
-                artifacts = dependencyResolver.getProjectDependenciesFor( project, session );
-            }
-            catch ( DependencyGraphBuilderException e )
-            {
-                // Nothing to do. The resolution failure will be displayed by the standard resolution mechanism.
-                continue;
-            }
-            finally
-            {
-                Thread.currentThread().setContextClassLoader( originalClassLoader );
-            }
-
             boolean includeFromAar = getMojoConfigurationParameter( project, INCLUDE_FROM_AAR_PARAM,
                     INCLUDE_FROM_AAR_DEFAULT );
             boolean includeFromApklib = getMojoConfigurationParameter( project, INCLUDE_FROM_APKLIB_PARAM,
@@ -207,6 +203,97 @@ public final class ClasspathModifierLifecycleParticipant extends AbstractMavenLi
         log.debug( "ClasspathModifierLifecycleParticipant#afterProjectsRead - finish" );
     }
 
+    /**
+     * Builds the dependency graphs of all Android projects concurrently. The graphs are kept in the session's
+     * {@link com.simpligility.maven.plugins.android.common.DependencyGraphCache} so that mojos can reuse them.
+     *
+     * @return the dependencies of each Android project, or a null value for a project whose dependency graph
+     *         could not be built.
+     */
+    private Map<MavenProject, Set<Artifact>> resolveProjectDependencies( List<MavenProject> projects,
+            final MavenSession session, final DependencyResolver dependencyResolver ) throws MavenExecutionException
+    {
+        final Map<MavenProject, Set<Artifact>> projectDependencies = new HashMap<MavenProject, Set<Artifact>>();
+        final Map<MavenProject, Future<Set<Artifact>>> futures
+                = new LinkedHashMap<MavenProject, Future<Set<Artifact>>>();
+        final List<MavenProject> androidProjects = new ArrayList<MavenProject>();
+        for ( MavenProject project : projects )
+        {
+            if ( AndroidExtension.isAndroidPackaging( project.getPackaging() ) )
+            {
+                androidProjects.add( project );
+            }
+        }
+        if ( androidProjects.isEmpty() )
+        {
+            return projectDependencies;
+        }
+
+        final int threads = Math.min( androidProjects.size(), Runtime.getRuntime().availableProcessors() );
+        final ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            for ( final MavenProject project : androidProjects )
+            {
+                futures.put( project, executor.submit( new Callable<Set<Artifact>>()
+                {
+                    @Override
+                    public Set<Artifact> call()
+                    {
+                        return getProjectDependencies( project, session, dependencyResolver );
+                    }
+                } ) );
+            }
+            for ( Map.Entry<MavenProject, Future<Set<Artifact>>> entry : futures.entrySet() )
+            {
+                projectDependencies.put( entry.getKey(), entry.getValue().get() );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MavenExecutionException( "Interrupted while resolving project dependencies", e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new MavenExecutionException( "Could not resolve project dependencies", e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return projectDependencies;
+    }
+
+    /**
+     * @return the dependencies of the project, or null if its dependency graph could not be built.
+     */
+    private Set<Artifact> getProjectDependencies( MavenProject project, MavenSession session,
+                                                  DependencyResolver dependencyResolver )
+    {
+        // If there is an extension ClassRealm loaded for this project then use that
+        // as the ContextClassLoader so that Wagon extensions can be used to resolves dependencies.
+        final ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+        final ClassLoader projectClassLoader = ( project.getClassRealm() != null )
+                ? project.getClassRealm()
+                : originalClassLoader;
+
+        try
+        {
+            Thread.currentThread().setContextClassLoader( projectClassLoader );
+            return dependencyResolver.getProjectDependenciesFor( project, session );
+        }
+        catch ( DependencyGraphBuilderException e )
+        {
+            log.debug( "Could not build dependency graph for " + project.getId(), e );
+            return null;
+        }
+        finally
+        {
+            Thread.currentThread().setContextClassLoader( originalClassLoader );
+        }
+    }
+
     private String getMojoConfigurationParameter( MavenProject project, String name, String defaultValue )
     {
         String value = PomConfigurationHelper.getPluginConfigParameter( project,
@@ -226,11 +313,12 @@ public final class ClasspathModifierLifecycleParticipant extends AbstractMavenLi
     private void addLibsJarsToClassPath( UnpackedLibHelper helper, MavenProject project, Artifact artifact )
         throws MavenExecutionException
     {
+         ZipFile zipFile = null;
          try
          {
              final File unpackLibFolder = helper.getUnpackedLibFolder( artifact );
              final File artifactFile = helper.getArtifactToFile( artifact );
-             ZipFile zipFile = new ZipFile( artifactFile );
+             zipFile = new ZipFile( artifactFile );
              Enumeration enumeration = zipFile.entries();
              while ( enumeration.hasMoreElements() )
              {
@@ -272,6 +360,10 @@ public final class ClasspathModifierLifecycleParticipant extends AbstractMavenLi
          {
              log.debug( "Error" );
          }
+         finally
+         {
+             IOUtils.closeQuietly( zipFile );
+         }
     }
 
     /**
@@ -16,7 +16,7 @@ import java.util.List;
  *
  * @author demey.emmanuel@gmail.com
  */
-@Mojo( name = "connect", requiresProject = false )
+@Mojo( name = "connect", requiresProject = false, threadSafe = true )
 public class ConnectMojo extends AbstractAndroidMojo
 {
 
@@ -76,7 +76,6 @@ public class ConnectMojo extends AbstractAndroidMojo
     {
         CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
         executor.setLogger( this.getLog() );
-        executor.setCaptureStdOut( true );
         return executor;
     }
 }
@@ -38,7 +38,7 @@ import java.io.File;
  *
  * @author Manfred Moser - manfred@simpligility.com
  */
-@Mojo( name = "deploy-apk", requiresProject = false )
+@Mojo( name = "deploy-apk", requiresProject = false, threadSafe = true )
 public class DeployApkMojo extends AbstractAndroidMojo
 {
     /**
@@ -32,7 +32,7 @@ import org.apache.maven.plugins.annotations.ResolutionScope;
  *
  * @author hugo.josefson@jayway.com
  */
-@Mojo( name = "deploy-dependencies", requiresDependencyResolution = ResolutionScope.RUNTIME )
+@Mojo( name = "deploy-dependencies", requiresDependencyResolution = ResolutionScope.RUNTIME, threadSafe = true )
 public class DeployDependenciesMojo extends AbstractAndroidMojo
 {
 
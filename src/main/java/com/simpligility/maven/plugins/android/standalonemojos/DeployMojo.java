@@ -38,7 +38,8 @@ import org.apache.maven.plugins.annotations.ResolutionScope;
 @Mojo(
         name = "deploy",
         defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST,
-        requiresDependencyResolution = ResolutionScope.RUNTIME
+        requiresDependencyResolution = ResolutionScope.RUNTIME,
+        threadSafe = true
 )
 public class DeployMojo extends AbstractAndroidMojo
 {
@@ -19,7 +19,7 @@ import org.apache.maven.plugins.annotations.Mojo;
  *
  * @author Manfred Moser - manfred@simpligility.com
  */
-@Mojo( name = "devices", requiresProject = false )
+@Mojo( name = "devices", requiresProject = false, threadSafe = true )
 public class DevicesMojo extends AbstractAndroidMojo
 {
     /**
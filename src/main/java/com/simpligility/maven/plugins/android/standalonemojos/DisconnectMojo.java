@@ -16,7 +16,7 @@ import java.util.List;
  *
  * @author demey.emmanuel@gmail.com
  */
-@Mojo( name = "disconnect", requiresProject = false )
+@Mojo( name = "disconnect", requiresProject = false, threadSafe = true )
 public class DisconnectMojo extends AbstractAndroidMojo
 {
     @Override
@@ -42,7 +42,6 @@ public class DisconnectMojo extends AbstractAndroidMojo
 
                 try
                 {
-                    executor.setCaptureStdOut( true );
                     executor.executeCommand( command, parameters, false );
                 }
                 catch ( ExecutionException e )
@@ -11,7 +11,7 @@ import org.apache.maven.plugins.annotations.Mojo;
  *
  * @author Manfred Moser - manfred@simpligility.com
  */
-@Mojo( name = "emulator-start", requiresProject = false )
+@Mojo( name = "emulator-start", requiresProject = false, threadSafe = true )
 public class EmulatorStartMojo extends AbstractEmulatorMojo
 {
 
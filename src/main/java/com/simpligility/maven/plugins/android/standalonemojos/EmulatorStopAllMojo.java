@@ -11,7 +11,7 @@ import org.apache.maven.plugins.annotations.Mojo;
  *
  * @author Bryan O'Neil - bryan.oneil@hotmail.com
  */
-@Mojo( name = "emulator-stop-all", requiresProject = false )
+@Mojo( name = "emulator-stop-all", requiresProject = false, threadSafe = true )
 public class EmulatorStopAllMojo extends AbstractEmulatorMojo
 {
 
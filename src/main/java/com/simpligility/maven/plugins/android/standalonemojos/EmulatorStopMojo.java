@@ -11,7 +11,7 @@ import org.apache.maven.plugins.annotations.Mojo;
  *
  * @author Manfred Moser - manfred@simpligility.com
  */
-@Mojo( name = "emulator-stop", requiresProject = false )
+@Mojo( name = "emulator-stop", requiresProject = false, threadSafe = true )
 public class EmulatorStopMojo extends AbstractEmulatorMojo
 {
 
@@ -27,7 +27,7 @@ import org.apache.maven.plugins.annotations.Mojo;
  *
  * @author hugo.josefson@jayway.com
  */
-@Mojo( name = "instrument" )
+@Mojo( name = "instrument", threadSafe = true )
 public class InstrumentMojo extends AbstractInstrumentationMojo
 {
 
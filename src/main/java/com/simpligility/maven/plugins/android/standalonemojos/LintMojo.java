@@ -38,7 +38,7 @@ import org.apache.maven.plugins.annotations.Parameter;
  * @author Manfred Moser - manfred@simpligility.com
  */
 @SuppressWarnings( "unused" )
-@Mojo( name = "lint", requiresProject = false )
+@Mojo( name = "lint", requiresProject = false, threadSafe = true )
 public class LintMojo extends AbstractAndroidMojo
 {
 
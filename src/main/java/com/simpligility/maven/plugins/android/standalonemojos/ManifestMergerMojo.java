@@ -36,7 +36,7 @@ import java.util.Set;
  *
  * @author Benoit Billington - benoit.billington@gmail.com
  */
-@Mojo( name = "manifest-merger", defaultPhase = LifecyclePhase.PROCESS_RESOURCES )
+@Mojo( name = "manifest-merger", defaultPhase = LifecyclePhase.PROCESS_RESOURCES, threadSafe = true )
 public class ManifestMergerMojo extends AbstractAndroidMojo
 {
 
@@ -54,7 +54,7 @@ import java.util.Properties;
  * {@link com.simpligility.maven.plugins.android.standalonemojos.ManifestMergerMojo}
  */
 @Deprecated
-@Mojo( name = "manifest-update", defaultPhase = LifecyclePhase.PROCESS_RESOURCES )
+@Mojo( name = "manifest-update", defaultPhase = LifecyclePhase.PROCESS_RESOURCES, threadSafe = true )
 public class ManifestUpdateMojo extends AbstractAndroidMojo
 {
     // basic attributes
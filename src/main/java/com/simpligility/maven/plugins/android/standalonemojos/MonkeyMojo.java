@@ -49,7 +49,7 @@ import com.simpligility.maven.plugins.android.configuration.Monkey;
  * @author Stéphane Nicolas - snicolas@octo.com
  */
 @SuppressWarnings( "unused" )
-@Mojo( name = "monkey" )
+@Mojo( name = "monkey", threadSafe = true )
 public class MonkeyMojo extends AbstractAndroidMojo
 {
     /**
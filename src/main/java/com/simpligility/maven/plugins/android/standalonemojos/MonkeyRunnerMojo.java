@@ -58,7 +58,7 @@ import java.util.regex.Pattern;
  * @author Stéphane Nicolas - snicolas@octo.com
  */
 @SuppressWarnings( "unused" )
-@Mojo( name = "monkeyrunner" )
+@Mojo( name = "monkeyrunner", threadSafe = true )
 public class MonkeyRunnerMojo extends AbstractAndroidMojo
 {
     /**
@@ -321,7 +321,6 @@ public class MonkeyRunnerMojo extends AbstractAndroidMojo
                     getLog().info( "Running command: " + command );
                     getLog().info( "with parameters: " + parameters );
                     handleTestStarted();
-                    executor.setCaptureStdOut( true );
                     executor.executeCommand( command, parameters, true );
                     handleTestEnded();
                 }
@@ -26,7 +26,7 @@ import static com.simpligility.maven.plugins.android.common.AndroidExtension.APK
  * @author Joris de Groot
  * @author Benoit Billington
  */
-@Mojo( name = "publish-apk", requiresProject = false )
+@Mojo( name = "publish-apk", requiresProject = false, threadSafe = true )
 public class PublishApkMojo extends AbstractPublisherMojo
 {
 
@@ -22,7 +22,7 @@ import java.util.List;
  * @author Joris de Groot
  * @author Benoit Billington
  */
-@Mojo( name = "publish-listing", requiresProject = false )
+@Mojo( name = "publish-listing", requiresProject = false, threadSafe = true )
 public class PublishListingMojo extends AbstractPublisherMojo
 {
 
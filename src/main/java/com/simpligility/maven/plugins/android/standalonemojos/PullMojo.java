@@ -48,7 +48,7 @@ import java.io.IOException;
  *
  * @author Manfred Moser - manfred@simpligility.com
  */
-@Mojo( name = "pull", requiresProject = false )
+@Mojo( name = "pull", requiresProject = false, threadSafe = true )
 public class PullMojo extends AbstractAndroidMojo
 {
 
@@ -48,7 +48,7 @@ import java.util.Map;
  * @author Manfred Moser - manfred@simpligility.com
  */
 @SuppressWarnings( "unused" )
-@Mojo( name = "push", requiresProject = false )
+@Mojo( name = "push", requiresProject = false, threadSafe = true )
 public class PushMojo extends AbstractAndroidMojo
 {
 
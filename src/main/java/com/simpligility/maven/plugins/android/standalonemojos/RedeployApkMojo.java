@@ -40,7 +40,7 @@ import java.io.File;
  *
  * @author Manfred Moser - manfred@simpligility.com
  */
-@Mojo( name = "redeploy-apk", requiresProject = false )
+@Mojo( name = "redeploy-apk", requiresProject = false, threadSafe = true )
 public class RedeployApkMojo extends AbstractAndroidMojo
 {
     /**
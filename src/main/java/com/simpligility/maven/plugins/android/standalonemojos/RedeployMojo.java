@@ -35,7 +35,7 @@ import org.apache.maven.plugins.annotations.ResolutionScope;
  * @author clement.escoffier@akquinet.de
  * @author Manfred Moser - manfred@simpligility.com
  */
-@Mojo( name = "redeploy", requiresDependencyResolution = ResolutionScope.RUNTIME )
+@Mojo( name = "redeploy", requiresDependencyResolution = ResolutionScope.RUNTIME, threadSafe = true )
 public class RedeployMojo extends AbstractAndroidMojo
 {
 
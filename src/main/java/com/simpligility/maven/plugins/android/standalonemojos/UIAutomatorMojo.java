@@ -61,7 +61,7 @@ import com.simpligility.maven.plugins.android.configuration.UIAutomator;
  * @author Stéphane Nicolas - snicolas@octo.com
  */
 @SuppressWarnings( "unused" )
-@Mojo( name = "uiautomator", requiresProject = false )
+@Mojo( name = "uiautomator", requiresProject = false, threadSafe = true )
 public class UIAutomatorMojo extends AbstractAndroidMojo
 {
     /**
@@ -40,7 +40,7 @@ import java.io.File;
  *
  * @author Manfred Moser - manfred@simpligility.com
  */
-@Mojo( name = "undeploy-apk", requiresProject = false )
+@Mojo( name = "undeploy-apk", requiresProject = false, threadSafe = true )
 public class UndeployApkMojo extends AbstractAndroidMojo
 {
     /**
@@ -36,7 +36,7 @@ import org.apache.maven.plugins.annotations.Mojo;
  * @author hugo.josefson@jayway.com
  * @author Manfred Moser - manfred@simpligility.com
  */
-@Mojo( name = "undeploy" )
+@Mojo( name = "undeploy", threadSafe = true )
 public class UndeployMojo extends AbstractAndroidMojo
 {
     /**
@@ -47,7 +47,7 @@ import java.util.jar.JarFile;
  * @author hugo.josefson@jayway.com
  * @author Manfred Moser
  */
-@Mojo( name = "unpack", requiresDependencyResolution = ResolutionScope.COMPILE )
+@Mojo( name = "unpack", requiresDependencyResolution = ResolutionScope.COMPILE, threadSafe = true )
 public class UnpackMojo extends AbstractAndroidMojo
 {
     /**
@@ -28,7 +28,7 @@ import static com.simpligility.maven.plugins.android.common.AndroidExtension.APK
  *
  * @author Manfred Moser - manfred@simpligility.com
  */
-@Mojo( name = "zipalign" )
+@Mojo( name = "zipalign", threadSafe = true )
 public class ZipalignMojo extends AbstractAndroidMojo 
 {
 
@@ -0,0 +1,56 @@
+package com.simpligility.maven.plugins.android;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Exercises the {@link AndroidSdkCache} class.
+ */
+public class AndroidSdkCacheTest {
+
+    private static final String PLATFORM = "25";
+    private static final String BUILD_TOOLS = "30.0.2";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void givenSameConfigurationThenSameSdkIsReturned() {
+        final String androidHome = System.getenv( "ANDROID_HOME" );
+        Assume.assumeNotNull( androidHome );
+        Assume.assumeTrue( new File( androidHome, "platforms/android-" + PLATFORM ).isDirectory() );
+        Assume.assumeTrue( new File( androidHome, "build-tools/" + BUILD_TOOLS ).isDirectory() );
+        final AndroidSdkCache cache = new AndroidSdkCache();
+
+        final AndroidSdk sdk = cache.get( new File( androidHome ), PLATFORM, BUILD_TOOLS );
+
+        assertSame( sdk, cache.get( new File( androidHome ), PLATFORM, BUILD_TOOLS ) );
+        assertNotSame( sdk, cache.get( new File( androidHome ), PLATFORM, null ) );
+    }
+
+    @Test
+    public void givenInvalidSdkThenFailureIsNotCached() throws Exception {
+        final AndroidSdkCache cache = new AndroidSdkCache();
+        final File sdkPath = temp.newFolder( "sdk" );
+
+        assertInvalid( cache, sdkPath );
+        assertInvalid( cache, sdkPath );
+    }
+
+    private void assertInvalid( AndroidSdkCache cache, File sdkPath ) {
+        try {
+            cache.get( sdkPath, PLATFORM, null );
+            fail( "Expected InvalidSdkException" );
+        } catch ( InvalidSdkException expected ) {
+            // expected
+        }
+    }
+}
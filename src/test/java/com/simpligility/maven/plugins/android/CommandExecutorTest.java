@@ -0,0 +1,109 @@
+package com.simpligility.maven.plugins.android;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.Os;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Exercises the output capture modes of the default {@link CommandExecutor}.
+ */
+public class CommandExecutorTest {
+
+    @Test
+    public void givenCapturedStdErrThenOnlyTheLastLinesAreKept() throws Exception {
+        final CommandExecutor.Factory.ErrorStreamConsumer consumer =
+                new CommandExecutor.Factory.ErrorStreamConsumer( null, null, true );
+        for ( int i = 0; i < CommandExecutor.Factory.MAX_CAPTURED_ERROR_LINES + 2; i++ ) {
+            consumer.consumeLine( "line " + i );
+        }
+
+        final String[] lines = consumer.toString().split( "\n" );
+        assertEquals( CommandExecutor.Factory.MAX_CAPTURED_ERROR_LINES, lines.length );
+        assertEquals( "line 2", lines[ 0 ] );
+        assertEquals( "line " + ( CommandExecutor.Factory.MAX_CAPTURED_ERROR_LINES + 1 ), lines[ lines.length - 1 ] );
+    }
+
+    @Test
+    public void givenStdOutConsumerThenOutputIsStreamed() throws Exception {
+        assumeTrue( Os.isFamily( Os.FAMILY_UNIX ) );
+        final List<String> consumed = new ArrayList<String>();
+        final CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
+        executor.setLogger( new SystemStreamLog() );
+        executor.setStdOutConsumer( new StreamConsumer() {
+            @Override
+            public void consumeLine( String line ) {
+                consumed.add( line );
+            }
+        } );
+
+        executor.executeCommand( "/bin/sh", Arrays.asList( "-c", "echo first; echo second" ), false );
+
+        assertEquals( Arrays.asList( "first", "second" ), consumed );
+    }
+
+    @Test
+    public void givenAsyncCommandsThenEachCapturesItsOwnOutput() throws Exception {
+        assumeTrue( Os.isFamily( Os.FAMILY_UNIX ) );
+        final CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
+        executor.setLogger( new SystemStreamLog() );
+
+        final ListenableFuture<CommandResult> first = executor.executeAsync( shell( "echo first" )
+                .setCaptureStdOut( true ).build() );
+        final ListenableFuture<CommandResult> second = executor.executeAsync( shell( "echo second >&2" ).build() );
+
+        assertEquals( "first\n", first.get( 10, TimeUnit.SECONDS ).getStandardOut() );
+        assertEquals( 0, first.get().getExitCode() );
+        assertNull( second.get( 10, TimeUnit.SECONDS ).getStandardOut() );
+        assertEquals( "second\n", second.get().getStandardError() );
+    }
+
+    @Test
+    public void givenFailingAsyncCommandThenFutureFails() throws Exception {
+        assumeTrue( Os.isFamily( Os.FAMILY_UNIX ) );
+        final CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
+        executor.setLogger( new SystemStreamLog() );
+
+        try {
+            executor.executeAsync( shell( "exit 3" ).build() ).get( 10, TimeUnit.SECONDS );
+            fail( "Expected ExecutionException" );
+        } catch ( ExecutionException e ) {
+            assertTrue( e.getCause() instanceof com.simpligility.maven.plugins.android.ExecutionException );
+            assertTrue( e.getCause().getMessage(), e.getCause().getMessage().contains( "Result = 3" ) );
+        }
+    }
+
+    @Test
+    public void givenTimeoutThenAsyncCommandIsKilled() throws Exception {
+        assumeTrue( Os.isFamily( Os.FAMILY_UNIX ) );
+        final CommandExecutor executor = CommandExecutor.Factory.createDefaultCommmandExecutor();
+        executor.setLogger( new SystemStreamLog() );
+
+        final long start = System.nanoTime();
+        try {
+            executor.executeAsync( shell( "sleep 30" ).setTimeout( 1, TimeUnit.SECONDS ).build() )
+                    .get( 20, TimeUnit.SECONDS );
+            fail( "Expected ExecutionException" );
+        } catch ( ExecutionException e ) {
+            assertTrue( e.getCause().getMessage(), e.getCause().getMessage().contains( "ANDROID-040-005" ) );
+        }
+        assertTrue( TimeUnit.NANOSECONDS.toSeconds( System.nanoTime() - start ) < 20 );
+    }
+
+    private static CommandSpec.Builder shell( String script ) {
+        return CommandSpec.builder( "/bin/sh" ).addArgument( "-c" ).addArgument( script );
+    }
+}
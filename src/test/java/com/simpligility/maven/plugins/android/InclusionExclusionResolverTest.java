@@ -193,6 +193,32 @@ public class InclusionExclusionResolverTest
         );
     }
 
+    @Test
+    public void testOverlappingQualifiers()
+    {
+        assertEquals(
+                "A group qualifier must win over the artifact qualifiers of the same group",
+                collect( A1, A3, A4 ),
+                filterArtifacts( ALL, false, null, null, null, asList( "G2:A1:1.0", "G2", "G2:A2" ) )
+        );
+        assertEquals(
+                "Several versions of the same artifact must all match",
+                collect( A1, A2, A3 ),
+                filterArtifacts( ALL, true, null, null, asList( "G1:A1:1.0", " G1 : A2 ", "G1:A3:1.0", "G2:A1:1.0" ),
+                        null )
+        );
+    }
+
+    @Test
+    public void testCompiledFilterIsReusable()
+    {
+        final InclusionExclusionResolver.Filter filter = InclusionExclusionResolver.compile( false, null,
+                singleton( "jar" ), singleton( "G1:A3" ), null );
+        assertEquals( collect( A3, A4, A5 ), filter.filter( ALL ) );
+        assertEquals( collect( A3, A5 ), filter.filter( collect( A1, A3, A5 ) ) );
+        assertEquals( NONE, filter.filter( NONE ) );
+    }
+
     @Test( expected = IllegalArgumentException.class )
     public void testIllegalQualifier()
     {
@@ -15,13 +15,19 @@
  */
 package com.simpligility.maven.plugins.android.asm;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.simpligility.maven.plugins.android.asm.AndroidTestFinder;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
  * Exercises the {@link com.simpligility.maven.plugins.android.asm.AndroidTestFinder} class.
@@ -29,15 +35,58 @@ import java.io.File;
  * @author hugo.josefson@jayway.com
  */
 public class AndroidTestFinderTest {
+    private static final File WITHOUT_TESTS = new File("target/test-classes/com/simpligility/maven/plugins/android/asm/withouttests");
+    private static final File WITH_TESTS = new File("target/test-classes/com/simpligility/maven/plugins/android/asm/withtests");
+
     @Test
     public void givenDirectoryWithoutTestsThenNoTests() throws MojoExecutionException {
-        final boolean result = AndroidTestFinder.containsAndroidTests(new File("target/test-classes/com/simpligility/maven/plugins/android/asm/withouttests"));
+        final boolean result = AndroidTestFinder.containsAndroidTests(WITHOUT_TESTS);
         Assert.assertFalse("'withouttests' should not contain any tests.", result);
     }
     @Test
     public void givenDirectoryWithTestsThenItContainsTests() throws MojoExecutionException {
-        final boolean result = AndroidTestFinder.containsAndroidTests(new File("target/test-classes/com/simpligility/maven/plugins/android/asm/withtests"));
+        final boolean result = AndroidTestFinder.containsAndroidTests(WITH_TESTS);
         Assert.assertTrue("'withtests' should contain tests.", result);
     }
 
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void givenJarWithTestsThenItContainsTests() throws Exception {
+        final File directory = temp.newFolder( "classes" );
+        final ZipOutputStream jar = new ZipOutputStream( new FileOutputStream( new File( directory, "tests.jar" ) ) );
+        jar.putNextEntry( new ZipEntry( "withtests/TestClassA.class" ) );
+        jar.write( FileUtils.readFileToByteArray( new File( WITH_TESTS, "TestClassA.class" ) ) );
+        jar.closeEntry();
+        jar.close();
+
+        Assert.assertTrue( "jar should contain tests.", AndroidTestFinder.containsAndroidTests( directory ) );
+    }
+
+    @Test
+    public void givenManyClassesWithOneTestThenItContainsTests() throws Exception {
+        final File directory = temp.newFolder( "classes" );
+        final byte[] noTest = FileUtils.readFileToByteArray( new File( WITHOUT_TESTS, "NoTestClassA.class" ) );
+        for ( int i = 0; i < 500; i++ ) {
+            FileUtils.writeByteArrayToFile( new File( directory, "p" + ( i % 10 ) + "/NoTest" + i + ".class" ), noTest );
+        }
+        Assert.assertFalse( AndroidTestFinder.containsAndroidTests( directory ) );
+
+        FileUtils.copyFile( new File( WITH_TESTS, "TestClassB.class" ), new File( directory, "p7/TestClassB.class" ) );
+        Assert.assertTrue( AndroidTestFinder.containsAndroidTests( directory ) );
+    }
+
+    @Test
+    public void givenUnchangedDirectoryThenCachedResultIsUsed() throws Exception {
+        final File directory = temp.newFolder( "classes" );
+        FileUtils.copyFile( new File( WITHOUT_TESTS, "NoTestClassA.class" ), new File( directory, "A.class" ) );
+        final AndroidTestFinder.Cache cache = new AndroidTestFinder.Cache();
+        Assert.assertFalse( AndroidTestFinder.containsAndroidTests( directory, cache ) );
+
+        FileUtils.copyFile( new File( WITH_TESTS, "TestClassA.class" ), new File( directory, "B.class" ) );
+        Assert.assertTrue( AndroidTestFinder.containsAndroidTests( directory, cache ) );
+        Assert.assertTrue( AndroidTestFinder.containsAndroidTests( directory, cache ) );
+    }
+
 }
@@ -0,0 +1,204 @@
+package com.simpligility.maven.plugins.android.asm;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Exercises the {@link MainDexListBuilder} class with class files written by ASM.
+ */
+public class MainDexListBuilderTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void givenApplicationThenClassesReachableFromItsConstructorAreListed() throws Exception {
+        final File classes = temp.newFolder( "classes" );
+        ClassWriter writer = newClass( "app/App", "android/app/Application" );
+        MethodVisitor method = newMethod( writer, Opcodes.ACC_PUBLIC, "<init>" );
+        method.visitMethodInsn( Opcodes.INVOKESTATIC, "app/Helper", "run", "()V", false );
+        endClass( writer, method, classes );
+
+        writer = newClass( "app/Helper", "java/lang/Object" );
+        method = newMethod( writer, Opcodes.ACC_STATIC, "run" );
+        method.visitTypeInsn( Opcodes.NEW, "app/Model" );
+        endClass( writer, method, classes );
+
+        writer = newClass( "app/Model", "app/BaseModel" );
+        endClass( writer, newMethod( writer, Opcodes.ACC_PUBLIC, "<init>" ), classes );
+        writer = newClass( "app/BaseModel", "java/lang/Object" );
+        endClass( writer, newMethod( writer, Opcodes.ACC_PUBLIC, "<init>" ), classes );
+        writer = newClass( "app/Unused", "java/lang/Object" );
+        endClass( writer, newMethod( writer, Opcodes.ACC_PUBLIC, "<init>" ), classes );
+
+        assertEquals( Arrays.asList( "app/App.class", "app/BaseModel.class", "app/Helper.class", "app/Model.class" ),
+                build( classes ) );
+    }
+
+    @Test
+    public void givenVirtualCallThenOverridesOfKeptClassesAreTraced() throws Exception {
+        final File classes = temp.newFolder( "classes" );
+        ClassWriter writer = newClass( "app/App", "android/app/Application" );
+        MethodVisitor method = newMethod( writer, Opcodes.ACC_PUBLIC, "<init>" );
+        method.visitTypeInsn( Opcodes.NEW, "app/Task" );
+        method.visitMethodInsn( Opcodes.INVOKEINTERFACE, "app/Runnable", "run", "()V", true );
+        endClass( writer, method, classes );
+
+        writer = new ClassWriter( 0 );
+        writer.visit( Opcodes.V1_7, Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT,
+                "app/Runnable", null, "java/lang/Object", null );
+        writer.visitMethod( Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "run", "()V", null, null ).visitEnd();
+        endClass( writer, null, classes );
+
+        writer = new ClassWriter( ClassWriter.COMPUTE_MAXS );
+        writer.visit( Opcodes.V1_7, Opcodes.ACC_PUBLIC, "app/Task", null, "java/lang/Object",
+                new String[] { "app/Runnable" } );
+        method = newMethod( writer, Opcodes.ACC_PUBLIC, "run" );
+        method.visitMethodInsn( Opcodes.INVOKESTATIC, "app/Worker", "work", "()V", false );
+        endClass( writer, method, classes );
+
+        writer = newClass( "app/Worker", "java/lang/Object" );
+        endClass( writer, newMethod( writer, Opcodes.ACC_STATIC, "work" ), classes );
+        writer = newClass( "app/Other", "java/lang/Object" );
+        endClass( writer, newMethod( writer, Opcodes.ACC_PUBLIC, "run" ), classes );
+
+        assertEquals( Arrays.asList( "app/App.class", "app/Runnable.class", "app/Task.class", "app/Worker.class" ),
+                build( classes ) );
+    }
+
+    @Test
+    public void givenApplicationThenClassesReachableFromItsPlatformOverridesAreListed() throws Exception {
+        final File platform = temp.newFolder( "platform" );
+        ClassWriter writer = newClass( "android/app/Application", "java/lang/Object" );
+        endClass( writer, newMethod( writer, Opcodes.ACC_PUBLIC, "onCreate" ), platform );
+        final File androidJar = writeJar( "android.jar", platform, "android/app/Application.class" );
+
+        final File classes = temp.newFolder( "classes" );
+        writer = newClass( "app/App", "android/app/Application" );
+        MethodVisitor method = newMethod( writer, Opcodes.ACC_PUBLIC, "onCreate" );
+        method.visitMethodInsn( Opcodes.INVOKESTATIC, "app/Helper", "init", "()V", false );
+        endClass( writer, method, classes );
+
+        writer = newClass( "app/Helper", "java/lang/Object" );
+        method = newMethod( writer, Opcodes.ACC_STATIC, "init" );
+        method.visitTypeInsn( Opcodes.NEW, "app/Model" );
+        endClass( writer, method, classes );
+        writer = newClass( "app/Model", "java/lang/Object" );
+        endClass( writer, newMethod( writer, Opcodes.ACC_PUBLIC, "<init>" ), classes );
+
+        // Referenced by the kept class, even when the override is not known to be called.
+        assertEquals( Arrays.asList( "app/App.class", "app/Helper.class" ), build( classes, null ) );
+        assertEquals( Arrays.asList( "app/App.class", "app/Helper.class", "app/Model.class" ),
+                build( classes, androidJar ) );
+    }
+
+    @Test
+    public void givenDuplicateClassesThenTheOneOfTheFirstInputWins() throws Exception {
+        final File first = temp.newFolder( "first" );
+        ClassWriter writer = newClass( "app/App", "android/app/Application" );
+        MethodVisitor method = newMethod( writer, Opcodes.ACC_PUBLIC, "<init>" );
+        method.visitMethodInsn( Opcodes.INVOKESTATIC, "app/First", "run", "()V", false );
+        endClass( writer, method, first );
+        writer = newClass( "app/First", "java/lang/Object" );
+        endClass( writer, newMethod( writer, Opcodes.ACC_STATIC, "run" ), first );
+
+        final File second = temp.newFolder( "second" );
+        writer = newClass( "app/App", "android/app/Application" );
+        method = newMethod( writer, Opcodes.ACC_PUBLIC, "<init>" );
+        method.visitMethodInsn( Opcodes.INVOKESTATIC, "app/Second", "run", "()V", false );
+        endClass( writer, method, second );
+        writer = newClass( "app/Second", "java/lang/Object" );
+        endClass( writer, newMethod( writer, Opcodes.ACC_STATIC, "run" ), second );
+
+        final File firstJar = writeJar( "first.jar", first, "app/App.class", "app/First.class" );
+        final File secondJar = writeJar( "second.jar", second, "app/App.class", "app/Second.class" );
+
+        assertEquals( Arrays.asList( "app/App.class", "app/First.class" ),
+                build( Arrays.asList( firstJar, secondJar ), null ) );
+        assertEquals( Arrays.asList( "app/App.class", "app/Second.class" ),
+                build( Arrays.asList( secondJar, firstJar ), null ) );
+    }
+
+    @Test
+    public void givenJarThenRuntimeAnnotatedClassesAreListed() throws Exception {
+        final File classes = temp.newFolder( "classes" );
+        ClassWriter writer = newClass( "lib/Annotated", "java/lang/Object" );
+        writer.visitAnnotation( "Llib/Keep;", true ).visitEnd();
+        endClass( writer, null, classes );
+        writer = newClass( "lib/Plain", "java/lang/Object" );
+        endClass( writer, null, classes );
+
+        final File jar = writeJar( "lib.jar", classes, "lib/Annotated.class", "lib/Plain.class" );
+
+        assertEquals( Collections.singletonList( "lib/Annotated.class" ), build( jar ) );
+    }
+
+    private static List<String> build( File input ) throws Exception {
+        return build( input, null );
+    }
+
+    private static List<String> build( File input, File libraryJar ) throws Exception {
+        return build( Collections.singletonList( input ), libraryJar );
+    }
+
+    private static List<String> build( List<File> inputs, File libraryJar ) throws Exception {
+        return Arrays.asList( new MainDexListBuilder( libraryJar ).build( inputs ).toArray( new String[ 0 ] ) );
+    }
+
+    private File writeJar( String jarName, File classes, String... names ) throws Exception {
+        final File jar = new File( temp.getRoot(), jarName );
+        final ZipOutputStream out = new ZipOutputStream( new FileOutputStream( jar ) );
+        try {
+            for ( String name : names ) {
+                out.putNextEntry( new ZipEntry( name ) );
+                out.write( FileUtils.readFileToByteArray( new File( classes, name ) ) );
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        return jar;
+    }
+
+    private static ClassWriter newClass( String name, String superName ) {
+        final ClassWriter writer = new ClassWriter( ClassWriter.COMPUTE_MAXS );
+        writer.visit( Opcodes.V1_7, Opcodes.ACC_PUBLIC, name, null, superName, null );
+        return writer;
+    }
+
+    private static MethodVisitor newMethod( ClassWriter writer, int access, String name ) {
+        final MethodVisitor method = writer.visitMethod( access, name, "()V", null, null );
+        method.visitCode();
+        return method;
+    }
+
+    /**
+     * Ends the method and the class, and writes the class file in a folder of classes.
+     */
+    private static void endClass( ClassWriter writer, MethodVisitor method, File classes ) throws Exception {
+        if ( method != null ) {
+            method.visitInsn( Opcodes.RETURN );
+            method.visitMaxs( 0, 0 );
+            method.visitEnd();
+        }
+        writer.visitEnd();
+        final String name = new ClassReader( writer.toByteArray() ).getClassName();
+        FileUtils.writeByteArrayToFile( new File( classes, name + ".class" ), writer.toByteArray() );
+    }
+}
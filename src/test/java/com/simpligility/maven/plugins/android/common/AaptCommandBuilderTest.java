@@ -0,0 +1,47 @@
+package com.simpligility.maven.plugins.android.common;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Exercises the density splits commands of the {@link AaptCommandBuilder} class.
+ */
+public class AaptCommandBuilderTest {
+
+    @Test
+    public void givenDensityThenAaptPackageKeepsOnlyIt() {
+        final List<String> commands = AaptCommandBuilder.packageResources( new SystemStreamLog() )
+                .setPreferredDensity( "hdpi" )
+                .build();
+
+        assertEquals( 1, Collections.indexOfSubList( commands, Arrays.asList( "--preferred-density", "hdpi" ) ) );
+    }
+
+    @Test
+    public void givenDensityThenAapt2LinkKeepsOnlyIt() {
+        final List<String> commands = AaptCommandBuilder.linkResources( new SystemStreamLog() )
+                .setPreferredDensity( "xxhdpi" )
+                .build();
+
+        assertEquals( 1, Collections.indexOfSubList( commands, Arrays.asList( "--preferred-density", "xxhdpi" ) ) );
+    }
+
+    @Test
+    public void givenNoDensityThenAllDensitiesAreKept() {
+        assertFalse( AaptCommandBuilder.packageResources( new SystemStreamLog() )
+                .setPreferredDensity( null )
+                .build()
+                .contains( "--preferred-density" ) );
+        assertFalse( AaptCommandBuilder.linkResources( new SystemStreamLog() )
+                .setPreferredDensity( "" )
+                .build()
+                .contains( "--preferred-density" ) );
+    }
+}
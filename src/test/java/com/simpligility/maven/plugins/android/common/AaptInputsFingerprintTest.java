@@ -0,0 +1,62 @@
+package com.simpligility.maven.plugins.android.common;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Exercises the {@link AaptInputsFingerprint} class.
+ */
+public class AaptInputsFingerprintTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void givenSameInputsThenSameFingerprint() throws Exception {
+        final File res = temp.newFolder( "res" );
+        FileUtils.writeStringToFile( new File( res, "values/strings.xml" ), "<resources/>" );
+
+        assertEquals( AaptInputsFingerprint.of( arguments( res ) ), AaptInputsFingerprint.of( arguments( res ) ) );
+    }
+
+    @Test
+    public void givenChangedResourceThenDifferentFingerprint() throws Exception {
+        final File res = temp.newFolder( "res" );
+        final File strings = new File( res, "values/strings.xml" );
+        FileUtils.writeStringToFile( strings, "<resources/>" );
+        final String before = AaptInputsFingerprint.of( arguments( res ) );
+
+        FileUtils.writeStringToFile( strings, "<resources></resources>" );
+
+        assertNotEquals( before, AaptInputsFingerprint.of( arguments( res ) ) );
+    }
+
+    @Test
+    public void givenRecordedFingerprintThenPackageMatchesUntilCleared() throws Exception {
+        final File resourcePackage = temp.newFile( "app.ap_" );
+        final String fingerprint = AaptInputsFingerprint.of( arguments( temp.newFolder( "res" ) ) );
+        assertFalse( AaptInputsFingerprint.matches( resourcePackage, fingerprint ) );
+
+        AaptInputsFingerprint.record( resourcePackage, fingerprint );
+        assertTrue( AaptInputsFingerprint.matches( resourcePackage, fingerprint ) );
+        assertFalse( AaptInputsFingerprint.matches( resourcePackage, fingerprint + "0" ) );
+
+        AaptInputsFingerprint.clear( resourcePackage );
+        assertFalse( AaptInputsFingerprint.matches( resourcePackage, fingerprint ) );
+    }
+
+    private static List<String> arguments( File res ) {
+        return Arrays.asList( "package", "-S", res.getAbsolutePath(), "--auto-add-overlay" );
+    }
+}
@@ -0,0 +1,78 @@
+package com.simpligility.maven.plugins.android.common;
+
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Exercises the {@link ClasspathIndex} class.
+ */
+public class ClasspathIndexTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final Logger log = new ConsoleLogger( Logger.LEVEL_DISABLED, "test" );
+
+    @Test
+    public void givenJarAndFolderThenAllClassesAreIndexed() throws Exception {
+        final File jar = createJar( "libs.jar", "com/foo/R.class", "com/foo/R$string.class", "META-INF/MANIFEST.MF" );
+        final File folder = temp.newFolder( "classes" );
+        new File( folder, "com/bar" ).mkdirs();
+        new File( folder, "com/bar/R.class" ).createNewFile();
+        new File( folder, "com/bar/layout.xml" ).createNewFile();
+
+        final ClasspathIndex index = ClasspathIndex.build(
+                Arrays.asList( jar.getAbsolutePath(), folder.getAbsolutePath(), "/does/not/exist.jar" ),
+                new ClasspathIndex.JarCache(), log );
+
+        assertTrue( index.containsClass( "com.foo.R" ) );
+        assertTrue( index.containsClass( "com.foo.R$string" ) );
+        assertTrue( index.containsClass( "com.bar.R" ) );
+        assertFalse( index.containsClass( "com.baz.R" ) );
+        assertEquals( 3, index.size() );
+    }
+
+    @Test
+    public void givenJarIsReplacedThenCacheIsRefreshed() throws Exception {
+        final ClasspathIndex.JarCache cache = new ClasspathIndex.JarCache();
+        final File jar = createJar( "classes.jar", "dummy" );
+        assertFalse( ClasspathIndex.build( Arrays.asList( jar.getAbsolutePath() ), cache, log )
+                .containsClass( "com.foo.R" ) );
+
+        jar.delete();
+        createJar( "classes.jar", "com/foo/R.class", "com/foo/BuildConfig.class" );
+        assertTrue( ClasspathIndex.build( Arrays.asList( jar.getAbsolutePath() ), cache, log )
+                .containsClass( "com.foo.R" ) );
+    }
+
+    @Test
+    public void givenNonClassPathThenNoClassName() {
+        assertNull( ClasspathIndex.toClassName( "com/foo/R.java" ) );
+        assertEquals( "com.foo.R$id", ClasspathIndex.toClassName( "com/foo/R$id.class" ) );
+    }
+
+    private File createJar( String name, String... entries ) throws Exception {
+        final File jar = new File( temp.getRoot(), name );
+        final ZipOutputStream out = new ZipOutputStream( new FileOutputStream( jar ) );
+        for ( String entry : entries ) {
+            out.putNextEntry( new ZipEntry( entry ) );
+            out.closeEntry();
+        }
+        out.close();
+        return jar;
+    }
+}
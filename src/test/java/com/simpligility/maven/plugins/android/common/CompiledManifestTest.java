@@ -0,0 +1,66 @@
+package com.simpligility.maven.plugins.android.common;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Exercises the {@link CompiledManifest} class.
+ */
+public class CompiledManifestTest {
+
+    private static final int VERSION_CODE = 0x0101021b;
+    private static final int VERSION_NAME = 0x0101021c;
+
+    @Test
+    public void givenVersionCodeThenItIsRead() {
+        assertEquals( 7, CompiledManifest.getVersionCode( manifest( VERSION_CODE, 7 ) ) );
+    }
+
+    @Test
+    public void givenNewVersionCodeThenOnlyTheCopyIsChanged() {
+        final byte[] manifest = manifest( VERSION_CODE, 7 );
+        final byte[] original = manifest.clone();
+
+        final byte[] split = CompiledManifest.setVersionCode( manifest, 2007 );
+
+        assertEquals( 2007, CompiledManifest.getVersionCode( split ) );
+        assertEquals( manifest.length, split.length );
+        assertArrayEquals( original, manifest );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void givenNoVersionCodeThenItFails() {
+        CompiledManifest.getVersionCode( manifest( VERSION_NAME, 7 ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void givenTextManifestThenItFails() {
+        CompiledManifest.getVersionCode( "<manifest/>".getBytes() );
+    }
+
+    /**
+     * @return a compiled manifest made of a resource map and a &lt;manifest&gt; element with a single integer
+     *         attribute. The string pool is left out as it is not needed to find the attribute.
+     */
+    private static byte[] manifest( int attributeId, int value ) {
+        final ByteBuffer xml = ByteBuffer.allocate( 8 + 12 + 56 ).order( ByteOrder.LITTLE_ENDIAN );
+        // file header
+        xml.putShort( (short) 0x0003 ).putShort( (short) 8 ).putInt( xml.capacity() );
+        // resource map: string 0 is the attribute name
+        xml.putShort( (short) 0x0180 ).putShort( (short) 8 ).putInt( 12 ).putInt( attributeId );
+        // start element: header, line number and comment
+        xml.putShort( (short) 0x0102 ).putShort( (short) 16 ).putInt( 56 ).putInt( 1 ).putInt( -1 );
+        // namespace, name, attribute start, size and count, id, class and style indexes
+        xml.putInt( -1 ).putInt( 1 ).putShort( (short) 20 ).putShort( (short) 20 ).putShort( (short) 1 )
+                .putShort( (short) 0 ).putShort( (short) 0 ).putShort( (short) 0 );
+        // attribute: namespace, name, raw value, then size, res0, type (int) and data of the value
+        xml.putInt( 0 ).putInt( 0 ).putInt( -1 ).putShort( (short) 8 ).put( (byte) 0 ).put( (byte) 0x10 )
+                .putInt( value );
+        return xml.array();
+    }
+}
@@ -0,0 +1,98 @@
+package com.simpligility.maven.plugins.android.common;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.Os;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Exercises the {@link CompiledResourceCache} class with a fake aapt2, which records the files it compiles.
+ */
+public class CompiledResourceCacheTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File res;
+    private File compiled;
+    private CompiledResourceCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue( Os.isFamily( Os.FAMILY_UNIX ) );
+        res = temp.newFolder( "res" );
+        compiled = new File( temp.getRoot(), "compiled.txt" );
+        final File aapt2 = temp.newFile( "aapt2" );
+        FileUtils.writeStringToFile( aapt2, "#!/bin/sh\n"
+                + "echo \"$4\" >> " + compiled.getAbsolutePath() + "\n"
+                + "touch \"$3/$(basename \"$4\").flat\"\n" );
+        aapt2.setExecutable( true );
+        cache = new CompiledResourceCache( new File( temp.getRoot(), "cache" ), aapt2.getAbsolutePath(),
+                new SystemStreamLog() );
+    }
+
+    @Test
+    public void givenUnchangedFilesThenTheyAreCompiledOnce() throws Exception {
+        write( "layout/main.xml", "<LinearLayout/>" );
+        write( "values/strings.xml", "<resources/>" );
+
+        final List<File> flatFiles = compile();
+        compile();
+
+        assertEquals( 2, compiledFiles().size() );
+        assertEquals( Arrays.asList( "main.xml.flat", "strings.xml.flat" ),
+                Arrays.asList( flatFiles.get( 0 ).getName(), flatFiles.get( 1 ).getName() ) );
+    }
+
+    @Test
+    public void givenChangedFileThenOnlyItIsCompiledAgain() throws Exception {
+        write( "layout/main.xml", "<LinearLayout/>" );
+        write( "values/strings.xml", "<resources/>" );
+        compile();
+
+        write( "layout/main.xml", "<FrameLayout/>" );
+        compile();
+
+        final List<String> compiledFiles = compiledFiles();
+        assertEquals( 3, compiledFiles.size() );
+        assertEquals( new File( res, "layout/main.xml" ).getAbsolutePath(), compiledFiles.get( 2 ) );
+    }
+
+    @Test
+    public void givenDeletedFileThenItsCompiledFileIsRemoved() throws Exception {
+        write( "layout/main.xml", "<LinearLayout/>" );
+        write( "layout/other.xml", "<LinearLayout/>" );
+        compile();
+
+        FileUtils.forceDelete( new File( res, "layout/other.xml" ) );
+        final List<File> flatFiles = compile();
+
+        assertEquals( 1, flatFiles.size() );
+        assertEquals( "main.xml.flat", flatFiles.get( 0 ).getName() );
+    }
+
+    private List<File> compile() throws Exception {
+        final Map<File, List<File>> flatFiles = cache.compile( Collections.singletonList( res ) );
+        return flatFiles.get( res );
+    }
+
+    private List<String> compiledFiles() throws Exception {
+        return FileUtils.readLines( compiled );
+    }
+
+    private void write( String path, String content ) throws Exception {
+        FileUtils.writeStringToFile( new File( res, path ), content );
+    }
+}
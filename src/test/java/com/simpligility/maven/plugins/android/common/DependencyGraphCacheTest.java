@@ -0,0 +1,109 @@
+package com.simpligility.maven.plugins.android.common;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.artifact.resolver.filter.ExcludesArtifactFilter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilder;
+import org.apache.maven.shared.dependency.graph.DependencyGraphBuilderException;
+import org.apache.maven.shared.dependency.graph.DependencyNode;
+import org.apache.maven.shared.dependency.graph.internal.DefaultDependencyNode;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Exercises the {@link DependencyGraphCache} class.
+ */
+public class DependencyGraphCacheTest {
+
+    @Test
+    public void givenSameProjectThenGraphIsOnlyBuiltOnce() throws Exception {
+        final DependencyNode root = node( null, "app" );
+        final CountingBuilder builder = new CountingBuilder( root );
+        final DependencyGraphCache cache = new DependencyGraphCache();
+        final MavenProject project = new MavenProject();
+
+        assertSame( root, cache.getDependencyGraph( project, null, builder ) );
+        assertSame( root, cache.getDependencyGraph( project, null, builder ) );
+        assertEquals( 1, builder.builds.get() );
+    }
+
+    @Test
+    public void givenFailedBuildThenItIsRetried() throws Exception {
+        final CountingBuilder builder = new CountingBuilder( null );
+        final DependencyGraphCache cache = new DependencyGraphCache();
+        final MavenProject project = new MavenProject();
+
+        for ( int i = 0; i < 2; i++ ) {
+            try {
+                cache.getDependencyGraph( project, null, builder );
+                fail( "Expected DependencyGraphBuilderException" );
+            } catch ( DependencyGraphBuilderException expected ) {
+                // expected
+            }
+        }
+        assertEquals( 2, builder.builds.get() );
+    }
+
+    @Test
+    public void givenFilterThenExcludedNodesArePrunedWithTheirChildren() {
+        final DefaultDependencyNode root = node( null, "app" );
+        final DefaultDependencyNode excluded = node( root, "excluded" );
+        final DefaultDependencyNode included = node( root, "included" );
+        excluded.setChildren( Collections.<DependencyNode>singletonList( node( excluded, "child" ) ) );
+        included.setChildren( Collections.<DependencyNode>emptyList() );
+        root.setChildren( Arrays.<DependencyNode>asList( excluded, included ) );
+
+        final ArtifactFilter filter = new ExcludesArtifactFilter( Arrays.asList( "group:excluded" ) );
+        final List<DependencyNode> nodes = new ArrayList<DependencyNode>();
+        DependencyGraphCache.collect( root, filter, nodes );
+
+        assertEquals( Arrays.<DependencyNode>asList( root, included ), nodes );
+    }
+
+    private static DefaultDependencyNode node( DependencyNode parent, String artifactId ) {
+        final Artifact artifact = new DefaultArtifact( "group", artifactId, "1.0", "compile", "jar", null,
+                new DefaultArtifactHandler( "jar" ) );
+        final DefaultDependencyNode node = new DefaultDependencyNode( parent, artifact, null, null, null );
+        node.setChildren( Collections.<DependencyNode>emptyList() );
+        return node;
+    }
+
+    private static final class CountingBuilder implements DependencyGraphBuilder {
+        private final DependencyNode root;
+        private final AtomicInteger builds = new AtomicInteger();
+
+        private CountingBuilder( DependencyNode root ) {
+            this.root = root;
+        }
+
+        @Override
+        public DependencyNode buildDependencyGraph( MavenProject project, ArtifactFilter filter )
+                throws DependencyGraphBuilderException {
+            return buildDependencyGraph( project, filter, null );
+        }
+
+        @Override
+        public DependencyNode buildDependencyGraph( MavenProject project, ArtifactFilter filter,
+                                                    Collection<MavenProject> reactorProjects )
+                throws DependencyGraphBuilderException {
+            builds.incrementAndGet();
+            if ( root == null ) {
+                throw new DependencyGraphBuilderException( "No graph" );
+            }
+            return root;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.simpligility.maven.plugins.android.common;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
+import org.apache.maven.artifact.repository.MavenArtifactRepository;
+import org.apache.maven.artifact.repository.layout.DefaultRepositoryLayout;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Exercises the {@link LibraryDependencyCache} class.
+ */
+public class LibraryDependencyCacheTest {
+
+    private final Artifact artifact = artifact( "lib", "aar" );
+    private final List<ArtifactRepository> central = repositories( "central", "https://repo.maven.apache.org/maven2" );
+
+    @Test
+    public void givenSameArtifactAndRepositoriesThenResolvedOnce() {
+        final LibraryDependencyCache cache = new LibraryDependencyCache();
+        final CountingResolver resolver = new CountingResolver( true );
+
+        final Set<Artifact> first = cache.get( artifact, null, central, resolver );
+
+        assertSame( first, cache.get( artifact( "lib", "aar" ), null, central, resolver ) );
+        assertEquals( 1, resolver.resolutions.get() );
+    }
+
+    @Test
+    public void givenOtherRepositoriesThenResolvedAgain() {
+        final LibraryDependencyCache cache = new LibraryDependencyCache();
+        final CountingResolver resolver = new CountingResolver( true );
+
+        cache.get( artifact, null, central, resolver );
+        cache.get( artifact, null, repositories( "mirror", "https://mirror.example.com/maven2" ), resolver );
+
+        assertEquals( 2, resolver.resolutions.get() );
+    }
+
+    @Test
+    public void givenIncompleteResolutionThenItIsNotKept() {
+        final LibraryDependencyCache cache = new LibraryDependencyCache();
+        final CountingResolver resolver = new CountingResolver( false );
+
+        cache.get( artifact, null, central, resolver );
+        cache.get( artifact, null, central, resolver );
+
+        assertEquals( 2, resolver.resolutions.get() );
+    }
+
+    @Test
+    public void givenConcurrentCallersThenResolutionIsShared() throws Exception {
+        final LibraryDependencyCache cache = new LibraryDependencyCache();
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final AtomicInteger resolutions = new AtomicInteger();
+        final Callable<LibraryDependencyCache.Resolution> slowResolver =
+                new Callable<LibraryDependencyCache.Resolution>() {
+                    @Override
+                    public LibraryDependencyCache.Resolution call() throws Exception {
+                        resolutions.incrementAndGet();
+                        started.countDown();
+                        release.await();
+                        return new LibraryDependencyCache.Resolution( Collections.singleton( artifact ), true );
+                    }
+                };
+
+        final ExecutorService executor = Executors.newFixedThreadPool( 2 );
+        try {
+            final Callable<Set<Artifact>> caller = new Callable<Set<Artifact>>() {
+                @Override
+                public Set<Artifact> call() {
+                    return cache.get( artifact, null, central, slowResolver );
+                }
+            };
+            final Future<Set<Artifact>> first = executor.submit( caller );
+            started.await( 10, TimeUnit.SECONDS );
+            final Future<Set<Artifact>> second = executor.submit( caller );
+            release.countDown();
+
+            assertSame( first.get(), second.get() );
+            assertEquals( 1, resolutions.get() );
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Artifact artifact( String artifactId, String type ) {
+        return new DefaultArtifact( "group", artifactId, "1.0", "compile", type, null,
+                new DefaultArtifactHandler( type ) );
+    }
+
+    private static List<ArtifactRepository> repositories( String id, String url ) {
+        final ArtifactRepositoryPolicy policy = new ArtifactRepositoryPolicy();
+        return Collections.<ArtifactRepository>singletonList(
+                new MavenArtifactRepository( id, url, new DefaultRepositoryLayout(), policy, policy ) );
+    }
+
+    private final class CountingResolver implements Callable<LibraryDependencyCache.Resolution> {
+        private final boolean complete;
+        private final AtomicInteger resolutions = new AtomicInteger();
+
+        private CountingResolver( boolean complete ) {
+            this.complete = complete;
+        }
+
+        @Override
+        public LibraryDependencyCache.Resolution call() {
+            resolutions.incrementAndGet();
+            return new LibraryDependencyCache.Resolution( Collections.singleton( artifact ), complete );
+        }
+    }
+}
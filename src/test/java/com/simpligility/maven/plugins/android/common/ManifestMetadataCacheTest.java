@@ -0,0 +1,78 @@
+package com.simpligility.maven.plugins.android.common;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Exercises the {@link ManifestMetadataCache} class.
+ */
+public class ManifestMetadataCacheTest {
+
+    private static final String MANIFEST_HEAD = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+            + "<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\" package=\"com.foo.app\">\n";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void givenManifestThenAllValuesAreParsed() throws Exception {
+        final File manifest = writeManifest( MANIFEST_HEAD
+                + "  <uses-sdk android:minSdkVersion=\"16\" android:targetSdkVersion=\"25\" />\n"
+                + "  <instrumentation android:name=\"android.test.InstrumentationTestRunner\" />\n"
+                + "  <application>\n"
+                + "    <activity android:name=\".Settings\" />\n"
+                + "    <activity android:name=\"Main\">\n"
+                + "      <intent-filter>\n"
+                + "        <action android:name=\"android.intent.action.MAIN\" />\n"
+                + "        <category android:name=\"android.intent.category.LAUNCHER\" />\n"
+                + "      </intent-filter>\n"
+                + "    </activity>\n"
+                + "  </application>\n"
+                + "</manifest>\n" );
+
+        final ManifestMetadata metadata = new ManifestMetadataCache().get( manifest );
+
+        assertEquals( "com.foo.app", metadata.getPackageName() );
+        assertEquals( "android.test.InstrumentationTestRunner", metadata.getInstrumentationRunner() );
+        assertEquals( "16", metadata.getMinSdkVersion() );
+        assertEquals( "25", metadata.getTargetSdkVersion() );
+        assertEquals( "com.foo.app.Main", metadata.getLauncherActivity() );
+    }
+
+    @Test
+    public void givenUnchangedManifestThenCachedValueIsReturned() throws Exception {
+        final File manifest = writeManifest( MANIFEST_HEAD + "</manifest>\n" );
+        final ManifestMetadataCache cache = new ManifestMetadataCache();
+
+        final ManifestMetadata metadata = cache.get( manifest );
+
+        assertSame( metadata, cache.get( manifest ) );
+        assertNull( metadata.getInstrumentationRunner() );
+        assertNull( metadata.getLauncherActivity() );
+    }
+
+    @Test
+    public void givenChangedManifestThenItIsParsedAgain() throws Exception {
+        final File manifest = writeManifest( MANIFEST_HEAD + "</manifest>\n" );
+        final ManifestMetadataCache cache = new ManifestMetadataCache();
+        assertEquals( "com.foo.app", cache.get( manifest ).getPackageName() );
+
+        writeManifest( MANIFEST_HEAD.replace( "com.foo.app", "com.foo.application" ) + "</manifest>\n" );
+
+        assertEquals( "com.foo.application", cache.get( manifest ).getPackageName() );
+    }
+
+    private File writeManifest( String content ) throws Exception {
+        final File manifest = new File( temp.getRoot(), "AndroidManifest.xml" );
+        FileUtils.writeStringToFile( manifest, content, "UTF-8" );
+        return manifest;
+    }
+}
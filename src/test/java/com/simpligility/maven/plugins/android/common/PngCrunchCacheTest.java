@@ -0,0 +1,115 @@
+package com.simpligility.maven.plugins.android.common;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.Os;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Exercises the {@link PngCrunchCache} class with a fake aapt, which appends a byte to the files it crunches and
+ * records them.
+ */
+public class PngCrunchCacheTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File aapt;
+    private File crunched;
+    private File cacheDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue( Os.isFamily( Os.FAMILY_UNIX ) );
+        crunched = new File( temp.getRoot(), "crunched.txt" );
+        cacheDirectory = new File( temp.getRoot(), "cache" );
+        aapt = temp.newFile( "aapt" );
+        FileUtils.writeStringToFile( aapt, "#!/bin/sh\n"
+                + "echo \"$3\" >> " + crunched.getAbsolutePath() + "\n"
+                + "cat \"$3\" > \"$5\" && printf c >> \"$5\"\n" );
+        aapt.setExecutable( true );
+    }
+
+    @Test
+    public void givenResourceFolderThenPngFilesAreCrunchedInTheMirror() throws Exception {
+        final File res = temp.newFolder( "res" );
+        final File icon = write( res, "drawable/icon.png", "png" );
+        write( res, "values/strings.xml", "<resources/>" );
+
+        final List<File> mirrors = crunch( "app", res );
+
+        final File mirroredIcon = new File( mirrors.get( 0 ), "drawable/icon.png" );
+        assertEquals( "pngc", FileUtils.readFileToString( mirroredIcon ) );
+        assertEquals( icon.lastModified(), mirroredIcon.lastModified() );
+        assertEquals( "<resources/>", FileUtils.readFileToString( new File( mirrors.get( 0 ), "values/strings.xml" ) ) );
+    }
+
+    @Test
+    public void givenSameContentThenItIsCrunchedOnceForAllProjects() throws Exception {
+        final File res = temp.newFolder( "res" );
+        final File library = temp.newFolder( "library" );
+        write( res, "drawable/icon.png", "png" );
+        write( library, "drawable-hdpi/logo.png", "png" );
+
+        crunch( "app", res, library );
+        final List<File> mirrors = crunch( "other", res );
+
+        assertEquals( 1, FileUtils.readLines( crunched ).size() );
+        assertEquals( "pngc", FileUtils.readFileToString( new File( mirrors.get( 0 ), "drawable/icon.png" ) ) );
+    }
+
+    @Test
+    public void givenDeletedFileThenItIsRemovedFromTheMirror() throws Exception {
+        final File res = temp.newFolder( "res" );
+        write( res, "drawable/icon.png", "png" );
+        write( res, "layout/main.xml", "<LinearLayout/>" );
+        crunch( "app", res );
+
+        FileUtils.forceDelete( new File( res, "layout/main.xml" ) );
+        final List<File> mirrors = crunch( "app", res );
+
+        assertFalse( new File( mirrors.get( 0 ), "layout/main.xml" ).exists() );
+    }
+
+    @Test
+    public void givenNinePatchesOnlyThenPlainPngFilesAreMirroredAsTheyAre() throws Exception {
+        final File res = temp.newFolder( "res" );
+        final File icon = write( res, "drawable/icon.png", "png" );
+        final File button = write( res, "drawable/button.9.png", "9png" );
+
+        final File mirrorDirectory = new File( temp.getRoot(), "app/uncrunched-res" );
+        final List<File> mirrors = new PngCrunchCache( cacheDirectory, mirrorDirectory, aapt.getAbsolutePath(),
+                new SystemStreamLog() ).crunchNinePatches( Arrays.asList( res ) );
+
+        assertEquals( Arrays.asList( button.getAbsolutePath() ), FileUtils.readLines( crunched ) );
+        assertEquals( "9pngc", FileUtils.readFileToString( new File( mirrors.get( 0 ), "drawable/button.9.png" ) ) );
+        assertEquals( "png", FileUtils.readFileToString( new File( mirrors.get( 0 ), "drawable/icon.png" ) ) );
+        assertEquals( icon.lastModified(), new File( mirrors.get( 0 ), "drawable/icon.png" ).lastModified() );
+    }
+
+    private List<File> crunch( String project, File... resourceDirectories ) throws Exception {
+        final File mirrorDirectory = new File( temp.getRoot(), project + "/crunched-res" );
+        final List<File> mirrors = new PngCrunchCache( cacheDirectory, mirrorDirectory, aapt.getAbsolutePath(),
+                new SystemStreamLog() ).crunch( Arrays.asList( resourceDirectories ) );
+        assertEquals( resourceDirectories.length, mirrors.size() );
+        assertEquals( mirrorDirectory, mirrors.get( 0 ).getParentFile() );
+        return mirrors;
+    }
+
+    private static File write( File folder, String path, String content ) throws Exception {
+        final File file = new File( folder, path );
+        FileUtils.writeStringToFile( file, content );
+        return file;
+    }
+}
@@ -0,0 +1,62 @@
+package com.simpligility.maven.plugins.android.common;
+
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Exercises the {@link ResourceFolderIndex} class.
+ */
+public class ResourceFolderIndexTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final Logger log = new ConsoleLogger( Logger.LEVEL_DISABLED, "test" );
+
+    @Test
+    public void givenResourceFoldersThenSameFilesAsFileRetriever() throws Exception {
+        final File res = temp.newFolder( "res" );
+        createFiles( res, "layout/main.xml", "layout-land/main.xml", "layout/notes.txt", "layout/._main.xml",
+                "values/strings.xml", "drawable/icon.png" );
+
+        final ResourceFolderIndex index = ResourceFolderIndex.scan( Collections.singletonList( res ), log );
+
+        assertEquals( Arrays.asList( "layout/main.xml", "layout-land/main.xml" ),
+                index.getFileNames( res, "layout", ".xml" ) );
+        assertEquals( new TreeSet<String>( Arrays.asList( new FileRetriever( "layout*/*.xml" ).getFileNames( res ) ) ),
+                new TreeSet<String>( index.getFileNames( res, "layout", ".xml" ) ) );
+    }
+
+    @Test
+    public void givenMissingFolderThenItDoesNotExist() throws Exception {
+        final File res = temp.newFolder( "res" );
+        final File missing = new File( temp.getRoot(), "missing" );
+
+        final ResourceFolderIndex index = ResourceFolderIndex.scan( Arrays.asList( res, missing ), log );
+
+        assertTrue( index.exists( res ) );
+        assertFalse( index.exists( missing ) );
+        assertTrue( index.getFileNames( missing, "layout", ".xml" ).isEmpty() );
+        assertTrue( index.exists( temp.getRoot() ) );
+    }
+
+    private void createFiles( File folder, String... paths ) throws Exception {
+        for ( String path : paths ) {
+            final File file = new File( folder, path );
+            file.getParentFile().mkdirs();
+            file.createNewFile();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.simpligility.maven.plugins.android.common;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ * Exercises the {@link Tracer} class.
+ */
+public class TracerTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void givenNoTraceFileThenNothingIsRecorded() {
+        final Tracer tracer = new Tracer( null );
+
+        final Tracer.Span span = tracer.start( "dex", "merge" );
+        span.attribute( "files", 3 ).end();
+
+        assertFalse( tracer.isEnabled() );
+        assertEquals( 0, temporaryFolder.getRoot().list().length );
+    }
+
+    @Test
+    public void givenNestedSpansThenTraceIsWrittenWhenOutermostSpanEnds() throws Exception {
+        final File traceFile = new File( temporaryFolder.getRoot(), "target/trace.json" );
+        final Tracer tracer = new Tracer( traceFile );
+
+        final Tracer.Span outer = tracer.start( "ApkMojo", "execute" );
+        tracer.start( "command", "aapt" ).attribute( "exitCode", 0 ).attribute( "file", "a\"b.apk" ).end();
+        assertFalse( traceFile.exists() );
+        outer.end();
+        outer.end();
+
+        final String trace = FileUtils.readFileToString( traceFile, "UTF-8" );
+        assertTrue( trace, trace.startsWith( "{\"displayTimeUnit\":\"ms\",\"traceEvents\":[" ) );
+        assertTrue( trace, trace.contains( "\"name\":\"thread_name\",\"ph\":\"M\"" ) );
+        assertTrue( trace, trace.contains( "{\"name\":\"aapt\",\"cat\":\"command\",\"ph\":\"X\"" ) );
+        assertTrue( trace, trace.contains( "\"args\":{\"exitCode\":0,\"file\":\"a\\\"b.apk\"}" ) );
+        assertTrue( trace, trace.contains( "{\"name\":\"execute\",\"cat\":\"ApkMojo\",\"ph\":\"X\"" ) );
+        assertEquals( 1, trace.split( "\"cat\":\"ApkMojo\"" ).length - 1 );
+        assertFalse( new File( traceFile.getPath() + ".tmp" ).exists() );
+    }
+
+    @Test
+    public void givenSeveralOutermostSpansThenTheyAreAppendedToTheTrace() throws Exception {
+        final File traceFile = new File( temporaryFolder.getRoot(), "trace.json" );
+        FileUtils.writeStringToFile( traceFile, "previous build", "UTF-8" );
+        final Tracer tracer = new Tracer( traceFile );
+
+        tracer.start( "ApkMojo", "execute" ).end();
+        final String first = FileUtils.readFileToString( traceFile, "UTF-8" );
+        tracer.start( "D8Mojo", "execute" ).end();
+
+        final String trace = FileUtils.readFileToString( traceFile, "UTF-8" );
+        assertFalse( trace, trace.contains( "previous build" ) );
+        assertTrue( trace, trace.startsWith( first.substring( 0, first.length() - "\n]}\n".length() ) + ",\n" ) );
+        assertTrue( trace, trace.contains( "\"cat\":\"D8Mojo\"" ) );
+        assertTrue( trace, trace.endsWith( "}\n]}\n" ) );
+        assertEquals( 1, trace.split( "\"thread_name\"" ).length - 1 );
+    }
+
+    @Test
+    public void givenUnwritableTraceFileThenTheFailureIsReportedToTheLogOfTheOutermostSpan() throws Exception {
+        final Tracer tracer = new Tracer( temporaryFolder.newFolder( "trace.json" ) );
+        final List<CharSequence> apkWarnings = new ArrayList<CharSequence>();
+        final List<CharSequence> d8Warnings = new ArrayList<CharSequence>();
+
+        final Tracer.Span outer = tracer.start( "ApkMojo", "execute", recordingLog( apkWarnings ) );
+        tracer.start( "D8Mojo", "execute", recordingLog( d8Warnings ) ).end();
+        outer.end();
+
+        assertEquals( 1, apkWarnings.size() );
+        assertTrue( apkWarnings.get( 0 ).toString().startsWith( "Could not write trace file" ) );
+        assertTrue( d8Warnings.isEmpty() );
+    }
+
+    @Test
+    public void givenFlightRecordingThenSpansAreEmittedAsEvents() throws Exception {
+        assumeNotNull( FlightRecorderEvents.get() );
+        final Tracer tracer = new Tracer( null );
+
+        // The jdk.jfr API is used reflectively so that the tests still compile on JVMs without it.
+        final Class<?> recordingClass = Class.forName( "jdk.jfr.Recording" );
+        final Object recording = recordingClass.newInstance();
+        recordingClass.getMethod( "enable", String.class ).invoke( recording, FlightRecorderEvents.EVENT_NAME );
+        recordingClass.getMethod( "start" ).invoke( recording );
+        tracer.start( "command", "aapt" ).attribute( "exitCode", 1 ).end();
+        recordingClass.getMethod( "stop" ).invoke( recording );
+        final Path dump = temporaryFolder.newFile( "recording.jfr" ).toPath();
+        recordingClass.getMethod( "dump", Path.class ).invoke( recording, dump );
+        recordingClass.getMethod( "close" ).invoke( recording );
+
+        final List<?> events = ( List<?> ) Class.forName( "jdk.jfr.consumer.RecordingFile" )
+                .getMethod( "readAllEvents", Path.class ).invoke( null, dump );
+        assertEquals( 1, events.size() );
+        final Method getString = events.get( 0 ).getClass().getMethod( "getString", String.class );
+        assertEquals( "command", getString.invoke( events.get( 0 ), "category" ) );
+        assertEquals( "aapt", getString.invoke( events.get( 0 ), "name" ) );
+        assertEquals( "exitCode=1", getString.invoke( events.get( 0 ), "attributes" ) );
+    }
+
+    private static Log recordingLog( final List<CharSequence> warnings ) {
+        return new SystemStreamLog() {
+            @Override
+            public void warn( CharSequence content, Throwable error ) {
+                warnings.add( content );
+            }
+        };
+    }
+}
@@ -68,4 +68,20 @@ public class ConfigHandlerTest {
 		configHandler.parseConfiguration();
 		assertArrayEquals(new String[] {"a","b"},mojo.getParsedMethodValue());
 	}
+
+	@Test
+	public void testParseConfigurationOfSeveralMojos() throws Exception {
+		mojo.setConfigPojo(new DummyConfigPojo("from config pojo", false));
+		new ConfigHandler( mojo, this.session, this.execution ).parseConfiguration();
+
+		final DummyMojo other = new DummyMojo();
+		other.setConfigPojoBooleanValue(true);
+		new ConfigHandler( other, this.session, this.execution ).parseConfiguration();
+
+		assertEquals("from config pojo",mojo.getParsedStringValue());
+		assertEquals(Boolean.FALSE,mojo.getParsedBooleanValue());
+		assertEquals("hello",other.getParsedStringValue());
+		assertEquals(Boolean.TRUE,other.getParsedBooleanValue());
+		assertArrayEquals(new String[] {"a","b"},other.getParsedMethodValue());
+	}
 }
@@ -0,0 +1,42 @@
+package com.simpligility.maven.plugins.android.phase01generatesources;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Exercises the {@link ConflictingLayoutDetector} class.
+ */
+public class ConflictingLayoutDetectorTest {
+
+    @Test
+    public void givenSharedLayoutThenConflictListsAllPackages() {
+        final ConflictingLayoutDetector detector = new ConflictingLayoutDetector();
+        detector.addLayoutFiles( "com.foo.app", Arrays.asList( "layout/main.xml", "layout/app.xml" ) );
+        detector.addLayoutFiles( "com.foo.lib1", Arrays.asList( "layout/main.xml", "layout/lib.xml" ) );
+        detector.addLayoutFiles( "com.foo.lib2", Arrays.asList( "layout/main.xml", "layout/lib.xml" ) );
+
+        final List<ConflictingLayout> conflicts = new ArrayList<ConflictingLayout>( detector.getConflictingLayouts() );
+
+        assertEquals( 2, conflicts.size() );
+        assertEquals( "layout/lib.xml", conflicts.get( 0 ).getLayoutFileName() );
+        assertEquals( Arrays.asList( "com.foo.lib1", "com.foo.lib2" ),
+                new ArrayList<String>( conflicts.get( 0 ).getPackageNames() ) );
+        assertEquals( "layout/main.xml", conflicts.get( 1 ).getLayoutFileName() );
+        assertEquals( 3, conflicts.get( 1 ).getPackageNames().size() );
+    }
+
+    @Test
+    public void givenSamePackageTwiceThenNoConflict() {
+        final ConflictingLayoutDetector detector = new ConflictingLayoutDetector();
+        detector.addLayoutFiles( "com.foo.app", Arrays.asList( "layout/main.xml" ) );
+        detector.addLayoutFiles( "com.foo.app", Arrays.asList( "layout/main.xml" ) );
+
+        assertTrue( detector.getConflictingLayouts().isEmpty() );
+    }
+}
@@ -0,0 +1,121 @@
+package com.simpligility.maven.plugins.android.phase04processclasses;
+
+import com.vladium.emma.data.DataFactory;
+import com.vladium.emma.data.IMetaData;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Exercises the {@link IncrementalInstrumenter} class with EMMA and class files written by ASM.
+ */
+public class IncrementalInstrumenterTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File classes;
+    private File metadataFile;
+
+    @Before
+    public void setUp() throws Exception {
+        classes = temp.newFolder( "classes" );
+        metadataFile = new File( temp.getRoot(), "emma/coverage.em" );
+    }
+
+    @Test
+    public void givenUnchangedClassesThenTheyAreInstrumentedOnce() throws Exception {
+        final byte[] main = writeClass( "app/Main" );
+        writeClass( "app/Other" );
+
+        assertEquals( 2, instrument() );
+        assertFalse( Arrays.equals( main, FileUtils.readFileToByteArray( new File( classes, "app/Main.class" ) ) ) );
+        assertTrue( metadataFile.isFile() );
+
+        assertEquals( 0, instrument() );
+    }
+
+    @Test
+    public void givenRecompiledClassThenOnlyItIsInstrumentedAgain() throws Exception {
+        writeClass( "app/Main" );
+        writeClass( "app/Other" );
+        instrument();
+
+        final byte[] main = writeClass( "app/Main" );
+
+        assertEquals( 1, instrument() );
+        assertFalse( Arrays.equals( main, FileUtils.readFileToByteArray( new File( classes, "app/Main.class" ) ) ) );
+        assertEquals( 0, instrument() );
+        final IMetaData metadata = loadMetadata();
+        assertEquals( 2, metadata.size() );
+        assertTrue( metadata.hasDescriptor( "app/Main" ) );
+        assertTrue( metadata.hasDescriptor( "app/Other" ) );
+    }
+
+    @Test
+    public void givenRepeatedIncrementalBuildsThenTheMetadataFileDoesNotGrow() throws Exception {
+        writeClass( "app/Main" );
+        writeClass( "app/Other" );
+        instrument();
+        writeClass( "app/Main" );
+        instrument();
+        final long length = metadataFile.length();
+
+        writeClass( "app/Main" );
+        instrument();
+
+        assertEquals( length, metadataFile.length() );
+    }
+
+    @Test
+    public void givenDeletedClassThenItIsRemovedFromTheMetadata() throws Exception {
+        writeClass( "app/Main" );
+        writeClass( "app/Other" );
+        instrument();
+
+        assertTrue( new File( classes, "app/Other.class" ).delete() );
+
+        assertEquals( 0, instrument() );
+        final IMetaData metadata = loadMetadata();
+        assertTrue( metadata.hasDescriptor( "app/Main" ) );
+        assertFalse( metadata.hasDescriptor( "app/Other" ) );
+    }
+
+    private IMetaData loadMetadata() throws Exception {
+        return ( IMetaData ) DataFactory.load( metadataFile )[ DataFactory.TYPE_METADATA ];
+    }
+
+    private int instrument() throws Exception {
+        return new IncrementalInstrumenter( metadataFile, null, new SystemStreamLog() )
+                .instrument( new String[] { classes.getAbsolutePath() } );
+    }
+
+    private byte[] writeClass( String name ) throws Exception {
+        final ClassWriter writer = new ClassWriter( ClassWriter.COMPUTE_MAXS );
+        writer.visit( Opcodes.V1_5, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null );
+        final MethodVisitor method = writer.visitMethod( Opcodes.ACC_PUBLIC, "<init>", "()V", null, null );
+        method.visitCode();
+        method.visitVarInsn( Opcodes.ALOAD, 0 );
+        method.visitMethodInsn( Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false );
+        method.visitInsn( Opcodes.RETURN );
+        method.visitMaxs( 0, 0 );
+        method.visitEnd();
+        writer.visitEnd();
+        final byte[] bytes = writer.toByteArray();
+        FileUtils.writeByteArrayToFile( new File( classes, name + ".class" ), bytes );
+        return bytes;
+    }
+}
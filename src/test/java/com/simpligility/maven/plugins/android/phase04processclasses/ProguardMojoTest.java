@@ -0,0 +1,65 @@
+package com.simpligility.maven.plugins.android.phase04processclasses;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Exercises the R8 command line built by the {@link ProguardMojo} class.
+ */
+public class ProguardMojoTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void givenMinApiAndMainDexListThenR8GetsThem() {
+        final File androidJar = new File( "android.jar" );
+        final File output = new File( "target" );
+
+        final List<String> arguments = ProguardMojo.getR8Arguments( 21, "mainDexClasses.txt", androidJar, output );
+
+        assertEquals( Arrays.asList( "--release",
+                "--min-api", "21",
+                "--main-dex-list", "mainDexClasses.txt",
+                "--lib", androidJar.getAbsolutePath(),
+                "--output", output.getAbsolutePath(),
+                "--pg-conf" ), arguments );
+    }
+
+    @Test
+    public void givenNoMinApiNorMainDexListThenR8OnlyGetsTheRelease() {
+        final List<String> arguments = ProguardMojo.getR8Arguments( null, null, new File( "android.jar" ),
+                new File( "target" ) );
+
+        assertEquals( "--release", arguments.get( 0 ) );
+        assertFalse( arguments.contains( "--min-api" ) );
+        assertFalse( arguments.contains( "--main-dex-list" ) );
+        // The configuration file is appended right after the option.
+        assertEquals( "--pg-conf", arguments.get( arguments.size() - 1 ) );
+    }
+
+    @Test
+    public void givenConfigurationThenEachExecutionWritesItToAFileOfItsOwn() throws Exception {
+        final File proguardDir = temp.newFolder( "proguard" );
+        final List<String> configuration = Arrays.asList( "@proguard.cfg", "-printmapping", "mapping.txt" );
+
+        final File configFile = ProguardMojo.writeConfiguration( configuration, proguardDir );
+        final File otherConfigFile = ProguardMojo.writeConfiguration( Collections.<String>emptyList(), proguardDir );
+
+        assertEquals( proguardDir, configFile.getParentFile() );
+        assertTrue( configFile.getName().endsWith( ".cfg" ) );
+        assertEquals( configuration, FileUtils.readLines( configFile ) );
+        assertFalse( configFile.equals( otherConfigFile ) );
+    }
+}
@@ -0,0 +1,42 @@
+package com.simpligility.maven.plugins.android.phase08preparepackage;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Exercises how the {@link D8Mojo} skips the classes dexed by R8 in the proguard goal.
+ */
+public class D8MojoTest {
+
+    @Test
+    public void givenClassesDexedByR8ThenD8IsSkipped() throws Exception {
+        assertTrue( D8Mojo.isDexedByR8( DexCompiler.R8, r8Dexed(), null ) );
+        assertTrue( D8Mojo.isDexedByR8( DexCompiler.R8, r8Dexed(), new String[ 0 ] ) );
+    }
+
+    @Test
+    public void givenProguardSkippedThenR8CompilerRunsD8() throws Exception {
+        assertFalse( D8Mojo.isDexedByR8( DexCompiler.R8, new Properties(), null ) );
+    }
+
+    @Test
+    public void givenD8CompilerThenD8RunsWhateverTheProperty() throws Exception {
+        assertFalse( D8Mojo.isDexedByR8( DexCompiler.D8, r8Dexed(), new String[] { "--no-desugaring" } ) );
+    }
+
+    @Test( expected = MojoExecutionException.class )
+    public void givenD8ArgumentsAndClassesDexedByR8ThenItFails() throws Exception {
+        D8Mojo.isDexedByR8( DexCompiler.R8, r8Dexed(), new String[] { "--no-desugaring" } );
+    }
+
+    private static Properties r8Dexed() {
+        final Properties properties = new Properties();
+        properties.setProperty( DexCompiler.R8_DEXED_PROPERTY, "true" );
+        return properties;
+    }
+}
@@ -0,0 +1,114 @@
+package com.simpligility.maven.plugins.android.phase09package;
+
+import com.simpligility.maven.plugins.android.common.AaptCommandBuilder;
+import com.simpligility.maven.plugins.android.common.AaptInputsFingerprint;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.Os;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Exercises how the {@link ApkMojo} reuses the resource package written by generate-sources, with a fake aapt which
+ * records its runs.
+ */
+public class ApkMojoResourcePackageTest {
+
+    private static final Log LOG = new SystemStreamLog();
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File aapt;
+    private File runs;
+    private File res;
+    private File resourcePackage;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue( Os.isFamily( Os.FAMILY_UNIX ) );
+        runs = new File( temp.getRoot(), "runs.txt" );
+        aapt = temp.newFile( "aapt" );
+        FileUtils.writeStringToFile( aapt, "#!/bin/sh\necho \"$@\" >> " + runs.getAbsolutePath() + "\n" );
+        aapt.setExecutable( true );
+        res = temp.newFolder( "res" );
+        FileUtils.writeStringToFile( new File( res, "values/strings.xml" ), "<resources/>" );
+        resourcePackage = temp.newFile( "app.ap_" );
+    }
+
+    @Test
+    public void givenPackageOfGenerateSourcesWithSameInputsThenItIsReused() throws Exception {
+        compileInGenerateSources();
+
+        assertFalse( packageInApkMojo() );
+        assertFalse( runs.exists() );
+    }
+
+    @Test
+    public void givenResourceChangedSinceGenerateSourcesThenAaptRunsAgain() throws Exception {
+        compileInGenerateSources();
+        FileUtils.writeStringToFile( new File( res, "values/strings.xml" ), "<resources></resources>" );
+
+        assertTrue( packageInApkMojo() );
+        assertEquals( 1, FileUtils.readLines( runs ).size() );
+        // The package is no longer the one of the recorded fingerprint.
+        assertFalse( AaptInputsFingerprint.matches( resourcePackage, fingerprint( command() ) ) );
+    }
+
+    @Test
+    public void givenPackageNotWrittenByGenerateSourcesThenAaptRuns() throws Exception {
+        assertTrue( packageInApkMojo() );
+        assertEquals( 1, FileUtils.readLines( runs ).size() );
+    }
+
+    @Test
+    public void givenDensitySplitThenAaptRunsWhateverTheFingerprint() throws Exception {
+        compileInGenerateSources();
+
+        assertTrue( ApkMojo.executeUnlessReusable( resourcePackage, null, aapt.getAbsolutePath(),
+                command().setPreferredDensity( "hdpi" ).setOutputApkFile( resourcePackage ).build(),
+                temp.getRoot(), LOG ) );
+        assertEquals( 1, FileUtils.readLines( runs ).size() );
+    }
+
+    /**
+     * Records the fingerprint of the command, as generate-sources does after writing the package.
+     */
+    private void compileInGenerateSources() throws Exception {
+        AaptInputsFingerprint.record( resourcePackage, fingerprint( command() ) );
+    }
+
+    /**
+     * Runs the command of the project package, whose options unset in generate-sources add no argument.
+     */
+    private boolean packageInApkMojo() throws Exception {
+        final AaptCommandBuilder.ResourcePackageCommandBuilder command = command()
+                .renameInstrumentationTargetPackage( null )
+                .setPreferredDensity( null );
+        final String fingerprint = fingerprint( command );
+        command.setOutputApkFile( resourcePackage );
+        return ApkMojo.executeUnlessReusable( resourcePackage, fingerprint, aapt.getAbsolutePath(), command.build(),
+                temp.getRoot(), LOG );
+    }
+
+    private AaptCommandBuilder.ResourcePackageCommandBuilder command() {
+        return AaptCommandBuilder.packageResources( LOG )
+                .addResourceDirectoryIfExists( res )
+                .autoAddOverlay();
+    }
+
+    private static String fingerprint( AaptCommandBuilder.ResourcePackageCommandBuilder command ) {
+        return AaptInputsFingerprint.of( new ArrayList<String>( command.build() ) );
+    }
+}
@@ -0,0 +1,172 @@
+package com.simpligility.maven.plugins.android.phase09package;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Exercises the {@link ApkSplits} class.
+ */
+public class ApkSplitsTest {
+
+    private static final String[] DENSITIES = { "mdpi", "hdpi" };
+    private static final String[] ABIS = { "armeabi-v7a", "x86" };
+    private static final Set<String> ALL_ABIS = new HashSet<String>( Arrays.asList( ABIS ) );
+
+    @Test
+    public void givenAbiSplitsThenVersionCodesAreOffsetByAbi() {
+        final List<ApkSplits.Split> splits = new ApkSplits( null, ABIS, true, 1000 ).getSplits( ALL_ABIS, 7 );
+
+        assertEquals( Arrays.asList( "armeabi-v7a", "x86" ), names( splits ) );
+        assertEquals( Arrays.asList( 1007, 2007 ), versionCodes( splits ) );
+        assertFalse( splits.get( 0 ).isMain() );
+    }
+
+    @Test
+    public void givenDensitySplitsThenVersionCodesAreOffsetByDensity() {
+        final List<ApkSplits.Split> splits = new ApkSplits( DENSITIES, null, true, 10 ).getSplits( ALL_ABIS, 7 );
+
+        assertEquals( Arrays.asList( "mdpi", "hdpi" ), names( splits ) );
+        assertEquals( Arrays.asList( 17, 27 ), versionCodes( splits ) );
+        assertEquals( "hdpi", splits.get( 1 ).getDensity() );
+        assertEquals( null, splits.get( 1 ).getAbi() );
+    }
+
+    @Test
+    public void givenDensityAndAbiSplitsThenEveryCombinationIsSplit() {
+        final List<ApkSplits.Split> splits = new ApkSplits( DENSITIES, ABIS, true, 1000 ).getSplits( ALL_ABIS, 7 );
+
+        assertEquals( Arrays.asList( "mdpi", "hdpi",
+                "armeabi-v7a", "mdpi-armeabi-v7a", "hdpi-armeabi-v7a",
+                "x86", "mdpi-x86", "hdpi-x86" ), names( splits ) );
+        // ( abi * ( densities + 1 ) + density ) * multiplier
+        assertEquals( Arrays.asList( 1007, 2007, 3007, 4007, 5007, 6007, 7007, 8007 ), versionCodes( splits ) );
+        final ApkSplits.Split hdpiX86 = splits.get( 7 );
+        assertEquals( "hdpi", hdpiX86.getDensity() );
+        assertEquals( "x86", hdpiX86.getAbi() );
+    }
+
+    @Test
+    public void givenAbiWithoutNativeLibrariesThenItsSplitsAreSkipped() {
+        final List<ApkSplits.Split> splits = new ApkSplits( DENSITIES, ABIS, true, 1000 )
+                .getSplits( Collections.singleton( "x86" ), 7 );
+
+        assertEquals( Arrays.asList( "mdpi", "hdpi", "x86", "mdpi-x86", "hdpi-x86" ), names( splits ) );
+        assertEquals( Arrays.asList( 1007, 2007, 6007, 7007, 8007 ), versionCodes( splits ) );
+    }
+
+    @Test
+    public void givenNoUniversalApkThenOnlyTheFirstSplitIsTheMainApk() {
+        final List<ApkSplits.Split> splits = new ApkSplits( null, ABIS, false, 1000 ).getSplits( ALL_ABIS, 7 );
+
+        assertTrue( splits.get( 0 ).isMain() );
+        assertEquals( "armeabi-v7a", splits.get( 0 ).getName() );
+        assertFalse( splits.get( 1 ).isMain() );
+    }
+
+    @Test
+    public void givenNoUniversalApkAndSkippedAbiThenTheFirstWrittenSplitIsTheMainApk() {
+        final List<ApkSplits.Split> splits = new ApkSplits( null, ABIS, false, 1000 )
+                .getSplits( Collections.singleton( "x86" ), 7 );
+
+        assertEquals( 1, splits.size() );
+        assertTrue( splits.get( 0 ).isMain() );
+        assertEquals( 2007, splits.get( 0 ).getVersionCode() );
+    }
+
+    @Test
+    public void givenNoSplitThenThereIsNoneAndNoVersionCodeIsNeeded() {
+        final ApkSplits apkSplits = new ApkSplits( null, null, false, 1000 );
+
+        assertFalse( apkSplits.isEnabled() );
+        assertTrue( apkSplits.getSplits( ALL_ABIS, 7 ).isEmpty() );
+        assertTrue( apkSplits.getNames().isEmpty() );
+        assertTrue( apkSplits.getDensities().isEmpty() );
+    }
+
+    @Test
+    public void givenSplitsThenNamesIncludeEveryCombinationWhateverTheNativeLibraries() {
+        final ApkSplits apkSplits = new ApkSplits( DENSITIES, ABIS, true, 1000 );
+
+        assertTrue( apkSplits.isEnabled() );
+        assertEquals( Arrays.asList( DENSITIES ), apkSplits.getDensities() );
+        assertEquals( new HashSet<String>( Arrays.asList( "mdpi", "hdpi",
+                "armeabi-v7a", "mdpi-armeabi-v7a", "hdpi-armeabi-v7a",
+                "x86", "mdpi-x86", "hdpi-x86" ) ), apkSplits.getNames() );
+    }
+
+    @Test
+    public void givenClassifierThenSplitClassifierIsPrefixedAndSuffixed() {
+        assertEquals( "hdpi-x86", ApkSplits.getClassifier( null, "hdpi-x86", "" ) );
+        assertEquals( "free-hdpi-x86", ApkSplits.getClassifier( "free", "hdpi-x86", "" ) );
+        assertEquals( "x86_unsigned", ApkSplits.getClassifier( null, "x86", "_unsigned" ) );
+        assertEquals( "free-x86_unsigned", ApkSplits.getClassifier( "free", "x86", "_unsigned" ) );
+    }
+
+    @Test
+    public void givenFileThenSplitFileIsNamedAfterIt() {
+        final File target = new File( "target" );
+
+        assertEquals( new File( target, "app-hdpi-x86.apk" ),
+                ApkSplits.getFile( new File( target, "app.apk" ), "hdpi-x86", "apk" ) );
+        assertEquals( new File( target, "app-1.0-hdpi.ap_" ),
+                ApkSplits.getFile( new File( target, "app-1.0.ap_" ), "hdpi", "ap_" ) );
+    }
+
+    @Test
+    public void givenVariantsWithOtherNamesThenTheyAreAccepted() throws Exception {
+        new ApkSplits( DENSITIES, ABIS, true, 1000 ).checkVariantNames( Arrays.asList( "free", "paid" ) );
+    }
+
+    @Test( expected = MojoExecutionException.class )
+    public void givenVariantNamedLikeDensitySplitThenItFails() throws Exception {
+        new ApkSplits( DENSITIES, null, true, 1000 ).checkVariantNames( Arrays.asList( "free", "hdpi" ) );
+    }
+
+    @Test( expected = MojoExecutionException.class )
+    public void givenVariantNamedLikeCombinedSplitThenItFails() throws Exception {
+        new ApkSplits( DENSITIES, ABIS, true, 1000 ).checkVariantNames( Collections.singletonList( "hdpi-x86" ) );
+    }
+
+    @Test
+    public void givenDisabledSplitsThenVariantCanHaveTheirNames() throws Exception {
+        new ApkSplits( null, null, true, 1000 ).checkVariantNames( Arrays.asList( "hdpi", "x86" ) );
+    }
+
+    @Test( expected = MojoExecutionException.class )
+    public void givenVariantsWithTheSameNameThenItFails() throws Exception {
+        new ApkSplits( null, null, true, 1000 ).checkVariantNames( Arrays.asList( "paid", "paid" ) );
+    }
+
+    @Test( expected = MojoExecutionException.class )
+    public void givenVariantWithoutNameThenItFails() throws Exception {
+        new ApkSplits( null, null, true, 1000 ).checkVariantNames( Collections.singletonList( " " ) );
+    }
+
+    private static List<String> names( List<ApkSplits.Split> splits ) {
+        final List<String> names = new ArrayList<String>();
+        for ( ApkSplits.Split split : splits ) {
+            names.add( split.getName() );
+        }
+        return names;
+    }
+
+    private static List<Integer> versionCodes( List<ApkSplits.Split> splits ) {
+        final List<Integer> versionCodes = new ArrayList<Integer>();
+        for ( ApkSplits.Split split : splits ) {
+            versionCodes.add( split.getVersionCode() );
+        }
+        return versionCodes;
+    }
+}
@@ -0,0 +1,87 @@
+package com.simpligility.maven.plugins.android.phase09package;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Exercises the {@link ResourceSymbols} class with the R.txt files of a project and its variants.
+ */
+public class ResourceSymbolsTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void givenOverriddenResourcesThenIdsAreTheSame() throws Exception {
+        final ResourceSymbols project = symbols( "int drawable icon 0x7f020000",
+                "int string app_name 0x7f030000",
+                "int[] styleable View { 0x7f010000, 0x7f010001 }" );
+        final ResourceSymbols variant = symbols( "int[] styleable View { 0x7f010000, 0x7f010001 }",
+                "int string app_name 0x7f030000",
+                "int drawable icon 0x7f020000" );
+
+        project.checkSameIds( variant, "paid" );
+    }
+
+    @Test
+    public void givenResourceOnlyInVariantThenShiftedIdsFail() throws Exception {
+        final ResourceSymbols project = symbols( "int drawable icon 0x7f020000",
+                "int drawable logo 0x7f020001" );
+        final ResourceSymbols variant = symbols( "int drawable banner 0x7f020000",
+                "int drawable icon 0x7f020001",
+                "int drawable logo 0x7f020002" );
+
+        final String message = checkFails( project, variant );
+        assertTrue( message, message.contains( "variant paid" ) );
+        assertTrue( message, message.contains( "int drawable icon is 0x7f020001 instead of 0x7f020000" ) );
+        assertTrue( message, message.contains( "int drawable banner is only defined by the variant" ) );
+    }
+
+    @Test
+    public void givenResourceMissingFromVariantThenItFails() throws Exception {
+        final ResourceSymbols project = symbols( "int drawable icon 0x7f020000",
+                "int string app_name 0x7f030000" );
+        final ResourceSymbols variant = symbols( "int drawable icon 0x7f020000" );
+
+        final String message = checkFails( project, variant );
+        assertTrue( message, message.contains( "int string app_name is missing" ) );
+    }
+
+    @Test
+    public void givenManyDifferencesThenOnlyTheFirstAreListed() throws Exception {
+        final String[] projectLines = new String[ 12 ];
+        final String[] variantLines = new String[ 12 ];
+        for ( int i = 0; i < projectLines.length; i++ ) {
+            projectLines[ i ] = "int string s" + i + " 0x7f03000" + Integer.toHexString( i );
+            variantLines[ i ] = "int string s" + i + " 0x7f04000" + Integer.toHexString( i );
+        }
+
+        final String message = checkFails( symbols( projectLines ), symbols( variantLines ) );
+        assertTrue( message, message.contains( "and 2 more" ) );
+    }
+
+    private static String checkFails( ResourceSymbols project, ResourceSymbols variant ) {
+        try {
+            project.checkSameIds( variant, "paid" );
+        } catch ( MojoExecutionException e ) {
+            return e.getMessage();
+        }
+        fail( "The resource ids of the variant were accepted" );
+        return null;
+    }
+
+    private ResourceSymbols symbols( String... lines ) throws Exception {
+        final File rText = temp.newFile();
+        FileUtils.writeLines( rText, "UTF-8", Arrays.asList( lines ) );
+        return ResourceSymbols.read( rText );
+    }
+}
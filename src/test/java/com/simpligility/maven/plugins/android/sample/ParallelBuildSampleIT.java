@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2014 simpligility technologies inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.simpligility.maven.plugins.android.sample;
+
+import io.takari.maven.testing.TestResources;
+import io.takari.maven.testing.executor.MavenExecutionResult;
+import io.takari.maven.testing.executor.MavenRuntime;
+import io.takari.maven.testing.executor.MavenVersions;
+import io.takari.maven.testing.executor.MavenRuntime.MavenRuntimeBuilder;
+import io.takari.maven.testing.executor.junit.MavenJUnitTestRunner;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Builds the multi module samples with a parallel reactor, which must neither fail nor warn about mojos that are not
+ * marked as thread safe.
+ */
+@RunWith(MavenJUnitTestRunner.class)
+@MavenVersions({"3.6.1"})
+public class ParallelBuildSampleIT {
+  
+  @Rule
+  public final TestResources resources = new TestResources();
+  
+  public final MavenRuntime mavenRuntime;
+  
+  public ParallelBuildSampleIT(MavenRuntimeBuilder builder) throws Exception {
+    this.mavenRuntime = builder.build();
+  }
+  
+  @Test
+  public void buildLibraryProjectsInParallel() throws Exception {
+    buildInParallel( "libraryprojects" );
+  }
+  
+  @Test
+  public void buildMorseflashInParallel() throws Exception {
+    buildInParallel( "morseflash" );
+  }
+  
+  @Test
+  public void buildTicTacToeInParallel() throws Exception {
+    buildInParallel( "tictactoe" );
+  }
+  
+  private void buildInParallel( String project ) throws Exception {
+    File basedir = resources.getBasedir( project );
+    MavenExecutionResult result = mavenRuntime
+          .forProject(basedir)
+          .withCliOptions( "-T", "8" )
+          .execute( "clean", "install" );
+    
+    result.assertErrorFreeLog();
+    result.assertNoLogText( "@threadSafe" );
+  }
+
+}